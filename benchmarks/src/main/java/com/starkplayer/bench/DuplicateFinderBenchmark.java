@@ -0,0 +1,98 @@
+package com.starkplayer.bench;
+
+import com.starkplayer.util.ContentHashStore;
+import com.starkplayer.util.DuplicateFinder;
+import com.starkplayer.util.Mp3Fixtures;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Runs {@link DuplicateFinder} over a generated library in which some tracks
+ * were copied and retagged: new title, album and cover, so the copies differ
+ * from the originals everywhere but in the audio. Every tenth original has
+ * the same audio length as the one before it but different audio, to check
+ * that equal lengths alone do not count as duplicates.
+ *
+ * Reports throughput on a fresh store with one thread and with all cores,
+ * then a second run that should hash nothing, and a run after a few files
+ * were added and one was retagged in place, which should hash only those.
+ * A first pass warms the page cache so the runs compare hashing, not disk.
+ *
+ * Usage: DuplicateFinderBenchmark [originals] [copies], default 240 and 30.
+ */
+public class DuplicateFinderBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int originals = args.length > 0 ? Integer.parseInt(args[0]) : 240;
+        int copies = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+        Path root = Files.createTempDirectory("duplicates-bench");
+        try {
+            Path library = Files.createDirectories(root.resolve("library"));
+            Path copied = Files.createDirectories(root.resolve("copied"));
+            List<Path> files = new ArrayList<>();
+            int[] sizes = new int[originals];
+            for (int i = 0; i < originals; i++) {
+                sizes[i] = i % 10 == 9 ? sizes[i - 1] : (1 << 20) + (i * 7919 % 4000) * 1000;
+                files.add(Mp3Fixtures.write(library, String.format("track-%04d.mp3", i), sizes[i],
+                        "Title " + i, "Artist " + i % 20, "Album " + i % 40, 2048, i + 1));
+            }
+            for (int c = 0; c < copies; c++) {
+                int o = c * 7 % originals;
+                files.add(Mp3Fixtures.write(copied, String.format("copy-%04d.mp3", c), sizes[o],
+                        "Copy of " + o, "Someone Else", "Best Of", 40_000, o + 1));
+            }
+            long total = 0;
+            for (Path f : files) total += Files.size(f);
+            System.out.printf("%d files, %.0f MB, %d retagged copies%n", files.size(), total / (1024.0 * 1024.0), copies);
+
+            run("Warm-up", new ContentHashStore(root.resolve("warmup.hashes")), 1, files, copies);
+            run("Fresh store, 1 thread", new ContentHashStore(root.resolve("single.hashes")), 1, files, copies);
+            ContentHashStore store = new ContentHashStore(root.resolve("content.hashes"));
+            int cores = Math.max(2, Runtime.getRuntime().availableProcessors());
+            run("Fresh store, " + cores + " threads", store, cores, files, copies);
+            store.save();
+
+            // Reloaded from disk, as on the next start
+            store = new ContentHashStore(root.resolve("content.hashes"));
+            run("Second run, nothing changed (expect 0 hashed)", store, cores, files, copies);
+
+            // A copy of an original whose length was unique, so both get hashed now, one brand
+            // new track that stays unhashed, and an original retagged in place
+            int lonely = 1;
+            files.add(Mp3Fixtures.write(copied, "late-copy.mp3", sizes[lonely],
+                    "Late copy", "Someone Else", "Best Of", 0, lonely + 1));
+            files.add(Mp3Fixtures.write(library, "new-track.mp3", 777_777, "New", "New", "New", 2048, 999_999));
+            Mp3Fixtures.write(library, "track-0000.mp3", sizes[0], "Retagged", "Artist 0", "Album 0", 9000, 1);
+            run("After adding 2 files and retagging 1 (expect 3 hashed)", store, cores, files, copies + 1);
+        } finally {
+            deleteTree(root);
+        }
+    }
+
+    private static void run(String label, ContentHashStore store, int threads, List<Path> files, int expectedGroups) {
+        DuplicateFinder finder = new DuplicateFinder(store, threads);
+        try {
+            DuplicateFinder.Result result = finder.find(files);
+            boolean ok = result.getGroups().size() == expectedGroups;
+            for (List<Path> group : result.getGroups()) {
+                ok &= group.size() == 2;
+            }
+            System.out.printf("%s: %s%s%n", label, result, ok ? "" : " (UNEXPECTED GROUPS)");
+        } finally {
+            finder.shutdown();
+        }
+    }
+
+    private static void deleteTree(Path root) throws Exception {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path p : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+}
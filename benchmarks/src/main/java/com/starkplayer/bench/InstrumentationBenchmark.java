@@ -0,0 +1,141 @@
+package com.starkplayer.bench;
+
+import com.starkplayer.util.Metrics;
+import com.starkplayer.util.PlayerEvents;
+import jdk.jfr.EventType;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Cost of the instrumentation on a hot path: one histogram sample and one
+ * JFR event per operation, created only while a recording enables it, as
+ * the visualizer does. Measured with no recording and with a JFR recording
+ * running, along with the bytes allocated per operation; run it with
+ * and without {@code -Dstarkplayer.metrics=true} to see both sides of the
+ * metrics flag.
+ *
+ * Also checks the histogram's percentiles against known samples and that
+ * the recorded events come back out of the JFR file.
+ *
+ * Usage: InstrumentationBenchmark [operations], default 5000000.
+ */
+public class InstrumentationBenchmark {
+
+    private static final Metrics.Histogram TIME = Metrics.histogram("bench.operation");
+    private static final Metrics.Counter COUNT = Metrics.counter("bench.operations");
+    private static final EventType FRAME_EVENT = EventType.getEventType(PlayerEvents.VisualizerFrame.class);
+
+    private static long sink;
+
+    public static void main(String[] args) throws Exception {
+        int operations = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+        System.out.println("Metrics " + (Metrics.isEnabled() ? "on" : "off"));
+
+        for (int round = 0; round < 3; round++) {
+            bare(operations);
+            clocked(operations);
+            instrumented(operations);
+        }
+        double bare = bare(operations);
+        double clocked = clocked(operations);
+        long allocated = allocatedBytes();
+        double off = instrumented(operations);
+        double offBytes = (allocatedBytes() - allocated) / (double) operations;
+
+        Path jfr = Files.createTempFile("instrumentation", ".jfr");
+        long recorded;
+        double on;
+        double onBytes;
+        try (Recording recording = new Recording()) {
+            recording.enable(PlayerEvents.VisualizerFrame.class);
+            recording.start();
+            allocated = allocatedBytes();
+            on = instrumented(operations / 10);
+            onBytes = (allocatedBytes() - allocated) / (operations / 10.0);
+            recording.stop();
+            recording.dump(jfr);
+            List<RecordedEvent> events = RecordingFile.readAllEvents(jfr);
+            recorded = events.stream().filter(e -> e.getEventType().getName().equals("com.starkplayer.VisualizerFrame")).count();
+        } finally {
+            Files.deleteIfExists(jfr);
+        }
+
+        System.out.printf("Bare operation %.1f ns, timed with nanoTime %.1f ns%n", bare, clocked);
+        System.out.printf("Instrumented %.1f ns with no recording, %.1f ns with JFR recording%n", off, on);
+        System.out.printf("Allocated %.1f bytes/op with no recording, %.1f with JFR recording%n", offBytes, onBytes);
+        System.out.printf("JFR events read back: %d of %d%n", recorded, operations / 10);
+        checkPercentiles();
+    }
+
+    /** Stand-in for a small unit of work, so the loop is not optimised away. */
+    private static long work(long x) {
+        return x * 0x9E3779B97F4A7C15L ^ (x >>> 29);
+    }
+
+    private static double bare(int operations) {
+        long start = System.nanoTime();
+        long acc = 0;
+        for (int i = 0; i < operations; i++) {
+            acc += work(i);
+        }
+        sink += acc;
+        return (System.nanoTime() - start) / (double) operations;
+    }
+
+    /** The two clock reads every instrumented path already needs. */
+    private static double clocked(int operations) {
+        long start = System.nanoTime();
+        long acc = 0;
+        for (int i = 0; i < operations; i++) {
+            long t = System.nanoTime();
+            acc += work(i);
+            acc += System.nanoTime() - t;
+        }
+        sink += acc;
+        return (System.nanoTime() - start) / (double) operations;
+    }
+
+    private static double instrumented(int operations) {
+        long start = System.nanoTime();
+        long acc = 0;
+        for (int i = 0; i < operations; i++) {
+            PlayerEvents.VisualizerFrame event = FRAME_EVENT.isEnabled() ? new PlayerEvents.VisualizerFrame() : null;
+            if (event != null) event.begin();
+            long t = System.nanoTime();
+            acc += work(i);
+            TIME.record(System.nanoTime() - t);
+            COUNT.increment();
+            if (event != null) {
+                event.end();
+                if (event.shouldCommit()) {
+                    event.mode = i & 3;
+                    event.commit();
+                }
+            }
+        }
+        sink += acc;
+        return (System.nanoTime() - start) / (double) operations;
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+
+    private static void checkPercentiles() {
+        if (!Metrics.isEnabled()) {
+            System.out.println("Percentile check skipped (metrics off)");
+            return;
+        }
+        Metrics.Histogram h = Metrics.histogram("bench.percentiles");
+        for (int ms = 1; ms <= 1000; ms++) h.record(ms * 1_000_000L);
+        System.out.printf("Samples 1..1000 ms: p50 %.1f (500), p90 %.1f (900), p99 %.1f (990), max %.1f, mean %.1f%n",
+                h.percentileMillis(0.5), h.percentileMillis(0.9), h.percentileMillis(0.99), h.getMaxMillis(), h.getMeanMillis());
+        Metrics.dump(System.out);
+    }
+}
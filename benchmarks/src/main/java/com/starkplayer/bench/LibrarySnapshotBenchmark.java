@@ -0,0 +1,91 @@
+package com.starkplayer.bench;
+
+import com.starkplayer.model.Song;
+import com.starkplayer.model.TrackStore;
+import com.starkplayer.util.LibrarySnapshot;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Writes a {@link LibrarySnapshot} for a synthetic library and measures how
+ * long it takes to map it, restore it as songs whose rows are read on first
+ * use, read the first screenful of them and read all of them. Also checks
+ * that a damaged block is reported.
+ *
+ * Usage: LibrarySnapshotBenchmark [track-count], default 200000.
+ */
+public class LibrarySnapshotBenchmark {
+
+    private static final int FIRST_SCREEN = 512;
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        List<Song> songs = SearchBenchmark.generate(count, new Random(7));
+        Random random = new Random(11);
+        for (Song s : songs) {
+            s.setGenre(random.nextInt(4) == 0 ? "" : "Genre " + random.nextInt(40));
+            s.setYear(String.valueOf(1960 + random.nextInt(65)));
+            s.setDuration(60 + random.nextInt(400));
+        }
+
+        Path dir = Files.createTempDirectory("starkplayer-snapshot-bench");
+        Path file = dir.resolve("library.snapshot");
+        try {
+            long start = System.nanoTime();
+            LibrarySnapshot.write(file, songs);
+            long writeMillis = (System.nanoTime() - start) / 1_000_000;
+            System.out.printf("Wrote %d tracks in %d ms, %.1f MB (%.0f bytes/track)%n",
+                    count, writeMillis, Files.size(file) / 1e6, (double) Files.size(file) / count);
+
+            for (int round = 1; round <= 3; round++) {
+                start = System.nanoTime();
+                LibrarySnapshot snapshot = LibrarySnapshot.open(file);
+                long openNanos = System.nanoTime() - start;
+                List<Song> restored = TrackStore.shared().restore(count, snapshot);
+                long restoreNanos = System.nanoTime() - start;
+                for (int i = 0; i < Math.min(FIRST_SCREEN, count); i++) restored.get(i).getDisplayTitle();
+                long firstNanos = System.nanoTime() - start;
+                int mismatches = 0;
+                for (int i = 0; i < count; i++) {
+                    if (!sameFields(songs.get(i), restored.get(i))) mismatches++;
+                }
+                long allNanos = System.nanoTime() - start;
+                System.out.printf("Round %d: open %.2f ms, restore %.2f ms, first %d songs %.2f ms, all songs %d ms, mismatches %d%n",
+                        round, openNanos / 1e6, restoreNanos / 1e6, FIRST_SCREEN, firstNanos / 1e6,
+                        allNanos / 1_000_000, mismatches);
+            }
+
+            // Flip one byte in the column data and make sure reading it fails
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                long pos = ch.size() - 10;
+                ByteBuffer b = ByteBuffer.allocate(1);
+                ch.read(b, pos);
+                b.put(0, (byte) (b.get(0) ^ 0x55)).rewind();
+                ch.write(b, pos);
+            }
+            LibrarySnapshot damaged = LibrarySnapshot.open(file);
+            AtomicBoolean detected = new AtomicBoolean();
+            damaged.setDamageHandler(e -> detected.set(true));
+            for (Song song : TrackStore.shared().restore(count, damaged)) song.getDuration();
+            System.out.println("Damaged block detected: " + detected.get());
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    private static boolean sameFields(Song a, Song b) {
+        return a.getFile().toAbsolutePath().equals(b.getFile()) && a.getTitle().equals(b.getTitle())
+                && a.getArtist().equals(b.getArtist()) && a.getAlbum().equals(b.getAlbum())
+                && Objects.equals(a.getGenre(), b.getGenre()) && Objects.equals(a.getYear(), b.getYear())
+                && a.getDuration() == b.getDuration();
+    }
+}
@@ -0,0 +1,124 @@
+package com.starkplayer.bench;
+
+import com.starkplayer.util.LibraryWatcher;
+import com.starkplayer.util.Mp3Fixtures;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Drives {@link LibraryWatcher} through the changes a library sees: files
+ * missing from the initial scan, an album copied in file by file, renames,
+ * a moved folder, a retagged file, a delete, and a burst big enough to
+ * overflow the OS event queue. Prints each diff with the time from the last
+ * change to its delivery, so debouncing and coalescing can be checked.
+ *
+ * Usage: LibraryWatcherBenchmark [burst-files], default 20000.
+ */
+public class LibraryWatcherBenchmark {
+
+    private static final int ALBUMS = 40;
+    private static final int TRACKS = 12;
+    private static final long SETTLE_MILLIS = 1000;
+
+    public static void main(String[] args) throws Exception {
+        int burst = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        Path root = Files.createTempDirectory("watcher-bench");
+        BlockingQueue<LibraryWatcher.Changes> diffs = new LinkedBlockingQueue<>();
+        LibraryWatcher watcher = null;
+        try {
+            List<Path> known = new ArrayList<>();
+            for (int a = 0; a < ALBUMS; a++) {
+                Path album = Files.createDirectories(root.resolve("Artist " + a % 7).resolve("Album " + a));
+                for (int t = 0; t < TRACKS; t++) {
+                    known.add(track(album, t));
+                }
+            }
+            // The scan "missed" three files
+            List<Path> missed = new ArrayList<>(known.subList(0, 3));
+            known.removeAll(missed);
+
+            watcher = LibraryWatcher.start(List.of(root), known, (w, changes) -> diffs.add(changes));
+            report("Initial diff against the scan (expect 3 added)", diffs, System.nanoTime());
+
+            Path copied = Files.createDirectories(root.resolve("Artist 9").resolve("New Album"));
+            for (int t = 0; t < TRACKS; t++) {
+                track(copied, t);
+                Thread.sleep(50); // a copy trickling in
+            }
+            report("Album copied in over ~0.6 s (expect one diff, 12 added)", diffs, System.nanoTime());
+
+            Path first = copied.resolve("01 Track.mp3");
+            Files.move(first, copied.resolve("01 Renamed.mp3"));
+            report("File renamed (expect 1 renamed)", diffs, System.nanoTime());
+
+            Path album = root.resolve("Artist 1").resolve("Album 1");
+            Files.move(album, root.resolve("Artist 1").resolve("Album 1 (Remaster)"));
+            report("Folder moved (expect 12 renamed)", diffs, System.nanoTime());
+
+            Path retagged = root.resolve("Artist 2").resolve("Album 2").resolve("05 Track.mp3");
+            Files.write(retagged, new byte[128], StandardOpenOption.APPEND);
+            Files.setLastModifiedTime(retagged, FileTime.fromMillis(System.currentTimeMillis() + 2000));
+            report("File retagged (expect 1 modified)", diffs, System.nanoTime());
+
+            Files.delete(root.resolve("Artist 3").resolve("Album 3").resolve("02 Track.mp3"));
+            report("File deleted (expect 1 removed)", diffs, System.nanoTime());
+
+            Path dump = Files.createDirectories(root.resolve("Dump"));
+            Thread.sleep(SETTLE_MILLIS); // let the new folder be registered first
+            diffs.clear();
+            long overflowsBefore = watcher.getOverflows();
+            for (int i = 0; i < burst; i++) {
+                Files.createFile(dump.resolve(String.format("%06d.mp3", i)));
+            }
+            LibraryWatcher.Changes changes = report("Burst of " + burst + " files (expect " + burst + " added)",
+                    diffs, System.nanoTime());
+            int total = changes.getAdded().size();
+            while ((changes = diffs.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                total += changes.getAdded().size();
+            }
+            System.out.printf("  %d added in total, %d overflow events, %d flushes overall%n",
+                    total, watcher.getOverflows() - overflowsBefore, watcher.getFlushes());
+        } finally {
+            if (watcher != null) watcher.close();
+            deleteTree(root);
+        }
+    }
+
+    private static Path track(Path album, int t) throws Exception {
+        return Mp3Fixtures.write(album, String.format("%02d Track.mp3", t), 8 * 1024,
+                "Track " + t, album.getParent().getFileName().toString(), album.getFileName().toString(), 0);
+    }
+
+    private static LibraryWatcher.Changes report(String step, BlockingQueue<LibraryWatcher.Changes> diffs,
+                                                 long lastChange) throws InterruptedException {
+        LibraryWatcher.Changes changes = diffs.poll(30, TimeUnit.SECONDS);
+        long elapsed = System.nanoTime() - lastChange;
+        if (changes == null) {
+            System.out.println(step + ": NO DIFF");
+            return null;
+        }
+        System.out.printf("%s: %s after %.0f ms%n", step, changes, elapsed / 1e6);
+        // Anything that arrives shortly after was not coalesced into the first diff
+        LibraryWatcher.Changes extra = diffs.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS);
+        if (extra != null) System.out.println("  followed by: " + extra);
+        return changes;
+    }
+
+    private static void deleteTree(Path root) throws Exception {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path p : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.starkplayer.bench;
+
+import com.starkplayer.model.Song;
+import com.starkplayer.util.MetadataExtractor;
+import com.starkplayer.util.Mp3Fixtures;
+import com.starkplayer.util.Mp3HeaderReader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * Compares the header-only {@link Mp3HeaderReader} against the mp3agic full
+ * scan: time and bytes read per file, plus a check that both paths produce
+ * the same Song fields.
+ *
+ * Usage: MetadataReadBenchmark [folder-with-mp3s]. Without a folder it runs
+ * on generated 1, 5 and 10 MB fixtures.
+ */
+public class MetadataReadBenchmark {
+
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws Exception {
+        List<Path> files = args.length > 0 ? listMp3s(Path.of(args[0])) : generateFixtures();
+        if (files.isEmpty()) {
+            System.out.println("No MP3 files to benchmark");
+            return;
+        }
+        long totalSize = 0;
+        for (Path f : files) totalSize += Files.size(f);
+
+        int mismatches = 0;
+        for (Path f : files) {
+            Song fast = new Song(f, f.getFileName().toString());
+            Song full = new Song(f, f.getFileName().toString());
+            Mp3HeaderReader.Tags tags = Mp3HeaderReader.read(f);
+            if (tags == null) continue;
+            applyHeaderTags(fast, tags);
+            MetadataExtractor.extractWithMp3agic(full);
+            if (!sameFields(fast, full)) {
+                mismatches++;
+                System.out.println("Mismatch: " + f + "\n  header: " + describe(fast) + "\n  mp3agic: " + describe(full));
+            }
+        }
+
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            runHeaderReader(files);
+            runMp3agic(files);
+        }
+        long headerNanos = 0, mp3agicNanos = 0, headerBytes = 0;
+        int fallbacks = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            long[] result = runHeaderReader(files);
+            headerNanos += System.nanoTime() - start;
+            headerBytes += result[0];
+            fallbacks = (int) result[1];
+            start = System.nanoTime();
+            runMp3agic(files);
+            mp3agicNanos += System.nanoTime() - start;
+        }
+
+        long reads = (long) files.size() * ROUNDS;
+        System.out.printf("Files: %d (%.1f MB total), rounds: %d%n", files.size(), totalSize / 1e6, ROUNDS);
+        System.out.printf("Header reader: %8.1f us/file, %10d bytes/file, %d fallbacks%n",
+                headerNanos / 1e3 / reads, headerBytes / reads, fallbacks);
+        System.out.printf("mp3agic scan:  %8.1f us/file, %10d bytes/file%n",
+                mp3agicNanos / 1e3 / reads, totalSize / files.size());
+        System.out.printf("Speedup: %.1fx, field mismatches: %d%n", (double) mp3agicNanos / headerNanos, mismatches);
+    }
+
+    private static long[] runHeaderReader(List<Path> files) throws IOException {
+        long bytes = 0;
+        long fallbacks = 0;
+        for (Path f : files) {
+            Mp3HeaderReader.Tags tags = Mp3HeaderReader.read(f);
+            if (tags != null) {
+                bytes += tags.getBytesRead();
+            } else {
+                fallbacks++;
+            }
+        }
+        return new long[] {bytes, fallbacks};
+    }
+
+    private static void runMp3agic(List<Path> files) throws Exception {
+        for (Path f : files) {
+            MetadataExtractor.extractWithMp3agic(new Song(f, f.getFileName().toString()));
+        }
+    }
+
+    private static void applyHeaderTags(Song song, Mp3HeaderReader.Tags tags) {
+        if (tags.getTitle() != null && !tags.getTitle().trim().isEmpty()) song.setTitle(tags.getTitle().trim());
+        song.setArtist(tags.getArtist());
+        song.setAlbum(tags.getAlbum());
+        song.setGenre(tags.getGenre());
+        song.setYear(tags.getYear());
+        if (tags.getDurationSeconds() > 0) song.setDuration(tags.getDurationSeconds());
+    }
+
+    private static boolean sameFields(Song a, Song b) {
+        return Objects.equals(a.getTitle(), b.getTitle()) && Objects.equals(a.getArtist(), b.getArtist())
+                && Objects.equals(a.getAlbum(), b.getAlbum()) && Objects.equals(a.getGenre(), b.getGenre())
+                && Objects.equals(a.getYear(), b.getYear()) && Math.abs(a.getDuration() - b.getDuration()) <= 1;
+    }
+
+    private static String describe(Song s) {
+        return s.getTitle() + " | " + s.getArtist() + " | " + s.getAlbum() + " | " + s.getGenre()
+                + " | " + s.getYear() + " | " + s.getDuration() + "s";
+    }
+
+    private static List<Path> listMp3s(Path dir) throws IOException {
+        try (Stream<Path> walk = Files.walk(dir)) {
+            return walk.filter(p -> p.getFileName().toString().toLowerCase().endsWith(".mp3")).toList();
+        }
+    }
+
+    private static List<Path> generateFixtures() throws IOException {
+        Path dir = Files.createTempDirectory("starkplayer-bench");
+        dir.toFile().deleteOnExit();
+        List<Path> files = new ArrayList<>();
+        int[] sizes = {1_000_000, 5_000_000, 10_000_000};
+        for (int i = 0; i < 12; i++) {
+            Path f = Mp3Fixtures.write(dir, "track" + i + ".mp3", sizes[i % sizes.length],
+                    "Track " + i, "Artist " + (i % 3), "Album " + (i % 4), 64 * 1024);
+            f.toFile().deleteOnExit();
+            files.add(f);
+        }
+        return files;
+    }
+}
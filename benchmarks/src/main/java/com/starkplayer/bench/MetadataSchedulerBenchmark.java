@@ -0,0 +1,117 @@
+package com.starkplayer.bench;
+
+import com.starkplayer.model.Song;
+import com.starkplayer.util.MetadataScheduler;
+import com.starkplayer.util.Mp3Fixtures;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Loads a large generated folder through {@link MetadataScheduler} the way
+ * the playlist does, then asks for one song to play and a screenful of rows
+ * near the end of the backlog. Reports how long those waited compared with
+ * draining the whole queue, checks that cancelled jobs stop reporting, and
+ * prints the concurrency the scheduler settled on.
+ *
+ * A first run on separate files warms the JVM up. The metadata cache is
+ * pointed at a temporary home directory so the run neither uses nor
+ * pollutes the real one.
+ *
+ * Usage: MetadataSchedulerBenchmark [files], default 4000.
+ */
+public class MetadataSchedulerBenchmark {
+
+    private static final int VISIBLE_ROWS = 20;
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 4000;
+        Path home = Files.createTempDirectory("scheduler-bench");
+        System.setProperty("user.home", home.toString());
+        try {
+            Path dir = Files.createDirectories(home.resolve("music"));
+            List<Path> files = new ArrayList<>(3 * count);
+            for (int i = 0; i < 3 * count; i++) {
+                files.add(Mp3Fixtures.write(dir, String.format("track-%05d.mp3", i), 32 * 1024,
+                        "Title " + i, "Artist " + (i % 100), "Album " + (i % 400), 0));
+            }
+            // Every run reads files the cache has not seen yet
+            priorities(files.subList(count, 2 * count), false);
+            priorities(files.subList(0, count), true);
+            cancellation(files.subList(2 * count, 3 * count));
+        } finally {
+            deleteTree(home);
+        }
+    }
+
+    private static void priorities(List<Path> files, boolean report) throws InterruptedException {
+        List<Song> songs = songs(files);
+        Map<Song, Long> finished = new ConcurrentHashMap<>();
+        CountDownLatch done = new CountDownLatch(songs.size());
+        MetadataScheduler scheduler = new MetadataScheduler(song -> {
+            finished.put(song, System.nanoTime());
+            done.countDown();
+        });
+
+        long start = System.nanoTime();
+        scheduler.submitAll(songs);
+        Thread.sleep(20); // the user scrolls and double-clicks while the backlog is draining
+        long requested = System.nanoTime();
+        int depthAtRequest = scheduler.getQueueDepth();
+        Song playing = songs.get(songs.size() - 1);
+        List<Song> visible = songs.subList(songs.size() - 200, songs.size() - 200 + VISIBLE_ROWS);
+        scheduler.submit(playing, MetadataScheduler.Priority.NOW_PLAYING);
+        scheduler.focus(visible, List.of());
+        done.await(5, TimeUnit.MINUTES);
+        long end = System.nanoTime();
+        scheduler.shutdown();
+        if (!report) return;
+
+        long visibleDone = 0;
+        for (Song song : visible) visibleDone = Math.max(visibleDone, finished.get(song));
+        System.out.printf("%d files, %d queued when playing: now-playing ready after %.1f ms, visible rows after %.1f ms%n",
+                songs.size(), depthAtRequest, (finished.get(playing) - requested) / 1e6, (visibleDone - requested) / 1e6);
+        System.out.printf("Whole queue drained in %.1f ms (%.0f files/s), concurrency settled at %d%n",
+                (end - start) / 1e6, songs.size() * 1e9 / (end - start), scheduler.getConcurrency());
+        System.out.printf("Wait from submit to start: avg %.1f ms, max %.1f ms%n",
+                scheduler.getAverageWaitMillis(), scheduler.getMaxWaitMillis());
+    }
+
+    private static void cancellation(List<Path> files) throws InterruptedException {
+        List<Song> songs = songs(files);
+        AtomicInteger reported = new AtomicInteger();
+        MetadataScheduler scheduler = new MetadataScheduler(song -> reported.incrementAndGet());
+        scheduler.submitAll(songs);
+        Thread.sleep(5);
+        scheduler.cancelAll();
+        int atCancel = reported.get();
+        int running = scheduler.getRunning();
+        Thread.sleep(200);
+        System.out.printf("Cancelled with %d of %d reported and %d running; %d reported afterwards, queue depth %d%n",
+                atCancel, songs.size(), running, reported.get() - atCancel, scheduler.getQueueDepth());
+        scheduler.shutdown();
+    }
+
+    private static List<Song> songs(List<Path> files) {
+        List<Song> songs = new ArrayList<>(files.size());
+        for (Path f : files) songs.add(new Song(f, f.getFileName().toString()));
+        return songs;
+    }
+
+    private static void deleteTree(Path root) throws Exception {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path p : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+}
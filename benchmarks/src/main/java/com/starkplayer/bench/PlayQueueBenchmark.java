@@ -0,0 +1,146 @@
+package com.starkplayer.bench;
+
+import com.starkplayer.model.Song;
+import com.starkplayer.util.PlayQueue;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Times {@link PlayQueue} operations on a large queue against the same
+ * operations on a plain ArrayList, and checks the queue against that list
+ * and that a shuffle cycle plays every track exactly once.
+ *
+ * Usage: PlayQueueBenchmark [queue-size], default 1000000.
+ */
+public class PlayQueueBenchmark {
+
+    private static final int OPS = 20_000;
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        checkAgainstList(new Random(1));
+        checkShuffleCycle(new Random(2));
+
+        List<Song> songs = new ArrayList<>(size + OPS);
+        for (int i = 0; i < size + OPS; i++) {
+            songs.add(new Song(Path.of("/music/" + i + ".mp3"), "Track " + i));
+        }
+        for (int round = 1; round <= 3; round++) {
+            Random random = new Random(round);
+            long start = System.nanoTime();
+            PlayQueue queue = new PlayQueue(200, random);
+            queue.rebuild(songs.subList(0, size));
+            long buildMillis = (System.nanoTime() - start) / 1_000_000;
+            List<Song> list = new ArrayList<>(songs.subList(0, size));
+            queue.select(queue.get(size / 2), true);
+
+            long insertQueue = time(() -> {
+                for (int i = 0; i < OPS; i++) queue.add(random.nextInt(queue.size() + 1), songs.get(size + i));
+            });
+            long insertList = time(() -> {
+                for (int i = 0; i < OPS; i++) list.add(random.nextInt(list.size() + 1), songs.get(size + i));
+            });
+            long removeQueue = time(() -> {
+                for (int i = 0; i < OPS; i++) queue.remove(queue.get(random.nextInt(queue.size())));
+            });
+            long removeList = time(() -> {
+                for (int i = 0; i < OPS; i++) list.remove(random.nextInt(list.size()));
+            });
+            long moveQueue = time(() -> {
+                for (int i = 0; i < OPS; i++) queue.move(queue.get(random.nextInt(queue.size())), random.nextInt(queue.size()));
+            });
+            long moveList = time(() -> {
+                for (int i = 0; i < OPS; i++) list.add(random.nextInt(list.size()), list.remove(random.nextInt(list.size())));
+            });
+            long enqueue = time(() -> {
+                for (int i = 0; i < OPS; i++) queue.enqueueNext(queue.get(random.nextInt(queue.size())));
+            });
+            queue.setShuffle(true);
+            long reshuffle = time(() -> queue.peekNext(true));
+            long next = time(() -> {
+                for (int i = 0; i < OPS; i++) queue.select(queue.peekNext(true), true);
+            });
+            long previous = time(() -> {
+                for (int i = 0; i < OPS; i++) queue.select(queue.popPrevious(true), false);
+            });
+
+            System.out.printf("Round %d, %d entries: build %d ms, shuffle %.1f ms%n", round, size, buildMillis, reshuffle / 1e6);
+            System.out.printf("  insert   %7.0f ns/op (ArrayList %8.0f)%n", (double) insertQueue / OPS, (double) insertList / OPS);
+            System.out.printf("  remove   %7.0f ns/op (ArrayList %8.0f)%n", (double) removeQueue / OPS, (double) removeList / OPS);
+            System.out.printf("  move     %7.0f ns/op (ArrayList %8.0f)%n", (double) moveQueue / OPS, (double) moveList / OPS);
+            System.out.printf("  enqueue  %7.0f ns/op, next %.0f ns/op, previous %.0f ns/op%n",
+                    (double) enqueue / OPS, (double) next / OPS, (double) previous / OPS);
+        }
+    }
+
+    private static long time(Runnable r) {
+        long start = System.nanoTime();
+        r.run();
+        return System.nanoTime() - start;
+    }
+
+    /** Random inserts, removes and moves must leave the queue in the same order as a list. */
+    private static void checkAgainstList(Random random) {
+        PlayQueue queue = new PlayQueue(50, random);
+        List<Song> list = new ArrayList<>();
+        int id = 0;
+        for (int i = 0; i < 50_000; i++) {
+            int op = random.nextInt(3);
+            if (op == 0 || list.isEmpty()) {
+                Song s = new Song(Path.of("/t/" + id), "t" + id++);
+                int index = random.nextInt(list.size() + 1);
+                list.add(index, s);
+                queue.add(index, s);
+            } else if (op == 1) {
+                Song s = list.remove(random.nextInt(list.size()));
+                queue.remove(queue.entryOf(s));
+            } else {
+                Song s = list.remove(random.nextInt(list.size()));
+                int index = random.nextInt(list.size() + 1);
+                list.add(index, s);
+                queue.move(queue.entryOf(s), index);
+            }
+        }
+        int mismatches = queue.size() == list.size() ? 0 : 1;
+        for (int i = 0; i < list.size(); i++) {
+            if (queue.get(i).getSong() != list.get(i) || queue.indexOf(queue.entryOf(list.get(i))) != i) mismatches++;
+        }
+        System.out.println("Order check against ArrayList: " + (mismatches == 0 ? "ok" : mismatches + " mismatches"));
+    }
+
+    /** A shuffle cycle with additions and removals along the way plays each live track once. */
+    private static void checkShuffleCycle(Random random) {
+        PlayQueue queue = new PlayQueue(50, random);
+        List<Song> songs = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) songs.add(new Song(Path.of("/s/" + i), "s" + i));
+        queue.rebuild(songs);
+        queue.setShuffle(true);
+        Set<Song> played = new HashSet<>();
+        Set<Song> removed = new HashSet<>();
+        int repeats = 0;
+        int added = 0;
+        PlayQueue.Entry e;
+        while ((e = queue.peekNext(false)) != null) {
+            queue.select(e, true);
+            if (!played.add(e.getSong())) repeats++;
+            if (random.nextInt(10) == 0) {
+                Song s = new Song(Path.of("/s/new" + added), "new" + added++);
+                queue.add(random.nextInt(queue.size() + 1), s);
+            }
+            if (random.nextInt(10) == 0) {
+                PlayQueue.Entry victim = queue.get(random.nextInt(queue.size()));
+                if (victim != queue.getCurrent()) {
+                    if (played.contains(victim.getSong())) played.remove(victim.getSong());
+                    removed.add(victim.getSong());
+                    queue.remove(victim);
+                }
+            }
+        }
+        System.out.printf("Shuffle cycle: %d played of %d live, %d repeats%n", played.size(), queue.size(), repeats);
+    }
+}
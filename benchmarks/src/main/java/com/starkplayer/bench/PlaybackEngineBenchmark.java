@@ -0,0 +1,260 @@
+package com.starkplayer.bench;
+
+import com.starkplayer.util.Mp3Fixtures;
+import com.starkplayer.util.PcmPlaybackEngine;
+import com.starkplayer.util.PlaybackEngine;
+import com.starkplayer.util.SpectrumAnalyzer;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Plays a generated WAV through {@link PcmPlaybackEngine} into a simulated
+ * sound card that consumes samples in real time, so playback can be checked
+ * without a display or an audio device.
+ *
+ * Reports start-up and seek latency, underruns and output latency while a
+ * second thread churns the heap, checks the reported position against the
+ * device clock, that end of media fires, and that a 1 kHz tone lands in the
+ * right spectrum band. Then plays a short generated MP3 the way a spare
+ * track is played, preloaded and given its output when it comes up, to
+ * check that MP3 decodes to PCM rather than falling back to JavaFX and
+ * that the spare holds no output until then.
+ *
+ * Usage: PlaybackEngineBenchmark [seconds-of-audio], default 6.
+ */
+public class PlaybackEngineBenchmark {
+
+    private static final float SAMPLE_RATE = 44_100;
+    private static final int BANDS = 64;
+
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 6;
+        Path wav = Files.createTempFile("engine-bench", ".wav");
+        try {
+            writeTone(wav, seconds, 1000);
+            run(wav, seconds);
+        } finally {
+            Files.deleteIfExists(wav);
+        }
+        Path dir = Files.createTempDirectory("engine-bench");
+        try {
+            playMp3(Mp3Fixtures.write(dir, "silence.mp3", 2 * 16_000, "Silence", "Nobody", "Nothing", 0));
+        } finally {
+            try (var files = Files.list(dir)) {
+                for (Path p : files.toList()) Files.delete(p);
+            }
+            Files.delete(dir);
+        }
+    }
+
+    private static void playMp3(Path mp3) throws Exception {
+        ClockSink sink = new ClockSink();
+        PcmPlaybackEngine engine;
+        try {
+            engine = PcmPlaybackEngine.preload(mp3, sink, Runnable::run);
+        } catch (UnsupportedAudioFileException e) {
+            System.out.println("MP3: no javax.sound decoder on the class path, it would play through JavaFX");
+            return;
+        }
+        CountDownLatch ended = new CountDownLatch(1);
+        engine.setListener(new PlaybackEngine.Listener() {
+            @Override public void onStateChanged(PlaybackEngine.State state) { }
+            @Override public void onPosition(double position) { }
+            @Override public void onEndOfMedia() { ended.countDown(); }
+            @Override public void onError(String message) { System.out.println("MP3 error: " + message); }
+        });
+        Thread.sleep(100);
+        System.out.printf("MP3 preloaded: output %s, decoded ahead %.0f ms%n",
+                sink.isOpen() ? "OPEN" : "not open", engine.getBufferedMillis());
+        engine.openOutput();
+        engine.play();
+        boolean finished = ended.await(10, TimeUnit.SECONDS);
+        System.out.printf("MP3: decoded to PCM, played %.2f of %.2f s, end of media %s, underruns %d%n",
+                sink.playedSeconds(), engine.getDuration(), finished ? "fired" : "MISSING", engine.getUnderruns());
+        engine.dispose();
+    }
+
+    private static void run(Path wav, int seconds) throws Exception {
+        ClockSink sink = new ClockSink();
+        CountDownLatch ended = new CountDownLatch(1);
+        float[] lastSpectrum = new float[BANDS];
+
+        long openStart = System.nanoTime();
+        PcmPlaybackEngine engine = new PcmPlaybackEngine(wav, sink, Runnable::run);
+        long openNanos = System.nanoTime() - openStart;
+        engine.setListener(new PlaybackEngine.Listener() {
+            @Override public void onStateChanged(PlaybackEngine.State state) { }
+            @Override public void onPosition(double position) { }
+            @Override public void onEndOfMedia() { ended.countDown(); }
+            @Override public void onError(String message) { System.out.println("Error: " + message); }
+        });
+        engine.setSpectrumListener(BANDS, 0.05, m -> {
+            synchronized (lastSpectrum) {
+                System.arraycopy(m, 0, lastSpectrum, 0, BANDS);
+            }
+        });
+
+        // Let the decoder fill the ring the way a preloaded engine would
+        Thread.sleep(100);
+        Thread churn = new Thread(PlaybackEngineBenchmark::churn, "churn");
+        churn.setDaemon(true);
+        churn.start();
+
+        long playStart = System.nanoTime();
+        engine.play();
+        double firstAudio = sink.awaitFirstWrite(playStart);
+        Thread.sleep(1000);
+        double drift = (engine.getPosition() - sink.playedSeconds()) * 1000;
+        double bufferedAhead = engine.getBufferedMillis();
+
+        double target = seconds / 2.0;
+        long seekStart = System.nanoTime();
+        sink.resetFirstWrite();
+        engine.seek(target);
+        double seekAudio = sink.awaitFirstWrite(seekStart);
+        double seekError = Math.abs(engine.getPosition() - target) * 1000;
+
+        boolean finished = ended.await(seconds * 2L, TimeUnit.SECONDS);
+        churn.interrupt();
+
+        int peak = 0;
+        synchronized (lastSpectrum) {
+            for (int b = 1; b < BANDS; b++) if (lastSpectrum[b] > lastSpectrum[peak]) peak = b;
+        }
+        int expected = loudestBand(1000);
+
+        System.out.printf("Open %.1f ms, play to first audio %.1f ms, seek to first audio %.1f ms%n",
+                openNanos / 1e6, firstAudio, seekAudio);
+        System.out.printf("Position vs device clock: %+.1f ms, after seek off by %.1f ms%n", drift, seekError);
+        System.out.printf("Underruns %d, output latency avg %.1f ms, max %.1f ms, decoded ahead %.0f ms%n",
+                engine.getUnderruns(), engine.getAverageLatencyMillis(), engine.getMaxLatencyMillis(), bufferedAhead);
+        System.out.printf("End of media %s, final state %s, position %.2f of %.2f s%n",
+                finished ? "fired" : "MISSING", engine.getState(), engine.getPosition(), engine.getDuration());
+        System.out.printf("Spectrum peak in band %d for a 1000 Hz tone (expected %d)%n", peak, expected);
+        engine.dispose();
+    }
+
+    /** The band a pure tone should peak in, from a standalone analyzer. */
+    private static int loudestBand(double frequency) {
+        SpectrumAnalyzer analyzer = new SpectrumAnalyzer(PcmPlaybackEngine.DEFAULT_SPECTRUM_SIZE, BANDS, SAMPLE_RATE);
+        float[] samples = new float[analyzer.size()];
+        for (int i = 0; i < samples.length; i++) samples[i] = (float) Math.sin(2 * Math.PI * frequency * i / SAMPLE_RATE);
+        float[] levels = analyzer.analyse(samples, 0);
+        int peak = 0;
+        for (int b = 1; b < levels.length; b++) if (levels[b] > levels[peak]) peak = b;
+        return peak;
+    }
+
+    /** Keeps the allocator and collector busy, like a library scan would. */
+    private static void churn() {
+        List<byte[]> keep = new ArrayList<>();
+        while (!Thread.currentThread().isInterrupted()) {
+            keep.add(new byte[16 * 1024]);
+            if (keep.size() > 2000) keep.clear();
+        }
+    }
+
+    private static void writeTone(Path wav, int seconds, double frequency) throws Exception {
+        int frames = (int) (SAMPLE_RATE * seconds);
+        byte[] pcm = new byte[frames * 4];
+        for (int i = 0; i < frames; i++) {
+            short v = (short) (Math.sin(2 * Math.PI * frequency * i / SAMPLE_RATE) * 0.5 * Short.MAX_VALUE);
+            for (int c = 0; c < 2; c++) {
+                pcm[4 * i + 2 * c] = (byte) v;
+                pcm[4 * i + 2 * c + 1] = (byte) (v >> 8);
+            }
+        }
+        AudioFormat format = new AudioFormat(SAMPLE_RATE, 16, 2, true, false);
+        try (AudioInputStream in = new AudioInputStream(new ByteArrayInputStream(pcm), format, frames)) {
+            AudioSystem.write(in, AudioFileFormat.Type.WAVE, wav.toFile());
+        }
+    }
+
+    /** A sound card that plays queued frames at the sample rate by the wall clock. */
+    private static final class ClockSink implements PcmPlaybackEngine.Sink {
+        private int frameSize;
+        private float rate;
+        private int capacity;
+        private long queued;
+        private double played;
+        private long lastNanos;
+        private boolean running;
+        private volatile long firstWriteNanos;
+
+        @Override
+        public synchronized void open(AudioFormat format, int bufferFrames) {
+            frameSize = format.getFrameSize();
+            rate = format.getSampleRate();
+            capacity = bufferFrames;
+        }
+
+        synchronized boolean isOpen() {
+            return rate > 0;
+        }
+
+        private void advance() {
+            long now = System.nanoTime();
+            if (running) played = Math.min(queued, played + (now - lastNanos) * rate / 1e9);
+            lastNanos = now;
+        }
+
+        @Override public synchronized void start() { advance(); running = true; }
+        @Override public synchronized void stop() { advance(); running = false; }
+        @Override public synchronized void flush() { advance(); played = queued; }
+        @Override public void close() { }
+
+        @Override
+        public void drain() {
+            while (bufferedFrames() > 0) LockSupport.parkNanos(1_000_000L);
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) {
+            int frames = length / frameSize;
+            while (true) {
+                synchronized (this) {
+                    advance();
+                    if (!running || queued + frames - played <= capacity) {
+                        queued += frames;
+                        break;
+                    }
+                }
+                LockSupport.parkNanos(1_000_000L);
+            }
+            if (firstWriteNanos == 0) firstWriteNanos = System.nanoTime();
+        }
+
+        @Override
+        public synchronized int bufferedFrames() {
+            advance();
+            return (int) Math.ceil(queued - played);
+        }
+
+        synchronized double playedSeconds() {
+            advance();
+            return played / rate;
+        }
+
+        void resetFirstWrite() {
+            firstWriteNanos = 0;
+        }
+
+        /** Milliseconds from {@code since} to the first write after it. */
+        double awaitFirstWrite(long since) {
+            while (firstWriteNanos == 0) LockSupport.parkNanos(100_000L);
+            return (firstWriteNanos - since) / 1e6;
+        }
+    }
+}
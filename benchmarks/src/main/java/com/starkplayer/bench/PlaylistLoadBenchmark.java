@@ -0,0 +1,133 @@
+package com.starkplayer.bench;
+
+import com.starkplayer.model.Song;
+import com.starkplayer.util.MetadataExtractor;
+import com.starkplayer.util.MetadataScheduler;
+import com.starkplayer.util.Mp3Fixtures;
+import com.starkplayer.util.PlaylistLoader;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Loads a large synthetic M3U with {@link PlaylistLoader} and with the old
+ * one-entry-at-a-time loop (exists check plus tag read per line), reporting
+ * time until the first entries can be shown, total time and entries/s.
+ * The loader only checks that files exist and queues the found ones on a
+ * {@link MetadataScheduler}; it is done once the scheduler has read them all.
+ *
+ * Usage: PlaylistLoadBenchmark [entries] [distinct-files], default 30000 and 2000.
+ * About 3% of the entries point at files that do not exist.
+ */
+public class PlaylistLoadBenchmark {
+
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) throws Exception {
+        int entries = args.length > 0 ? Integer.parseInt(args[0]) : 30_000;
+        int distinct = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+
+        Path dir = Files.createTempDirectory("starkplayer-playlist-bench");
+        List<Path> files = new ArrayList<>(distinct);
+        for (int i = 0; i < distinct; i++) {
+            files.add(Mp3Fixtures.write(dir, "track" + i + ".mp3", 20_000,
+                    "Track " + i, "Artist " + (i % 50), "Album " + (i % 200), 0));
+        }
+        Path playlist = dir.resolve("large.m3u8");
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(playlist))) {
+            writer.println("#EXTM3U");
+            for (int i = 0; i < entries; i++) {
+                Path file = i % 33 == 0 ? dir.resolve("missing" + i + ".mp3") : files.get(i % distinct);
+                writer.println("#EXTINF:" + (120 + i % 240) + ",Artist " + (i % 50) + " - Track " + i);
+                writer.println(file.toAbsolutePath());
+            }
+        }
+        System.out.printf("Playlist: %d entries over %d files, %.1f KB%n", entries, distinct, Files.size(playlist) / 1e3);
+
+        Semaphore tagged = new Semaphore(0);
+        MetadataScheduler metadata = new MetadataScheduler(song -> tagged.release());
+        PlaylistLoader loader = new PlaylistLoader(metadata);
+        try {
+            // The first pass fills the metadata cache for both loaders
+            runLegacy(playlist);
+            runLoader(loader, playlist, tagged);
+            for (int round = 0; round < ROUNDS; round++) {
+                long start = System.nanoTime();
+                int loaded = runLegacy(playlist);
+                long legacyMillis = (System.nanoTime() - start) / 1_000_000;
+
+                start = System.nanoTime();
+                PlaylistLoader.Load load = runLoader(loader, playlist, tagged);
+                long loaderMillis = (System.nanoTime() - start) / 1_000_000;
+                System.out.printf("Round %d: legacy %d tracks in %d ms (%.0f entries/s, nothing shown until done) | "
+                                + "loader %d tracks, %d missing, first entries after %d ms, checked in %d ms, "
+                                + "tagged in %d ms (%.0f entries/s)%n",
+                        round + 1, loaded, legacyMillis, loaded * 1000.0 / Math.max(1, legacyMillis),
+                        load.getEntriesResolved(), load.getEntriesMissing(), load.getFirstBatchMillis(),
+                        load.getElapsedMillis(), loaderMillis, load.getEntriesResolved() * 1000.0 / Math.max(1, loaderMillis));
+            }
+        } finally {
+            loader.shutdown();
+            metadata.shutdown();
+            try (var walk = Files.walk(dir)) {
+                for (Path p : walk.sorted((a, b) -> b.compareTo(a)).toList()) Files.deleteIfExists(p);
+            }
+        }
+    }
+
+    /** Runs one load and waits until every entry found has been tagged. */
+    private static PlaylistLoader.Load runLoader(PlaylistLoader loader, Path playlist, Semaphore tagged)
+            throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        PlaylistLoader.Load load = loader.load(playlist, new PlaylistLoader.Listener() {
+            @Override
+            public void onEntries(PlaylistLoader.Load load, List<Song> entries) { }
+
+            @Override
+            public void onResolved(PlaylistLoader.Load load, List<Song> found, List<Song> missing) { }
+
+            @Override
+            public void onDone(PlaylistLoader.Load load) {
+                done.countDown();
+            }
+        });
+        done.await();
+        tagged.acquire((int) load.getEntriesResolved());
+        return load;
+    }
+
+    /** The loop PlaylistManager used to run on the FX thread. */
+    private static int runLegacy(Path playlist) throws IOException {
+        List<Song> songs = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(playlist)) {
+            String line;
+            String title = null;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.startsWith("#EXTINF:")) {
+                    int commaIndex = line.indexOf(',');
+                    if (commaIndex > 0 && commaIndex < line.length() - 1) {
+                        title = line.substring(commaIndex + 1);
+                    }
+                } else if (!line.isEmpty() && !line.startsWith("#")) {
+                    Path path = Paths.get(line);
+                    if (Files.exists(path)) {
+                        Song song = new Song(path, title != null ? title : path.getFileName().toString());
+                        MetadataExtractor.extractMetadata(song);
+                        songs.add(song);
+                        title = null;
+                    }
+                }
+            }
+        }
+        return songs.size();
+    }
+}
@@ -0,0 +1,133 @@
+package com.starkplayer.bench;
+
+import com.starkplayer.model.Song;
+import com.starkplayer.util.PlaylistModel;
+import com.starkplayer.util.SearchIndex;
+import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import javafx.collections.transformation.FilteredList;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * The playlist view over a large library: {@link PlaylistModel} against the
+ * FilteredList it replaced, each over its own copy of the same library with
+ * a listener attached, as the list view would have.
+ *
+ * Measures a search keystroke (search plus refilter), songs appended in
+ * batches while a search is active, as a scan does, and a scattered removal
+ * delivered as one change, as the folder watcher does. Both views must end
+ * up showing the same songs.
+ *
+ * Usage: PlaylistModelBenchmark [tracks], default 1000000. Runs headless.
+ */
+public class PlaylistModelBenchmark {
+
+    private static final String[] QUERIES = {"a", "ar", "art", "artist 1", "artist 12", "album 3", "", "song"};
+    private static final int ROUNDS = 5;
+
+    private static long events;
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        List<Song> library = new ArrayList<>(count + 20_000);
+        for (int i = 0; i < count + 20_000; i++) library.add(song(i));
+
+        SearchIndex index = new SearchIndex();
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) index.add(library.get(i));
+        System.out.printf("Indexed %d tracks in %d ms%n", count, (System.nanoTime() - start) / 1_000_000);
+
+        ObservableList<Song> filteredSource = FXCollections.observableArrayList(library.subList(0, count));
+        ObservableList<Song> modelSource = FXCollections.observableArrayList(library.subList(0, count));
+        FilteredList<Song> filtered = new FilteredList<>(filteredSource, s -> true);
+        PlaylistModel model = new PlaylistModel(modelSource, index);
+        filtered.addListener((ListChangeListener<Song>) PlaylistModelBenchmark::consume);
+        model.addListener((ListChangeListener<Song>) PlaylistModelBenchmark::consume);
+
+        // Search keystrokes
+        for (int warm = 0; warm < 2; warm++) {
+            for (String q : QUERIES) {
+                search(index, q, r -> filtered.setPredicate(r == null ? s -> true : r::matches));
+                search(index, q, model::setFilter);
+            }
+        }
+        long filteredBest = Long.MAX_VALUE;
+        long modelBest = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long filteredTotal = 0;
+            long modelTotal = 0;
+            for (String q : QUERIES) {
+                filteredTotal += search(index, q, r -> filtered.setPredicate(r == null ? s -> true : r::matches));
+                modelTotal += search(index, q, model::setFilter);
+            }
+            filteredBest = Math.min(filteredBest, filteredTotal);
+            modelBest = Math.min(modelBest, modelTotal);
+        }
+        System.out.printf("Keystroke (search + refilter): FilteredList %6.2f ms, PlaylistModel %6.2f ms%n",
+                filteredBest / 1e6 / QUERIES.length, modelBest / 1e6 / QUERIES.length);
+
+        // Appends while a search is active
+        SearchIndex.Result active = index.search("artist 1");
+        filtered.setPredicate(active::matches);
+        model.setFilter(active);
+        long filteredAppend = 0;
+        long modelAppend = 0;
+        for (int from = count; from < count + 20_000; from += 1000) {
+            List<Song> batch = library.subList(from, from + 1000);
+            long t = System.nanoTime();
+            filteredSource.addAll(batch);
+            filteredAppend += System.nanoTime() - t;
+            t = System.nanoTime();
+            modelSource.addAll(batch);
+            modelAppend += System.nanoTime() - t;
+        }
+        System.out.printf("20 batches of 1000 appended while filtered: FilteredList %6.2f ms, PlaylistModel %6.2f ms%n",
+                filteredAppend / 1e6, modelAppend / 1e6);
+
+        // Scattered removal as one change
+        Set<Song> gone = new HashSet<>();
+        for (int i = 7; i < count; i += count / 500) gone.add(library.get(i));
+        long t = System.nanoTime();
+        filteredSource.removeAll(gone);
+        long filteredRemove = System.nanoTime() - t;
+        t = System.nanoTime();
+        modelSource.removeAll(gone);
+        long modelRemove = System.nanoTime() - t;
+        System.out.printf("%d scattered tracks removed: FilteredList %6.2f ms, PlaylistModel %6.2f ms%n",
+                gone.size(), filteredRemove / 1e6, modelRemove / 1e6);
+
+        if (!filtered.equals(model)) throw new AssertionError("views differ after the changes");
+        model.setFilter(null);
+        filtered.setPredicate(s -> true);
+        if (!filtered.equals(model)) throw new AssertionError("views differ after clearing the search");
+        System.out.println("Both views show the same " + model.size() + " tracks (" + events + " events)");
+    }
+
+    private static long search(SearchIndex index, String query, Consumer<SearchIndex.Result> apply) {
+        long t = System.nanoTime();
+        apply.accept(index.search(query));
+        return System.nanoTime() - t;
+    }
+
+    /** Walks a change the way a list view does, without touching the songs. */
+    private static void consume(ListChangeListener.Change<? extends Song> c) {
+        while (c.next()) events += c.getFrom() + c.getRemovedSize() + c.getAddedSize();
+    }
+
+    private static Song song(int i) {
+        int album = i / 12;
+        int artist = album / 8;
+        Song song = new Song(Paths.get("/music", "Artist " + artist, "Album " + album,
+                String.format("%02d Song %d.mp3", i % 12 + 1, i)), "Song " + i);
+        song.setArtist("Artist " + artist);
+        song.setAlbum("Album " + album);
+        return song;
+    }
+}
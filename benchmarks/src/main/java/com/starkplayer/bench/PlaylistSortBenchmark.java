@@ -0,0 +1,154 @@
+package com.starkplayer.bench;
+
+import com.starkplayer.model.Song;
+import com.starkplayer.util.PlaylistModel;
+import com.starkplayer.util.PlaylistModel.SortField;
+import com.starkplayer.util.SearchIndex;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+
+import java.nio.file.Paths;
+import java.text.Collator;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Sorting the playlist by artist, album and file, as the sort box's
+ * "Artist" entry does: {@link PlaylistModel} against a plain list sort with
+ * a locale-aware Comparator over the tags, at 100k and 1M tracks.
+ *
+ * Also measures what happens after the sort: tags arriving for scattered
+ * tracks in batches of 100, as the background reader delivers them, and
+ * songs appended in batches while sorted, as a scan does. The final order
+ * is checked against the full folded tags, with and without a search.
+ *
+ * Usage: PlaylistSortBenchmark [tracks...], default 100000 1000000. Runs headless.
+ */
+public class PlaylistSortBenchmark {
+
+    private static final List<SortField> BY_ARTIST = List.of(SortField.ARTIST, SortField.ALBUM, SortField.FILE);
+    private static final String[] WORDS = {
+        "love", "night", "dance", "heart", "fire", "dream", "summer", "city", "blue", "river",
+        "Beyoncé", "Björk", "Sigur Rós", "Motörhead", "Café", "Noël", "light", "shadow", "golden", "road",
+        "The", "Ångström", "Éclair", "Zoë", "über", "Ölga", "a", "in", "of", "Ärzte"
+    };
+
+    public static void main(String[] args) {
+        int[] counts = args.length > 0
+                ? java.util.Arrays.stream(args).mapToInt(Integer::parseInt).toArray()
+                : new int[] {100_000, 1_000_000};
+        for (int count : counts) run(count);
+    }
+
+    private static void run(int count) {
+        Random random = new Random(count);
+        List<Song> songs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) songs.add(song(i, random));
+
+        // A plain sort of a copy, the way a Comparator over the tags would do it
+        Collator collator = Collator.getInstance(Locale.ROOT);
+        collator.setStrength(Collator.SECONDARY);
+        Comparator<Song> naive = Comparator.comparing(Song::getArtist, collator)
+                .thenComparing(Song::getAlbum, collator)
+                .thenComparing(s -> s.getFolder().toString(), collator)
+                .thenComparing(Song::getFileName, collator);
+        List<Song> copy = new ArrayList<>(songs);
+        long t = System.nanoTime();
+        copy.sort(naive);
+        long naiveTime = System.nanoTime() - t;
+
+        ObservableList<Song> library = FXCollections.observableArrayList(songs);
+        SearchIndex index = new SearchIndex();
+        for (Song s : songs) index.add(s);
+        PlaylistModel model = new PlaylistModel(library, index);
+        long modelBest = Long.MAX_VALUE;
+        for (int round = 0; round < 5; round++) {
+            model.setSortOrder(List.of());
+            t = System.nanoTime();
+            model.setSortOrder(BY_ARTIST);
+            modelBest = Math.min(modelBest, System.nanoTime() - t);
+        }
+        System.out.printf("%,d tracks: Comparator with Collator %7.0f ms, PlaylistModel %6.0f ms%n",
+                count, naiveTime / 1e6, modelBest / 1e6);
+
+        // Tags arriving for scattered tracks
+        long updateTime = 0;
+        for (int batch = 0; batch < 10; batch++) {
+            List<Song> updated = new ArrayList<>(100);
+            for (int k = 0; k < 100; k++) {
+                Song s = songs.get(random.nextInt(count));
+                s.setArtist(words(random, 2));
+                s.setAlbum(words(random, 3));
+                updated.add(s);
+                index.update(s);
+            }
+            t = System.nanoTime();
+            model.songsUpdated(updated);
+            updateTime += System.nanoTime() - t;
+        }
+        System.out.printf("  10 batches of 100 tag updates: %6.2f ms per batch%n", updateTime / 1e6 / 10);
+
+        // Songs appended while sorted
+        long appendTime = 0;
+        for (int batch = 0; batch < 10; batch++) {
+            List<Song> added = new ArrayList<>(1000);
+            for (int k = 0; k < 1000; k++) added.add(song(count + batch * 1000 + k, random));
+            for (Song s : added) index.add(s);
+            t = System.nanoTime();
+            library.addAll(added);
+            appendTime += System.nanoTime() - t;
+        }
+        System.out.printf("  10 batches of 1000 appended:   %6.2f ms per batch%n", appendTime / 1e6 / 10);
+
+        check(model, model.size());
+        model.setFilter(index.search("love"));
+        check(model, model.size());
+        System.out.println("  order checked (" + model.size() + " tracks match \"love\")");
+    }
+
+    /** Fails unless the rows are in artist, album, folder, file name order by their full folded text. */
+    private static void check(PlaylistModel model, int size) {
+        for (int k = 1; k < size; k++) {
+            Song a = model.get(k - 1);
+            Song b = model.get(k);
+            int c = fold(a.getArtist()).compareTo(fold(b.getArtist()));
+            if (c == 0) c = fold(a.getAlbum()).compareTo(fold(b.getAlbum()));
+            if (c == 0) c = fold(a.getFolder().toString()).compareTo(fold(b.getFolder().toString()));
+            if (c == 0) c = fold(a.getFileName()).compareTo(fold(b.getFileName()));
+            if (c > 0) throw new AssertionError("out of order at row " + k + ": " + a.getFile() + " / " + b.getFile());
+        }
+    }
+
+    private static String fold(String s) {
+        return Normalizer.normalize(s, Normalizer.Form.NFD).replaceAll("\\p{M}", "").toLowerCase(Locale.ROOT);
+    }
+
+    /** Twelve tracks per album folder, eight albums per artist, all under one music folder. */
+    private static Song song(int i, Random random) {
+        Random albumRandom = new Random(i / 12);
+        String album = words(albumRandom, 1 + albumRandom.nextInt(3));
+        Random artistRandom = new Random(-1 - i / 96);
+        String artist = words(artistRandom, 1 + artistRandom.nextInt(2));
+        String title = words(random, 2 + random.nextInt(3));
+        Song song = new Song(Paths.get("/home/listener/Music", artist, album,
+                String.format("%02d %s.mp3", i % 12 + 1, title)), title);
+        if (i % 10 != 0) { // one in ten untagged, as a scan finds them before the tags arrive
+            song.setArtist(artist);
+            song.setAlbum(album);
+        }
+        return song;
+    }
+
+    private static String words(Random random, int n) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            if (i > 0) sb.append(' ');
+            sb.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,128 @@
+package com.starkplayer.bench;
+
+import com.starkplayer.model.Song;
+import com.starkplayer.util.SearchIndex;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+
+/**
+ * Measures {@link SearchIndex} against the old per-keystroke lower-casing
+ * predicate on a synthetic library, simulating a user typing queries one
+ * character at a time.
+ *
+ * Usage: SearchBenchmark [track-count], default 500000.
+ */
+public class SearchBenchmark {
+
+    private static final String[] WORDS = {
+        "love", "night", "dance", "heart", "fire", "dream", "summer", "city", "blue", "river",
+        "Beyoncé", "Björk", "Sigur Rós", "Motörhead", "Café", "Noël", "light", "shadow", "golden", "road",
+        "Beatles", "Queen", "Radiohead", "Daft Punk", "Nirvana", "Coldplay", "Adele", "Drake", "Muse", "Blur"
+    };
+    private static final String[] QUERIES = {"beatles", "bjork", "night dr", "sigur ros", "kalomi", "velast", "xyzzy", "da"};
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+        List<Song> songs = generate(count, new Random(42));
+
+        long start = System.nanoTime();
+        SearchIndex index = new SearchIndex();
+        for (Song s : songs) index.add(s);
+        System.out.printf("Indexed %d tracks in %d ms%n", count, (System.nanoTime() - start) / 1_000_000);
+
+        // Warm up both paths
+        for (int i = 0; i < 5; i++) {
+            for (String q : QUERIES) {
+                typeIndexed(index, q);
+                typeLinear(songs, q);
+            }
+        }
+
+        for (String q : QUERIES) {
+            long[] indexed = typeIndexed(index, q);
+            long[] linear = typeLinear(songs, q);
+            System.out.printf("%-10s index: max %6.2f ms, avg %6.2f ms per keystroke | linear: avg %7.2f ms | %d matches%n",
+                    "\"" + q + "\"", max(indexed) / 1e6, avg(indexed) / 1e6, avg(linear) / 1e6,
+                    index.search(q) == null ? count : index.search(q).size());
+        }
+    }
+
+    /** Returns the per-keystroke query time in nanoseconds. */
+    private static long[] typeIndexed(SearchIndex index, String query) {
+        long[] times = new long[query.length()];
+        index.search("");
+        for (int i = 1; i <= query.length(); i++) {
+            long t = System.nanoTime();
+            index.search(query.substring(0, i));
+            times[i - 1] = System.nanoTime() - t;
+        }
+        return times;
+    }
+
+    private static long[] typeLinear(List<Song> songs, String query) {
+        long[] times = new long[query.length()];
+        for (int i = 1; i <= query.length(); i++) {
+            String prefix = query.substring(0, i);
+            long t = System.nanoTime();
+            Predicate<Song> p = song -> {
+                String lowerCaseFilter = prefix.toLowerCase();
+                return song.getTitle().toLowerCase().contains(lowerCaseFilter) ||
+                       song.getArtist().toLowerCase().contains(lowerCaseFilter) ||
+                       song.getAlbum().toLowerCase().contains(lowerCaseFilter);
+            };
+            int matches = 0;
+            for (Song s : songs) if (p.test(s)) matches++;
+            times[i - 1] = System.nanoTime() - t + (matches < 0 ? 1 : 0);
+        }
+        return times;
+    }
+
+    /**
+     * Titles and albums mostly use a large pseudo-word vocabulary, with about
+     * one word in ten from a small list of popular (and accented) names, so
+     * common queries like "beatles" hit a realistic worst case.
+     */
+    public static List<Song> generate(int count, Random random) {
+        String[] vocabulary = new String[5000];
+        String[] syllables = {"ka", "lo", "mi", "ren", "sa", "to", "vel", "dra", "qu", "ny", "or", "phe", "zu", "bri", "ast"};
+        for (int i = 0; i < vocabulary.length; i++) {
+            StringBuilder w = new StringBuilder();
+            for (int j = 0, n = 2 + random.nextInt(3); j < n; j++) w.append(syllables[random.nextInt(syllables.length)]);
+            vocabulary[i] = w.toString();
+        }
+        String[] artists = new String[20_000];
+        for (int i = 0; i < artists.length; i++) {
+            artists[i] = random.nextInt(20) == 0 ? WORDS[20 + random.nextInt(10)] : phrase(random, vocabulary, 1 + random.nextInt(2));
+        }
+        List<Song> songs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Song s = new Song(Path.of("/music/" + i + ".mp3"), phrase(random, vocabulary, 2 + random.nextInt(3)));
+            s.setArtist(artists[random.nextInt(artists.length)]);
+            s.setAlbum(phrase(random, vocabulary, 1 + random.nextInt(3)));
+            songs.add(s);
+        }
+        return songs;
+    }
+
+    private static String phrase(Random random, String[] vocabulary, int words) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) sb.append(' ');
+            sb.append(random.nextInt(10) == 0 ? WORDS[random.nextInt(WORDS.length)] : vocabulary[random.nextInt(vocabulary.length)]);
+        }
+        return sb.toString();
+    }
+
+    private static double avg(long[] v) {
+        return Arrays.stream(v).average().orElse(0);
+    }
+
+    private static long max(long[] v) {
+        return Arrays.stream(v).max().orElse(0);
+    }
+}
@@ -0,0 +1,90 @@
+package com.starkplayer.bench;
+
+import com.starkplayer.util.SpectrumAnalyzer;
+
+import java.util.Random;
+
+/**
+ * Checks {@link SpectrumAnalyzer} against a direct DFT and times one frame
+ * at every supported size.
+ *
+ * Usage: SpectrumAnalyzerBenchmark [bands], default 64.
+ */
+public class SpectrumAnalyzerBenchmark {
+
+    private static final float SAMPLE_RATE = 44_100;
+    private static volatile float blackhole; // keeps the timed work from being optimised away
+
+    public static void main(String[] args) {
+        int bands = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        checkAgainstDft(256);
+        checkAgainstDft(2048);
+        checkSine(2048, bands);
+
+        System.out.printf("Cost per frame, %d log bands:%n", bands);
+        Random random = new Random(1);
+        for (int size = SpectrumAnalyzer.MIN_SIZE; size <= SpectrumAnalyzer.MAX_SIZE; size <<= 1) {
+            SpectrumAnalyzer analyzer = new SpectrumAnalyzer(size, bands, SAMPLE_RATE);
+            float[] samples = new float[size];
+            for (int i = 0; i < size; i++) samples[i] = random.nextFloat() * 2 - 1;
+            // Warm up, then take the best of several timed runs
+            int frames = Math.max(200, 4_000_000 / size);
+            float sink = 0;
+            for (int i = 0; i < frames; i++) sink += analyzer.analyse(samples, i)[0];
+            double best = Double.MAX_VALUE;
+            for (int run = 0; run < 5; run++) {
+                long start = System.nanoTime();
+                for (int i = 0; i < frames; i++) sink += analyzer.analyse(samples, i)[0];
+                best = Math.min(best, (System.nanoTime() - start) / (double) frames);
+            }
+            blackhole = sink;
+            System.out.printf("  %5d points (%4d bins): %8.1f us/frame%n", size, analyzer.bins(), best / 1000);
+        }
+    }
+
+    /** Bin levels must match a direct DFT of the same Hann-windowed noise. */
+    private static void checkAgainstDft(int size) {
+        SpectrumAnalyzer analyzer = new SpectrumAnalyzer(size, 16, SAMPLE_RATE);
+        Random random = new Random(size);
+        float[] samples = new float[size];
+        for (int i = 0; i < size; i++) samples[i] = random.nextFloat() * 2 - 1;
+        analyzer.analyse(samples, 0);
+        float[] fft = analyzer.binMagnitudes();
+
+        double[] w = new double[size];
+        double sum = 0;
+        for (int n = 0; n < size; n++) {
+            w[n] = 0.5 - 0.5 * Math.cos(2 * Math.PI * n / size);
+            sum += w[n];
+        }
+        double worst = 0;
+        for (int k = 1; k < size / 2; k++) {
+            double re = 0, im = 0;
+            for (int n = 0; n < size; n++) {
+                double x = samples[n] * w[n];
+                re += x * Math.cos(2 * Math.PI * k * n / size);
+                im -= x * Math.sin(2 * Math.PI * k * n / size);
+            }
+            double db = 10 * Math.log10((re * re + im * im) * 4 / (sum * sum));
+            if (db > SpectrumAnalyzer.FLOOR_DB + 10) worst = Math.max(worst, Math.abs(db - fft[k]));
+        }
+        System.out.printf("%d-point FFT vs direct DFT: largest bin difference %.4f dB%n", size, worst);
+    }
+
+    /** A full-scale sine centred on a bin reads 0 dB there and in its band. */
+    private static void checkSine(int size, int bands) {
+        SpectrumAnalyzer analyzer = new SpectrumAnalyzer(size, bands, SAMPLE_RATE);
+        int bin = Math.round(1000 / analyzer.binWidth());
+        double f = bin * analyzer.binWidth();
+        float[] samples = new float[size];
+        for (int i = 0; i < size; i++) samples[i] = (float) Math.sin(2 * Math.PI * f * i / SAMPLE_RATE);
+        float[] levels = analyzer.analyse(samples, 0);
+        float[] bins = analyzer.binMagnitudes();
+        int peakBin = 0;
+        for (int k = 1; k < bins.length; k++) if (bins[k] > bins[peakBin]) peakBin = k;
+        int peakBand = 0;
+        for (int b = 1; b < levels.length; b++) if (levels[b] > levels[peakBand]) peakBand = b;
+        System.out.printf("Sine at %.1f Hz: peak bin %d (expected %d) at %.2f dB, loudest band %d of %d at %.2f dB%n",
+                f, peakBin, bin, bins[peakBin], peakBand, bands, levels[peakBand]);
+    }
+}
@@ -0,0 +1,106 @@
+package com.starkplayer.bench;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Time to first frame of the real app, from process launch. Starts the app
+ * in a fresh JVM with the startup probe on, which prints when the first
+ * frame was laid out and when deferred startup work was done, then exits.
+ * The runs share an empty home directory, so no library or cache is
+ * restored, and JavaFX unpacks its native libraries there only once.
+ *
+ * Extra arguments are JVM options for a second configuration to compare
+ * with the plain one, e.g. the AppCDS archive built by {@code -Pappcds}.
+ * An archive only applies to the class path it was trained with, so the
+ * app can be started from another class path than the benchmark's:
+ *
+ *   java -Dstartup.classpath=target/starkplayer-1.0-SNAPSHOT.jar -cp benchmarks/target/benchmarks.jar \
+ *       com.starkplayer.bench.StartupBenchmark 10 -XX:SharedArchiveFile=target/starkplayer.jsa
+ *
+ * Needs a display. Usage: StartupBenchmark [runs] [jvm-option...], default 10 runs.
+ */
+public class StartupBenchmark {
+
+    private static final Pattern PROBE = Pattern.compile("startup-probe first-frame=(\\d+) ready=(\\d+)");
+
+    public static void main(String[] args) throws Exception {
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        List<String> options = args.length > 1 ? Arrays.asList(args).subList(1, args.length) : List.of();
+        Path home = Files.createTempDirectory("startup-bench");
+        try {
+            if (measure("Default JVM options", List.of(), runs, home) && !options.isEmpty()) {
+                measure(String.join(" ", options), options, runs, home);
+            }
+        } finally {
+            try (Stream<Path> paths = Files.walk(home)) {
+                for (Path p : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                    Files.deleteIfExists(p);
+                }
+            }
+        }
+    }
+
+    private static boolean measure(String label, List<String> options, int runs, Path home) throws Exception {
+        long[] firstFrame = new long[runs];
+        long[] ready = new long[runs];
+        if (launch(options, home) == null) return false; // also warms the OS file cache
+        for (int i = 0; i < runs; i++) {
+            long[] times = launch(options, home);
+            if (times == null) return false;
+            firstFrame[i] = times[0];
+            ready[i] = times[1];
+        }
+        Arrays.sort(firstFrame);
+        Arrays.sort(ready);
+        System.out.printf("%s: first frame median %d ms (min %d, max %d), ready median %d ms (min %d, max %d)%n",
+                label, firstFrame[runs / 2], firstFrame[0], firstFrame[runs - 1],
+                ready[runs / 2], ready[0], ready[runs - 1]);
+        return true;
+    }
+
+    /** Returns milliseconds from launch to first frame and to ready, or null if the app did not report. */
+    private static long[] launch(List<String> options, Path home) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(options);
+        command.add("-Dstarkplayer.startupProbe=true");
+        command.add("-Duser.home=" + home);
+        command.add("-cp");
+        command.add(System.getProperty("startup.classpath", System.getProperty("java.class.path")));
+        command.add("com.starkplayer.Launcher");
+
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        long launched = System.currentTimeMillis();
+        StringBuilder output = new StringBuilder();
+        long[] times = null;
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                Matcher m = PROBE.matcher(line);
+                if (m.find()) {
+                    times = new long[] {Long.parseLong(m.group(1)) - launched, Long.parseLong(m.group(2)) - launched};
+                } else {
+                    output.append(line).append('\n');
+                }
+            }
+        }
+        process.waitFor();
+        if (times == null) {
+            System.out.println("The app exited without reporting startup times:");
+            System.out.print(output);
+        }
+        return times;
+    }
+}
@@ -0,0 +1,166 @@
+package com.starkplayer.bench;
+
+import com.starkplayer.model.Song;
+import com.starkplayer.model.TrackStore;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Retained heap per track for {@link Song} over the {@link TrackStore},
+ * compared with the previous layout of one Path and a String per field for
+ * every track (kept here as {@link PlainSong}).
+ *
+ * Tracks are built the way a scan and a tag read would: a fresh Path per
+ * file from its folder, and fresh strings per track for every tag, as a
+ * decoder produces them. The library has a realistic amount of sharing:
+ * 12 tracks per album, 8 albums per artist, a few dozen genres, one cover
+ * per album and 1 in 10 tracks with no tags at all. Heap is measured after
+ * full GCs with the tracks still reachable, then one pass over every field
+ * is timed to show what reading through the view costs.
+ *
+ * Usage: TrackMemoryBenchmark [tracks], default 500000. Needs about 1 GB of heap.
+ */
+public class TrackMemoryBenchmark {
+
+    private static final String[] GENRES = {"Rock", "Pop", "Jazz", "Classical", "Electronic", "Hip-Hop",
+            "Folk", "Metal", "Blues", "Country", "Reggae", "Soul", "Punk", "Ambient", "Soundtrack"};
+
+    private static long sink;
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+
+        long before = usedHeap();
+        List<PlainSong> plain = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Track t = new Track(i);
+            PlainSong song = new PlainSong(t.file(), t.fileName());
+            if (t.tagged()) {
+                song.title = t.title();
+                song.artist = t.artist();
+                song.album = t.album();
+                song.genre = t.genre();
+                song.year = t.year();
+            }
+            song.albumArtKey = t.albumArtKey();
+            song.duration = t.duration();
+            plain.add(song);
+        }
+        long plainBytes = usedHeap() - before;
+        long plainRead = readPlain(plain);
+        plain = null;
+
+        before = usedHeap();
+        List<Song> stored = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Track t = new Track(i);
+            Song song = new Song(t.file(), t.fileName());
+            if (t.tagged()) {
+                song.setTitle(t.title());
+                song.setArtist(t.artist());
+                song.setAlbum(t.album());
+                song.setGenre(t.genre());
+                song.setYear(t.year());
+            }
+            song.setAlbumArtKey(t.albumArtKey());
+            song.setDuration(t.duration());
+            stored.add(song);
+        }
+        long storedBytes = usedHeap() - before;
+        long storedRead = readStored(stored);
+
+        TrackStore store = TrackStore.shared();
+        System.out.printf("%d tracks, %d folders, %d artists, %d albums%n",
+                count, store.getDirectories(), store.getArtists(), store.getAlbums());
+        System.out.printf("Path and String per field: %6.1f MB, %4d bytes per track%n",
+                plainBytes / 1e6, plainBytes / count);
+        System.out.printf("Track store:               %6.1f MB, %4d bytes per track (%.0f%% less)%n",
+                storedBytes / 1e6, storedBytes / count, 100.0 * (plainBytes - storedBytes) / plainBytes);
+        System.out.printf("Reading every field once: %.0f ns per track before, %.0f ns after%n",
+                plainRead / (double) count, storedRead / (double) count);
+        System.out.println(stored.size() + sink % 2); // keep the songs reachable until here
+    }
+
+    /** Heap in use after the collector has settled. */
+    private static long usedHeap() throws InterruptedException {
+        Runtime rt = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(50);
+            used = Math.min(used, rt.totalMemory() - rt.freeMemory());
+        }
+        return used;
+    }
+
+    private static long readPlain(List<PlainSong> songs) {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            long acc = 0;
+            for (PlainSong s : songs) {
+                acc += s.file.hashCode() + s.title.length() + s.artist.length() + s.album.length()
+                        + s.genre.length() + s.year.length() + s.albumArtKey.length() + s.duration;
+            }
+            sink += acc;
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    private static long readStored(List<Song> songs) {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            long acc = 0;
+            for (Song s : songs) {
+                acc += s.getFile().hashCode() + s.getTitle().length() + s.getArtist().length() + s.getAlbum().length()
+                        + s.getGenre().length() + s.getYear().length() + s.getAlbumArtKey().length() + s.getDuration();
+            }
+            sink += acc;
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    /** Tags of generated track {@code i}; every call returns fresh objects. */
+    private record Track(int i) {
+        int albumId() { return i / 12; }
+        int artistId() { return albumId() / 8; }
+        boolean tagged() { return i % 10 != 0; }
+
+        Path file() {
+            Path dir = Paths.get("/home/user/Music", "Artist " + artistId(), "Album " + albumId());
+            return dir.resolve(fileName());
+        }
+
+        String fileName() { return String.format("%02d Track %d.mp3", i % 12 + 1, i); }
+        String title() { return new String("Song number " + i + " of the album"); }
+        String artist() { return new String("Artist " + artistId()); }
+        String album() { return new String("Album " + albumId() + " (Deluxe Edition)"); }
+        String genre() { return new String(GENRES[artistId() % GENRES.length]); }
+        String year() { return new String(Integer.toString(1960 + albumId() % 60)); }
+        String albumArtKey() { return String.format("%016x%016x", albumId() * 0x9E3779B97F4A7C15L, (long) albumId()); }
+        long duration() { return 120 + i % 300; }
+    }
+
+    /** The track layout before the store: one object per field. */
+    private static final class PlainSong {
+        final Path file;
+        String title;
+        String artist = "Unknown Artist";
+        String album = "Unknown Album";
+        String genre = "";
+        String year = "";
+        String albumArtKey;
+        long duration;
+
+        PlainSong(Path file, String title) {
+            this.file = file;
+            this.title = title;
+        }
+    }
+}
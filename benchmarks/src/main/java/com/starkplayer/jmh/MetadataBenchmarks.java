@@ -0,0 +1,87 @@
+package com.starkplayer.jmh;
+
+import com.starkplayer.util.Mp3Fixtures;
+import com.starkplayer.model.Song;
+import com.starkplayer.util.MetadataCache;
+import com.starkplayer.util.MetadataExtractor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Tag reading for one generated MP3 (ID3v2 with a 64 KB cover, CBR audio,
+ * ID3v1 trailer): the header-only reader, the mp3agic full scan it falls
+ * back to, and a metadata cache hit. A private cache keeps the user's
+ * ~/.starkplayer cache out of it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetadataBenchmarks {
+
+    @Param({"1", "5", "10"})
+    public int sizeMb;
+
+    private Path dir;
+    private Path file;
+    private MetadataCache cache;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("jmh-metadata");
+        file = Mp3Fixtures.write(dir, "track.mp3", sizeMb * 1024 * 1024,
+                "Paranoid Android", "Radiohead", "OK Computer", 64 * 1024);
+        cache = new MetadataCache(dir.resolve("metadata.cache"));
+        Song song = new Song(file, "track.mp3");
+        MetadataExtractor.readTags(song);
+        cache.put(song);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+
+    @Benchmark
+    public Song headerRead() throws Exception {
+        Song song = new Song(file, "track.mp3");
+        MetadataExtractor.readTags(song);
+        return song;
+    }
+
+    @Benchmark
+    public Song mp3agicFullScan() throws Exception {
+        Song song = new Song(file, "track.mp3");
+        MetadataExtractor.extractWithMp3agic(song);
+        return song;
+    }
+
+    @Benchmark
+    public boolean cacheHit() {
+        return cache.lookup(new Song(file, "track.mp3"));
+    }
+}
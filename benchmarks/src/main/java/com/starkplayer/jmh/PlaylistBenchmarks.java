@@ -0,0 +1,89 @@
+package com.starkplayer.jmh;
+
+import com.starkplayer.model.Song;
+import com.starkplayer.util.PlaylistLoader;
+import com.starkplayer.util.PlaylistManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * M3U parsing and writing at 1k to 1M entries. Parsing reads a file written
+ * by {@link PlaylistManager#writePlaylist}; writing goes to a null writer so
+ * only the formatting is measured, and to disk for the full cost.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PlaylistBenchmarks {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int entries;
+
+    private List<Song> songs;
+    private Path playlist;
+    private Path output;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        songs = new ArrayList<>(entries);
+        for (int i = 0; i < entries; i++) {
+            Path file = Path.of("/music", "Artist " + (i % 500), "Album " + (i % 4000), String.format("%02d Track %d.mp3", i % 20, i));
+            Song song = new Song(file, "Track " + i);
+            song.setArtist("Artist " + (i % 500));
+            song.setDuration(120 + i % 300);
+            songs.add(song);
+        }
+        playlist = Files.createTempFile("jmh-playlist", ".m3u");
+        output = Files.createTempFile("jmh-playlist-out", ".m3u");
+        try (Writer writer = Files.newBufferedWriter(playlist, StandardCharsets.UTF_8)) {
+            PlaylistManager.writePlaylist(songs, writer);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(playlist);
+        Files.deleteIfExists(output);
+    }
+
+    @Benchmark
+    public void parse(Blackhole bh) throws IOException {
+        PlaylistLoader.parse(playlist, bh::consume);
+    }
+
+    @Benchmark
+    public void format() throws IOException {
+        PlaylistManager.writePlaylist(songs, Writer.nullWriter());
+    }
+
+    @Benchmark
+    public void writeFile() throws IOException {
+        try (Writer writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            PlaylistManager.writePlaylist(songs, writer);
+        }
+    }
+}
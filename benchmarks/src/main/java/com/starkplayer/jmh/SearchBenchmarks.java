@@ -0,0 +1,80 @@
+package com.starkplayer.jmh;
+
+import com.starkplayer.bench.SearchBenchmark;
+import com.starkplayer.model.Song;
+import com.starkplayer.util.SearchIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The search box over large libraries: the index query alone, the query
+ * plus the predicate pass the FilteredList makes over every song, and the
+ * old lower-casing predicate for comparison.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class SearchBenchmarks {
+
+    @Param({"10000", "100000", "1000000"})
+    public int tracks;
+
+    @Param({"da", "beatles", "night dr", "xyzzy"})
+    public String query;
+
+    private List<Song> songs;
+    private SearchIndex index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        songs = SearchBenchmark.generate(tracks, new Random(42));
+        index = new SearchIndex();
+        for (Song song : songs) index.add(song);
+    }
+
+    @Benchmark
+    public SearchIndex.Result indexQuery() {
+        return index.search(query);
+    }
+
+    @Benchmark
+    public int indexedFilter() {
+        SearchIndex.Result result = index.search(query);
+        int matches = 0;
+        for (Song song : songs) {
+            if (result == null || result.matches(song)) matches++;
+        }
+        return matches;
+    }
+
+    @Benchmark
+    public int linearFilter() {
+        int matches = 0;
+        for (Song song : songs) {
+            String lowerCaseFilter = query.toLowerCase();
+            if (song.getTitle().toLowerCase().contains(lowerCaseFilter)
+                    || song.getArtist().toLowerCase().contains(lowerCaseFilter)
+                    || song.getAlbum().toLowerCase().contains(lowerCaseFilter)) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+}
@@ -0,0 +1,95 @@
+package com.starkplayer.jmh;
+
+import com.starkplayer.controller.SpectrumLayout;
+import com.starkplayer.controller.SpectrumVisualizer;
+import com.starkplayer.util.SpectrumAnalyzer;
+import com.starkplayer.util.SpectrumBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-frame visualizer work that does not need a display: the geometry for
+ * each draw mode, the spectrum hand-off between threads, and the FFT the PCM
+ * engine runs for each spectrum update.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VisualizerBenchmarks {
+
+    private static final int BANDS = SpectrumVisualizer.BANDS;
+
+    @State(Scope.Thread)
+    public static class Layout {
+        @Param({"0", "1", "2", "3"}) // bars, circle, wave, spectrum
+        public int mode;
+
+        final SpectrumLayout layout = new SpectrumLayout(BANDS);
+        final float[] magnitudes = new float[BANDS];
+
+        @Setup
+        public void setUp() {
+            Random random = new Random(1);
+            for (int i = 0; i < BANDS; i++) magnitudes[i] = random.nextFloat() * 60;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Handoff {
+        final SpectrumBuffer buffer = new SpectrumBuffer(BANDS);
+        final float[] frame = new float[BANDS];
+
+        @Setup
+        public void setUp() {
+            Random random = new Random(2);
+            for (int i = 0; i < BANDS; i++) frame[i] = -60 * random.nextFloat();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Fft {
+        @Param({"512", "2048", "8192"})
+        public int size;
+
+        SpectrumAnalyzer analyzer;
+        float[] samples;
+
+        @Setup
+        public void setUp() {
+            analyzer = new SpectrumAnalyzer(size, BANDS, 44_100);
+            samples = new float[size];
+            Random random = new Random(3);
+            for (int i = 0; i < size; i++) samples[i] = random.nextFloat() * 2 - 1;
+        }
+    }
+
+    @Benchmark
+    public double[] layout(Layout state) {
+        return state.layout.layout(state.mode, 800, 200, state.magnitudes);
+    }
+
+    @Benchmark
+    public float[] publishAndAcquire(Handoff state) {
+        state.buffer.publish(state.frame, 60f);
+        return state.buffer.acquire();
+    }
+
+    @Benchmark
+    public float[] fft(Fft state) {
+        return state.analyzer.analyse(state.samples, 0);
+    }
+}
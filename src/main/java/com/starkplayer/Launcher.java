@@ -0,0 +1,15 @@
+package com.starkplayer;
+
+import javafx.application.Application;
+
+/**
+ * Plain entry point for running from a jar on the class path, as the AppCDS
+ * profile does. The java launcher refuses a main class that extends
+ * {@link Application} unless JavaFX is on the module path.
+ */
+public class Launcher {
+
+    public static void main(String[] args) {
+        Application.launch(MainApp.class, args);
+    }
+}
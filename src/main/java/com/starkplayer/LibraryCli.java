@@ -0,0 +1,226 @@
+package com.starkplayer;
+
+import com.starkplayer.model.Song;
+import com.starkplayer.util.LibraryScanner;
+import com.starkplayer.util.LibrarySnapshot;
+import com.starkplayer.util.MetadataCache;
+import com.starkplayer.util.MetadataScheduler;
+import com.starkplayer.util.Metrics;
+import com.starkplayer.util.PlaylistManager;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Headless entry point for scanning and indexing a library without starting
+ * JavaFX: walks the roots in parallel, reads tags through the metadata cache,
+ * and writes the library snapshot the player restores at startup. Can also
+ * export the library as an M3U playlist. Ends with a summary of the library
+ * and of the time each stage took.
+ *
+ * Nothing here touches the toolkit, so it runs on a machine with no display,
+ * e.g. from a nightly job that keeps the index of a shared library warm.
+ *
+ * Usage: LibraryCli [options] root...
+ */
+public class LibraryCli {
+
+    private static final String USAGE = """
+            Usage: LibraryCli [options] root...
+              --index FILE       library snapshot to write (default %s)
+              --no-index         scan and read tags without writing a snapshot
+              --m3u FILE         also export the library as an M3U playlist
+              --threads N        most tag reads at once (default %d)
+              --follow-links     follow symbolic links while scanning
+              --metrics          print every counter and latency histogram at the end
+            """;
+
+    private final List<Path> roots = new ArrayList<>();
+    private Path index = LibrarySnapshot.defaultFile();
+    private Path m3u;
+    private int threads = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+    private boolean followLinks = false;
+    private boolean dumpMetrics = false;
+
+    public static void main(String[] args) {
+        // Latency summaries come from the metrics histograms, so record them unless told otherwise
+        if (System.getProperty("starkplayer.metrics") == null) {
+            System.setProperty("starkplayer.metrics", "true");
+        }
+        LibraryCli cli = new LibraryCli();
+        try {
+            cli.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.printf(USAGE, LibrarySnapshot.defaultFile(), cli.threads);
+            System.exit(2);
+        }
+        try {
+            cli.run();
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Indexing failed: " + e.getMessage());
+            System.exit(1);
+        } catch (InterruptedException e) {
+            System.exit(130);
+        }
+    }
+
+    private void parse(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--index" -> index = Paths.get(value(args, ++i));
+                case "--no-index" -> index = null;
+                case "--m3u" -> m3u = Paths.get(value(args, ++i));
+                case "--threads" -> {
+                    try {
+                        threads = Integer.parseInt(value(args, ++i));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("--threads needs a number: " + args[i]);
+                    }
+                    if (threads < 1) throw new IllegalArgumentException("--threads must be positive");
+                }
+                case "--follow-links" -> followLinks = true;
+                case "--metrics" -> dumpMetrics = true;
+                default -> {
+                    if (args[i].startsWith("--")) throw new IllegalArgumentException("Unknown option: " + args[i]);
+                    Path root = Paths.get(args[i]);
+                    if (!Files.isDirectory(root)) throw new IllegalArgumentException("Not a directory: " + root);
+                    roots.add(root);
+                }
+            }
+        }
+        if (roots.isEmpty()) throw new IllegalArgumentException("No folder to scan");
+    }
+
+    private static String value(String[] args, int i) {
+        if (i >= args.length) throw new IllegalArgumentException(args[i - 1] + " needs a value");
+        return args[i];
+    }
+
+    private void run() throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        Set<Path> previous = previousIndex();
+
+        // Tags are read while the walk is still running, batch by batch
+        List<Song> songs = Collections.synchronizedList(new ArrayList<>());
+        Semaphore loaded = new Semaphore(0);
+        MetadataScheduler metadata = new MetadataScheduler(threads, song -> loaded.release());
+        LibraryScanner scanner = new LibraryScanner();
+        CountDownLatch scanned = new CountDownLatch(1);
+        LibraryScanner.Scan scan = scanner.scan(roots, followLinks, (s, batch) -> {
+            List<Song> added = new ArrayList<>(batch.size());
+            for (Path file : batch) added.add(new Song(file, file.getFileName().toString()));
+            songs.addAll(added);
+            metadata.submitAll(added);
+        }, s -> scanned.countDown());
+        scanned.await();
+        long scanNanos = System.nanoTime() - start;
+        scanner.shutdown();
+        int total = songs.size();
+        System.out.printf("Scanned %d folders, found %d tracks in %d ms (%.0f files/s)%n",
+                scan.getDirectoriesVisited(), total, scan.getElapsedMillis(), scan.getFilesPerSecond());
+
+        // A read that throws is not reported; stop waiting once nothing is left
+        while (!loaded.tryAcquire(total, 100, TimeUnit.MILLISECONDS)) {
+            if (metadata.getQueueDepth() == 0 && metadata.getRunning() == 0) break;
+        }
+        long tagNanos = System.nanoTime() - start - scanNanos;
+        metadata.shutdown();
+        MetadataCache cache = MetadataCache.shared();
+        cache.save();
+        System.out.printf("Read tags in %d ms after the scan (%.0f tracks/s overall), %d from cache, %d from files%n",
+                tagNanos / 1_000_000, total * 1e9 / (System.nanoTime() - start), cache.getHits(), cache.getMisses());
+
+        songs.sort(Comparator.comparing(Song::getFile));
+        if (index != null) {
+            long t = System.nanoTime();
+            LibrarySnapshot.write(index, songs, roots);
+            System.out.printf("Wrote %s in %d ms%s%n", index, (System.nanoTime() - t) / 1_000_000, changes(previous, songs));
+        }
+        if (m3u != null) {
+            long t = System.nanoTime();
+            try (Writer writer = Files.newBufferedWriter(m3u, StandardCharsets.UTF_8)) {
+                PlaylistManager.writePlaylist(songs, writer);
+            }
+            System.out.printf("Exported %s in %d ms%n", m3u, (System.nanoTime() - t) / 1_000_000);
+        }
+
+        printLibrary(songs);
+        printLatency();
+        long elapsed = (System.nanoTime() - start) / 1_000_000;
+        // Read last, so loading the management classes is not counted in either figure
+        long startup = ManagementFactory.getRuntimeMXBean().getUptime() - elapsed;
+        System.out.printf("Done in %d ms, after %d ms of JVM startup%n", elapsed, startup);
+        if (dumpMetrics) Metrics.dump(System.out);
+    }
+
+    /** Paths in the snapshot being replaced, or null if there is none to compare with. */
+    private Set<Path> previousIndex() {
+        if (index == null || !Files.exists(index)) return null;
+        try {
+            LibrarySnapshot snapshot = LibrarySnapshot.open(index);
+            Set<Path> files = new HashSet<>(snapshot.size() * 2);
+            for (int i = 0; i < snapshot.size(); i++) files.add(snapshot.song(i).getFile());
+            return files;
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Replacing unreadable library snapshot: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static String changes(Set<Path> previous, List<Song> songs) {
+        if (previous == null) return "";
+        int added = 0;
+        Set<Path> removed = new HashSet<>(previous);
+        for (Song song : songs) {
+            if (!removed.remove(song.getFile())) added++;
+        }
+        return String.format(": %d added, %d removed since the last index", added, removed.size());
+    }
+
+    private static void printLibrary(List<Song> songs) throws IOException {
+        Set<String> artists = new HashSet<>();
+        Set<String> albums = new HashSet<>();
+        long seconds = 0;
+        long bytes = 0;
+        for (Song song : songs) {
+            artists.add(song.getArtist());
+            albums.add(song.getArtist() + '\0' + song.getAlbum());
+            seconds += song.getDuration();
+            try {
+                bytes += Files.size(song.getFile());
+            } catch (IOException e) {
+                // Gone since the scan
+            }
+        }
+        System.out.printf("Library: %d tracks, %d artists, %d albums, %d:%02d:%02d of audio, %.1f GB%n",
+                songs.size(), artists.size(), albums.size(), seconds / 3600, seconds / 60 % 60, seconds % 60,
+                bytes / (1024.0 * 1024.0 * 1024.0));
+    }
+
+    private static void printLatency() {
+        if (!Metrics.isEnabled()) return;
+        System.out.printf("Tag read latency (ms)    %8s %9s %9s %9s %9s%n", "count", "p50", "p90", "p99", "max");
+        for (String outcome : new String[] {"cached", "header", "full-scan", "failed"}) {
+            Metrics.Histogram h = Metrics.histogram("metadata." + outcome);
+            if (h.getCount() == 0) continue;
+            System.out.printf("  %-22s %8d %9.2f %9.2f %9.2f %9.2f%n", outcome, h.getCount(),
+                    h.percentileMillis(0.5), h.percentileMillis(0.9), h.percentileMillis(0.99), h.getMaxMillis());
+        }
+    }
+}
@@ -1,13 +1,22 @@
 package com.starkplayer;
 
+import com.starkplayer.util.LibrarySnapshot;
+import com.starkplayer.util.Metrics;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.input.KeyCode;
 import javafx.stage.Stage;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
 public class MainApp extends Application {
+    static final String STARTUP_PROBE = "starkplayer.startupProbe";
+
     private Stage primaryStage;
     private boolean mini = false;
     private double prevWidth, prevHeight;
@@ -15,6 +24,7 @@ public class MainApp extends Application {
     @Override
     public void start(Stage stage) throws Exception {
         this.primaryStage = stage;
+        LibrarySnapshot snapshot = openLibrarySnapshot();
         FXMLLoader loader = new FXMLLoader(getClass().getResource("/com/starkplayer/main.fxml"));
         Parent root = loader.load();
         Scene scene = new Scene(root);
@@ -40,6 +50,8 @@ public class MainApp extends Application {
                     com.starkplayer.controller.MusicPlayerController ctrl =
                             (com.starkplayer.controller.MusicPlayerController) loader.getController();
                     if (ctrl != null) ctrl.prevFromShortcut();
+                } else if (ev.getCode() == KeyCode.F12) {
+                    Metrics.dump(System.out);
                 }
             } catch (Exception ex) {
                 ex.printStackTrace();
@@ -52,11 +64,56 @@ public class MainApp extends Application {
             if (ctrl != null) {
                 ctrl.shutdown();
             }
+            if (Metrics.isEnabled()) Metrics.dump(System.out);
         });
 
+        // Everything the first frame does not need waits until it has been drawn
+        Runnable afterFirstFrame = new Runnable() {
+            @Override
+            public void run() {
+                scene.removePostLayoutPulseListener(this);
+                long firstFrame = System.currentTimeMillis();
+                Platform.runLater(() -> {
+                    com.starkplayer.controller.MusicPlayerController ctrl =
+                            (com.starkplayer.controller.MusicPlayerController) loader.getController();
+                    if (ctrl != null) {
+                        ctrl.initializeDeferred();
+                        if (snapshot != null) ctrl.restoreLibrary(snapshot);
+                    }
+                    if (Boolean.getBoolean(STARTUP_PROBE)) reportStartup(firstFrame);
+                });
+            }
+        };
+        scene.addPostLayoutPulseListener(afterFirstFrame);
+
         stage.show();
     }
 
+    /**
+     * With {@code -Dstarkplayer.startupProbe=true} the app prints when the
+     * first frame was laid out and when deferred startup work finished, as
+     * epoch milliseconds, then exits at once. Used by the startup benchmark
+     * and by the AppCDS training run.
+     */
+    private static void reportStartup(long firstFrame) {
+        Platform.runLater(() -> {
+            System.out.printf("startup-probe first-frame=%d ready=%d%n", firstFrame, System.currentTimeMillis());
+            System.out.flush();
+            System.exit(0);
+        });
+    }
+
+    private static LibrarySnapshot openLibrarySnapshot() {
+        Path file = LibrarySnapshot.defaultFile();
+        if (!Files.exists(file)) return null;
+        try {
+            return LibrarySnapshot.open(file);
+        } catch (IOException e) {
+            System.err.println("Ignoring library snapshot: " + e.getMessage());
+            return null;
+        }
+    }
+
     private void toggleMiniPlayer() {
         if (!mini) {
             prevWidth = primaryStage.getWidth();
@@ -1,32 +1,45 @@
 package com.starkplayer.controller;
 
 import com.starkplayer.model.Song;
+import com.starkplayer.model.TrackStore;
+import com.starkplayer.util.AlbumArtCache;
+import com.starkplayer.util.ContentHashStore;
+import com.starkplayer.util.DuplicateFinder;
+import com.starkplayer.util.Equalizer;
 import com.starkplayer.util.IconFactory;
-import com.starkplayer.util.MetadataExtractor;
+import com.starkplayer.util.LibraryList;
+import com.starkplayer.util.LibraryScanner;
+import com.starkplayer.util.LibrarySnapshot;
+import com.starkplayer.util.LibraryWatcher;
+import com.starkplayer.util.MetadataCache;
+import com.starkplayer.util.MetadataScheduler;
+import com.starkplayer.util.Metrics;
+import com.starkplayer.util.PcmPlaybackEngine;
+import com.starkplayer.util.PlayQueue;
+import com.starkplayer.util.PlaybackEngine;
+import com.starkplayer.util.PlayerEvents;
+import com.starkplayer.util.PlaylistLoader;
 import com.starkplayer.util.PlaylistManager;
+import com.starkplayer.util.PlaylistModel;
+import com.starkplayer.util.PlaylistModel.SortField;
+import com.starkplayer.util.SearchIndex;
 import javafx.animation.AnimationTimer;
 import javafx.application.Platform;
-import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
-import javafx.collections.transformation.FilteredList;
+import javafx.collections.ListChangeListener;
 import javafx.fxml.FXML;
 import javafx.scene.canvas.Canvas;
-import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.control.*;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.input.*;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
-import javafx.scene.media.Media;
-import javafx.scene.media.MediaPlayer;
-import javafx.scene.paint.Color;
 import javafx.stage.DirectoryChooser;
 import javafx.stage.FileChooser;
-import javafx.util.Duration;
 
 import java.io.File;
-import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.ExecutorService;
@@ -42,33 +55,89 @@ public class MusicPlayerController {
     @FXML private ImageView albumArt;
     @FXML private Canvas visualizerCanvas;
     @FXML private TextField searchField;
-    @FXML private ComboBox<String> vizModeCombo;
+    @FXML private ComboBox<String> vizModeCombo, sortCombo;
     @FXML private HBox equalizerBox;
     @FXML private HBox controlButtons;
+    @FXML private Label lblStatus;
 
-    private MediaPlayer mediaPlayer;
-    private final ObservableList<Song> songs = FXCollections.observableArrayList();
-    private final FilteredList<Song> filteredSongs;
-    private final Random random = new Random();
-    private int currentIndex = -1;
+    private PlaybackEngine engine;
+    private final LibraryList songs = new LibraryList();
+    private final PlaylistModel playlistModel;
+    private final SearchIndex searchIndex = new SearchIndex();
+    private final PlayQueue queue = new PlayQueue(200, new Random());
+    private boolean queueStale = false; // rebuilt from the visible list on next use
+    private Song currentSong; // compared by identity, so duplicate files stay distinct entries
+    private int currentIndex = -1; // position of currentSong in songs, kept in step by the list listener
     private boolean seeking = false;
-    private boolean shuffle = false;
     private int repeatMode = 0; // 0 = none, 1 = repeat all, 2 = repeat one
     private int vizMode = 0; // 0 = bars, 1 = circle, 2 = wave
 
+    // Spare engine for the upcoming track
+    private final TrackPreloader preloader = new TrackPreloader();
+
+    // Changes to the visible list bigger than this rebuild the play queue instead of patching it
+    private static final int QUEUE_PATCH_LIMIT = 1024;
+    // Playlist orderings offered in the sort box; file paths put an album's tracks in disc order
+    private static final Map<String, List<SortField>> SORT_ORDERS = new LinkedHashMap<>();
+    static {
+        SORT_ORDERS.put("Library order", List.of());
+        SORT_ORDERS.put("Artist", List.of(SortField.ARTIST, SortField.ALBUM, SortField.FILE));
+        SORT_ORDERS.put("Album", List.of(SortField.ALBUM, SortField.FILE));
+        SORT_ORDERS.put("Year", List.of(SortField.YEAR, SortField.ARTIST, SortField.ALBUM, SortField.FILE));
+        SORT_ORDERS.put("Title", List.of(SortField.TITLE, SortField.ARTIST));
+        SORT_ORDERS.put("Duration", List.of(SortField.DURATION, SortField.TITLE));
+        SORT_ORDERS.put("File", List.of(SortField.FILE));
+    }
+    private static final Metrics.Histogram OPEN_TIME = Metrics.histogram("playback.open");
+
     // Visualizer state
-    private double[] magnitudes = new double[128];
+    private final SpectrumVisualizer visualizer = new SpectrumVisualizer();
     private AnimationTimer vizTimer;
     
     // Equalizer bands
     private final Slider[] eqSliders = new Slider[10];
     private final double[] eqValues = new double[10];
     
-    // Thread pool for metadata extraction
-    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    // Background work other than metadata: album art, library restore, duplicate search
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+    // Snapshot writes, one at a time and in order, so an older copy never lands last
+    private final ExecutorService snapshotWriter = Executors.newSingleThreadExecutor();
+
+    // Metadata results are applied to the UI in per-frame batches
+    private final SongUpdatePublisher songUpdates = new SongUpdatePublisher(this::applySongUpdates, 4_000_000L);
+    private final Set<PlaylistCell> playlistCells = Collections.newSetFromMap(new WeakHashMap<>()); // refresh() discards cells
+
+    // Tag reading, playing song and rows on screen first
+    private final MetadataScheduler metadata = new MetadataScheduler(songUpdates::publish);
+    private boolean focusUpdatePending = false;
+
+    // Parallel folder walker
+    private final LibraryScanner scanner = new LibraryScanner();
+    private LibraryScanner.Scan currentScan;
+
+    // Picks up files added, changed, moved or deleted in the loaded folder
+    private LibraryWatcher watcher;
+    private int watchGeneration; // bumped when watching stops; a watcher's diffs only apply in its own generation
+    private List<Path> libraryRoots = List.of(); // folders the playlist was scanned from, none for a playlist file
+
+    // Streaming M3U reader
+    private final PlaylistLoader playlistLoader = new PlaylistLoader(metadata);
+    private PlaylistLoader.Load currentLoad;
+
+    // Audio-only content hashes, kept between runs
+    private final ContentHashStore contentHashes = new ContentHashStore(ContentHashStore.defaultFile());
+    private final DuplicateFinder duplicateFinder = new DuplicateFinder(contentHashes);
+    private boolean findingDuplicates = false;
+
+    // Library snapshot restored at startup and rewritten after the playlist changes
+    private boolean libraryDirty = false;
+    private LibrarySnapshot restoredFrom; // until another library is loaded
+    private boolean indexPending = false; // restored songs are indexed on the first search
 
     public MusicPlayerController() {
-        filteredSongs = new FilteredList<>(songs, p -> true);
+        // The index has to see new songs before the view tests them against the search
+        songs.addListener((ListChangeListener<Song>) this::syncSearchIndex);
+        playlistModel = new PlaylistModel(songs, searchIndex);
     }
 
     @FXML
@@ -77,44 +146,62 @@ public class MusicPlayerController {
         progressSlider.setMin(0);
         progressSlider.setMax(100);
         
-        // Initialize equalizer
-        initializeEqualizer();
-        
         // Initialize visualizer modes
         vizModeCombo.getItems().addAll("Bars", "Circle", "Wave", "Spectrum");
         vizModeCombo.setValue("Bars");
         vizModeCombo.setOnAction(e -> vizMode = vizModeCombo.getSelectionModel().getSelectedIndex());
 
+        sortCombo.getItems().addAll(SORT_ORDERS.keySet());
+        sortCombo.setValue("Library order");
+        sortCombo.setOnAction(e -> playlistModel.setSortOrder(SORT_ORDERS.get(sortCombo.getValue())));
+
         // Setup playlist view
-        playlistView.setItems(filteredSongs);
-        playlistView.setCellFactory(param -> new ListCell<Song>() {
-            @Override
-            protected void updateItem(Song song, boolean empty) {
-                super.updateItem(song, empty);
-                if (empty || song == null) {
-                    setText(null);
-                    setStyle("");
-                } else {
-                    setText(song.getDisplayTitle());
-                    if (songs.indexOf(song) == currentIndex) {
-                        setStyle("-fx-background-color: #00eaff33; -fx-text-fill: #00eaff;");
-                    } else {
-                        setStyle("");
-                    }
-                }
-            }
+        playlistView.setItems(playlistModel);
+        playlistView.setCellFactory(param -> {
+            PlaylistCell cell = new PlaylistCell();
+            playlistCells.add(cell);
+            return cell;
         });
 
         playlistView.setOnMouseClicked(e -> {
             if (e.getClickCount() == 2) {
-                Song s = playlistView.getSelectionModel().getSelectedItem();
-                if (s != null) {
-                    int index = songs.indexOf(s);
-                    if (index >= 0) playSong(index);
+                int viewIndex = playlistView.getSelectionModel().getSelectedIndex();
+                if (viewIndex >= 0) {
+                    playSong(playlistModel.getSourceIndex(viewIndex));
                 }
             }
         });
 
+        MenuItem playNext = new MenuItem("Play Next");
+        playNext.setOnAction(e -> {
+            Song s = playlistView.getSelectionModel().getSelectedItem();
+            if (s != null) {
+                syncedQueue().enqueueNext(queue.entryOf(s));
+                if (engine != null) preloadNext();
+            }
+        });
+        playlistView.setContextMenu(new ContextMenu(playNext));
+
+        // Play order follows the visible list, so Next and Shuffle respect the search filter
+        playlistModel.addListener((ListChangeListener<Song>) change -> {
+            if (queueStale) return;
+            // A search reports each stretch it changed, so the limit is on the whole change
+            int touched = 0;
+            while (change.next()) {
+                touched += change.wasPermutated() ? QUEUE_PATCH_LIMIT + 1 : change.getRemovedSize() + change.getAddedSize();
+            }
+            if (touched > QUEUE_PATCH_LIMIT) {
+                queueStale = true;
+                return;
+            }
+            change.reset();
+            while (change.next()) {
+                for (Song removed : change.getRemoved()) queue.remove(queue.entryOf(removed));
+                int index = change.getFrom();
+                for (Song added : change.getAddedSubList()) queue.add(index++, added);
+            }
+        });
+
         // Drag and drop support
         playlistView.setOnDragOver(event -> {
             if (event.getGestureSource() != playlistView && event.getDragboard().hasFiles()) {
@@ -141,47 +228,119 @@ public class MusicPlayerController {
         // Progress slider
         progressSlider.setOnMousePressed(e -> seeking = true);
         progressSlider.setOnMouseReleased(e -> {
-            if (mediaPlayer != null && mediaPlayer.getTotalDuration() != null) {
+            if (engine != null && !Double.isNaN(engine.getDuration())) {
                 double percent = progressSlider.getValue() / 100.0;
-                Duration seekTime = mediaPlayer.getTotalDuration().multiply(percent);
-                mediaPlayer.seek(seekTime);
+                engine.seek(engine.getDuration() * percent);
             }
             seeking = false;
         });
 
         // Volume slider
         volumeSlider.valueProperty().addListener((obs, o, n) -> {
-            if (mediaPlayer != null) mediaPlayer.setVolume(n.doubleValue() / 100.0);
+            if (engine != null) engine.setVolume(n.doubleValue() / 100.0);
+        });
+
+        songs.addListener((ListChangeListener<Song>) change -> {
+            while (change.next()) {
+                for (Song removed : change.getRemoved()) metadata.cancel(removed);
+                trackCurrentIndex(change);
+            }
+            libraryDirty = true;
         });
 
-        // Search functionality
+        // Search functionality, backed by an index kept in sync with the playlist
         searchField.textProperty().addListener((obs, oldVal, newVal) -> {
-            filteredSongs.setPredicate(song -> {
-                if (newVal == null || newVal.isEmpty()) return true;
-                String lowerCaseFilter = newVal.toLowerCase();
-                return song.getTitle().toLowerCase().contains(lowerCaseFilter) ||
-                       song.getArtist().toLowerCase().contains(lowerCaseFilter) ||
-                       song.getAlbum().toLowerCase().contains(lowerCaseFilter);
-            });
+            indexRestoredSongs();
+            SearchIndex.Result result = searchIndex.search(newVal);
+            playlistModel.setFilter(result);
         });
 
-        // Visualizer timer
-        vizTimer = new AnimationTimer() {
-            private long last = 0;
-            @Override
-            public void handle(long now) {
-                if (now - last < 16_666_666) return; // ~60 FPS
-                last = now;
-                drawVisualizer();
-            }
-        };
-        
         // Initialize button states
         updatePlayButtonState(false);
         
         // Set icons on control buttons
         setupButtonIcons();
     }
+
+    private void syncSearchIndex(ListChangeListener.Change<? extends Song> change) {
+        if (songs.isEmpty()) {
+            searchIndex.clear(); // a reload starts the ids over
+            indexPending = false;
+            return;
+        }
+        while (change.next()) {
+            for (Song removed : change.getRemoved()) searchIndex.remove(removed);
+            if (indexPending) continue;
+            for (Song added : change.getAddedSubList()) searchIndex.add(added);
+        }
+    }
+
+    /**
+     * Indexing reads every tag, so after a restore it waits for the first
+     * search; songs already indexed are skipped.
+     */
+    private void indexRestoredSongs() {
+        if (!indexPending) return;
+        indexPending = false;
+        for (Song song : songs) searchIndex.add(song);
+    }
+
+    /**
+     * Builds what the first frame does not need: the equalizer sliders and
+     * the metrics gauges. Called once the window has been drawn; the
+     * visualizer timer waits for the first track and the metadata workers
+     * for the first song instead.
+     */
+    public void initializeDeferred() {
+        initializeEqualizer();
+        registerGauges();
+    }
+
+    private void startVisualizer() {
+        if (vizTimer == null) {
+            vizTimer = new AnimationTimer() {
+                @Override
+                public void handle(long now) {
+                    if (visualizerCanvas == null) return;
+                    visualizer.pulse(now, visualizerCanvas.getGraphicsContext2D(),
+                            visualizerCanvas.getWidth(), visualizerCanvas.getHeight(), vizMode);
+                }
+            };
+        }
+        vizTimer.start();
+    }
+
+    /**
+     * Exposes the stats the components already keep in the metrics dump.
+     */
+    private void registerGauges() {
+        Metrics.gauge("visualizer.frames", visualizer::getFrames);
+        Metrics.gauge("visualizer.dropped-frames", visualizer::getDroppedFrames);
+        Metrics.gauge("visualizer.frame-avg-ms", visualizer::getAverageFrameMillis);
+        Metrics.gauge("visualizer.frame-max-ms", visualizer::getMaxFrameMillis);
+        Metrics.gauge("metadata.queue-depth", metadata::getQueueDepth);
+        Metrics.gauge("metadata.concurrency", metadata::getConcurrency);
+        Metrics.gauge("metadata.wait-avg-ms", metadata::getAverageWaitMillis);
+        Metrics.gauge("metadata.wait-max-ms", metadata::getMaxWaitMillis);
+        Metrics.gauge("song-updates.queued", songUpdates::getQueued);
+        Metrics.gauge("song-updates.applied", songUpdates::getApplied);
+        Metrics.gauge("song-updates.backlog", songUpdates::getBacklog);
+        Metrics.gauge("song-updates.slice", songUpdates::getSliceSize);
+        Metrics.gauge("preloader.hits", preloader::getHits);
+        Metrics.gauge("preloader.misses", preloader::getMisses);
+        Metrics.gauge("preloader.transition-avg-ms.preloaded", () -> preloader.getAverageTransitionMillis(true));
+        Metrics.gauge("preloader.transition-avg-ms.cold", () -> preloader.getAverageTransitionMillis(false));
+        Metrics.gauge("metadata-cache.hits", () -> MetadataCache.shared().getHits());
+        Metrics.gauge("metadata-cache.misses", () -> MetadataCache.shared().getMisses());
+        Metrics.gauge("album-art-cache.hits", () -> AlbumArtCache.shared().getHits());
+        Metrics.gauge("album-art-cache.misses", () -> AlbumArtCache.shared().getMisses());
+        Metrics.gauge("playback.engine-underruns",
+                () -> engine instanceof PcmPlaybackEngine pcm ? pcm.getUnderruns() : Double.NaN);
+        Metrics.gauge("playback.latency-avg-ms",
+                () -> engine instanceof PcmPlaybackEngine pcm ? pcm.getAverageLatencyMillis() : Double.NaN);
+        Metrics.gauge("playback.latency-max-ms",
+                () -> engine instanceof PcmPlaybackEngine pcm ? pcm.getMaxLatencyMillis() : Double.NaN);
+    }
     
     private void setupButtonIcons() {
         if (btnPrev != null) {
@@ -212,12 +371,12 @@ public class MusicPlayerController {
             VBox bandBox = new VBox(5);
             Label label = new Label(bandLabels[i]);
             label.setStyle("-fx-font-size: 10px; -fx-text-fill: #aaa;");
-            Slider slider = new Slider(-12, 12, 0);
+            Slider slider = new Slider(Equalizer.MIN_GAIN_DB, Equalizer.MAX_GAIN_DB, 0);
             slider.setOrientation(javafx.geometry.Orientation.VERTICAL);
             slider.setPrefHeight(150);
             slider.valueProperty().addListener((obs, o, n) -> {
                 eqValues[bandIndex] = n.doubleValue();
-                updateEqualizer();
+                updateEqualizer(bandIndex);
             });
             eqSliders[i] = slider;
             bandBox.getChildren().addAll(label, slider);
@@ -225,10 +384,8 @@ public class MusicPlayerController {
         }
     }
 
-    private void updateEqualizer() {
-        // Note: JavaFX MediaPlayer doesn't have built-in equalizer
-        // This is a placeholder for future implementation
-        // You would need a library like JAudioTagger or implement audio processing
+    private void updateEqualizer(int band) {
+        if (engine != null) engine.setEqualizerGain(band, eqValues[band]);
     }
 
     @FXML
@@ -258,18 +415,130 @@ public class MusicPlayerController {
 
     @FXML
     private void onLoadPlaylist() {
-        try {
-            List<Song> loadedSongs = PlaylistManager.loadPlaylist(playlistView.getScene().getWindow());
-            if (!loadedSongs.isEmpty()) {
-                songs.clear();
-                songs.addAll(loadedSongs);
-                if (!songs.isEmpty() && currentIndex < 0) {
-                    playSong(0);
-                }
+        File file = PlaylistManager.choosePlaylist(playlistView.getScene().getWindow());
+        if (file != null) {
+            loadPlaylist(file);
+        }
+    }
+
+    private void loadPlaylist(File file) {
+        cancelLoads();
+        metadata.cancelAll();
+        songs.clear();
+        libraryRoots = List.of();
+        lblStatus.setText("Loading " + file.getName() + "...");
+        // Entries show up with their #EXTINF titles; tags and missing files are sorted out behind them
+        currentLoad = playlistLoader.load(file.toPath(), new PlaylistLoader.Listener() {
+            @Override
+            public void onEntries(PlaylistLoader.Load load, List<Song> entries) {
+                Platform.runLater(() -> {
+                    if (load != currentLoad || load.isCancelled()) return;
+                    songs.addAll(entries);
+                });
             }
-        } catch (Exception e) {
-            showError("Failed to load playlist", e.getMessage());
+
+            @Override
+            public void onResolved(PlaylistLoader.Load load, List<Song> found, List<Song> missing) {
+                Platform.runLater(() -> {
+                    if (load != currentLoad || load.isCancelled()) return;
+                    if (!missing.isEmpty()) {
+                        Set<Song> gone = Collections.newSetFromMap(new IdentityHashMap<>());
+                        gone.addAll(missing);
+                        songs.removeAll(gone);
+                    }
+                    lblStatus.setText(String.format("Loading %s... %d of %d entries checked",
+                            file.getName(), load.getEntriesResolved() + load.getEntriesMissing(), load.getEntriesParsed()));
+                    if (currentIndex < 0 && !songs.isEmpty() && found.contains(songs.get(0))) {
+                        playSong(0);
+                    }
+                });
+            }
+
+            @Override
+            public void onDone(PlaylistLoader.Load load) {
+                Platform.runLater(() -> {
+                    if (load != currentLoad || load.isCancelled()) return;
+                    if (load.getError() != null) {
+                        lblStatus.setText("");
+                        showError("Failed to load playlist", load.getError().getMessage());
+                        return;
+                    }
+                    lblStatus.setText(String.format("Loaded %d tracks in %d ms (%.0f entries/s), %d missing",
+                            load.getEntriesResolved(), load.getElapsedMillis(), load.getEntriesPerSecond(),
+                            load.getEntriesMissing()));
+                    saveLibrarySnapshot();
+                    if (currentIndex < 0 && !songs.isEmpty()) {
+                        playSong(0);
+                    }
+                });
+            }
+        });
+    }
+
+    private void cancelLoads() {
+        stopWatching();
+        if (currentScan != null) currentScan.cancel();
+        if (currentLoad != null) currentLoad.cancel();
+        restoredFrom = null;
+    }
+
+    /**
+     * Fills the playlist from a library snapshot. The songs are handles onto
+     * the mapped file: each page of 1024 reads its rows the first time one
+     * of its songs is used, so the restore itself reads nothing and the
+     * first frame reads only the rows on screen. Sorting, the first search
+     * and the next snapshot write read the rest. A block found damaged on
+     * the way clears the library. The folders the library was scanned from
+     * are watched again, and the watcher's first diff brings in what was
+     * added or deleted while the app was closed.
+     */
+    public void restoreLibrary(LibrarySnapshot snapshot) {
+        int total = snapshot.size();
+        if (total == 0) return;
+        long start = System.nanoTime();
+        List<Path> roots;
+        try {
+            roots = snapshot.getRoots();
+        } catch (UncheckedIOException e) {
+            System.err.println("Discarding library snapshot: " + e.getMessage());
+            lblStatus.setText("Library snapshot is damaged, please load your music folder again");
+            return;
         }
+        snapshot.setDamageHandler(e -> Platform.runLater(() -> discardRestore(snapshot, e)));
+        restoredFrom = snapshot;
+        indexPending = true;
+        songs.addAll(TrackStore.shared().restore(total, snapshot));
+        libraryDirty = false;
+        libraryRoots = roots;
+        if (!roots.isEmpty()) startWatching(roots);
+        lblStatus.setText(String.format("Restored %d tracks in %d ms", total, (System.nanoTime() - start) / 1_000_000));
+    }
+
+    private void discardRestore(LibrarySnapshot snapshot, IOException e) {
+        if (restoredFrom != snapshot) return;
+        System.err.println("Discarding library snapshot: " + e.getMessage());
+        cancelLoads();
+        metadata.cancelAll();
+        songs.clear();
+        lblStatus.setText("Library snapshot is damaged, please load your music folder again");
+    }
+
+    /**
+     * Writes the playlist to the library snapshot in the background if it
+     * changed since the last write.
+     */
+    private void saveLibrarySnapshot() {
+        if (!libraryDirty) return;
+        libraryDirty = false;
+        List<Song> copy = new ArrayList<>(songs);
+        List<Path> roots = libraryRoots;
+        snapshotWriter.submit(() -> {
+            try {
+                LibrarySnapshot.write(LibrarySnapshot.defaultFile(), copy, roots);
+            } catch (IOException e) {
+                System.err.println("Failed to save library snapshot: " + e.getMessage());
+            }
+        });
     }
 
     @FXML
@@ -281,109 +550,315 @@ public class MusicPlayerController {
         }
     }
 
+    @FXML
+    private void onFindDuplicates() {
+        if (findingDuplicates || songs.isEmpty()) return;
+        findingDuplicates = true;
+        lblStatus.setText("Looking for duplicate tracks...");
+        List<Path> files = new ArrayList<>(songs.size());
+        for (Song song : songs) files.add(song.getFile());
+        executor.submit(() -> {
+            try {
+                DuplicateFinder.Result result = duplicateFinder.find(files);
+                Platform.runLater(() -> {
+                    lblStatus.setText(String.format("Checked %d tracks for duplicates in %.0f ms (%.0f MB/s)",
+                            result.getFilesChecked(), result.getElapsedMillis(), result.getMegabytesPerSecond()));
+                    showDuplicates(result);
+                });
+            } catch (RuntimeException e) {
+                System.err.println("Duplicate search failed: " + e);
+                Platform.runLater(() -> {
+                    lblStatus.setText("");
+                    showError("Duplicate search failed", String.valueOf(e.getMessage()));
+                });
+            } finally {
+                // Whatever happened, the button works again
+                Platform.runLater(() -> findingDuplicates = false);
+            }
+        });
+    }
+
+    private void showDuplicates(DuplicateFinder.Result result) {
+        List<List<Path>> groups = result.getGroups();
+        if (groups.isEmpty()) {
+            showInfo("No duplicates", "No two tracks in the playlist have the same audio.");
+            return;
+        }
+        StringBuilder text = new StringBuilder(String.format("%d groups of tracks share the same audio (%.1f MB in extra copies):%n",
+                groups.size(), result.getDuplicateBytes() / (1024.0 * 1024.0)));
+        int shown = Math.min(groups.size(), 20);
+        for (List<Path> group : groups.subList(0, shown)) {
+            text.append('\n');
+            for (Path file : group) text.append(file).append('\n');
+        }
+        if (shown < groups.size()) text.append(String.format("%n...and %d more groups", groups.size() - shown));
+        showInfo("Duplicate tracks", text.toString());
+    }
+
     private void addSongFile(Path path) {
         Song song = new Song(path, path.getFileName().toString());
         songs.add(song);
-        // Extract metadata in background
-        executor.submit(() -> {
-            MetadataExtractor.extractMetadata(song);
-            Platform.runLater(() -> {
-                playlistView.refresh();
-                if (song == songs.get(currentIndex)) {
-                    updateSongInfo(song);
-                }
-            });
+        metadata.submit(song, MetadataScheduler.Priority.BACKGROUND);
+    }
+
+    private void applySongUpdates(Set<Song> updated) {
+        libraryDirty = true;
+        for (Song song : updated) {
+            // Until the first search only updated songs are indexed, so a sorted view can still find them
+            if (indexPending && searchIndex.idOf(song) < 0) searchIndex.add(song);
+            else searchIndex.update(song);
+        }
+        playlistModel.songsUpdated(updated);
+        // Only the cells on screen can show a stale title
+        for (PlaylistCell cell : playlistCells) {
+            if (updated.contains(cell.getItem())) {
+                cell.refresh();
+            }
+        }
+        if (currentSong != null && updated.contains(currentSong)) {
+            updateSongInfo(currentSong);
+            updateAlbumArt(currentSong);
+        }
+    }
+
+    /**
+     * Coalesces cell updates into one focus change per pulse: the rows on
+     * screen and a page either side of them get their tags read first.
+     */
+    private void requestFocusUpdate() {
+        if (focusUpdatePending) return;
+        focusUpdatePending = true;
+        Platform.runLater(() -> {
+            focusUpdatePending = false;
+            int first = Integer.MAX_VALUE;
+            int last = -1;
+            for (PlaylistCell cell : playlistCells) {
+                if (cell.isEmpty() || cell.getItem() == null) continue;
+                first = Math.min(first, cell.getIndex());
+                last = Math.max(last, cell.getIndex());
+            }
+            int size = playlistModel.size();
+            if (last < 0 || last >= size) return;
+            int page = last - first + 1;
+            List<Song> nearby = new ArrayList<>(2 * page);
+            nearby.addAll(playlistModel.subList(Math.max(0, first - page), first));
+            nearby.addAll(playlistModel.subList(last + 1, Math.min(size, last + 1 + page)));
+            metadata.focus(playlistModel.subList(first, last + 1), nearby);
         });
     }
 
+    /**
+     * Shifts currentIndex past an insertion or removal in front of it, so
+     * navigation never has to search the playlist for the playing entry.
+     */
+    private void trackCurrentIndex(ListChangeListener.Change<? extends Song> change) {
+        if (currentIndex < 0) return;
+        if (change.wasPermutated()) {
+            currentIndex = change.getPermutation(currentIndex);
+            return;
+        }
+        int from = change.getFrom();
+        if (from > currentIndex) return;
+        if (change.wasRemoved() && currentIndex < from + change.getRemovedSize()) {
+            currentIndex = -1; // the playing entry itself left the playlist
+            return;
+        }
+        currentIndex += change.getAddedSize() - change.getRemovedSize();
+    }
+
+    private void refreshCells(Song a, Song b) {
+        for (PlaylistCell cell : playlistCells) {
+            Song item = cell.getItem();
+            if (item != null && (item == a || item == b)) {
+                cell.refresh();
+            }
+        }
+    }
+
     private void loadSongsFromDirectory(File dir) {
+        cancelLoads();
+        metadata.cancelAll();
         songs.clear();
-        File[] files = dir.listFiles((d, name) -> name.toLowerCase().endsWith(".mp3"));
-        if (files != null && files.length > 0) {
-            for (File f : files) {
-                addSongFile(f.toPath());
+        libraryRoots = List.of(dir.toPath());
+        lblStatus.setText("Scanning " + dir.getName() + "...");
+        // Tracks stream in as the tree is walked; a newer scan makes older batches stale
+        currentScan = scanner.scan(List.of(dir.toPath()), false,
+            (scan, batch) -> Platform.runLater(() -> {
+                if (scan != currentScan || scan.isCancelled()) return;
+                boolean first = songs.isEmpty();
+                for (Path p : batch) {
+                    addSongFile(p);
+                }
+                if (first && !songs.isEmpty()) {
+                    playSong(0);
+                }
+            }),
+            scan -> Platform.runLater(() -> {
+                if (scan != currentScan || scan.isCancelled()) return;
+                lblStatus.setText(String.format("Found %d tracks in %d ms (%.0f files/s)",
+                        scan.getFilesFound(), scan.getElapsedMillis(), scan.getFilesPerSecond()));
+                saveLibrarySnapshot();
+                startWatching(libraryRoots);
+                if (scan.getFilesFound() == 0) {
+                    showInfo("No MP3 files found", "The selected folder doesn't contain any MP3 files.");
+                }
+            }));
+    }
+
+    /**
+     * Watches {@code roots} for changes to the playlist's files. Listing them
+     * reads the file names of every restored page, so the watcher is started
+     * on the executor; one that arrives after watching stopped is closed.
+     */
+    private void startWatching(List<Path> roots) {
+        stopWatching();
+        int generation = watchGeneration;
+        List<Song> library = new ArrayList<>(songs);
+        executor.submit(() -> {
+            List<Path> known = new ArrayList<>(library.size());
+            for (Song song : library) known.add(song.getFile());
+            try {
+                LibraryWatcher started = LibraryWatcher.start(roots, known,
+                        (source, changes) -> Platform.runLater(() -> applyLibraryChanges(generation, changes)));
+                Platform.runLater(() -> {
+                    if (generation == watchGeneration) watcher = started;
+                    else started.close();
+                });
+            } catch (IOException e) {
+                System.err.println("Not watching " + roots + " for changes: " + e.getMessage());
             }
-            if (!songs.isEmpty()) {
-                playSong(0);
+        });
+    }
+
+    private void stopWatching() {
+        watchGeneration++;
+        if (watcher != null) {
+            watcher.close();
+            watcher = null;
+        }
+    }
+
+    /**
+     * Patches the playlist with a diff from the watcher: renamed songs keep
+     * their place and tags, changed files are read again, and nothing else
+     * is touched.
+     */
+    private void applyLibraryChanges(int generation, LibraryWatcher.Changes changes) {
+        if (generation != watchGeneration) return;
+        Set<Path> removed = new HashSet<>(changes.getRemoved());
+        Set<Path> modified = new HashSet<>(changes.getModified());
+        Map<Path, Path> renamed = changes.getRenamed();
+        if (!removed.isEmpty() || !modified.isEmpty() || !renamed.isEmpty()) {
+            Set<Song> gone = Collections.newSetFromMap(new IdentityHashMap<>());
+            // Duplicate entries of a file each move, so there can be more rows than renames
+            int[] movedAt = new int[Math.max(16, renamed.size())];
+            List<Song> moved = new ArrayList<>(renamed.size());
+            int currentMovedAt = -1;
+            for (int i = 0; i < songs.size(); i++) {
+                Song song = songs.get(i);
+                Path file = song.getFile();
+                if (removed.contains(file)) {
+                    gone.add(song);
+                } else if (renamed.containsKey(file)) {
+                    if (song == currentSong) currentMovedAt = moved.size();
+                    if (moved.size() == movedAt.length) movedAt = Arrays.copyOf(movedAt, movedAt.length * 2);
+                    movedAt[moved.size()] = i;
+                    moved.add(song.withFile(renamed.get(file)));
+                } else if (modified.contains(file)) {
+                    metadata.submit(song, song == currentSong
+                            ? MetadataScheduler.Priority.NOW_PLAYING : MetadataScheduler.Priority.BACKGROUND);
+                }
             }
-        } else {
-            showInfo("No MP3 files found", "The selected folder doesn't contain any MP3 files.");
+            // All renames as one change: a folder rename would otherwise re-key a sorted view per file
+            if (!moved.isEmpty()) {
+                songs.replace(Arrays.copyOf(movedAt, moved.size()), moved);
+                if (currentMovedAt >= 0) {
+                    currentSong = moved.get(currentMovedAt);
+                    currentIndex = movedAt[currentMovedAt];
+                    syncedQueue().select(queue.entryOf(currentSong), false);
+                }
+                // Re-reading is a cached header read; it records the new path in the cache
+                for (Song song : moved) metadata.submit(song, MetadataScheduler.Priority.BACKGROUND);
+            }
+            if (!gone.isEmpty()) songs.removeAll(gone);
         }
+        for (Path p : changes.getAdded()) {
+            addSongFile(p);
+        }
+        libraryDirty = true;
+        saveLibrarySnapshot();
+        lblStatus.setText("Library updated: " + changes);
     }
 
-    private void prepareMediaPlayer(Song s) {
+    private void prepareEngine(Song s) {
         try {
-            if (mediaPlayer != null) {
-                mediaPlayer.stop();
-                mediaPlayer.dispose();
-                mediaPlayer = null;
+            PlayerEvents.EngineOpen openEvent = new PlayerEvents.EngineOpen();
+            openEvent.begin();
+            long requested = System.nanoTime();
+            if (engine != null) {
+                engine.dispose();
+                engine = null;
             }
-            
-            Media media = new Media(s.getFile().toUri().toString());
-            mediaPlayer = new MediaPlayer(media);
-            mediaPlayer.setVolume(volumeSlider.getValue() / 100.0);
-
-            mediaPlayer.setOnReady(() -> {
-                updateSongInfo(s);
-                lblTotalTime.setText(format(media.getDuration()));
-                updatePlayButtonState(true);
-
-                mediaPlayer.currentTimeProperty().addListener((o, ov, nv) -> {
-                    if (!seeking && media.getDuration() != null) {
-                        update(nv, media.getDuration());
-                    }
-                });
-                
-                // Update button state when status changes
-                mediaPlayer.statusProperty().addListener((obs, oldStatus, newStatus) -> {
-                    Platform.runLater(() -> {
-                        if (newStatus == MediaPlayer.Status.PLAYING) {
-                            updatePlayButtonState(true);
-                        } else if (newStatus == MediaPlayer.Status.PAUSED || 
-                                   newStatus == MediaPlayer.Status.STOPPED) {
-                            updatePlayButtonState(false);
-                        }
-                    });
-                });
 
-                mediaPlayer.setOnEndOfMedia(() -> Platform.runLater(() -> {
-                    handleEndOfMedia();
-                }));
+            // Use the engine opened ahead of time when it is for this track
+            PlaybackEngine spare = preloader.take(s);
+            boolean preloaded = spare != null;
+            PlaybackEngine player = preloaded ? spare : PlaybackEngine.open(s.getFile(), Platform::runLater);
+            engine = player;
+            player.setVolume(volumeSlider.getValue() / 100.0);
+            for (int i = 0; i < eqValues.length; i++) player.setEqualizerGain(i, eqValues[i]);
 
-                mediaPlayer.setOnError(() -> {
-                    Platform.runLater(() -> {
-                        showError("Playback Error", mediaPlayer.getError().getMessage());
-                        updatePlayButtonState(false);
-                    });
-                });
+            player.setListener(new PlaybackEngine.Listener() {
+                private boolean ready = false;
+                private boolean started = false;
 
-                // Setup visualizer
-                try {
-                    mediaPlayer.setAudioSpectrumInterval(0.05);
-                    mediaPlayer.setAudioSpectrumNumBands(64);
-                    mediaPlayer.setAudioSpectrumListener((timestamp, duration, mags, phases) -> {
-                        int len = Math.min(mags.length, magnitudes.length);
-                        for (int i = 0; i < len; i++) {
-                            magnitudes[i] = Math.max(0, mags[i] + 60);
-                        }
-                    });
-                    if (vizTimer != null) vizTimer.start();
-                } catch (Exception ex) {
-                    if (vizTimer != null) vizTimer.stop();
+                @Override
+                public void onStateChanged(PlaybackEngine.State state) {
+                    if (player != engine) return;
+                    switch (state) {
+                        case READY:
+                            if (!ready) {
+                                ready = true;
+                                recordOpen(openEvent, System.nanoTime() - requested, s, player, preloaded);
+                                startPlayback(s, player);
+                            }
+                            break;
+                        case PLAYING:
+                            if (!started) {
+                                started = true;
+                                preloader.recordTransition(System.nanoTime() - requested, preloaded);
+                            }
+                            updatePlayButtonState(true);
+                            break;
+                        case PAUSED:
+                        case STOPPED:
+                            updatePlayButtonState(false);
+                            break;
+                        default:
+                            break;
+                    }
                 }
 
-                // Update album art
-                updateAlbumArt(s);
+                @Override
+                public void onPosition(double seconds) {
+                    if (player == engine && !seeking) update(seconds, player.getDuration());
+                }
 
-                mediaPlayer.play();
-                updatePlayButtonState(true);
-                playlistView.refresh();
-            });
+                @Override
+                public void onEndOfMedia() {
+                    if (player == engine) handleEndOfMedia();
+                }
 
-            mediaPlayer.setOnError(() -> {
-                Platform.runLater(() -> {
-                    showError("Media Error", "Failed to load: " + s.getFile().getFileName());
-                });
+                @Override
+                public void onError(String message) {
+                    if (player != engine) return;
+                    if (ready) {
+                        showError("Playback Error", message);
+                        updatePlayButtonState(false);
+                    } else {
+                        showError("Media Error", "Failed to load: " + s.getFile().getFileName());
+                    }
+                }
             });
 
         } catch (Exception e) {
@@ -391,6 +866,72 @@ public class MusicPlayerController {
         }
     }
 
+    private static void recordOpen(PlayerEvents.EngineOpen event, long nanos, Song s, PlaybackEngine player,
+                                   boolean preloaded) {
+        OPEN_TIME.record(nanos);
+        event.end();
+        if (event.shouldCommit()) {
+            event.file = s.getFile().toString();
+            event.engine = player.getClass().getSimpleName();
+            event.preloaded = preloaded;
+            event.commit();
+        }
+    }
+
+    private void startPlayback(Song s, PlaybackEngine player) {
+        updateSongInfo(s);
+        lblTotalTime.setText(format(player.getDuration()));
+        updatePlayButtonState(true);
+
+        // Setup visualizer
+        try {
+            player.setSpectrumListener(SpectrumVisualizer.BANDS, 0.05, visualizer::onSpectrum);
+            startVisualizer();
+        } catch (Exception ex) {
+            if (vizTimer != null) vizTimer.stop();
+        }
+
+        // Update album art
+        updateAlbumArt(s);
+
+        player.play();
+        updatePlayButtonState(true);
+
+        // Open the following track while this one plays
+        preloadNext();
+    }
+
+    /**
+     * Prepares a spare engine for the track end of media would switch to.
+     */
+    private void preloadNext() {
+        if (repeatMode == 2) {
+            preloader.prepare(currentSong);
+            return;
+        }
+        PlayQueue.Entry next = syncedQueue().peekNext(repeatMode == 1);
+        preloader.prepare(next != null ? next.getSong() : null);
+    }
+
+    private PlayQueue syncedQueue() {
+        if (queueStale) {
+            queue.rebuild(playlistModel);
+            queueStale = false;
+        }
+        return queue;
+    }
+
+    /**
+     * Plays a queue entry. {@code recordHistory} is false when stepping back,
+     * so Previous walks the history instead of bouncing between two tracks.
+     */
+    private void playEntry(PlayQueue.Entry entry, boolean recordHistory) {
+        int viewIndex = syncedQueue().indexOf(entry);
+        if (viewIndex >= 0) {
+            playSong(playlistModel.getSourceIndex(viewIndex), recordHistory);
+        }
+    }
+
     private void updateSongInfo(Song s) {
         lblNowPlaying.setText(s.getTitle());
         lblArtist.setText(s.getArtist());
@@ -400,46 +941,43 @@ public class MusicPlayerController {
     }
 
     private void updateAlbumArt(Song s) {
-        try {
-            Image art = s.getAlbumArt();
-            if (art != null) {
-                albumArt.setImage(art);
-            } else {
-                // Try to load from file system
-                Path file = s.getFile();
-                File jpg = new File(file.toString().replaceAll("(?i)\\.mp3$", ".jpg"));
-                File png = new File(file.toString().replaceAll("(?i)\\.mp3$", ".png"));
-                if (jpg.exists()) {
-                    albumArt.setImage(new Image(new FileInputStream(jpg), 200, 200, true, true));
-                } else if (png.exists()) {
-                    albumArt.setImage(new Image(new FileInputStream(png), 200, 200, true, true));
-                } else {
-                    // Set default placeholder
-                    albumArt.setImage(null);
-                }
-            }
-        } catch (Exception e) {
-            albumArt.setImage(null);
+        AlbumArtCache artCache = AlbumArtCache.shared();
+        Image cached = artCache.getIfCached(s);
+        if (cached != null) {
+            albumArt.setImage(cached);
+            return;
         }
+        albumArt.setImage(null);
+        // Decode off the FX thread; tracks of the same album share one image
+        executor.submit(() -> {
+            Image art = artCache.load(s);
+            Platform.runLater(() -> {
+                if (currentSong == s) {
+                    albumArt.setImage(art);
+                }
+            });
+        });
     }
 
     private void playSong(int index) {
+        playSong(index, true);
+    }
+
+    private void playSong(int index, boolean recordHistory) {
         if (index < 0 || index >= songs.size()) return;
-        currentIndex = index;
+        Song previous = currentSong;
         Song s = songs.get(index);
+        currentSong = s;
+        currentIndex = index;
+        syncedQueue().select(queue.entryOf(s), recordHistory);
+        refreshCells(previous, s);
         
-        // Ensure metadata is extracted
+        // Ensure metadata is extracted; applySongUpdates refreshes the labels and art
         if (s.getArtist().equals("Unknown Artist")) {
-            executor.submit(() -> {
-                MetadataExtractor.extractMetadata(s);
-                Platform.runLater(() -> {
-                    updateSongInfo(s);
-                    updateAlbumArt(s);
-                });
-            });
+            metadata.submit(s, MetadataScheduler.Priority.NOW_PLAYING);
         }
         
-        prepareMediaPlayer(s);
+        prepareEngine(s);
     }
 
     private void handleEndOfMedia() {
@@ -447,40 +985,20 @@ public class MusicPlayerController {
             playSong(currentIndex);
             return;
         }
-        if (shuffle) {
-            if (songs.size() > 1) {
-                int next;
-                do {
-                    next = random.nextInt(songs.size());
-                } while (next == currentIndex && songs.size() > 1);
-                playSong(next);
-            }
-            return;
-        }
-        if (repeatMode == 1) {
-            if (currentIndex + 1 < songs.size()) {
-                playSong(currentIndex + 1);
-            } else {
-                playSong(0);
-            }
-            return;
-        }
-        if (currentIndex + 1 < songs.size()) {
-            playSong(currentIndex + 1);
-        }
+        nextSong();
     }
 
-    private void update(Duration current, Duration total) {
-        if (total == null || total.isUnknown()) return;
-        if (total.toMillis() > 0) {
-            progressSlider.setValue(current.toMillis() / total.toMillis() * 100.0);
+    private void update(double current, double total) {
+        if (Double.isNaN(total)) return;
+        if (total > 0) {
+            progressSlider.setValue(current / total * 100.0);
         }
         lblCurrentTime.setText(format(current));
     }
 
-    private String format(Duration d) {
-        if (d == null || d.isUnknown()) return "00:00";
-        int s = (int) Math.floor(d.toSeconds());
+    private String format(double seconds) {
+        if (Double.isNaN(seconds)) return "00:00";
+        int s = (int) Math.floor(seconds);
         int m = s / 60;
         int sec = s % 60;
         return String.format("%02d:%02d", m, sec);
@@ -488,8 +1006,8 @@ public class MusicPlayerController {
 
     @FXML
     private void onPlay() {
-        if (mediaPlayer == null) {
-            // No media player, start playing first song
+        if (engine == null) {
+            // No engine yet, start playing first song
             if (!songs.isEmpty()) {
                 if (currentIndex < 0) {
                     playSong(0);
@@ -499,18 +1017,18 @@ public class MusicPlayerController {
             }
         } else {
             // Toggle play/pause
-            MediaPlayer.Status status = mediaPlayer.getStatus();
-            if (status == MediaPlayer.Status.PLAYING) {
-                mediaPlayer.pause();
+            PlaybackEngine.State state = engine.getState();
+            if (state == PlaybackEngine.State.PLAYING) {
+                engine.pause();
                 updatePlayButtonState(false);
-            } else if (status == MediaPlayer.Status.STOPPED) {
+            } else if (state == PlaybackEngine.State.STOPPED || state == PlaybackEngine.State.FINISHED) {
                 // If stopped, restart from beginning
-                mediaPlayer.seek(Duration.ZERO);
-                mediaPlayer.play();
+                engine.seek(0);
+                engine.play();
                 updatePlayButtonState(true);
             } else {
                 // Paused, resume playing
-                mediaPlayer.play();
+                engine.play();
                 updatePlayButtonState(true);
             }
         }
@@ -524,9 +1042,9 @@ public class MusicPlayerController {
 
     @FXML
     private void onStop() {
-        if (mediaPlayer != null) {
-            mediaPlayer.stop();
-            mediaPlayer.seek(Duration.ZERO); // Reset to beginning
+        if (engine != null) {
+            engine.stop();
+            engine.seek(0); // Reset to beginning
             progressSlider.setValue(0);
             lblCurrentTime.setText("00:00");
             updatePlayButtonState(false);
@@ -555,29 +1073,12 @@ public class MusicPlayerController {
     private void onPrev() {
         if (songs.isEmpty()) return;
         
-        if (shuffle) {
-            if (songs.size() > 1) {
-                int prev;
-                do {
-                    prev = random.nextInt(songs.size());
-                } while (prev == currentIndex && songs.size() > 1);
-                playSong(prev);
-            } else if (songs.size() == 1) {
-                // If only one song and shuffle, restart it
-                playSong(0);
-            }
-        } else {
-            if (currentIndex > 0) {
-                playSong(currentIndex - 1);
-            } else if (repeatMode == 1) {
-                // Repeat all - go to last song
-                playSong(songs.size() - 1);
-            } else {
-                // At beginning, restart current song
-                if (currentIndex >= 0) {
-                    playSong(currentIndex);
-                }
-            }
+        PlayQueue.Entry previous = syncedQueue().popPrevious(repeatMode == 1);
+        if (previous != null) {
+            playEntry(previous, false);
+        } else if (currentIndex >= 0) {
+            // At beginning, restart current song
+            playSong(currentIndex);
         }
     }
 
@@ -588,20 +1089,9 @@ public class MusicPlayerController {
     }
 
     private void nextSong() {
-        if (shuffle) {
-            if (songs.size() > 1) {
-                int next;
-                do {
-                    next = random.nextInt(songs.size());
-                } while (next == currentIndex && songs.size() > 1);
-                playSong(next);
-            }
-        } else {
-            if (currentIndex + 1 < songs.size()) {
-                playSong(currentIndex + 1);
-            } else if (repeatMode == 1) {
-                playSong(0);
-            }
+        PlayQueue.Entry next = syncedQueue().peekNext(repeatMode == 1);
+        if (next != null) {
+            playEntry(next, true);
         }
     }
 
@@ -619,11 +1109,17 @@ public class MusicPlayerController {
 
     @FXML
     private void onShuffleToggle() {
-        shuffle = btnShuffle.isSelected();
+        queue.setShuffle(btnShuffle.isSelected());
+        if (engine != null) preloadNext();
     }
 
     @FXML
     private void onRepeatToggle() {
+        updateRepeatMode();
+        if (engine != null) preloadNext();
+    }
+
+    private void updateRepeatMode() {
         if (!btnRepeat.isSelected()) {
             repeatMode = 0;
             return;
@@ -641,96 +1137,6 @@ public class MusicPlayerController {
         }
     }
 
-    private void drawVisualizer() {
-        if (visualizerCanvas == null) return;
-        GraphicsContext gc = visualizerCanvas.getGraphicsContext2D();
-        double w = visualizerCanvas.getWidth();
-        double h = visualizerCanvas.getHeight();
-        gc.clearRect(0, 0, w, h);
-
-        switch (vizMode) {
-            case 0: // Bars
-                drawBars(gc, w, h);
-                break;
-            case 1: // Circle
-                drawCircle(gc, w, h);
-                break;
-            case 2: // Wave
-                drawWave(gc, w, h);
-                break;
-            case 3: // Spectrum
-                drawSpectrum(gc, w, h);
-                break;
-        }
-    }
-
-    private void drawBars(GraphicsContext gc, double w, double h) {
-        int bands = 64;
-        double bandWidth = w / bands;
-        gc.setFill(Color.web("#00eaff"));
-        for (int i = 0; i < bands; i++) {
-            double mag = 0;
-            if (i < magnitudes.length) mag = Math.max(0, Math.min(60, magnitudes[i]));
-            double barH = (mag / 60.0) * h * 0.9;
-            gc.fillRect(i * bandWidth, h - barH, bandWidth * 0.8, barH);
-        }
-    }
-
-    private void drawCircle(GraphicsContext gc, double w, double h) {
-        double centerX = w / 2;
-        double centerY = h / 2;
-        double radius = Math.min(w, h) / 2 - 20;
-        int bands = 64;
-        
-        for (int i = 0; i < bands; i++) {
-            double angle = (2 * Math.PI * i) / bands;
-            double mag = 0;
-            if (i < magnitudes.length) mag = Math.max(0, Math.min(60, magnitudes[i]));
-            double barLength = (mag / 60.0) * radius * 0.5;
-            
-            double x1 = centerX + Math.cos(angle) * radius;
-            double y1 = centerY + Math.sin(angle) * radius;
-            double x2 = centerX + Math.cos(angle) * (radius + barLength);
-            double y2 = centerY + Math.sin(angle) * (radius + barLength);
-            
-            gc.setStroke(Color.web("#00eaff"));
-            gc.setLineWidth(2);
-            gc.strokeLine(x1, y1, x2, y2);
-        }
-    }
-
-    private void drawWave(GraphicsContext gc, double w, double h) {
-        gc.setStroke(Color.web("#00eaff"));
-        gc.setLineWidth(2);
-        gc.beginPath();
-        gc.moveTo(0, h / 2);
-        
-        int bands = 64;
-        for (int i = 0; i < bands; i++) {
-            double mag = 0;
-            if (i < magnitudes.length) mag = Math.max(0, Math.min(60, magnitudes[i]));
-            double x = (i / (double) bands) * w;
-            double y = h / 2 - (mag / 60.0) * h * 0.4;
-            gc.lineTo(x, y);
-        }
-        gc.stroke();
-    }
-
-    private void drawSpectrum(GraphicsContext gc, double w, double h) {
-        int bands = 64;
-        double bandWidth = w / bands;
-        for (int i = 0; i < bands; i++) {
-            double mag = 0;
-            if (i < magnitudes.length) mag = Math.max(0, Math.min(60, magnitudes[i]));
-            double barH = (mag / 60.0) * h;
-            
-            // Color gradient based on frequency
-            double hue = (i / (double) bands) * 240; // Blue to red
-            gc.setFill(Color.hsb(hue, 0.8, 1.0));
-            gc.fillRect(i * bandWidth, h - barH, bandWidth * 0.9, barH);
-        }
-    }
-
     private void showError(String title, String message) {
         Alert alert = new Alert(Alert.AlertType.ERROR);
         alert.setTitle(title);
@@ -748,11 +1154,43 @@ public class MusicPlayerController {
     }
 
     public void shutdown() {
-        if (mediaPlayer != null) {
-            mediaPlayer.stop();
-            mediaPlayer.dispose();
-        }
+        if (engine != null) engine.dispose();
+        preloader.discard();
+        cancelLoads();
+        scanner.shutdown();
+        playlistLoader.shutdown();
+        stopWatching();
+        metadata.shutdown();
+        songUpdates.stop();
+        saveLibrarySnapshot();
+        snapshotWriter.shutdown();
         executor.shutdown();
+        duplicateFinder.shutdown();
+        MetadataCache.shared().save();
+        contentHashes.save();
         if (vizTimer != null) vizTimer.stop();
     }
+
+    private class PlaylistCell extends ListCell<Song> {
+        @Override
+        protected void updateItem(Song song, boolean empty) {
+            super.updateItem(song, empty);
+            if (empty || song == null) {
+                setText(null);
+                setStyle("");
+            } else {
+                setText(song.getDisplayTitle());
+                requestFocusUpdate();
+                if (song == currentSong) {
+                    setStyle("-fx-background-color: #00eaff33; -fx-text-fill: #00eaff;");
+                } else {
+                    setStyle("");
+                }
+            }
+        }
+
+        void refresh() {
+            updateItem(getItem(), isEmpty());
+        }
+    }
 }
@@ -0,0 +1,101 @@
+package com.starkplayer.controller;
+
+import com.starkplayer.model.Song;
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Coalesces metadata updates coming from worker threads and applies them on
+ * the FX thread at most once per frame.
+ *
+ * Each pulse hands the distinct songs to the consumer in slices and checks
+ * the time budget after each one, since applying a slice (re-indexing,
+ * re-sorting, refreshing cells) costs far more than draining it. The slice
+ * size adapts so one slice takes well under the budget; at least one slice
+ * is applied per pulse, and whatever is left waits for the next frame. The
+ * timer only runs while there is a backlog.
+ */
+public class SongUpdatePublisher {
+
+    private static final int MIN_SLICE = 16;
+    private static final int MAX_SLICE = 4096;
+
+    private final ConcurrentLinkedQueue<Song> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final AtomicLong queued = new AtomicLong();
+    private final AtomicLong applied = new AtomicLong();
+    private final Consumer<Set<Song>> consumer;
+    private final long budgetNanos;
+    private final AnimationTimer timer;
+    private int slice = 64; // FX thread only
+
+    public SongUpdatePublisher(Consumer<Set<Song>> consumer, long budgetNanos) {
+        this.consumer = consumer;
+        this.budgetNanos = budgetNanos;
+        this.timer = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                pulse();
+            }
+        };
+    }
+
+    /**
+     * Queues a song whose fields changed. Safe to call from any thread.
+     */
+    public void publish(Song song) {
+        pending.add(song);
+        queued.incrementAndGet();
+        if (running.compareAndSet(false, true)) {
+            Platform.runLater(timer::start);
+        }
+    }
+
+    public long getQueued() { return queued.get(); }
+    public long getApplied() { return applied.get(); }
+    public long getBacklog() { return queued.get() - applied.get(); }
+    public int getSliceSize() { return slice; }
+
+    public void stop() {
+        timer.stop();
+        pending.clear();
+    }
+
+    private void pulse() {
+        long deadline = System.nanoTime() + budgetNanos;
+        do {
+            Set<Song> batch = new LinkedHashSet<>();
+            int drained = 0;
+            Song song;
+            while (drained < slice && (song = pending.poll()) != null) {
+                batch.add(song);
+                drained++;
+            }
+            if (drained == 0) break;
+            long start = System.nanoTime();
+            consumer.accept(batch);
+            applied.addAndGet(drained);
+            long took = System.nanoTime() - start;
+            if (took > budgetNanos / 2) {
+                slice = Math.max(MIN_SLICE, slice / 2);
+            } else if (took < budgetNanos / 8 && drained == slice) {
+                slice = Math.min(MAX_SLICE, slice * 2);
+            }
+        } while (System.nanoTime() < deadline);
+        if (pending.isEmpty()) {
+            timer.stop();
+            running.set(false);
+            // A publish may have slipped in between the drain and the flag reset
+            if (!pending.isEmpty() && running.compareAndSet(false, true)) {
+                timer.start();
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.starkplayer.controller;
+
+/**
+ * Geometry for one visualizer frame, kept apart from the drawing so it can
+ * be measured without a display. Fills one reused coordinate array:
+ * bars and spectrum give x, y, width, height per band, circle gives the
+ * x1, y1, x2, y2 of each spoke, and wave gives x, y per point.
+ */
+public class SpectrumLayout {
+
+    public static final int BARS = 0;
+    public static final int CIRCLE = 1;
+    public static final int WAVE = 2;
+    public static final int SPECTRUM = 3;
+
+    private static final double MAX_MAGNITUDE = 60.0;
+
+    private final int bands;
+    private final double[] cos;
+    private final double[] sin;
+    private final double[] coords;
+
+    public SpectrumLayout(int bands) {
+        this.bands = bands;
+        this.cos = new double[bands];
+        this.sin = new double[bands];
+        this.coords = new double[bands * 4];
+        for (int i = 0; i < bands; i++) {
+            double angle = (2 * Math.PI * i) / bands;
+            cos[i] = Math.cos(angle);
+            sin[i] = Math.sin(angle);
+        }
+    }
+
+    public int bands() {
+        return bands;
+    }
+
+    /**
+     * Lays out {@code mags} (dB above the -60 dB floor, as published by
+     * {@link com.starkplayer.util.SpectrumBuffer}) for a {@code w} by
+     * {@code h} canvas. The returned array is reused by the next call.
+     */
+    public double[] layout(int mode, double w, double h, float[] mags) {
+        switch (mode) {
+            case BARS:
+                bars(w, h, mags, 0.9, 0.8);
+                break;
+            case CIRCLE:
+                circle(w, h, mags);
+                break;
+            case WAVE:
+                wave(w, h, mags);
+                break;
+            case SPECTRUM:
+                bars(w, h, mags, 1.0, 0.9);
+                break;
+        }
+        return coords;
+    }
+
+    private double level(float[] mags, int band) {
+        return Math.min(MAX_MAGNITUDE, mags[band]) / MAX_MAGNITUDE;
+    }
+
+    private void bars(double w, double h, float[] mags, double heightScale, double widthScale) {
+        double bandWidth = w / bands;
+        for (int i = 0; i < bands; i++) {
+            double barH = level(mags, i) * h * heightScale;
+            int k = i * 4;
+            coords[k] = i * bandWidth;
+            coords[k + 1] = h - barH;
+            coords[k + 2] = bandWidth * widthScale;
+            coords[k + 3] = barH;
+        }
+    }
+
+    private void circle(double w, double h, float[] mags) {
+        double centerX = w / 2;
+        double centerY = h / 2;
+        double radius = Math.min(w, h) / 2 - 20;
+        for (int i = 0; i < bands; i++) {
+            double outer = radius + level(mags, i) * radius * 0.5;
+            int k = i * 4;
+            coords[k] = centerX + cos[i] * radius;
+            coords[k + 1] = centerY + sin[i] * radius;
+            coords[k + 2] = centerX + cos[i] * outer;
+            coords[k + 3] = centerY + sin[i] * outer;
+        }
+    }
+
+    private void wave(double w, double h, float[] mags) {
+        for (int i = 0; i < bands; i++) {
+            coords[i * 2] = (i / (double) bands) * w;
+            coords[i * 2 + 1] = h / 2 - level(mags, i) * h * 0.4;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.starkplayer.controller;
+
+import com.starkplayer.util.Metrics;
+import com.starkplayer.util.PlayerEvents;
+import com.starkplayer.util.SpectrumBuffer;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+import jdk.jfr.EventType;
+
+/**
+ * Draws the spectrum in one of four modes (bars, circle, wave, spectrum).
+ *
+ * Spectrum frames arrive through a {@link SpectrumBuffer}, so the media
+ * callback and the FX render loop never share an array. Colours are
+ * computed once up front, the geometry comes from a reused
+ * {@link SpectrumLayout}, and a frame allocates nothing; its JFR event is
+ * only created while a recording has it enabled. Frame time and
+ * dropped frames are counted to confirm it keeps up at 60 FPS on slow
+ * machines.
+ */
+public class SpectrumVisualizer {
+
+    public static final int BANDS = 64;
+    private static final double MAX_MAGNITUDE = 60.0;
+    private static final long FRAME_NANOS = 16_666_666L; // ~60 FPS
+    private static final long FRAME_SLACK_NANOS = 2_000_000L; // pulses arrive a little early or late
+    private static final long MAX_GAP_NANOS = 1_000_000_000L; // longer gaps mean the timer was stopped
+
+    private static final Metrics.Histogram FRAME_TIME = Metrics.histogram("visualizer.frame");
+    private static final Metrics.Counter DROPPED = Metrics.counter("visualizer.dropped");
+    private static final EventType FRAME_EVENT = EventType.getEventType(PlayerEvents.VisualizerFrame.class);
+
+    private static final Color ACCENT = Color.web("#00eaff");
+    private static final Color[] SPECTRUM_PALETTE = new Color[BANDS];
+
+    static {
+        for (int i = 0; i < BANDS; i++) {
+            // Colour gradient based on frequency, blue to red
+            SPECTRUM_PALETTE[i] = Color.hsb((i / (double) BANDS) * 240, 0.8, 1.0);
+        }
+    }
+
+    private final SpectrumBuffer buffer = new SpectrumBuffer(BANDS);
+    private final SpectrumLayout layout = new SpectrumLayout(BANDS);
+    private long lastFrame = 0;
+    private long frames = 0;
+    private long droppedFrames = 0;
+    private long totalFrameNanos = 0;
+    private long maxFrameNanos = 0;
+
+    /**
+     * Spectrum callback, any thread: magnitudes in dB, 0 at full scale.
+     */
+    public void onSpectrum(float[] magnitudes) {
+        buffer.publish(magnitudes, (float) MAX_MAGNITUDE);
+    }
+
+    /**
+     * Called on every animation pulse. Draws at most one frame per 60 Hz
+     * period and counts the periods that went by without a frame.
+     */
+    public void pulse(long now, GraphicsContext gc, double w, double h, int mode) {
+        long gap = now - lastFrame;
+        if (lastFrame != 0 && gap < FRAME_NANOS - FRAME_SLACK_NANOS) return;
+        long missed = 0;
+        if (lastFrame != 0 && gap < MAX_GAP_NANOS) {
+            missed = Math.max(0, (gap + FRAME_NANOS / 2) / FRAME_NANOS - 1);
+            droppedFrames += missed;
+            DROPPED.add(missed);
+        }
+        lastFrame = now;
+
+        PlayerEvents.VisualizerFrame event = FRAME_EVENT.isEnabled() ? new PlayerEvents.VisualizerFrame() : null;
+        if (event != null) event.begin();
+        long start = System.nanoTime();
+        draw(gc, w, h, mode, buffer.acquire());
+        long elapsed = System.nanoTime() - start;
+        if (event != null) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.mode = mode;
+                event.missed = missed;
+                event.commit();
+            }
+        }
+        FRAME_TIME.record(elapsed);
+        frames++;
+        totalFrameNanos += elapsed;
+        if (elapsed > maxFrameNanos) maxFrameNanos = elapsed;
+    }
+
+    public long getFrames() { return frames; }
+    public long getDroppedFrames() { return droppedFrames; }
+    public double getMaxFrameMillis() { return maxFrameNanos / 1e6; }
+
+    public double getAverageFrameMillis() {
+        return frames == 0 ? 0 : totalFrameNanos / 1e6 / frames;
+    }
+
+    public void resetStats() {
+        frames = 0;
+        droppedFrames = 0;
+        totalFrameNanos = 0;
+        maxFrameNanos = 0;
+    }
+
+    private void draw(GraphicsContext gc, double w, double h, int mode, float[] mags) {
+        gc.clearRect(0, 0, w, h);
+        double[] c = layout.layout(mode, w, h, mags);
+        switch (mode) {
+            case SpectrumLayout.BARS:
+                gc.setFill(ACCENT);
+                for (int k = 0; k < BANDS * 4; k += 4) gc.fillRect(c[k], c[k + 1], c[k + 2], c[k + 3]);
+                break;
+            case SpectrumLayout.CIRCLE:
+                gc.setStroke(ACCENT);
+                gc.setLineWidth(2);
+                for (int k = 0; k < BANDS * 4; k += 4) gc.strokeLine(c[k], c[k + 1], c[k + 2], c[k + 3]);
+                break;
+            case SpectrumLayout.WAVE:
+                gc.setStroke(ACCENT);
+                gc.setLineWidth(2);
+                gc.beginPath();
+                gc.moveTo(0, h / 2);
+                for (int k = 0; k < BANDS * 2; k += 2) gc.lineTo(c[k], c[k + 1]);
+                gc.stroke();
+                break;
+            case SpectrumLayout.SPECTRUM:
+                for (int i = 0, k = 0; i < BANDS; i++, k += 4) {
+                    gc.setFill(SPECTRUM_PALETTE[i]);
+                    gc.fillRect(c[k], c[k + 1], c[k + 2], c[k + 3]);
+                }
+                break;
+        }
+    }
+}
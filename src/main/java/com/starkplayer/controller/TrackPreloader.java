@@ -0,0 +1,103 @@
+package com.starkplayer.controller;
+
+import com.starkplayer.model.Song;
+import com.starkplayer.util.Metrics;
+import com.starkplayer.util.PlaybackEngine;
+import javafx.application.Platform;
+
+import javax.sound.sampled.LineUnavailableException;
+
+/**
+ * Keeps at most one spare playback engine, opened ahead of time for the track
+ * that is expected to play next, so the switch at end of media does not wait
+ * for the file to be opened and probed. The spare decodes ahead but only
+ * takes the output line when it is handed over.
+ *
+ * Also records how long track transitions take, from the request to the new
+ * engine reaching PLAYING, split by whether the spare was used. FX thread only.
+ */
+public class TrackPreloader {
+
+    private static final Metrics.Histogram PRELOADED_TIME = Metrics.histogram("playback.transition.preloaded");
+    private static final Metrics.Histogram COLD_TIME = Metrics.histogram("playback.transition.cold");
+
+    private PlaybackEngine spare;
+    private Song spareSong;
+    private long hits = 0;
+    private long misses = 0;
+    private long lastTransitionNanos = 0;
+    private long preloadedTransitions = 0;
+    private long preloadedNanos = 0;
+    private long coldTransitions = 0;
+    private long coldNanos = 0;
+
+    /**
+     * Opens a spare engine for {@code song}, replacing any spare for another
+     * track. Passing null just drops the spare.
+     */
+    public void prepare(Song song) {
+        if (song != null && song == spareSong) return;
+        discard();
+        if (song == null) return;
+        try {
+            spare = PlaybackEngine.preload(song.getFile(), Platform::runLater);
+            spareSong = song;
+        } catch (RuntimeException e) {
+            // Unsupported or missing file; playSong reports it when the track comes up
+            spare = null;
+            spareSong = null;
+        }
+    }
+
+    /**
+     * Hands over the spare with its output open if it was prepared for
+     * {@code song} and is usable, otherwise drops it and returns null.
+     */
+    public PlaybackEngine take(Song song) {
+        if (spare != null && spareSong == song && spare.getState() != PlaybackEngine.State.FAILED) {
+            try {
+                spare.openOutput();
+                PlaybackEngine engine = spare;
+                spare = null;
+                spareSong = null;
+                hits++;
+                return engine;
+            } catch (LineUnavailableException | RuntimeException e) {
+                // Opened cold instead, which falls back to JavaFX if the line is still unavailable
+            }
+        }
+        misses++;
+        discard();
+        return null;
+    }
+
+    public void discard() {
+        if (spare != null) {
+            spare.dispose();
+            spare = null;
+            spareSong = null;
+        }
+    }
+
+    public void recordTransition(long nanos, boolean preloaded) {
+        lastTransitionNanos = nanos;
+        (preloaded ? PRELOADED_TIME : COLD_TIME).record(nanos);
+        if (preloaded) {
+            preloadedTransitions++;
+            preloadedNanos += nanos;
+        } else {
+            coldTransitions++;
+            coldNanos += nanos;
+        }
+    }
+
+    public long getHits() { return hits; }
+    public long getMisses() { return misses; }
+    public double getLastTransitionMillis() { return lastTransitionNanos / 1e6; }
+
+    public double getAverageTransitionMillis(boolean preloaded) {
+        long count = preloaded ? preloadedTransitions : coldTransitions;
+        long total = preloaded ? preloadedNanos : coldNanos;
+        return count == 0 ? 0 : total / 1e6 / count;
+    }
+}
@@ -1,50 +1,118 @@
 package com.starkplayer.model;
 
-import javafx.scene.image.Image;
 import java.nio.file.Path;
 
+/**
+ * One track of the library. The tags live in the shared {@link TrackStore};
+ * a Song is a small handle onto its row there, and stays the identity the
+ * playlist, queue and caches key on. A restored song's row is read in when
+ * the song is first used.
+ */
 public class Song {
-    private final Path file;
-    private String title;
-    private String artist;
-    private String album;
-    private String genre;
-    private String year;
-    private Image albumArt;
-    private long duration; // in seconds
+    static final String UNKNOWN_ARTIST = "Unknown Artist";
+    static final String UNKNOWN_ALBUM = "Unknown Album";
+
+    private final TrackStore.Page page;
+    private final int slot;
 
     public Song(Path file, String title) {
-        this.file = file;
-        this.title = title != null ? title : file.getFileName().toString();
-        this.artist = "Unknown Artist";
-        this.album = "Unknown Album";
-        this.genre = "";
-        this.year = "";
-        this.duration = 0;
-    }
-
-    public Path getFile() { return file; }
-    public String getTitle() { return title; }
-    public String getArtist() { return artist; }
-    public String getAlbum() { return album; }
-    public String getGenre() { return genre; }
-    public String getYear() { return year; }
-    public Image getAlbumArt() { return albumArt; }
-    public long getDuration() { return duration; }
-
-    public void setTitle(String title) { this.title = title != null ? title : file.getFileName().toString(); }
-    public void setArtist(String artist) { this.artist = artist != null && !artist.isEmpty() ? artist : "Unknown Artist"; }
-    public void setAlbum(String album) { this.album = album != null && !album.isEmpty() ? album : "Unknown Album"; }
-    public void setGenre(String genre) { this.genre = genre != null ? genre : ""; }
-    public void setYear(String year) { this.year = year != null ? year : ""; }
-    public void setAlbumArt(Image albumArt) { this.albumArt = albumArt; }
-    public void setDuration(long duration) { this.duration = duration; }
+        TrackStore store = TrackStore.shared();
+        synchronized (store) {
+            this.page = store.openPage();
+            this.slot = page.add(file);
+        }
+        page.title[slot] = storedTitle(page, slot, title);
+    }
+
+    /** Handle onto a row of a restored page. */
+    Song(TrackStore.Page page, int slot) {
+        this.page = page;
+        this.slot = slot;
+    }
+
+    public Path getFile() { page.load(TrackStore.FILES); return page.file(slot); }
+    /** The file's folder, the same instance for every track in it; null for a bare file name. */
+    public Path getFolder() { page.load(TrackStore.FILES); return page.folder(slot); }
+    public String getFileName() { page.load(TrackStore.FILES); return page.name(slot); }
+    public String getTitle() { page.load(TrackStore.TAGS); String title = page.title[slot]; return title != null ? title : page.name(slot); }
+    public String getArtist() { page.load(TrackStore.TAGS); return page.store.artists.get(page.artist[slot]); }
+    public String getAlbum() { page.load(TrackStore.TAGS); return page.store.albums.get(page.album[slot]); }
+    public String getGenre() { page.load(TrackStore.TAGS); return page.store.genres.get(page.genre[slot]); }
+    public String getYear() { int year = getYearNumber(); return year != 0 ? Integer.toString(year) : ""; }
+    /** Release year, 0 if unknown. */
+    public int getYearNumber() { page.load(TrackStore.TAGS); return page.year[slot]; }
+    public String getAlbumArtKey() { page.load(TrackStore.TAGS); return page.store.albumArtKeys.get(page.albumArtKey[slot]); }
+    public long getDuration() { page.load(TrackStore.TAGS); return page.duration[slot]; }
+
+    // Setters read the row in first, so a later read cannot overwrite them
+
+    public void setTitle(String title) { page.load(TrackStore.TAGS); page.title[slot] = storedTitle(page, slot, title); }
+
+    /** Null when the title is the file name, which is stored anyway. */
+    private static String storedTitle(TrackStore.Page page, int slot, String title) {
+        return title == null || title.equals(page.name(slot)) ? null : title;
+    }
+
+    public void setArtist(String artist) {
+        page.load(TrackStore.TAGS);
+        page.artist[slot] = page.store.artists.id(orUnknown(artist, UNKNOWN_ARTIST));
+    }
+
+    public void setAlbum(String album) {
+        page.load(TrackStore.TAGS);
+        page.album[slot] = page.store.albums.id(orUnknown(album, UNKNOWN_ALBUM));
+    }
+
+    static String orUnknown(String value, String unknown) {
+        return value != null && !value.isEmpty() ? value : unknown;
+    }
+
+    public void setGenre(String genre) { page.load(TrackStore.TAGS); page.genre[slot] = page.store.genres.id(genre != null ? genre : ""); }
+
+    /**
+     * Keeps the leading four-digit year, so "2004" and an ID3v2.4 timestamp
+     * like "2004-05-01" both store 2004. Anything else counts as unknown.
+     */
+    public void setYear(String year) { page.load(TrackStore.TAGS); page.year[slot] = (short) parseYear(year); }
+
+    public void setAlbumArtKey(String albumArtKey) { page.load(TrackStore.TAGS); page.albumArtKey[slot] = page.store.albumArtKeys.idOrNone(albumArtKey); }
+    public void setDuration(long duration) { page.load(TrackStore.TAGS); page.duration[slot] = clampDuration(duration); }
+
+    static int clampDuration(long duration) {
+        return (int) Math.max(0, Math.min(Integer.MAX_VALUE, duration));
+    }
+
+    static int parseYear(String year) {
+        if (year == null) return 0;
+        String s = year.trim();
+        if (s.length() < 4 || (s.length() > 4 && Character.isDigit(s.charAt(4)))) return 0;
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') return 0;
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /** Copy of this song for a file that was renamed or moved. */
+    public Song withFile(Path file) {
+        Song copy = new Song(file, getTitle());
+        copy.page.artist[copy.slot] = page.artist[slot];
+        copy.page.album[copy.slot] = page.album[slot];
+        copy.page.genre[copy.slot] = page.genre[slot];
+        copy.page.year[copy.slot] = page.year[slot];
+        copy.page.albumArtKey[copy.slot] = page.albumArtKey[slot];
+        copy.page.duration[copy.slot] = page.duration[slot];
+        return copy;
+    }
 
     public String getDisplayTitle() {
-        if (artist != null && !artist.equals("Unknown Artist") && !artist.isEmpty()) {
-            return artist + " - " + title;
+        String artist = getArtist();
+        if (!artist.equals(UNKNOWN_ARTIST) && !artist.isEmpty()) {
+            return artist + " - " + getTitle();
         }
-        return title;
+        return getTitle();
     }
 
     public String toString() {
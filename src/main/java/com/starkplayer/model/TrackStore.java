@@ -0,0 +1,254 @@
+package com.starkplayer.model;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Column storage behind {@link Song}, so a large library does not pay for a
+ * full set of objects per track.
+ *
+ * Tracks live in fixed-size pages of primitive columns. Artists, albums,
+ * genres, cover keys and directories are stored once in dictionaries and
+ * referenced by id, so the defaults and the album name shared by a dozen
+ * tracks cost four bytes per track. Year and duration are numbers, and a
+ * file is its directory id plus its name in a per-page byte arena; the
+ * {@link Path} is rebuilt when asked for. A title equal to the file name is
+ * not stored at all.
+ *
+ * The store only keeps the page being filled. Older pages are referenced by
+ * their songs alone, so a page is collected with the last of its songs.
+ * Dictionaries only grow; they hold each distinct value once.
+ *
+ * A restored library gets pages that start out empty and read their rows
+ * from a {@link Source} the first time one of their songs is used: the
+ * files first, then the tags, which most callers never get to.
+ */
+public final class TrackStore {
+
+    static final int PAGE_SIZE = 1024;
+    static final int NO_VALUE = -1;
+    // What a restored page has yet to read
+    static final int FILES = 1;
+    static final int TAGS = 2;
+
+    private static final TrackStore SHARED = new TrackStore();
+
+    final Dictionary<Path> dirs = new Dictionary<>();
+    final Dictionary<String> artists = new Dictionary<>();
+    final Dictionary<String> albums = new Dictionary<>();
+    final Dictionary<String> genres = new Dictionary<>();
+    final Dictionary<String> albumArtKeys = new Dictionary<>();
+    final int unknownArtist = artists.id(Song.UNKNOWN_ARTIST);
+    final int unknownAlbum = albums.id(Song.UNKNOWN_ALBUM);
+    final int noGenre = genres.id("");
+    private Page current;
+    private long tracks;
+
+    public static TrackStore shared() {
+        return SHARED;
+    }
+
+    /**
+     * Page with room for one more track. Callers hold the store's lock
+     * until they have added it.
+     */
+    Page openPage() {
+        if (current == null || current.size == PAGE_SIZE) current = new Page(this);
+        tracks++;
+        return current;
+    }
+
+    /**
+     * Rows of a saved library, read by restored pages a page at a time.
+     * Calls come from whichever thread first uses a page.
+     */
+    public interface Source {
+        /** Passes the folder (null for none) and file name of rows {@code from + i}, {@code i < count}, to {@code sink} in row order. */
+        void readFiles(int from, int count, FileSink sink);
+        /** Passes the tags of rows {@code from + i}, {@code i < count}, to {@code sink} in row order. */
+        void readTags(int from, int count, TagSink sink);
+    }
+
+    public interface FileSink {
+        void accept(int i, Path folder, String name);
+    }
+
+    public interface TagSink {
+        void accept(int i, String title, String artist, String album, String genre, String year, long duration);
+    }
+
+    /**
+     * Songs for rows {@code [0, count)} of {@code source}. Nothing is read
+     * here; each page reads its rows when one of its songs is first used.
+     */
+    public List<Song> restore(int count, Source source) {
+        List<Song> songs = new ArrayList<>(count);
+        for (int first = 0; first < count; first += PAGE_SIZE) {
+            Page page = new Page(this, source, first, Math.min(PAGE_SIZE, count - first));
+            for (int slot = 0; slot < page.size; slot++) songs.add(new Song(page, slot));
+        }
+        synchronized (this) {
+            tracks += count;
+        }
+        return songs;
+    }
+
+    /** Tracks added since startup, including ones since collected. */
+    public synchronized long getTracksAdded() { return tracks; }
+    public int getDirectories() { return dirs.size(); }
+    public int getArtists() { return artists.size(); }
+    public int getAlbums() { return albums.size(); }
+
+    /** Primitive columns for {@link #PAGE_SIZE} tracks. */
+    static final class Page {
+        final TrackStore store;
+        final int[] dir = new int[PAGE_SIZE];
+        final int[] nameEnd = new int[PAGE_SIZE];
+        final String[] title = new String[PAGE_SIZE]; // null when it is the file name
+        final int[] artist = new int[PAGE_SIZE];
+        final int[] album = new int[PAGE_SIZE];
+        final int[] genre = new int[PAGE_SIZE];
+        final int[] albumArtKey = new int[PAGE_SIZE];
+        final int[] duration = new int[PAGE_SIZE];
+        final short[] year = new short[PAGE_SIZE];
+        private volatile byte[] names;
+        private int size;
+        // Restored pages only: where their rows come from and what is still to be read
+        private Source source;
+        private final int first;
+        private volatile int pending;
+
+        Page(TrackStore store) {
+            this.store = store;
+            this.names = new byte[PAGE_SIZE * 24];
+            this.first = 0;
+        }
+
+        private Page(TrackStore store, Source source, int first, int size) {
+            this.store = store;
+            this.names = new byte[0];
+            this.source = source;
+            this.first = first;
+            this.size = size;
+            this.pending = FILES | TAGS;
+        }
+
+        /** Adds a track with default tags; called with the store locked. */
+        int add(Path file) {
+            int slot = size;
+            Path parent = file.getParent();
+            Path name = file.getFileName();
+            putFile(slot, parent, name != null ? name.toString() : file.toString());
+            artist[slot] = store.unknownArtist;
+            album[slot] = store.unknownAlbum;
+            genre[slot] = store.noGenre;
+            albumArtKey[slot] = NO_VALUE;
+            size++;
+            return slot;
+        }
+
+        private void putFile(int slot, Path folder, String name) {
+            dir[slot] = folder != null ? store.dirs.id(folder) : NO_VALUE;
+            byte[] encoded = name.getBytes(StandardCharsets.UTF_8);
+            int start = slot == 0 ? 0 : nameEnd[slot - 1];
+            byte[] arena = names;
+            if (start + encoded.length > arena.length) {
+                arena = Arrays.copyOf(arena, Math.max(arena.length * 3 / 2, start + encoded.length));
+            }
+            System.arraycopy(encoded, 0, arena, start, encoded.length);
+            names = arena;
+            nameEnd[slot] = start + encoded.length;
+        }
+
+        /**
+         * Makes sure the columns {@code part} covers are in; only a restored
+         * page that has not read them yet does any work.
+         */
+        void load(int part) {
+            if ((pending & part) != 0) fill(part);
+        }
+
+        private synchronized void fill(int part) {
+            if ((pending & FILES) != 0) {
+                names = new byte[PAGE_SIZE * 24];
+                source.readFiles(first, size, this::putFile);
+                pending &= ~FILES;
+            }
+            if ((part & TAGS) != 0 && (pending & TAGS) != 0) {
+                // The title is only stored when it differs from the file name, read above
+                source.readTags(first, size, (slot, title, artist, album, genre, year, duration) -> {
+                    this.title[slot] = title == null || title.equals(name(slot)) ? null : title;
+                    this.artist[slot] = store.artists.id(Song.orUnknown(artist, Song.UNKNOWN_ARTIST));
+                    this.album[slot] = store.albums.id(Song.orUnknown(album, Song.UNKNOWN_ALBUM));
+                    this.genre[slot] = store.genres.id(genre != null ? genre : "");
+                    this.year[slot] = (short) Song.parseYear(year);
+                    this.duration[slot] = Song.clampDuration(duration);
+                    albumArtKey[slot] = NO_VALUE;
+                });
+                source = null;
+                pending = 0;
+            }
+        }
+
+        String name(int slot) {
+            int start = slot == 0 ? 0 : nameEnd[slot - 1];
+            return new String(names, start, nameEnd[slot] - start, StandardCharsets.UTF_8);
+        }
+
+        Path file(int slot) {
+            Path folder = folder(slot);
+            return folder == null ? Paths.get(name(slot)) : folder.resolve(name(slot));
+        }
+
+        Path folder(int slot) {
+            return store.dirs.get(dir[slot]);
+        }
+    }
+
+    /**
+     * Append-only value table. Ids are handed out once per distinct value;
+     * lookups by id do not lock.
+     */
+    static final class Dictionary<T> {
+        private final Map<T, Integer> ids = new ConcurrentHashMap<>();
+        private volatile Object[] values = new Object[64];
+        private int size;
+
+        int id(T value) {
+            Integer id = ids.get(value);
+            if (id != null) return id;
+            synchronized (this) {
+                id = ids.get(value);
+                if (id == null) {
+                    Object[] table = values;
+                    if (size == table.length) table = Arrays.copyOf(table, size * 2);
+                    table[size] = value;
+                    values = table;
+                    id = size++;
+                    ids.put(value, id);
+                }
+                return id;
+            }
+        }
+
+        /** Id of {@code value}, or {@link #NO_VALUE} for null. */
+        int idOrNone(T value) {
+            return value != null ? id(value) : NO_VALUE;
+        }
+
+        @SuppressWarnings("unchecked")
+        T get(int id) {
+            return id == NO_VALUE ? null : (T) values[id];
+        }
+
+        synchronized int size() {
+            return size;
+        }
+    }
+}
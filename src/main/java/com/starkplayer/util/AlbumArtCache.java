@@ -0,0 +1,157 @@
+package com.starkplayer.util;
+
+import com.starkplayer.model.Song;
+import javafx.scene.image.Image;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Decoded album art shared between tracks, keyed by a hash of the encoded
+ * image bytes so every track of an album points at the same bitmap.
+ *
+ * Art is decoded lazily the first time a track is shown and kept in an LRU
+ * map bounded by the estimated size of the decoded pixels. Songs only
+ * remember the content key; evicted art is re-read from the file's tag.
+ */
+public class AlbumArtCache {
+
+    private static final int ART_SIZE = 200;
+    private static final long DEFAULT_BUDGET = 32L * 1024 * 1024;
+
+    private static final AlbumArtCache SHARED = new AlbumArtCache(
+            Long.getLong("starkplayer.artCacheBytes", DEFAULT_BUDGET));
+
+    private final long budgetBytes;
+    private final LinkedHashMap<String, Entry> images = new LinkedHashMap<>(64, 0.75f, true);
+    private long bytesHeld = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    public AlbumArtCache(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+    }
+
+    public static AlbumArtCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * Returns the art if the song's key is known and its image is resident.
+     * Never touches the disk, so it is safe to call on the FX thread.
+     */
+    public synchronized Image getIfCached(Song song) {
+        String key = song.getAlbumArtKey();
+        if (key == null || key.isEmpty()) return null;
+        Entry entry = images.get(key);
+        if (entry != null) hits++;
+        return entry != null ? entry.image : null;
+    }
+
+    /**
+     * Returns the song's art, reading and decoding it on a miss. Blocks on
+     * file I/O; call from a background thread. Returns null if the track has
+     * no embedded art.
+     */
+    public Image load(Song song) {
+        String key = song.getAlbumArtKey();
+        if (key != null) {
+            if (key.isEmpty()) return null;
+            synchronized (this) {
+                Entry entry = images.get(key);
+                if (entry != null) {
+                    hits++;
+                    return entry.image;
+                }
+            }
+        }
+
+        byte[] data = readArt(song.getFile());
+        if (data == null) {
+            song.setAlbumArtKey("");
+            return null;
+        }
+        key = hash(data);
+        song.setAlbumArtKey(key);
+        synchronized (this) {
+            Entry entry = images.get(key);
+            if (entry != null) {
+                hits++;
+                return entry.image;
+            }
+            misses++;
+        }
+
+        Image image = decode(data);
+        if (image == null) return null;
+        long size = (long) image.getWidth() * (long) image.getHeight() * 4;
+        synchronized (this) {
+            Entry existing = images.get(key);
+            if (existing != null) return existing.image; // decoded concurrently
+            images.put(key, new Entry(image, size));
+            bytesHeld += size;
+            evict();
+        }
+        return image;
+    }
+
+    public synchronized long getHits() { return hits; }
+    public synchronized long getMisses() { return misses; }
+    public synchronized long getEvictions() { return evictions; }
+    public synchronized long getBytesHeld() { return bytesHeld; }
+    public synchronized int size() { return images.size(); }
+
+    public synchronized double getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Entry>> it = images.entrySet().iterator();
+        // Always keep the most recently used image, even if it alone exceeds the budget
+        while (bytesHeld > budgetBytes && images.size() > 1 && it.hasNext()) {
+            Entry eldest = it.next().getValue();
+            it.remove();
+            bytesHeld -= eldest.bytes;
+            evictions++;
+        }
+    }
+
+    private static byte[] readArt(Path file) {
+        try {
+            Mp3HeaderReader.AlbumArt art = Mp3HeaderReader.readAlbumArt(file);
+            if (art != null && art.data().length > 0 && art.mimeType() != null && art.mimeType().startsWith("image/")) {
+                return art.data();
+            }
+        } catch (Exception e) {
+            System.err.println("Failed to read album art for: " + file + " - " + e.getMessage());
+        }
+        return null;
+    }
+
+    private static Image decode(byte[] data) {
+        try {
+            Image image = new Image(new ByteArrayInputStream(data), ART_SIZE, ART_SIZE, true, true);
+            return image.isError() ? null : image;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static String hash(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-1").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record Entry(Image image, long bytes) {}
+}
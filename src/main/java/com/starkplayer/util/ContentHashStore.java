@@ -0,0 +1,117 @@
+package com.starkplayer.util;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persistent record of where each file's audio stream sits and, once it has
+ * been hashed, the hash of that stream. Keyed by absolute path and
+ * invalidated by file size and last-modified time, like {@link MetadataCache},
+ * and stored the same way in a {@link RecordJournal}: CRC-protected records
+ * appended as they are produced, with a torn tail dropped on load and
+ * {@link #save()} compacting into a fresh file.
+ *
+ * Files whose audio length was unique when last seen are recorded without
+ * a hash, so a later run only hashes them if a file of the same length turns up.
+ */
+public class ContentHashStore {
+
+    private static final int MAGIC = 0x53504348; // "SPCH"
+    private static final int VERSION = 1;
+    private static final int MAX_RECORD_SIZE = 1 << 16;
+    private static final byte[] NO_HASH = new byte[0];
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final RecordJournal<Entry> journal;
+
+    public ContentHashStore(Path storeFile) {
+        this.journal = new RecordJournal<>(storeFile, MAGIC, VERSION, MAX_RECORD_SIZE, "content hash store",
+                CODEC, entry -> entries.put(entry.path, entry));
+    }
+
+    public static Path defaultFile() {
+        return Paths.get(System.getProperty("user.home"), ".starkplayer", "content-hashes");
+    }
+
+    /**
+     * Returns the entry for {@code file} if it was recorded with the given
+     * size and mtime, or null.
+     */
+    public Entry lookup(Path file, long size, long mtime) {
+        ensureLoaded();
+        Entry entry = entries.get(key(file));
+        return entry != null && entry.size == size && entry.mtime == mtime ? entry : null;
+    }
+
+    /**
+     * Records the file's audio region and, if non-null, its hash.
+     */
+    public Entry put(Path file, long size, long mtime, long audioOffset, long audioLength, byte[] hash) {
+        ensureLoaded();
+        Entry entry = new Entry(key(file), size, mtime, audioOffset, audioLength, hash != null ? hash : NO_HASH);
+        entries.put(entry.path, entry);
+        try {
+            journal.append(entry);
+        } catch (IOException e) {
+            System.err.println("Failed to record content hash for: " + file + " - " + e.getMessage());
+        }
+        return entry;
+    }
+
+    public int size() { ensureLoaded(); return entries.size(); }
+
+    /**
+     * Compacts the journal: writes every live entry to a temporary file and
+     * atomically moves it over the store file.
+     */
+    public void save() {
+        if (!journal.isLoaded()) return;
+        try {
+            journal.compact(entries.values());
+        } catch (IOException e) {
+            System.err.println("Failed to save content hashes: " + e.getMessage());
+        }
+    }
+
+    private void ensureLoaded() {
+        journal.ensureLoaded();
+    }
+
+    private static final RecordJournal.Codec<Entry> CODEC = new RecordJournal.Codec<>() {
+        @Override
+        public void encode(Entry entry, DataOutputStream out) throws IOException {
+            out.writeUTF(entry.path);
+            out.writeLong(entry.size);
+            out.writeLong(entry.mtime);
+            out.writeLong(entry.audioOffset);
+            out.writeLong(entry.audioLength);
+            out.writeByte(entry.hash.length);
+            out.write(entry.hash);
+        }
+
+        @Override
+        public Entry decode(DataInputStream in) throws IOException {
+            String path = in.readUTF();
+            long size = in.readLong();
+            long mtime = in.readLong();
+            long audioOffset = in.readLong();
+            long audioLength = in.readLong();
+            byte[] hash = new byte[in.readUnsignedByte()];
+            in.readFully(hash);
+            return new Entry(path, size, mtime, audioOffset, audioLength, hash);
+        }
+    };
+
+    private static String key(Path file) {
+        return file.toAbsolutePath().normalize().toString();
+    }
+
+    /** A file's audio region, with an empty hash until it has been hashed. */
+    public record Entry(String path, long size, long mtime, long audioOffset, long audioLength, byte[] hash) {
+        public boolean isHashed() {
+            return hash.length > 0;
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package com.starkplayer.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Finds tracks with identical audio, regardless of their tags or paths.
+ *
+ * Only the audio stream is compared: the leading ID3v2 tag and the trailing
+ * ID3v1 block are left out, so a retagged copy still matches. Files are first
+ * bucketed by the length of their audio stream and only buckets holding two
+ * or more files are hashed, which skips most of a typical library. Hashing
+ * runs on a fork-join pool, one task per memory-mapped chunk, and the file's
+ * hash is the SHA-256 of its chunk hashes. Regions and hashes are kept in a
+ * {@link ContentHashStore} so later runs only read new or changed files.
+ */
+public class DuplicateFinder {
+
+    private static final long CHUNK_SIZE = 4L << 20;
+    private static final int REGION_BATCH = 64;
+
+    private static final Metrics.Histogram FIND_TIME = Metrics.histogram("duplicates.time");
+    private static final Metrics.Counter BYTES_HASHED = Metrics.counter("duplicates.bytes-hashed");
+
+    private final ContentHashStore store;
+    private final ForkJoinPool pool;
+
+    public DuplicateFinder(ContentHashStore store) {
+        this(store, Math.max(2, Runtime.getRuntime().availableProcessors()));
+    }
+
+    public DuplicateFinder(ContentHashStore store, int parallelism) {
+        this.store = store;
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Checks {@code files} against each other and returns the groups of
+     * duplicates. Blocks until done; unreadable files are skipped.
+     */
+    public Result find(Collection<Path> files) {
+        long start = System.nanoTime();
+        List<Candidate> candidates = new ArrayList<>(files.size());
+        for (Path file : files) candidates.add(new Candidate(file));
+        pool.invoke(new RegionTask(candidates, 0, candidates.size()));
+
+        Map<Long, List<Candidate>> buckets = new HashMap<>();
+        for (Candidate c : candidates) {
+            if (c.entry != null && c.entry.audioLength() > 0) {
+                buckets.computeIfAbsent(c.entry.audioLength(), k -> new ArrayList<>()).add(c);
+            }
+        }
+
+        Result result = new Result();
+        result.filesChecked = candidates.size();
+        List<FileHashTask> hashing = new ArrayList<>();
+        for (List<Candidate> bucket : buckets.values()) {
+            if (bucket.size() < 2) continue;
+            for (Candidate c : bucket) {
+                if (c.entry.isHashed()) {
+                    result.cachedHashes++;
+                } else {
+                    hashing.add(new FileHashTask(c, result.bytesHashed));
+                }
+            }
+        }
+        long hashStart = System.nanoTime();
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(hashing);
+            }
+        });
+        result.hashNanos = System.nanoTime() - hashStart;
+
+        // Record what changed: fresh regions, and hashes for the files just read
+        for (Candidate c : candidates) {
+            if (c.entry == null) continue;
+            if (c.hash != null) {
+                c.entry = store.put(c.file, c.entry.size(), c.entry.mtime(), c.entry.audioOffset(),
+                        c.entry.audioLength(), c.hash);
+                result.filesHashed++;
+            } else if (!c.stored) {
+                store.put(c.file, c.entry.size(), c.entry.mtime(), c.entry.audioOffset(),
+                        c.entry.audioLength(), null);
+            }
+        }
+
+        for (List<Candidate> bucket : buckets.values()) {
+            if (bucket.size() < 2) continue;
+            Map<ByteBuffer, List<Path>> byHash = new HashMap<>();
+            for (Candidate c : bucket) {
+                if (c.entry.isHashed()) {
+                    byHash.computeIfAbsent(ByteBuffer.wrap(c.entry.hash()), k -> new ArrayList<>()).add(c.file);
+                }
+            }
+            for (List<Path> group : byHash.values()) {
+                if (group.size() < 2) continue;
+                group.sort(Comparator.naturalOrder());
+                result.groups.add(group);
+                result.duplicateBytes += (group.size() - 1) * bucket.get(0).entry.audioLength();
+            }
+        }
+        result.groups.sort(Comparator.comparing(group -> group.get(0)));
+        result.elapsedNanos = System.nanoTime() - start;
+        FIND_TIME.record(result.elapsedNanos);
+        BYTES_HASHED.add(result.bytesHashed.get());
+        return result;
+    }
+
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /** Outcome of one {@link #find} run. */
+    public static final class Result {
+        private final List<List<Path>> groups = new ArrayList<>();
+        private final AtomicLong bytesHashed = new AtomicLong();
+        private int filesChecked;
+        private int filesHashed;
+        private int cachedHashes;
+        private long duplicateBytes;
+        private long elapsedNanos;
+        private long hashNanos;
+
+        /** Groups of two or more files with the same audio, each sorted by path. */
+        public List<List<Path>> getGroups() { return groups; }
+        public int getFilesChecked() { return filesChecked; }
+        public int getFilesHashed() { return filesHashed; }
+        public int getCachedHashes() { return cachedHashes; }
+        public long getBytesHashed() { return bytesHashed.get(); }
+        /** Audio bytes taken up by copies beyond the first in each group. */
+        public long getDuplicateBytes() { return duplicateBytes; }
+        public double getElapsedMillis() { return elapsedNanos / 1e6; }
+
+        /** Hashing throughput, over the time spent hashing. */
+        public double getMegabytesPerSecond() {
+            return hashNanos == 0 ? 0 : bytesHashed.get() / (1024.0 * 1024.0) / (hashNanos / 1e9);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d duplicate groups in %d files, %d hashed (%d cached), %.1f MB at %.0f MB/s in %.0f ms",
+                    groups.size(), filesChecked, filesHashed, cachedHashes,
+                    getBytesHashed() / (1024.0 * 1024.0), getMegabytesPerSecond(), getElapsedMillis());
+        }
+    }
+
+    private static final class Candidate {
+        final Path file;
+        ContentHashStore.Entry entry;
+        boolean stored;
+        byte[] hash;
+
+        Candidate(Path file) {
+            this.file = file;
+        }
+    }
+
+    /** Reads sizes and audio regions, from the store where it is still valid. */
+    @SuppressWarnings("serial")
+    private final class RegionTask extends RecursiveAction {
+        private final List<Candidate> candidates;
+        private final int from;
+        private final int to;
+
+        RegionTask(List<Candidate> candidates, int from, int to) {
+            this.candidates = candidates;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > REGION_BATCH) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new RegionTask(candidates, from, mid), new RegionTask(candidates, mid, to));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                Candidate c = candidates.get(i);
+                try {
+                    BasicFileAttributes attrs = Files.readAttributes(c.file, BasicFileAttributes.class);
+                    long mtime = attrs.lastModifiedTime().toMillis();
+                    c.entry = store.lookup(c.file, attrs.size(), mtime);
+                    c.stored = c.entry != null;
+                    if (c.entry == null) {
+                        try (FileChannel channel = FileChannel.open(c.file, StandardOpenOption.READ)) {
+                            Mp3HeaderReader.AudioRegion region = Mp3HeaderReader.audioRegion(channel);
+                            c.entry = new ContentHashStore.Entry(c.file.toString(), attrs.size(), mtime,
+                                    region.offset(), region.length(), new byte[0]);
+                        }
+                    }
+                } catch (IOException e) {
+                    System.err.println("Skipping for duplicate check: " + c.file + " - " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /** Hashes one file's audio region, forking a task per chunk. */
+    @SuppressWarnings("serial")
+    private static final class FileHashTask extends RecursiveAction {
+        private final Candidate candidate;
+        private final AtomicLong bytesHashed;
+
+        FileHashTask(Candidate candidate, AtomicLong bytesHashed) {
+            this.candidate = candidate;
+            this.bytesHashed = bytesHashed;
+        }
+
+        @Override
+        protected void compute() {
+            long offset = candidate.entry.audioOffset();
+            long length = candidate.entry.audioLength();
+            try (FileChannel channel = FileChannel.open(candidate.file, StandardOpenOption.READ)) {
+                if (channel.size() < offset + length) {
+                    throw new IOException("File shrank while checking for duplicates");
+                }
+                List<ChunkTask> chunks = new ArrayList<>();
+                for (long pos = 0; pos < length; pos += CHUNK_SIZE) {
+                    chunks.add(new ChunkTask(channel, offset + pos, Math.min(CHUNK_SIZE, length - pos)));
+                }
+                ForkJoinTask.invokeAll(chunks);
+                MessageDigest digest = sha256();
+                for (ChunkTask chunk : chunks) {
+                    digest.update(chunk.join());
+                }
+                candidate.hash = digest.digest();
+                bytesHashed.addAndGet(length);
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Failed to hash: " + candidate.file + " - " + e.getMessage());
+            }
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static final class ChunkTask extends RecursiveTask<byte[]> {
+        private final FileChannel channel;
+        private final long position;
+        private final long length;
+
+        ChunkTask(FileChannel channel, long position, long length) {
+            this.channel = channel;
+            this.position = position;
+            this.length = length;
+        }
+
+        @Override
+        protected byte[] compute() {
+            try {
+                MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                MessageDigest digest = sha256();
+                digest.update(chunk);
+                return digest.digest();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
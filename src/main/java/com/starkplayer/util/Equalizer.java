@@ -0,0 +1,179 @@
+package com.starkplayer.util;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Ten-band graphic equalizer for interleaved float PCM: a low shelf, eight
+ * peaking filters and a high shelf (RBJ cookbook biquads) in series.
+ *
+ * Gains can be changed from any thread. Each change builds a new immutable
+ * coefficient set and publishes it with a compare-and-set; the audio thread
+ * picks it up at the start of the next block without locking. Filter state
+ * is kept across coefficient changes (transposed direct form II), so moving
+ * a slider does not reset the filters or click. {@link #process} allocates
+ * nothing and must only be called from one thread at a time.
+ */
+public class Equalizer {
+
+    public static final double[] BAND_FREQUENCIES = {60, 170, 310, 600, 1000, 3000, 6000, 12000, 14000, 16000};
+    public static final double MIN_GAIN_DB = -12;
+    public static final double MAX_GAIN_DB = 12;
+    public static final double Q = 1.0;
+
+    private static final int BANDS = BAND_FREQUENCIES.length;
+
+    private final float sampleRate;
+    private final int channels;
+    private final AtomicReference<Settings> settings;
+    // Per channel and band: the two state variables of each biquad
+    private final double[] z1;
+    private final double[] z2;
+
+    public Equalizer(float sampleRate, int channels) {
+        this.sampleRate = sampleRate;
+        this.channels = channels;
+        this.settings = new AtomicReference<>(new Settings(new double[BANDS], sampleRate));
+        this.z1 = new double[channels * BANDS];
+        this.z2 = new double[channels * BANDS];
+    }
+
+    public float getSampleRate() { return sampleRate; }
+    public int getChannels() { return channels; }
+
+    public double getGain(int band) {
+        return settings.get().gains[band];
+    }
+
+    public void setGain(int band, double gainDb) {
+        double gain = Math.max(MIN_GAIN_DB, Math.min(MAX_GAIN_DB, gainDb));
+        Settings current;
+        Settings next;
+        do {
+            current = settings.get();
+            if (current.gains[band] == gain) return;
+            double[] gains = current.gains.clone();
+            gains[band] = gain;
+            next = new Settings(gains, sampleRate);
+        } while (!settings.compareAndSet(current, next));
+    }
+
+    /** True when every band is at 0 dB, so {@link #process} can be skipped. */
+    public boolean isFlat() {
+        return settings.get().flat;
+    }
+
+    /** Clears the filter history, e.g. after a seek. */
+    public void reset() {
+        Arrays.fill(z1, 0);
+        Arrays.fill(z2, 0);
+    }
+
+    /**
+     * Filters {@code frames} interleaved frames in place, starting at
+     * {@code offset}.
+     */
+    public void process(float[] pcm, int offset, int frames) {
+        double[] c = settings.get().coefficients; // one snapshot per block
+        int end = offset + frames * channels;
+        for (int ch = 0; ch < channels; ch++) {
+            for (int band = 0; band < BANDS; band++) {
+                int k = band * 5;
+                double b0 = c[k], b1 = c[k + 1], b2 = c[k + 2], a1 = c[k + 3], a2 = c[k + 4];
+                int s = ch * BANDS + band;
+                double s1 = z1[s], s2 = z2[s];
+                for (int i = offset + ch; i < end; i += channels) {
+                    double x = pcm[i];
+                    double y = b0 * x + s1;
+                    s1 = b1 * x - a1 * y + s2;
+                    s2 = b2 * x - a2 * y;
+                    pcm[i] = (float) y;
+                }
+                // Keep denormals out of the recursion once the input goes silent
+                z1[s] = Math.abs(s1) < 1e-25 ? 0 : s1;
+                z2[s] = Math.abs(s2) < 1e-25 ? 0 : s2;
+            }
+        }
+    }
+
+    /**
+     * Gain of the whole chain at {@code frequency}, in dB, from the current
+     * coefficients.
+     */
+    public double responseDb(double frequency) {
+        double[] c = settings.get().coefficients;
+        double w = 2 * Math.PI * frequency / sampleRate;
+        double cos1 = Math.cos(w), sin1 = Math.sin(w), cos2 = Math.cos(2 * w), sin2 = Math.sin(2 * w);
+        double db = 0;
+        for (int band = 0; band < BANDS; band++) {
+            int k = band * 5;
+            double nr = c[k] + c[k + 1] * cos1 + c[k + 2] * cos2;
+            double ni = -(c[k + 1] * sin1 + c[k + 2] * sin2);
+            double dr = 1 + c[k + 3] * cos1 + c[k + 4] * cos2;
+            double di = -(c[k + 3] * sin1 + c[k + 4] * sin2);
+            db += 10 * Math.log10((nr * nr + ni * ni) / (dr * dr + di * di));
+        }
+        return db;
+    }
+
+    /** Immutable gains and the biquad coefficients derived from them, normalised by a0. */
+    private static final class Settings {
+        final double[] gains;
+        final double[] coefficients = new double[BANDS * 5];
+        final boolean flat;
+
+        Settings(double[] gains, float sampleRate) {
+            this.gains = gains;
+            boolean allFlat = true;
+            for (int band = 0; band < BANDS; band++) {
+                if (gains[band] != 0) allFlat = false;
+                // Bands above Nyquist at low sample rates are pulled just below it
+                double f0 = Math.min(BAND_FREQUENCIES[band], sampleRate * 0.45);
+                design(band, f0, gains[band], sampleRate);
+            }
+            this.flat = allFlat;
+        }
+
+        private void design(int band, double f0, double gainDb, float sampleRate) {
+            double a = Math.pow(10, gainDb / 40);
+            double w0 = 2 * Math.PI * f0 / sampleRate;
+            double cos = Math.cos(w0);
+            double sin = Math.sin(w0);
+            double b0, b1, b2, a0, a1, a2;
+            if (band == 0 || band == BANDS - 1) {
+                // Shelves with slope 1
+                double alpha = sin / 2 * Math.sqrt(2);
+                double twoSqrtAAlpha = 2 * Math.sqrt(a) * alpha;
+                if (band == 0) {
+                    b0 = a * ((a + 1) - (a - 1) * cos + twoSqrtAAlpha);
+                    b1 = 2 * a * ((a - 1) - (a + 1) * cos);
+                    b2 = a * ((a + 1) - (a - 1) * cos - twoSqrtAAlpha);
+                    a0 = (a + 1) + (a - 1) * cos + twoSqrtAAlpha;
+                    a1 = -2 * ((a - 1) + (a + 1) * cos);
+                    a2 = (a + 1) + (a - 1) * cos - twoSqrtAAlpha;
+                } else {
+                    b0 = a * ((a + 1) + (a - 1) * cos + twoSqrtAAlpha);
+                    b1 = -2 * a * ((a - 1) + (a + 1) * cos);
+                    b2 = a * ((a + 1) + (a - 1) * cos - twoSqrtAAlpha);
+                    a0 = (a + 1) - (a - 1) * cos + twoSqrtAAlpha;
+                    a1 = 2 * ((a - 1) - (a + 1) * cos);
+                    a2 = (a + 1) - (a - 1) * cos - twoSqrtAAlpha;
+                }
+            } else {
+                double alpha = sin / (2 * Q);
+                b0 = 1 + alpha * a;
+                b1 = -2 * cos;
+                b2 = 1 - alpha * a;
+                a0 = 1 + alpha / a;
+                a1 = -2 * cos;
+                a2 = 1 - alpha / a;
+            }
+            int k = band * 5;
+            coefficients[k] = b0 / a0;
+            coefficients[k + 1] = b1 / a0;
+            coefficients[k + 2] = b2 / a0;
+            coefficients[k + 3] = a1 / a0;
+            coefficients[k + 4] = a2 / a0;
+        }
+    }
+}
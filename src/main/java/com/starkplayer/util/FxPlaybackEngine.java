@@ -0,0 +1,127 @@
+package com.starkplayer.util;
+
+import javafx.scene.media.AudioEqualizer;
+import javafx.scene.media.EqualizerBand;
+import javafx.scene.media.Media;
+import javafx.scene.media.MediaPlayer;
+import javafx.util.Duration;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * {@link PlaybackEngine} on top of the JavaFX MediaPlayer. JavaFX decodes and
+ * outputs the audio itself, so the equalizer here is the player's native one,
+ * set up with the same bands as {@link Equalizer}.
+ */
+public class FxPlaybackEngine implements PlaybackEngine {
+
+    private final MediaPlayer player;
+    private final Executor events;
+    private Listener listener;
+    private volatile State state = State.OPENING;
+
+    public FxPlaybackEngine(Path file, Executor events) {
+        this.player = new MediaPlayer(new Media(file.toUri().toString()));
+        this.events = events;
+
+        List<EqualizerBand> bands = new ArrayList<>(Equalizer.BAND_FREQUENCIES.length);
+        for (double f : Equalizer.BAND_FREQUENCIES) {
+            bands.add(new EqualizerBand(f, f / Equalizer.Q, 0));
+        }
+        AudioEqualizer eq = player.getAudioEqualizer();
+        eq.getBands().setAll(bands);
+        eq.setEnabled(true);
+
+        player.setOnReady(() -> changeState(State.READY));
+        player.setOnEndOfMedia(() -> {
+            state = State.FINISHED;
+            events.execute(() -> {
+                if (listener != null) listener.onEndOfMedia();
+            });
+        });
+        player.setOnError(() -> {
+            state = State.FAILED;
+            String message = player.getError() != null ? player.getError().getMessage() : "Unknown media error";
+            events.execute(() -> {
+                if (listener != null) listener.onError(message);
+            });
+        });
+        player.statusProperty().addListener((obs, oldStatus, newStatus) -> {
+            switch (newStatus) {
+                case PLAYING: changeState(State.PLAYING); break;
+                case PAUSED: changeState(State.PAUSED); break;
+                case STOPPED: changeState(State.STOPPED); break;
+                case HALTED: state = State.FAILED; break;
+                default: break;
+            }
+        });
+        player.currentTimeProperty().addListener((obs, o, time) -> {
+            events.execute(() -> {
+                if (listener != null) listener.onPosition(time.toSeconds());
+            });
+        });
+    }
+
+    private void changeState(State next) {
+        state = next;
+        events.execute(() -> {
+            if (listener != null) listener.onStateChanged(next);
+        });
+    }
+
+    @Override
+    public void setListener(Listener listener) {
+        this.listener = listener;
+        if (state == State.READY) changeState(State.READY);
+    }
+
+    @Override
+    public void setSpectrumListener(int bands, double intervalSeconds, SpectrumListener listener) {
+        player.setAudioSpectrumInterval(intervalSeconds);
+        player.setAudioSpectrumNumBands(bands);
+        player.setAudioSpectrumListener(listener == null ? null
+                : (timestamp, duration, magnitudes, phases) -> listener.onSpectrum(magnitudes));
+    }
+
+    @Override public void play() { player.play(); }
+    @Override public void pause() { player.pause(); }
+    @Override public void stop() { player.stop(); }
+    @Override public void seek(double seconds) { player.seek(Duration.seconds(seconds)); }
+
+    @Override
+    public State getState() {
+        return state;
+    }
+
+    @Override
+    public double getPosition() {
+        return player.getCurrentTime().toSeconds();
+    }
+
+    @Override
+    public double getDuration() {
+        Duration d = player.getMedia().getDuration();
+        return d == null || d.isUnknown() || d.isIndefinite() ? Double.NaN : d.toSeconds();
+    }
+
+    @Override
+    public void setVolume(double volume) {
+        player.setVolume(volume);
+    }
+
+    @Override
+    public void setEqualizerGain(int band, double gainDb) {
+        List<EqualizerBand> bands = player.getAudioEqualizer().getBands();
+        if (band < bands.size()) bands.get(band).setGain(gainDb);
+    }
+
+    @Override
+    public void dispose() {
+        listener = null;
+        player.stop();
+        player.dispose();
+    }
+}
@@ -0,0 +1,140 @@
+package com.starkplayer.util;
+
+import com.starkplayer.model.Song;
+import javafx.collections.ModifiableObservableListBase;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The library as an observable list of songs. Unlike
+ * FXCollections.observableArrayList, scattered replacements and removals
+ * are applied in one pass and reported as one change, so listeners such as
+ * the sorted playlist view do their work once per batch rather than once
+ * per song. Bulk adds and range removals move the backing array once.
+ *
+ * Use it from the FX thread.
+ */
+public final class LibraryList extends ModifiableObservableListBase<Song> {
+
+    private final ArrayList<Song> songs = new ArrayList<>();
+
+    @Override
+    public Song get(int index) {
+        return songs.get(index);
+    }
+
+    @Override
+    public int size() {
+        return songs.size();
+    }
+
+    /**
+     * Puts {@code replacements.get(k)} at {@code indexes[k]} for every k, as
+     * one change; a folder rename arrives this way.
+     */
+    public void replace(int[] indexes, List<? extends Song> replacements) {
+        if (indexes.length != replacements.size()) {
+            throw new IllegalArgumentException(indexes.length + " indexes for " + replacements.size() + " songs");
+        }
+        for (int index : indexes) Objects.checkIndex(index, songs.size());
+        if (indexes.length == 0) return;
+        beginChange();
+        try {
+            for (int k = 0; k < indexes.length; k++) {
+                nextSet(indexes[k], songs.set(indexes[k], replacements.get(k)));
+            }
+        } finally {
+            endChange();
+        }
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends Song> c) {
+        return addAll(songs.size(), c);
+    }
+
+    @Override
+    public boolean addAll(int index, Collection<? extends Song> c) {
+        if (index < 0 || index > songs.size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + songs.size());
+        }
+        if (c.isEmpty()) return false;
+        beginChange();
+        try {
+            int before = songs.size();
+            songs.addAll(index, c);
+            modCount++;
+            nextAdd(index, index + songs.size() - before);
+        } finally {
+            endChange();
+        }
+        return true;
+    }
+
+    /** Removes every song in {@code c}, which should be a set, in one pass. */
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        beginChange();
+        try {
+            int n = songs.size();
+            int kept = 0;
+            for (int i = 0; i < n; i++) {
+                Song song = songs.get(i);
+                if (c.contains(song)) {
+                    nextRemove(kept, song);
+                } else {
+                    songs.set(kept++, song);
+                }
+            }
+            if (kept == n) return false;
+            songs.subList(kept, n).clear();
+            modCount++;
+            return true;
+        } finally {
+            endChange();
+        }
+    }
+
+    @Override
+    public void remove(int from, int to) {
+        Objects.checkFromToIndex(from, to, songs.size());
+        removeRange(from, to);
+    }
+
+    @Override
+    public void clear() {
+        removeRange(0, songs.size());
+    }
+
+    @Override
+    protected void removeRange(int from, int to) {
+        if (from == to) return;
+        beginChange();
+        try {
+            List<Song> range = songs.subList(from, to);
+            nextRemove(from, new ArrayList<>(range));
+            range.clear();
+            modCount++;
+        } finally {
+            endChange();
+        }
+    }
+
+    @Override
+    protected void doAdd(int index, Song song) {
+        songs.add(index, song);
+    }
+
+    @Override
+    protected Song doSet(int index, Song song) {
+        return songs.set(index, song);
+    }
+
+    @Override
+    protected Song doRemove(int index) {
+        return songs.remove(index);
+    }
+}
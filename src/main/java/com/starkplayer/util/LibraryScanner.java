@@ -0,0 +1,193 @@
+package com.starkplayer.util;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Walks directory trees in parallel on a fork-join pool and streams the MP3
+ * files it finds in small batches, so the playlist can fill in while the
+ * walk is still running.
+ */
+public class LibraryScanner {
+
+    private static final int BATCH_SIZE = 256;
+    private static final long BATCH_INTERVAL_NANOS = 30_000_000L;
+
+    private static final Metrics.Histogram SCAN_TIME = Metrics.histogram("scan.time");
+    private static final Metrics.Counter SCAN_FILES = Metrics.counter("scan.files");
+    private static final Metrics.Counter SCAN_DIRECTORIES = Metrics.counter("scan.directories");
+
+    private final ForkJoinPool pool;
+
+    public LibraryScanner() {
+        this(Math.max(2, Runtime.getRuntime().availableProcessors()));
+    }
+
+    public LibraryScanner(int parallelism) {
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Starts scanning the given roots. Batches are delivered on pool threads;
+     * {@code onDone} runs once after the last batch, also when cancelled.
+     */
+    public Scan scan(List<Path> roots, boolean followSymlinks, BiConsumer<Scan, List<Path>> onBatch,
+                     Consumer<Scan> onDone) {
+        Scan scan = new Scan(followSymlinks, onBatch);
+        pool.execute(() -> {
+            PlayerEvents.LibraryScan event = new PlayerEvents.LibraryScan();
+            event.begin();
+            List<DirectoryTask> tasks = new ArrayList<>();
+            for (Path root : roots) {
+                tasks.add(new DirectoryTask(scan, root));
+            }
+            RecursiveAction.invokeAll(tasks);
+            scan.finish();
+            record(scan, roots, event);
+            onDone.accept(scan);
+        });
+        return scan;
+    }
+
+    private static void record(Scan scan, List<Path> roots, PlayerEvents.LibraryScan event) {
+        SCAN_TIME.record(scan.endNanos - scan.startNanos);
+        SCAN_FILES.add(scan.getFilesFound());
+        SCAN_DIRECTORIES.add(scan.getDirectoriesVisited());
+        event.end();
+        if (event.shouldCommit()) {
+            event.roots = roots.toString();
+            event.files = scan.getFilesFound();
+            event.directories = scan.getDirectoriesVisited();
+            event.cancelled = scan.isCancelled();
+            event.commit();
+        }
+    }
+
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Handle for a running scan: cancellation and throughput counters.
+     */
+    public static class Scan {
+        private final boolean followSymlinks;
+        private final BiConsumer<Scan, List<Path>> onBatch;
+        private final Set<Path> visited = ConcurrentHashMap.newKeySet();
+        private final AtomicLong files = new AtomicLong();
+        private final AtomicLong directories = new AtomicLong();
+        private final long startNanos = System.nanoTime();
+        private volatile long endNanos = 0;
+        private volatile boolean cancelled = false;
+        private List<Path> pending = new ArrayList<>();
+        private long lastFlush = startNanos - BATCH_INTERVAL_NANOS; // first hit goes out immediately
+
+        Scan(boolean followSymlinks, BiConsumer<Scan, List<Path>> onBatch) {
+            this.followSymlinks = followSymlinks;
+            this.onBatch = onBatch;
+        }
+
+        public void cancel() { cancelled = true; }
+        public boolean isCancelled() { return cancelled; }
+        public boolean isDone() { return endNanos != 0; }
+        public long getFilesFound() { return files.get(); }
+        public long getDirectoriesVisited() { return directories.get(); }
+
+        public long getElapsedMillis() {
+            long end = endNanos != 0 ? endNanos : System.nanoTime();
+            return (end - startNanos) / 1_000_000;
+        }
+
+        public double getFilesPerSecond() {
+            long elapsed = Math.max(1, getElapsedMillis());
+            return files.get() * 1000.0 / elapsed;
+        }
+
+        private void found(Path file) {
+            files.incrementAndGet();
+            List<Path> batch = null;
+            synchronized (this) {
+                pending.add(file);
+                long now = System.nanoTime();
+                if (pending.size() >= BATCH_SIZE || now - lastFlush >= BATCH_INTERVAL_NANOS) {
+                    batch = pending;
+                    pending = new ArrayList<>();
+                    lastFlush = now;
+                }
+            }
+            deliver(batch);
+        }
+
+        private void finish() {
+            List<Path> batch;
+            synchronized (this) {
+                batch = pending;
+                pending = new ArrayList<>();
+            }
+            deliver(batch);
+            endNanos = System.nanoTime();
+        }
+
+        private void deliver(List<Path> batch) {
+            if (batch == null || batch.isEmpty() || cancelled) return;
+            batch.sort(null);
+            onBatch.accept(this, batch);
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static class DirectoryTask extends RecursiveAction {
+        private final Scan scan;
+        private final Path dir;
+
+        DirectoryTask(Scan scan, Path dir) {
+            this.scan = scan;
+            this.dir = dir;
+        }
+
+        @Override
+        protected void compute() {
+            if (scan.cancelled) return;
+            if (scan.followSymlinks) {
+                // Symlinked directories can form cycles; only enter each real directory once
+                try {
+                    if (!scan.visited.add(dir.toRealPath())) return;
+                } catch (IOException e) {
+                    return;
+                }
+            }
+            scan.directories.incrementAndGet();
+            List<DirectoryTask> subdirs = new ArrayList<>();
+            LinkOption[] options = scan.followSymlinks ? new LinkOption[0] : new LinkOption[] {LinkOption.NOFOLLOW_LINKS};
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+                for (Path entry : entries) {
+                    if (scan.cancelled) return;
+                    BasicFileAttributes attrs;
+                    try {
+                        attrs = Files.readAttributes(entry, BasicFileAttributes.class, options);
+                    } catch (IOException e) {
+                        continue;
+                    }
+                    if (attrs.isDirectory()) {
+                        subdirs.add(new DirectoryTask(scan, entry));
+                    } else if (attrs.isRegularFile() && entry.getFileName().toString().toLowerCase().endsWith(".mp3")) {
+                        scan.found(entry);
+                    }
+                }
+            } catch (IOException | DirectoryIteratorException e) {
+                System.err.println("Failed to scan directory: " + dir + " - " + e.getMessage());
+            }
+            invokeAll(subdirs);
+        }
+    }
+}
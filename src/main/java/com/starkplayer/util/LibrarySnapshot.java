@@ -0,0 +1,356 @@
+package com.starkplayer.util;
+
+import com.starkplayer.model.Song;
+import com.starkplayer.model.TrackStore;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Read-only, memory-mapped snapshot of the whole library, so startup does
+ * not have to touch the music folders.
+ *
+ * Layout (big-endian):
+ * <pre>
+ *   header       64 bytes: magic, version, counts, section positions, header CRC
+ *   block CRCs   one int per 64 KB block of everything that follows
+ *   string offsets  int[stringCount + 1] into the string data
+ *   string data  UTF-8, every distinct directory, file name and tag value once
+ *   columns      COLUMNS x trackCount ints, column-major: string ids and duration
+ *   roots        string ids of the folders the library was scanned from, watched after a restore
+ * </pre>
+ * Opening only checks the header and the block table. Each block is checked
+ * against its CRC the first time it is read, so a caller that reads only
+ * some rows only faults in the pages it used. The player restores a library
+ * through {@link TrackStore#restore}: its songs are handles whose store
+ * pages read their 1024 rows from here when first used, about 4 KB of
+ * each column, so startup reads what the list shows and the rest waits
+ * for a sort, a search or the next write. Reads lock the snapshot, since
+ * pages load on whichever thread uses them first.
+ */
+public class LibrarySnapshot implements TrackStore.Source {
+
+    private static final int MAGIC = 0x53504c53; // "SPLS"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 64;
+    private static final int BLOCK_SIZE = 64 * 1024;
+
+    private static final int COL_DIR = 0;
+    private static final int COL_FILE = 1;
+    private static final int COL_TITLE = 2;
+    private static final int COL_ARTIST = 3;
+    private static final int COL_ALBUM = 4;
+    private static final int COL_GENRE = 5;
+    private static final int COL_YEAR = 6;
+    private static final int COL_DURATION = 7;
+    private static final int COLUMNS = 8;
+
+    private static final Object WRITE_LOCK = new Object();
+
+    private final Path file;
+    private final MappedByteBuffer map;
+    private final int trackCount;
+    private final int stringCount;
+    private final int stringOffsetsPos;
+    private final int stringDataPos;
+    private final int columnsPos;
+    private final int rootCount;
+    private final int bodyStart;
+    private final BitSet verified;
+    private final String[] shared; // values repeated across tracks, decoded on first use
+    private final Path[] dirs;
+    private Consumer<IOException> onDamage;
+    private boolean damaged;
+
+    private LibrarySnapshot(Path file, MappedByteBuffer map) throws IOException {
+        this.file = file;
+        this.map = map;
+        if (map.capacity() < HEADER_SIZE || map.getInt(0) != MAGIC) {
+            throw new IOException("Not a library snapshot: " + file);
+        }
+        if (map.getInt(4) != VERSION) {
+            throw new IOException("Unsupported library snapshot version " + map.getInt(4) + ": " + file);
+        }
+        trackCount = map.getInt(8);
+        stringCount = map.getInt(12);
+        stringOffsetsPos = map.getInt(16);
+        stringDataPos = map.getInt(20);
+        columnsPos = map.getInt(24);
+        int fileLength = map.getInt(28);
+        int blockCount = map.getInt(32);
+        rootCount = map.getInt(36);
+        if (fileLength != map.capacity() || blockCount < 0 || blockCount > (fileLength - HEADER_SIZE) / 4
+                || rootCount < 0 || rootCount > (fileLength - HEADER_SIZE) / 4) {
+            throw new IOException("Library snapshot header is corrupt: " + file);
+        }
+        bodyStart = HEADER_SIZE + blockCount * 4;
+        CRC32 crc = new CRC32();
+        crc.update(map.slice(0, 60));
+        crc.update(map.slice(HEADER_SIZE, bodyStart - HEADER_SIZE));
+        if ((int) crc.getValue() != map.getInt(60)) {
+            throw new IOException("Library snapshot header is corrupt: " + file);
+        }
+        verified = new BitSet(blockCount);
+        shared = new String[stringCount];
+        dirs = new Path[stringCount];
+    }
+
+    public static Path defaultFile() {
+        return Paths.get(System.getProperty("user.home"), ".starkplayer", "library.snapshot");
+    }
+
+    /**
+     * Maps the snapshot and validates its header. Throws if the file is
+     * missing, from another version or damaged.
+     */
+    public static LibrarySnapshot open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Library snapshot too large: " + file);
+            }
+            // The mapping stays valid after the channel is closed
+            return new LibrarySnapshot(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        }
+    }
+
+    public Path getFile() { return file; }
+    public int size() { return trackCount; }
+
+    /**
+     * Called once, from the thread that was reading, when a restored page
+     * finds a block that fails its checksum. The page gets empty rows in
+     * place of the ones it could not read.
+     */
+    public synchronized void setDamageHandler(Consumer<IOException> onDamage) {
+        this.onDamage = onDamage;
+    }
+
+    /**
+     * Builds a Song for the given track with all of its tags read.
+     *
+     * @throws UncheckedIOException if a block it reads fails its checksum
+     */
+    public synchronized Song song(int index) {
+        Path dir = dir(column(COL_DIR, index));
+        Song song = new Song(dir.resolve(string(column(COL_FILE, index))), string(column(COL_TITLE, index)));
+        song.setArtist(shared(column(COL_ARTIST, index)));
+        song.setAlbum(shared(column(COL_ALBUM, index)));
+        song.setGenre(shared(column(COL_GENRE, index)));
+        song.setYear(shared(column(COL_YEAR, index)));
+        song.setDuration(column(COL_DURATION, index));
+        return song;
+    }
+
+    @Override
+    public synchronized void readFiles(int from, int count, TrackStore.FileSink sink) {
+        for (int i = 0; i < count; i++) {
+            Path dir = null;
+            String name = "";
+            try {
+                dir = dir(column(COL_DIR, from + i));
+                name = string(column(COL_FILE, from + i));
+            } catch (UncheckedIOException e) {
+                damaged(e);
+            }
+            sink.accept(i, dir, name);
+        }
+    }
+
+    @Override
+    public synchronized void readTags(int from, int count, TrackStore.TagSink sink) {
+        for (int i = 0; i < count; i++) {
+            int row = from + i;
+            try {
+                sink.accept(i, string(column(COL_TITLE, row)), shared(column(COL_ARTIST, row)),
+                        shared(column(COL_ALBUM, row)), shared(column(COL_GENRE, row)),
+                        shared(column(COL_YEAR, row)), column(COL_DURATION, row));
+            } catch (UncheckedIOException e) {
+                damaged(e);
+                sink.accept(i, null, null, null, null, null, 0);
+            }
+        }
+    }
+
+    private void damaged(UncheckedIOException e) {
+        if (damaged) return;
+        damaged = true;
+        if (onDamage != null) onDamage.accept(e.getCause());
+    }
+
+    /** Folders the library was scanned from, empty if it came from a playlist. */
+    public synchronized List<Path> getRoots() {
+        List<Path> roots = new ArrayList<>(rootCount);
+        int pos = columnsPos + COLUMNS * trackCount * 4;
+        for (int k = 0; k < rootCount; k++, pos += 4) {
+            verify(pos, 4);
+            roots.add(Paths.get(string(map.getInt(pos))));
+        }
+        return roots;
+    }
+
+    private int column(int column, int index) {
+        int pos = columnsPos + (column * trackCount + index) * 4;
+        verify(pos, 4);
+        return map.getInt(pos);
+    }
+
+    private Path dir(int id) {
+        Path dir = dirs[id];
+        if (dir == null) {
+            dir = dirs[id] = Paths.get(string(id));
+        }
+        return dir;
+    }
+
+    /** A value repeated across tracks, such as an artist, decoded once and shared. */
+    private String shared(int id) {
+        String s = shared[id];
+        if (s == null) {
+            s = shared[id] = string(id);
+        }
+        return s;
+    }
+
+    /** A fresh copy; titles and file names are nearly all distinct, so they are not kept here. */
+    private String string(int id) {
+        int offsetPos = stringOffsetsPos + id * 4;
+        verify(offsetPos, 8);
+        int start = map.getInt(offsetPos);
+        int end = map.getInt(offsetPos + 4);
+        byte[] bytes = new byte[end - start];
+        verify(stringDataPos + start, bytes.length);
+        map.get(stringDataPos + start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void verify(int pos, int length) {
+        int first = (pos - bodyStart) / BLOCK_SIZE;
+        int last = (pos + Math.max(1, length) - 1 - bodyStart) / BLOCK_SIZE;
+        for (int block = first; block <= last; block++) {
+            if (verified.get(block)) continue;
+            int start = bodyStart + block * BLOCK_SIZE;
+            CRC32 crc = new CRC32();
+            crc.update(map.slice(start, Math.min(BLOCK_SIZE, map.capacity() - start)));
+            if ((int) crc.getValue() != map.getInt(HEADER_SIZE + block * 4)) {
+                throw new UncheckedIOException(new IOException("Library snapshot block " + block + " is corrupt: " + file));
+            }
+            verified.set(block);
+        }
+    }
+
+    /**
+     * Writes a snapshot of the given songs to a temporary file and atomically
+     * moves it over {@code file}. Safe to call from any thread.
+     */
+    public static void write(Path file, List<Song> songs) throws IOException {
+        write(file, songs, List.of());
+    }
+
+    /** Like {@link #write(Path, List)}, recording the folders the songs were scanned from. */
+    public static void write(Path file, List<Song> songs, List<Path> roots) throws IOException {
+        int count = songs.size();
+        Dictionary dictionary = new Dictionary(count);
+        int[] columns = new int[COLUMNS * count];
+        for (int i = 0; i < count; i++) {
+            Song song = songs.get(i);
+            Path path = song.getFile().toAbsolutePath();
+            Path parent = path.getParent();
+            columns[COL_DIR * count + i] = dictionary.id(parent != null ? parent.toString() : "");
+            columns[COL_FILE * count + i] = dictionary.id(path.getFileName().toString());
+            columns[COL_TITLE * count + i] = dictionary.id(song.getTitle());
+            columns[COL_ARTIST * count + i] = dictionary.id(song.getArtist());
+            columns[COL_ALBUM * count + i] = dictionary.id(song.getAlbum());
+            columns[COL_GENRE * count + i] = dictionary.id(song.getGenre());
+            columns[COL_YEAR * count + i] = dictionary.id(song.getYear());
+            columns[COL_DURATION * count + i] = (int) Math.min(Integer.MAX_VALUE, Math.max(0, song.getDuration()));
+        }
+        int[] rootIds = new int[roots.size()];
+        for (int k = 0; k < rootIds.length; k++) rootIds[k] = dictionary.id(roots.get(k).toAbsolutePath().toString());
+        int stringCount = dictionary.size();
+        int[] offsets = dictionary.offsets();
+        ByteArrayOutputStream data = dictionary.data;
+
+        long bodyLength = 4L * (stringCount + 1) + data.size() + 4L * columns.length + 4L * rootIds.length;
+        int blockCount = (int) ((bodyLength + BLOCK_SIZE - 1) / BLOCK_SIZE);
+        long fileLength = HEADER_SIZE + 4L * blockCount + bodyLength;
+        if (fileLength > Integer.MAX_VALUE) {
+            throw new IOException("Library too large for a snapshot: " + count + " tracks");
+        }
+        int bodyStart = HEADER_SIZE + 4 * blockCount;
+        ByteBuffer buf = ByteBuffer.allocate((int) fileLength);
+        buf.position(bodyStart);
+        for (int i = 0; i <= stringCount; i++) buf.putInt(offsets[i]);
+        int stringDataPos = buf.position();
+        buf.put(data.toByteArray());
+        int columnsPos = buf.position();
+        buf.asIntBuffer().put(columns).put(rootIds);
+
+        CRC32 crc = new CRC32();
+        for (int block = 0; block < blockCount; block++) {
+            int start = bodyStart + block * BLOCK_SIZE;
+            crc.reset();
+            crc.update(buf.slice(start, (int) Math.min(BLOCK_SIZE, fileLength - start)));
+            buf.putInt(HEADER_SIZE + block * 4, (int) crc.getValue());
+        }
+        buf.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, count).putInt(12, stringCount)
+           .putInt(16, bodyStart).putInt(20, stringDataPos).putInt(24, columnsPos)
+           .putInt(28, (int) fileLength).putInt(32, blockCount).putInt(36, rootIds.length);
+        crc.reset();
+        crc.update(buf.slice(0, 60));
+        crc.update(buf.slice(HEADER_SIZE, bodyStart - HEADER_SIZE));
+        buf.putInt(60, (int) crc.getValue());
+
+        buf.clear();
+        synchronized (WRITE_LOCK) {
+            AtomicFiles.write(file, out -> AtomicFiles.writeFully(out, buf));
+        }
+    }
+
+    /** Assigns each distinct string an id and its UTF-8 bytes a range in one blob. */
+    private static class Dictionary {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final ByteArrayOutputStream data;
+        private int[] offsets = new int[1024];
+
+        Dictionary(int trackCount) {
+            data = new ByteArrayOutputStream(Math.max(1024, trackCount * 32));
+        }
+
+        int id(String s) {
+            Integer id = ids.get(s);
+            if (id == null) {
+                id = ids.size();
+                ids.put(s, id);
+                if (id + 1 >= offsets.length) offsets = Arrays.copyOf(offsets, offsets.length * 2);
+                offsets[id] = data.size();
+                data.writeBytes(s.getBytes(StandardCharsets.UTF_8));
+            }
+            return id;
+        }
+
+        int size() {
+            return ids.size();
+        }
+
+        /** Start offsets of every string plus the end of the last one. */
+        int[] offsets() {
+            offsets[ids.size()] = data.size();
+            return offsets;
+        }
+    }
+}
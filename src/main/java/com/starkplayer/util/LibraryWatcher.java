@@ -0,0 +1,394 @@
+package com.starkplayer.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches a loaded library folder and reports what changed on disk as a
+ * diff, so the playlist can be patched instead of reloaded.
+ *
+ * Every directory under the roots is registered with a {@link WatchService}
+ * (it is not recursive). Events only mark their directory dirty; once
+ * events have stopped for {@link #DEBOUNCE_NANOS}, or at the latest
+ * {@link #MAX_DELAY_NANOS} after the first one, each dirty directory is
+ * listed once and compared with the size and mtime last seen for its MP3s.
+ * A whole album copied in therefore arrives as one diff, with files that
+ * were still being written settled. A delete and a create of the same file
+ * (same file key, or the same size and mtime where the file system has no
+ * keys) are reported as a rename.
+ *
+ * An OVERFLOW event means events for that one directory were lost, so it
+ * is listed again and any subdirectories not seen before are walked; the
+ * rest of the library is not touched. Deleted subdirectories need no event
+ * from their parent, as their own watch key is cancelled.
+ */
+public class LibraryWatcher implements Closeable {
+
+    static final long DEBOUNCE_NANOS = 400_000_000L;
+    static final long MAX_DELAY_NANOS = 3_000_000_000L;
+
+    private static final Metrics.Counter EVENTS = Metrics.counter("watcher.events");
+    private static final Metrics.Counter OVERFLOWS = Metrics.counter("watcher.overflows");
+    private static final Metrics.Histogram FLUSH_TIME = Metrics.histogram("watcher.flush");
+
+    /**
+     * Receives diffs on the watcher thread.
+     */
+    public interface Listener {
+        void onChanges(LibraryWatcher watcher, Changes changes);
+    }
+
+    /**
+     * One batch of changes. Paths are absolute and only name MP3 files.
+     */
+    public static final class Changes {
+        private final List<Path> added;
+        private final List<Path> removed;
+        private final List<Path> modified;
+        private final Map<Path, Path> renamed;
+
+        Changes(List<Path> added, List<Path> removed, List<Path> modified, Map<Path, Path> renamed) {
+            this.added = Collections.unmodifiableList(added);
+            this.removed = Collections.unmodifiableList(removed);
+            this.modified = Collections.unmodifiableList(modified);
+            this.renamed = Collections.unmodifiableMap(renamed);
+        }
+
+        public List<Path> getAdded() { return added; }
+        public List<Path> getRemoved() { return removed; }
+        /** Files whose size or mtime changed; their tags need reading again. */
+        public List<Path> getModified() { return modified; }
+        /** Old path to new path. */
+        public Map<Path, Path> getRenamed() { return renamed; }
+
+        public boolean isEmpty() {
+            return added.isEmpty() && removed.isEmpty() && modified.isEmpty() && renamed.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d added, %d removed, %d modified, %d renamed",
+                    added.size(), removed.size(), modified.size(), renamed.size());
+        }
+    }
+
+    private final WatchService service;
+    private final List<Path> roots;
+    private final Set<Path> known;
+    private final Listener listener;
+    private final Thread thread;
+
+    // Watcher thread only
+    private final Map<WatchKey, Path> keys = new HashMap<>();
+    private final Map<Path, Map<Path, FileState>> directories = new HashMap<>();
+    private final Set<Path> dirty = new LinkedHashSet<>();
+    private final List<Path> pendingAdded = new ArrayList<>();
+
+    private volatile boolean closed = false;
+    private volatile long flushes = 0;
+    private volatile long overflows = 0;
+
+    private LibraryWatcher(List<Path> roots, Collection<Path> known, Listener listener) throws IOException {
+        this.service = FileSystems.getDefault().newWatchService();
+        this.roots = new ArrayList<>(roots.size());
+        for (Path root : roots) this.roots.add(root.toAbsolutePath());
+        // Files added from elsewhere are not this watcher's to report as removed
+        this.known = new HashSet<>(known.size() * 2);
+        for (Path p : known) {
+            Path abs = p.toAbsolutePath();
+            for (Path root : this.roots) {
+                if (abs.startsWith(root)) {
+                    this.known.add(abs);
+                    break;
+                }
+            }
+        }
+        this.listener = listener;
+        this.thread = new Thread(this::run, "library-watcher");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Starts watching {@code roots}. {@code known} are the files the caller
+     * already has; the first diff reports anything on disk that differs.
+     */
+    public static LibraryWatcher start(List<Path> roots, Collection<Path> known, Listener listener) throws IOException {
+        LibraryWatcher watcher = new LibraryWatcher(roots, known, listener);
+        watcher.thread.start();
+        return watcher;
+    }
+
+    public long getFlushes() { return flushes; }
+    public long getOverflows() { return overflows; }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            service.close();
+        } catch (IOException e) {
+            // Nothing left to release
+        }
+    }
+
+    private void run() {
+        try {
+            baseline();
+            long firstEvent = 0;
+            long lastEvent = 0;
+            while (!closed) {
+                WatchKey key;
+                if (firstEvent == 0) {
+                    key = service.take();
+                } else {
+                    long deadline = Math.min(lastEvent + DEBOUNCE_NANOS, firstEvent + MAX_DELAY_NANOS);
+                    long wait = deadline - System.nanoTime();
+                    key = wait > 0 ? service.poll(wait, TimeUnit.NANOSECONDS) : null;
+                }
+                if (key != null) {
+                    accept(key);
+                    lastEvent = System.nanoTime();
+                    if (firstEvent == 0) firstEvent = lastEvent;
+                } else if (firstEvent != 0) {
+                    flush();
+                    firstEvent = 0;
+                }
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            // Closed; stop quietly
+        }
+    }
+
+    /** Registers the tree and reports differences from what the caller knows. */
+    private void baseline() {
+        List<Path> present = new ArrayList<>();
+        for (Path root : roots) {
+            walk(root, present);
+        }
+        List<Path> added = new ArrayList<>();
+        for (Path p : present) {
+            if (!known.remove(p)) added.add(p);
+        }
+        // Whatever is left of the caller's files is no longer there
+        List<Path> removed = new ArrayList<>(known);
+        known.clear();
+        deliver(new Changes(added, removed, new ArrayList<>(), new LinkedHashMap<>()));
+    }
+
+    private void accept(WatchKey key) {
+        Path dir = keys.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            EVENTS.increment();
+            if (dir == null) continue;
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                overflows++;
+                OVERFLOWS.increment();
+                dirty.add(dir);
+                continue;
+            }
+            Path child = dir.resolve((Path) event.context());
+            dirty.add(dir);
+            if (directories.containsKey(child)) {
+                dirty.add(child); // a watched directory was deleted or renamed
+            } else if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE
+                    && Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+                // Watch new folders at once, or files copied into them raise no events
+                walk(child, pendingAdded);
+            }
+        }
+        if (!key.reset() && dir != null) {
+            // The directory itself is gone or unreachable
+            keys.remove(key);
+            dirty.add(dir);
+        }
+    }
+
+    private void flush() {
+        long start = System.nanoTime();
+        List<Path> added = new ArrayList<>(pendingAdded);
+        List<Path> removed = new ArrayList<>();
+        List<Path> modified = new ArrayList<>();
+        Map<Path, FileState> removedStates = new HashMap<>();
+        pendingAdded.clear();
+        for (Path dir : dirty) {
+            if (!Files.isDirectory(dir, LinkOption.NOFOLLOW_LINKS)) {
+                forget(dir, removed, removedStates);
+            } else if (directories.containsKey(dir)) {
+                rescan(dir, added, removed, modified, removedStates);
+            }
+        }
+        dirty.clear();
+        // Files that came and went within the window, or are still being written, are just new
+        Set<Path> addedSet = new HashSet<>(added);
+        if (removed.removeIf(addedSet::contains)) added.removeIf(p -> !isKnown(p));
+        modified.removeIf(addedSet::contains);
+        Map<Path, Path> renamed = pairRenames(added, removed, removedStates);
+        flushes++;
+        FLUSH_TIME.record(System.nanoTime() - start);
+        deliver(new Changes(added, removed, modified, renamed));
+    }
+
+    /**
+     * Lists one directory and diffs it against what was last seen. New
+     * subdirectories are walked.
+     */
+    private void rescan(Path dir, List<Path> added, List<Path> removed, List<Path> modified,
+                        Map<Path, FileState> removedStates) {
+        Map<Path, FileState> files = directories.get(dir);
+        Set<Path> seen = new HashSet<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+            for (Path entry : entries) {
+                BasicFileAttributes attrs;
+                try {
+                    attrs = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                } catch (IOException e) {
+                    continue;
+                }
+                if (attrs.isDirectory()) {
+                    if (!directories.containsKey(entry)) walk(entry, added);
+                } else if (attrs.isRegularFile() && isMp3(entry)) {
+                    seen.add(entry);
+                    FileState now = FileState.of(attrs);
+                    FileState before = files.put(entry, now);
+                    if (before == null) {
+                        added.add(entry);
+                    } else if (!before.sameContent(now)) {
+                        modified.add(entry);
+                    }
+                }
+            }
+        } catch (IOException | DirectoryIteratorException e) {
+            System.err.println("Failed to rescan directory: " + dir + " - " + e.getMessage());
+            return;
+        }
+        for (Iterator<Map.Entry<Path, FileState>> it = files.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Path, FileState> e = it.next();
+            if (!seen.contains(e.getKey())) {
+                removed.add(e.getKey());
+                removedStates.put(e.getKey(), e.getValue());
+                it.remove();
+            }
+        }
+    }
+
+    /** Registers {@code dir} and everything under it, collecting its MP3s. */
+    private void walk(Path dir, List<Path> found) {
+        try {
+            Files.walkFileTree(dir, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path d, BasicFileAttributes attrs) {
+                    if (directories.containsKey(d)) return FileVisitResult.SKIP_SUBTREE;
+                    try {
+                        keys.put(d.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                                StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY), d);
+                    } catch (IOException e) {
+                        System.err.println("Failed to watch directory: " + d + " - " + e.getMessage());
+                    }
+                    directories.put(d, new HashMap<>());
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (attrs.isRegularFile() && isMp3(file)) {
+                        directories.get(file.getParent()).put(file, FileState.of(attrs));
+                        found.add(file);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            System.err.println("Failed to walk directory: " + dir + " - " + e.getMessage());
+        }
+    }
+
+    /** Drops a directory that disappeared, with everything under it. */
+    private void forget(Path dir, List<Path> removed, Map<Path, FileState> removedStates) {
+        for (Iterator<Map.Entry<Path, Map<Path, FileState>>> it = directories.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Path, Map<Path, FileState>> e = it.next();
+            if (!e.getKey().startsWith(dir)) continue;
+            for (Map.Entry<Path, FileState> f : e.getValue().entrySet()) {
+                removed.add(f.getKey());
+                removedStates.put(f.getKey(), f.getValue());
+            }
+            it.remove();
+        }
+        keys.values().removeIf(d -> d.startsWith(dir));
+    }
+
+    /**
+     * Moves delete/create pairs of the same file from {@code added} and
+     * {@code removed} into the result.
+     */
+    private Map<Path, Path> pairRenames(List<Path> added, List<Path> removed, Map<Path, FileState> removedStates) {
+        Map<Path, Path> renamed = new LinkedHashMap<>();
+        if (added.isEmpty() || removed.isEmpty()) return renamed;
+        Map<Object, Path> byIdentity = new HashMap<>();
+        Set<Object> ambiguous = new HashSet<>();
+        for (Path old : removed) {
+            Object id = removedStates.get(old).identity();
+            if (byIdentity.put(id, old) != null) ambiguous.add(id);
+        }
+        for (Iterator<Path> it = added.iterator(); it.hasNext(); ) {
+            Path now = it.next();
+            FileState state = directories.get(now.getParent()).get(now);
+            Object id = state.identity();
+            if (ambiguous.contains(id)) continue;
+            Path old = byIdentity.remove(id);
+            if (old != null) {
+                renamed.put(old, now);
+                it.remove();
+            }
+        }
+        removed.removeIf(renamed::containsKey);
+        return renamed;
+    }
+
+    private boolean isKnown(Path file) {
+        Map<Path, FileState> files = directories.get(file.getParent());
+        return files != null && files.containsKey(file);
+    }
+
+    private void deliver(Changes changes) {
+        if (changes.isEmpty() || closed) return;
+        listener.onChanges(this, changes);
+    }
+
+    private static boolean isMp3(Path file) {
+        return file.getFileName().toString().toLowerCase().endsWith(".mp3");
+    }
+
+    private record FileState(long size, long mtime, Object fileKey) {
+        static FileState of(BasicFileAttributes attrs) {
+            return new FileState(attrs.size(), attrs.lastModifiedTime().toMillis(), attrs.fileKey());
+        }
+
+        boolean sameContent(FileState other) {
+            return size == other.size && mtime == other.mtime;
+        }
+
+        /** What a renamed file keeps: its file key, or failing that its size and mtime. */
+        Object identity() {
+            return fileKey != null ? fileKey : List.of(size, mtime);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.starkplayer.util;
+
+import com.starkplayer.model.Song;
+
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Persistent library cache of tag metadata, keyed by absolute path and
+ * invalidated by file size and last-modified time.
+ *
+ * The cache file is a {@link RecordJournal}: an append-only journal of
+ * CRC-protected records. A crash can at worst leave a torn record at the
+ * tail, which is discarded on the next load. {@link #save()} compacts the
+ * journal into a fresh file and atomically replaces the old one.
+ */
+public class MetadataCache {
+
+    private static final int MAGIC = 0x53504d43; // "SPMC"
+    private static final int VERSION = 1;
+    private static final int MAX_RECORD_SIZE = 1 << 20;
+
+    private static final MetadataCache SHARED = new MetadataCache(
+            Paths.get(System.getProperty("user.home"), ".starkplayer", "metadata.cache"));
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final RecordJournal<Entry> journal;
+
+    public MetadataCache(Path cacheFile) {
+        this.journal = new RecordJournal<>(cacheFile, MAGIC, VERSION, MAX_RECORD_SIZE, "metadata cache",
+                CODEC, entry -> entries.put(entry.path, entry));
+    }
+
+    public static MetadataCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * Fills the song from the cache if the file on disk still matches the
+     * cached size and mtime. Returns false on a miss.
+     */
+    public boolean lookup(Song song) {
+        ensureLoaded();
+        Path file = song.getFile();
+        Entry entry = entries.get(key(file));
+        if (entry != null) {
+            try {
+                BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+                if (attrs.size() == entry.size && attrs.lastModifiedTime().toMillis() == entry.mtime) {
+                    entry.applyTo(song);
+                    hits.incrementAndGet();
+                    return true;
+                }
+            } catch (IOException e) {
+                // Treat unreadable files as a miss
+            }
+        }
+        misses.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Records the song's current metadata against the file's size and mtime.
+     */
+    public void put(Song song) {
+        ensureLoaded();
+        Path file = song.getFile();
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+            Entry entry = new Entry(key(file), attrs.size(), attrs.lastModifiedTime().toMillis(),
+                    song.getTitle(), song.getArtist(), song.getAlbum(),
+                    song.getGenre(), song.getYear(), song.getDuration());
+            entries.put(entry.path, entry);
+            journal.append(entry);
+        } catch (IOException e) {
+            System.err.println("Failed to cache metadata for: " + file + " - " + e.getMessage());
+        }
+    }
+
+    public long getHits() { return hits.get(); }
+    public long getMisses() { return misses.get(); }
+    public int size() { ensureLoaded(); return entries.size(); }
+
+    /**
+     * Compacts the journal: writes every live entry to a temporary file and
+     * atomically moves it over the cache file.
+     */
+    public void save() {
+        if (!journal.isLoaded()) return;
+        try {
+            journal.compact(entries.values());
+        } catch (IOException e) {
+            System.err.println("Failed to save metadata cache: " + e.getMessage());
+        }
+    }
+
+    private void ensureLoaded() {
+        journal.ensureLoaded();
+    }
+
+    private static final RecordJournal.Codec<Entry> CODEC = new RecordJournal.Codec<>() {
+        @Override
+        public void encode(Entry entry, DataOutputStream out) throws IOException {
+            out.writeUTF(entry.path);
+            out.writeLong(entry.size);
+            out.writeLong(entry.mtime);
+            out.writeUTF(entry.title);
+            out.writeUTF(entry.artist);
+            out.writeUTF(entry.album);
+            out.writeUTF(entry.genre);
+            out.writeUTF(entry.year);
+            out.writeLong(entry.duration);
+        }
+
+        @Override
+        public Entry decode(DataInputStream in) throws IOException {
+            return new Entry(in.readUTF(), in.readLong(), in.readLong(), in.readUTF(), in.readUTF(),
+                    in.readUTF(), in.readUTF(), in.readUTF(), in.readLong());
+        }
+    };
+
+    private static String key(Path file) {
+        return file.toAbsolutePath().normalize().toString();
+    }
+
+    private record Entry(String path, long size, long mtime, String title, String artist,
+                         String album, String genre, String year, long duration) {
+        void applyTo(Song song) {
+            song.setTitle(title);
+            song.setArtist(artist);
+            song.setAlbum(album);
+            song.setGenre(genre);
+            song.setYear(year);
+            song.setDuration(duration);
+        }
+    }
+}
@@ -4,34 +4,116 @@ import com.mpatric.mp3agic.ID3v1;
 import com.mpatric.mp3agic.ID3v2;
 import com.mpatric.mp3agic.Mp3File;
 import com.starkplayer.model.Song;
-import javafx.scene.image.Image;
 
-import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 
 public class MetadataExtractor {
+
+    private static final String CACHED = "cached";
+    private static final String HEADER = "header";
+    private static final String FULL_SCAN = "full-scan";
+    private static final String FAILED = "failed";
+
+    private static final Metrics.Histogram CACHED_TIME = Metrics.histogram("metadata.cached");
+    private static final Metrics.Histogram HEADER_TIME = Metrics.histogram("metadata.header");
+    private static final Metrics.Histogram FULL_SCAN_TIME = Metrics.histogram("metadata.full-scan");
+    private static final Metrics.Histogram FAILED_TIME = Metrics.histogram("metadata.failed");
     
     public static void extractMetadata(Song song) {
-        try {
-            File file = song.getFile().toFile();
-            Mp3File mp3file = new Mp3File(file);
-            
-            if (mp3file.hasId3v2Tag()) {
-                ID3v2 id3v2Tag = mp3file.getId3v2Tag();
-                extractFromID3v2(song, id3v2Tag);
-            } else if (mp3file.hasId3v1Tag()) {
-                ID3v1 id3v1Tag = mp3file.getId3v1Tag();
-                extractFromID3v1(song, id3v1Tag);
+        PlayerEvents.MetadataRead event = new PlayerEvents.MetadataRead();
+        event.begin();
+        long start = System.nanoTime();
+        String outcome;
+        MetadataCache cache = MetadataCache.shared();
+        if (cache.lookup(song)) {
+            outcome = CACHED;
+        } else {
+            try {
+                outcome = read(song) ? HEADER : FULL_SCAN;
+                cache.put(song);
+            } catch (Exception e) {
+                // If metadata extraction fails, use defaults
+                outcome = FAILED;
+                System.err.println("Failed to extract metadata for: " + song.getFile() + " - " + e.getMessage());
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        switch (outcome) {
+            case CACHED: CACHED_TIME.record(elapsed); break;
+            case HEADER: HEADER_TIME.record(elapsed); break;
+            case FULL_SCAN: FULL_SCAN_TIME.record(elapsed); break;
+            default: FAILED_TIME.record(elapsed); break;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.file = song.getFile().toString();
+            try {
+                event.fileSize = Files.size(song.getFile());
+            } catch (IOException e) {
+                event.fileSize = -1;
             }
-            
-            // Set duration
-            if (mp3file.getLengthInSeconds() > 0) {
-                song.setDuration(mp3file.getLengthInSeconds());
+            event.trackLength = song.getDuration();
+            event.outcome = outcome;
+            event.commit();
+        }
+    }
+    
+    /**
+     * Reads the file's tags into the song, bypassing the cache. Header-only
+     * read first; only files without a usable header need a full frame scan.
+     */
+    public static void readTags(Song song) throws Exception {
+        read(song);
+    }
+
+    /** {@link #readTags}, returning false when it had to fall back to mp3agic. */
+    private static boolean read(Song song) throws Exception {
+        Mp3HeaderReader.Tags tags = Mp3HeaderReader.read(song.getFile());
+        if (tags != null) {
+            extractFromHeaders(song, tags);
+            return true;
+        }
+        extractWithMp3agic(song);
+        return false;
+    }
+
+    /**
+     * Full-scan path through mp3agic, which walks every MPEG frame. Kept as
+     * the fallback for files the header reader can't handle.
+     */
+    public static void extractWithMp3agic(Song song) throws Exception {
+        File file = song.getFile().toFile();
+        Mp3File mp3file = new Mp3File(file);
+        
+        if (mp3file.hasId3v2Tag()) {
+            ID3v2 id3v2Tag = mp3file.getId3v2Tag();
+            extractFromID3v2(song, id3v2Tag);
+        } else if (mp3file.hasId3v1Tag()) {
+            ID3v1 id3v1Tag = mp3file.getId3v1Tag();
+            extractFromID3v1(song, id3v1Tag);
+        }
+        
+        // Set duration
+        if (mp3file.getLengthInSeconds() > 0) {
+            song.setDuration(mp3file.getLengthInSeconds());
+        }
+    }
+    
+    private static void extractFromHeaders(Song song, Mp3HeaderReader.Tags tags) {
+        if (tags.hasId3v2() || tags.hasId3v1()) {
+            String title = tags.getTitle();
+            if (title != null && !title.trim().isEmpty()) {
+                song.setTitle(title.trim());
             }
-            
-        } catch (Exception e) {
-            // If metadata extraction fails, use defaults
-            System.err.println("Failed to extract metadata for: " + song.getFile() + " - " + e.getMessage());
+            song.setArtist(tags.getArtist());
+            song.setAlbum(tags.getAlbum());
+            song.setGenre(tags.getGenre() != null ? tags.getGenre() : "");
+            song.setYear(tags.getYear() != null ? tags.getYear() : "");
+        }
+        if (tags.getDurationSeconds() > 0) {
+            song.setDuration(tags.getDurationSeconds());
         }
     }
     
@@ -57,20 +139,6 @@ public class MetadataExtractor {
         // Extract year
         String year = tag.getYear();
         song.setYear(year != null ? year : "");
-        
-        // Extract album art
-        byte[] imageData = tag.getAlbumImage();
-        if (imageData != null && imageData.length > 0) {
-            try {
-                String mimeType = tag.getAlbumImageMimeType();
-                if (mimeType != null && (mimeType.startsWith("image/"))) {
-                    Image image = new Image(new ByteArrayInputStream(imageData), 200, 200, true, true);
-                    song.setAlbumArt(image);
-                }
-            } catch (Exception e) {
-                // Ignore image loading errors
-            }
-        }
     }
     
     private static void extractFromID3v1(Song song, ID3v1 tag) {
@@ -0,0 +1,296 @@
+package com.starkplayer.util;
+
+import com.starkplayer.model.Song;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Runs {@link MetadataExtractor#extractMetadata} for the playlist, most
+ * wanted songs first: the song being played, then the rows on screen, then
+ * the rows around them, then everything else in the order it was added.
+ *
+ * There is at most one job per song, pending or running. Submitting a song
+ * again, or putting it in {@link #focus}, only raises its priority; removing
+ * it from the playlist cancels it. Jobs are never moved between queues, a promoted job just gets
+ * another entry in a higher one and stale entries are skipped when polled.
+ *
+ * How many reads run at once adapts to the storage. SSDs keep getting faster
+ * with more parallel reads, a spinning disk slows down as its head seeks
+ * between files, and a NAS needs several requests in flight to hide its
+ * latency. The scheduler hill-climbs on completed jobs per second while
+ * there is a backlog: it keeps stepping the limit in the direction that
+ * helped and turns around when throughput drops.
+ *
+ * Worker threads are started as jobs arrive and none is idle, so creating a
+ * scheduler at startup costs nothing until the first song is queued.
+ */
+public class MetadataScheduler {
+
+    public enum Priority { NOW_PLAYING, VISIBLE, NEARBY, BACKGROUND }
+
+    private static final int INITIAL_CONCURRENCY = 4;
+    private static final int ADAPT_MIN_JOBS = 32;
+    private static final long ADAPT_MIN_NANOS = 250_000_000L;
+    private static final double ADAPT_TOLERANCE = 0.95;
+
+    private static final Metrics.Histogram[] WAIT_TIME = new Metrics.Histogram[Priority.values().length];
+
+    static {
+        for (Priority p : Priority.values()) {
+            WAIT_TIME[p.ordinal()] = Metrics.histogram("metadata.wait." + p.name().toLowerCase().replace('_', '-'));
+        }
+    }
+
+    private final Consumer<Song> onLoaded;
+    private final int maxConcurrency;
+    private final Map<Song, Job> jobs = new IdentityHashMap<>();
+    private final List<ArrayDeque<Job>> queues = new ArrayList<>();
+    private final List<Job> focused = new ArrayList<>();
+    private int pending = 0; // jobs in the map not yet started; running ones may have been cancelled out of it
+    private int running = 0;
+    private int workers = 0;
+    private int idle = 0;
+    private int limit;
+    private boolean shutdown = false;
+
+    // Throughput hill-climbing
+    private int direction = 1;
+    private long windowStart = System.nanoTime();
+    private int windowJobs = 0;
+    private double lastThroughput = 0;
+
+    // Time from submit to start
+    private long waited = 0;
+    private long totalWaitNanos = 0;
+    private long maxWaitNanos = 0;
+    private long completed = 0;
+
+    public MetadataScheduler(Consumer<Song> onLoaded) {
+        this(Math.max(INITIAL_CONCURRENCY, 2 * Runtime.getRuntime().availableProcessors()), onLoaded);
+    }
+
+    /**
+     * @param maxConcurrency  upper bound for the adaptive limit, and the
+     *                        most worker threads started
+     * @param onLoaded        called on a worker thread after each song is read
+     */
+    public MetadataScheduler(int maxConcurrency, Consumer<Song> onLoaded) {
+        if (maxConcurrency < 1) throw new IllegalArgumentException("Concurrency must be positive: " + maxConcurrency);
+        this.onLoaded = onLoaded;
+        this.maxConcurrency = maxConcurrency;
+        this.limit = Math.min(INITIAL_CONCURRENCY, maxConcurrency);
+        for (int i = 0; i < Priority.values().length; i++) {
+            queues.add(new ArrayDeque<>());
+        }
+    }
+
+    /**
+     * Queues {@code song} for reading, or raises the priority of its pending
+     * job. Songs already read are queued again, which is cheap once cached.
+     */
+    public synchronized void submit(Song song, Priority priority) {
+        if (shutdown) return;
+        Job job = jobs.get(song);
+        if (job == null) {
+            job = new Job(song);
+            jobs.put(song, job);
+            pending++;
+            queues.get(Priority.BACKGROUND.ordinal()).addLast(job);
+        }
+        promote(job, priority);
+        if (idle == 0 && workers < maxConcurrency) startWorker();
+        notifyAll();
+    }
+
+    private void startWorker() {
+        Thread t = new Thread(this::workLoop, "metadata-" + workers++);
+        t.setDaemon(true);
+        t.setPriority(Thread.NORM_PRIORITY - 1);
+        t.start();
+    }
+
+    public synchronized void submitAll(Collection<Song> songs) {
+        for (Song song : songs) submit(song, Priority.BACKGROUND);
+    }
+
+    /**
+     * Replaces the set of rows the user is looking at. Pending jobs for them
+     * move ahead of the backlog; rows that scrolled away drop back into it.
+     */
+    public synchronized void focus(Collection<Song> visible, Collection<Song> nearby) {
+        for (Job job : focused) {
+            if (job.priority == Priority.VISIBLE || job.priority == Priority.NEARBY) {
+                job.priority = Priority.BACKGROUND;
+            }
+        }
+        focused.clear();
+        focus(visible, Priority.VISIBLE);
+        focus(nearby, Priority.NEARBY);
+        notifyAll();
+    }
+
+    private void focus(Collection<Song> songs, Priority priority) {
+        for (Song song : songs) {
+            Job job = jobs.get(song);
+            if (job != null && promote(job, priority)) focused.add(job);
+        }
+    }
+
+    private boolean promote(Job job, Priority priority) {
+        if (priority.ordinal() >= job.priority.ordinal()) return false;
+        job.priority = priority;
+        queues.get(priority.ordinal()).addLast(job);
+        return true;
+    }
+
+    /** Drops the job for {@code song}; a read already running finishes but is not reported. */
+    public synchronized void cancel(Song song) {
+        Job job = jobs.remove(song);
+        if (job == null) return;
+        job.cancelled = true;
+        if (!job.started) pending--;
+    }
+
+    /** Drops every pending job, e.g. when the playlist is cleared. */
+    public synchronized void cancelAll() {
+        for (Job job : jobs.values()) job.cancelled = true;
+        jobs.clear();
+        pending = 0;
+        focused.clear();
+        for (ArrayDeque<Job> queue : queues) queue.clear();
+    }
+
+    public synchronized void shutdown() {
+        cancelAll();
+        shutdown = true;
+        notifyAll();
+    }
+
+    /** Jobs waiting to start. */
+    public synchronized int getQueueDepth() { return pending; }
+    public synchronized int getRunning() { return running; }
+    /** Worker threads started so far. */
+    public synchronized int getWorkers() { return workers; }
+    public synchronized int getConcurrency() { return limit; }
+    public synchronized long getCompleted() { return completed; }
+    public synchronized double getMaxWaitMillis() { return maxWaitNanos / 1e6; }
+
+    public synchronized double getAverageWaitMillis() {
+        return waited == 0 ? 0 : totalWaitNanos / 1e6 / waited;
+    }
+
+    private void workLoop() {
+        while (true) {
+            Job job = null;
+            synchronized (this) {
+                while (!shutdown && (job = next()) == null) {
+                    idle++;
+                    waitQuietly();
+                    idle--;
+                }
+                if (shutdown) return;
+                running++;
+                recordWait(job, System.nanoTime() - job.queuedNanos);
+            }
+            try {
+                MetadataExtractor.extractMetadata(job.song);
+                if (!job.cancelled) onLoaded.accept(job.song);
+            } catch (RuntimeException e) {
+                System.err.println("Metadata job failed for: " + job.song.getFile() + " - " + e.getMessage());
+            } finally {
+                synchronized (this) {
+                    jobs.remove(job.song, job);
+                    running--;
+                    completed++;
+                    adapt();
+                    notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Highest priority job that may start now, or null. The now-playing song
+     * may use a worker beyond the adaptive limit so it never waits behind
+     * slow background reads.
+     */
+    private Job next() {
+        for (int p = 0; p < queues.size(); p++) {
+            ArrayDeque<Job> queue = queues.get(p);
+            Job job;
+            while ((job = queue.peekFirst()) != null && (job.cancelled || job.started || job.priority.ordinal() < p)) {
+                queue.pollFirst(); // stale entry: done, cancelled, or queued higher up as well
+            }
+            if (job == null) continue;
+            if (job.priority.ordinal() > p) {
+                queue.pollFirst(); // demoted back to the backlog, where its original entry still is
+                p--;
+                continue;
+            }
+            boolean urgent = job.priority == Priority.NOW_PLAYING;
+            if (running >= (urgent ? maxConcurrency : limit)) return null;
+            queue.pollFirst();
+            job.started = true;
+            pending--;
+            return job;
+        }
+        return null;
+    }
+
+    private void recordWait(Job job, long nanos) {
+        WAIT_TIME[job.priority.ordinal()].record(nanos);
+        waited++;
+        totalWaitNanos += nanos;
+        if (nanos > maxWaitNanos) maxWaitNanos = nanos;
+    }
+
+    /**
+     * One hill-climbing step per window of completed jobs. Windows without a
+     * backlog measure demand rather than storage speed and are discarded.
+     */
+    private void adapt() {
+        windowJobs++;
+        long now = System.nanoTime();
+        long elapsed = now - windowStart;
+        if (windowJobs < ADAPT_MIN_JOBS || elapsed < ADAPT_MIN_NANOS) return;
+        if (pending > limit) {
+            double throughput = windowJobs * 1e9 / elapsed;
+            if (throughput < lastThroughput * ADAPT_TOLERANCE) direction = -direction;
+            lastThroughput = throughput;
+            int next = Math.max(1, Math.min(maxConcurrency, limit + direction));
+            if (next == limit) direction = -direction; // at a bound, probe the other way next time
+            limit = next;
+        } else {
+            lastThroughput = 0;
+        }
+        windowStart = now;
+        windowJobs = 0;
+    }
+
+    private void waitQuietly() {
+        try {
+            wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            shutdown = true;
+        }
+    }
+
+    private static final class Job {
+        final Song song;
+        final long queuedNanos = System.nanoTime();
+        Priority priority = Priority.BACKGROUND;
+        boolean started = false;
+        volatile boolean cancelled = false;
+
+        Job(Song song) {
+            this.song = song;
+        }
+    }
+}
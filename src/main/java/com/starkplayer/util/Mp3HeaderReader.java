@@ -0,0 +1,521 @@
+package com.starkplayer.util;
+
+import com.mpatric.mp3agic.ID3v1Genres;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads MP3 tags and duration from the file headers only.
+ *
+ * Only the ID3v2 frame headers and the text frames we display are read, plus
+ * the trailing 128-byte ID3v1 block and the first couple of MPEG frames.
+ * Duration comes from the Xing/Info or VBRI header, or from the bitrate of a
+ * CBR stream. When none of those apply (VBR without a header, unusual tag
+ * layouts) {@link #read(Path)} returns null and callers should fall back to a
+ * full scan.
+ */
+public class Mp3HeaderReader {
+
+    private static final int FRAME_SEARCH_WINDOW = 64 * 1024;
+    private static final int SEARCH_CHUNK = 4096;
+    private static final int ID3V1_SIZE = 128;
+
+    private static final int[][] BITRATES = {
+        {0, 32, 64, 96, 128, 160, 192, 224, 256, 288, 320, 352, 384, 416, 448}, // V1 L1
+        {0, 32, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 384},    // V1 L2
+        {0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320},     // V1 L3
+        {0, 32, 48, 56, 64, 80, 96, 112, 128, 144, 160, 176, 192, 224, 256},    // V2 L1
+        {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160}          // V2 L2/L3
+    };
+    private static final int[] SAMPLE_RATES = {44100, 48000, 32000};
+
+    /**
+     * Tag fields and duration read from the headers. Fields are null when the
+     * corresponding frame is absent.
+     */
+    public static final class Tags {
+        private boolean id3v2;
+        private boolean id3v1;
+        private String title;
+        private String artist;
+        private String album;
+        private String genre;
+        private String year;
+        private long durationSeconds;
+        private long bytesRead;
+
+        public boolean hasId3v2() { return id3v2; }
+        public boolean hasId3v1() { return id3v1; }
+        public String getTitle() { return title; }
+        public String getArtist() { return artist; }
+        public String getAlbum() { return album; }
+        public String getGenre() { return genre; }
+        public String getYear() { return year; }
+        public long getDurationSeconds() { return durationSeconds; }
+        public long getBytesRead() { return bytesRead; }
+    }
+
+    /**
+     * Embedded album art as stored in the APIC (or v2.2 PIC) frame.
+     */
+    public record AlbumArt(String mimeType, byte[] data) {}
+
+    /**
+     * Returns the tags and duration, or null if the file needs a full scan.
+     */
+    public static Tags read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ChannelSource source = new ChannelSource(channel);
+            Tags tags = new Tags();
+            long size = channel.size();
+
+            long audioStart = 0;
+            Id3v2Header header = Id3v2Header.read(source);
+            if (header != null) {
+                tags.id3v2 = true;
+                audioStart = header.end();
+                if (!readFrames(source, header, tags, null)) return null;
+            }
+
+            long audioEnd = size;
+            if (size - ID3V1_SIZE >= audioStart) {
+                ByteBuffer tail = source.read(size - ID3V1_SIZE, ID3V1_SIZE);
+                if (tail.remaining() == ID3V1_SIZE && tail.get(0) == 'T' && tail.get(1) == 'A' && tail.get(2) == 'G') {
+                    audioEnd -= ID3V1_SIZE;
+                    tags.id3v1 = true;
+                    if (!tags.id3v2) readId3v1(tail, tags);
+                }
+            }
+
+            long millis = estimateDurationMillis(source, audioStart, audioEnd);
+            if (millis < 0) return null;
+            tags.durationSeconds = (millis + 500) / 1000;
+            tags.bytesRead = source.bytesRead;
+            return tags;
+        }
+    }
+
+    /**
+     * Byte range of the audio stream between the leading ID3v2 tag and the
+     * trailing ID3v1 block, so two copies with different tags compare equal.
+     */
+    public record AudioRegion(long offset, long length) {}
+
+    /**
+     * Locates the audio stream by reading the ID3v2 header and the last 128
+     * bytes. Files without tags are all audio.
+     */
+    public static AudioRegion audioRegion(FileChannel channel) throws IOException {
+        ChannelSource source = new ChannelSource(channel);
+        long size = channel.size();
+        Id3v2Header header = Id3v2Header.read(source);
+        long start = header != null ? Math.min(header.end(), size) : 0;
+        long end = size;
+        if (size - ID3V1_SIZE >= start) {
+            ByteBuffer tail = source.read(size - ID3V1_SIZE, 3);
+            if (tail.remaining() == 3 && tail.get(0) == 'T' && tail.get(1) == 'A' && tail.get(2) == 'G') {
+                end -= ID3V1_SIZE;
+            }
+        }
+        return new AudioRegion(start, end - start);
+    }
+
+    /**
+     * Returns the first embedded picture without reading the audio stream,
+     * or null if the file has none.
+     */
+    public static AlbumArt readAlbumArt(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ChannelSource source = new ChannelSource(channel);
+            Id3v2Header header = Id3v2Header.read(source);
+            if (header == null) return null;
+            AlbumArt[] art = new AlbumArt[1];
+            readFrames(source, header, new Tags(), art);
+            return art[0];
+        }
+    }
+
+    private static boolean readFrames(ChannelSource channel, Id3v2Header header, Tags tags, AlbumArt[] art)
+            throws IOException {
+        Source source = channel;
+        long pos = 10;
+        long end = 10 + header.size;
+        if (header.unsynchronised && header.major < 4) {
+            // Frame headers are unsynchronised too, so decode the whole tag up front
+            ByteBuffer raw = channel.read(10, header.size);
+            source = new BufferSource(unsynchronise(raw), 10);
+            end = 10 + source.length();
+        }
+        if (header.extended) {
+            ByteBuffer ext = source.read(pos, 4);
+            if (ext.remaining() < 4) return false;
+            pos += header.major == 4 ? syncsafe(ext, 0) : 4 + ext.getInt(0);
+        }
+
+        int idLength = header.major == 2 ? 3 : 4;
+        int headerLength = header.major == 2 ? 6 : 10;
+        while (pos + headerLength <= end) {
+            ByteBuffer fh = source.read(pos, headerLength);
+            if (fh.remaining() < headerLength || fh.get(0) == 0) break; // padding
+            String id = new String(fh.array(), fh.arrayOffset(), idLength, StandardCharsets.ISO_8859_1);
+            int frameSize;
+            int formatFlags = 0;
+            if (header.major == 2) {
+                frameSize = ((fh.get(3) & 0xff) << 16) | ((fh.get(4) & 0xff) << 8) | (fh.get(5) & 0xff);
+            } else {
+                frameSize = header.major == 4 ? syncsafe(fh, 4) : fh.getInt(4);
+                formatFlags = fh.get(9) & 0xff;
+            }
+            long dataPos = pos + headerLength;
+            if (frameSize <= 0 || dataPos + frameSize > end) break;
+            pos = dataPos + frameSize;
+
+            String field = fieldFor(id);
+            boolean picture = id.equals("APIC") || id.equals("PIC");
+            if ((art == null && field == null) || (art != null && !picture)) continue;
+            if (header.major == 3 && (formatFlags & 0xc0) != 0) continue; // compressed or encrypted
+            if (header.major == 4 && (formatFlags & 0x0c) != 0) continue;
+
+            ByteBuffer data = source.read(dataPos, frameSize);
+            if (header.major == 4 && (formatFlags & 0x01) != 0) {
+                if (data.remaining() < 4) continue;
+                data.position(data.position() + 4); // data length indicator
+            }
+            if (header.major == 4 && (formatFlags & 0x02) != 0) {
+                data = unsynchronise(data);
+            }
+            if (art != null) {
+                art[0] = decodePicture(data, header.major == 2);
+                if (art[0] != null) return true;
+            } else {
+                assign(tags, field, decodeText(data));
+            }
+        }
+        return true;
+    }
+
+    private static String fieldFor(String id) {
+        switch (id) {
+            case "TIT2": case "TT2": return "title";
+            case "TPE1": case "TP1": return "artist";
+            case "TALB": case "TAL": return "album";
+            case "TCON": case "TCO": return "genre";
+            case "TYER": case "TYE": return "year";
+            case "TDRC": return "recording";
+            default: return null;
+        }
+    }
+
+    private static void assign(Tags tags, String field, String value) {
+        if (value == null) return;
+        switch (field) {
+            case "title": tags.title = value; break;
+            case "artist": tags.artist = value; break;
+            case "album": tags.album = value; break;
+            case "genre": tags.genre = genreDescription(value); break;
+            case "year": tags.year = value; break;
+            case "recording":
+                if (tags.year == null) tags.year = value.length() > 4 ? value.substring(0, 4) : value;
+                break;
+        }
+    }
+
+    /**
+     * Mirrors mp3agic's getGenreDescription: "(17)", "17" and "(17)Rock" map
+     * through the ID3v1 genre table, anything else is used as-is.
+     */
+    private static String genreDescription(String text) {
+        String number = text;
+        String rest = "";
+        if (text.startsWith("(")) {
+            int close = text.indexOf(')');
+            if (close > 0) {
+                number = text.substring(1, close);
+                rest = text.substring(close + 1);
+            }
+        }
+        try {
+            int index = Integer.parseInt(number.trim());
+            if (index >= 0 && index < ID3v1Genres.GENRES.length) return ID3v1Genres.GENRES[index];
+        } catch (NumberFormatException e) {
+            // Free-form genre
+        }
+        String description = text.startsWith("(") ? rest : text;
+        return description.isEmpty() ? null : description;
+    }
+
+    private static String decodeText(ByteBuffer data) {
+        if (!data.hasRemaining()) return null;
+        int encoding = data.get() & 0xff;
+        Charset charset = charsetFor(encoding);
+        if (charset == null) return null;
+        byte[] bytes = new byte[data.remaining()];
+        data.get(bytes);
+        int length = terminatorIndex(bytes, 0, encoding);
+        return new String(bytes, 0, length, charset);
+    }
+
+    private static AlbumArt decodePicture(ByteBuffer data, boolean v22) {
+        if (data.remaining() < 4) return null;
+        int encoding = data.get() & 0xff;
+        String mimeType;
+        if (v22) {
+            byte[] format = new byte[3];
+            data.get(format);
+            String f = new String(format, StandardCharsets.ISO_8859_1).toLowerCase();
+            mimeType = f.equals("jpg") ? "image/jpeg" : "image/" + f;
+        } else {
+            int start = data.position();
+            while (data.hasRemaining() && data.get() != 0) { }
+            mimeType = new String(data.array(), data.arrayOffset() + start, data.position() - start - 1,
+                    StandardCharsets.ISO_8859_1);
+        }
+        if (!data.hasRemaining()) return null;
+        data.get(); // picture type
+        byte[] rest = new byte[data.remaining()];
+        data.get(rest);
+        int descEnd = terminatorIndex(rest, 0, encoding);
+        int skip = encoding == 1 || encoding == 2 ? 2 : 1;
+        int offset = Math.min(rest.length, descEnd + skip);
+        byte[] image = new byte[rest.length - offset];
+        System.arraycopy(rest, offset, image, 0, image.length);
+        return new AlbumArt(mimeType, image);
+    }
+
+    private static Charset charsetFor(int encoding) {
+        switch (encoding) {
+            case 0: return StandardCharsets.ISO_8859_1;
+            case 1: return StandardCharsets.UTF_16;
+            case 2: return StandardCharsets.UTF_16BE;
+            case 3: return StandardCharsets.UTF_8;
+            default: return null;
+        }
+    }
+
+    private static int terminatorIndex(byte[] bytes, int from, int encoding) {
+        if (encoding == 1 || encoding == 2) {
+            for (int i = from; i + 1 < bytes.length; i += 2) {
+                if (bytes[i] == 0 && bytes[i + 1] == 0) return i;
+            }
+        } else {
+            for (int i = from; i < bytes.length; i++) {
+                if (bytes[i] == 0) return i;
+            }
+        }
+        return bytes.length;
+    }
+
+    private static void readId3v1(ByteBuffer tail, Tags tags) {
+        tags.title = id3v1Field(tail, 3, 30);
+        tags.artist = id3v1Field(tail, 33, 30);
+        tags.album = id3v1Field(tail, 63, 30);
+        tags.year = id3v1Field(tail, 93, 4);
+        int genre = tail.get(127) & 0xff;
+        tags.genre = genre < ID3v1Genres.GENRES.length ? ID3v1Genres.GENRES[genre] : "Unknown";
+    }
+
+    private static String id3v1Field(ByteBuffer tail, int offset, int length) {
+        byte[] bytes = new byte[length];
+        tail.get(offset, bytes);
+        int end = terminatorIndex(bytes, 0, 0);
+        return new String(bytes, 0, end, StandardCharsets.ISO_8859_1).trim();
+    }
+
+    /**
+     * Finds the first MPEG audio frame and derives the duration from its VBR
+     * header or, for CBR streams, from the bitrate. Returns -1 when neither
+     * works and a full frame scan is required.
+     */
+    private static long estimateDurationMillis(Source source, long audioStart, long audioEnd) throws IOException {
+        long searchEnd = Math.min(audioEnd, audioStart + FRAME_SEARCH_WINDOW);
+        // Audio normally starts right after the tag, so scan in small chunks
+        for (long chunkStart = audioStart; chunkStart + 4 <= searchEnd; chunkStart += SEARCH_CHUNK - 3) {
+            ByteBuffer window = source.read(chunkStart, (int) Math.min(SEARCH_CHUNK, searchEnd - chunkStart));
+            int base = window.position();
+            int limit = window.limit();
+            for (int i = base; i + 4 <= limit; i++) {
+                if ((window.get(i) & 0xff) != 0xff || (window.get(i + 1) & 0xe0) != 0xe0) continue;
+                FrameHeader first = FrameHeader.parse(window.getInt(i));
+                if (first == null) continue;
+                long frameStart = chunkStart + (i - base);
+
+                // Require a second valid frame so stray sync bits in the data don't fool us
+                ByteBuffer nextBytes = source.read(frameStart + first.frameLength, 4);
+                FrameHeader second = nextBytes.remaining() == 4 ? FrameHeader.parse(nextBytes.getInt(nextBytes.position())) : null;
+                if (second == null && frameStart + first.frameLength < audioEnd) continue;
+
+                ByteBuffer frame = source.read(frameStart, Math.min(first.frameLength, 192));
+                long frames = vbrFrameCount(frame, first);
+                if (frames > 0) {
+                    return frames * first.samplesPerFrame * 1000L / first.sampleRate;
+                }
+                if (second != null && second.bitrate != first.bitrate) {
+                    return -1; // VBR without a header
+                }
+                return (audioEnd - frameStart) * 8 / first.bitrate;
+            }
+            if (limit - base < SEARCH_CHUNK) break;
+        }
+        return -1;
+    }
+
+    private static long vbrFrameCount(ByteBuffer frame, FrameHeader header) {
+        int base = frame.position();
+        if (header.layer == 3) {
+            int xing = base + 4 + header.sideInfoLength();
+            if (frame.limit() >= xing + 12) {
+                int tag = frame.getInt(xing);
+                if (tag == 0x58696e67 || tag == 0x496e666f) { // "Xing" or "Info"
+                    int flags = frame.getInt(xing + 4);
+                    return (flags & 0x01) != 0 ? frame.getInt(xing + 8) & 0xffffffffL : -1;
+                }
+            }
+        }
+        int vbri = base + 36;
+        if (frame.limit() >= vbri + 18 && frame.getInt(vbri) == 0x56425249) { // "VBRI"
+            return frame.getInt(vbri + 14) & 0xffffffffL;
+        }
+        return -1;
+    }
+
+    private static ByteBuffer unsynchronise(ByteBuffer data) {
+        byte[] out = new byte[data.remaining()];
+        int n = 0;
+        byte previous = 0;
+        while (data.hasRemaining()) {
+            byte b = data.get();
+            if (!(previous == (byte) 0xff && b == 0)) out[n++] = b;
+            previous = b;
+        }
+        return ByteBuffer.wrap(out, 0, n).slice();
+    }
+
+    private static int syncsafe(ByteBuffer buf, int offset) {
+        int base = buf.position() + offset;
+        return ((buf.get(base) & 0x7f) << 21) | ((buf.get(base + 1) & 0x7f) << 14)
+                | ((buf.get(base + 2) & 0x7f) << 7) | (buf.get(base + 3) & 0x7f);
+    }
+
+    private record Id3v2Header(int major, int size, boolean unsynchronised, boolean extended, boolean footer) {
+        static Id3v2Header read(Source source) throws IOException {
+            ByteBuffer head = source.read(0, 10);
+            if (head.remaining() < 10 || head.get(0) != 'I' || head.get(1) != 'D' || head.get(2) != '3') {
+                return null;
+            }
+            int major = head.get(3);
+            if (major < 2 || major > 4) return null;
+            int flags = head.get(5) & 0xff;
+            return new Id3v2Header(major, syncsafe(head, 6), (flags & 0x80) != 0,
+                    major > 2 && (flags & 0x40) != 0, major == 4 && (flags & 0x10) != 0);
+        }
+
+        long end() {
+            return 10L + size + (footer ? 10 : 0);
+        }
+    }
+
+    private record FrameHeader(int version, int layer, int bitrate, int sampleRate, int samplesPerFrame,
+                               int frameLength, boolean mono) {
+        // version: 1 = MPEG1, 2 = MPEG2, 3 = MPEG2.5
+        static FrameHeader parse(int h) {
+            if ((h & 0xffe00000) != 0xffe00000) return null;
+            int versionBits = (h >>> 19) & 0x3;
+            int layerBits = (h >>> 17) & 0x3;
+            int bitrateIndex = (h >>> 12) & 0xf;
+            int rateIndex = (h >>> 10) & 0x3;
+            if (versionBits == 1 || layerBits == 0 || bitrateIndex == 0 || bitrateIndex == 15 || rateIndex == 3) {
+                return null;
+            }
+            int version = versionBits == 3 ? 1 : versionBits == 2 ? 2 : 3;
+            int layer = 4 - layerBits;
+            int table = version == 1 ? layer - 1 : (layer == 1 ? 3 : 4);
+            int bitrate = BITRATES[table][bitrateIndex];
+            int sampleRate = SAMPLE_RATES[rateIndex] >> (version - 1);
+            int padding = (h >>> 9) & 0x1;
+            boolean mono = ((h >>> 6) & 0x3) == 3;
+            int samplesPerFrame;
+            int frameLength;
+            if (layer == 1) {
+                samplesPerFrame = 384;
+                frameLength = (12 * bitrate * 1000 / sampleRate + padding) * 4;
+            } else {
+                samplesPerFrame = layer == 3 && version != 1 ? 576 : 1152;
+                frameLength = (samplesPerFrame / 8) * bitrate * 1000 / sampleRate + padding;
+            }
+            return new FrameHeader(version, layer, bitrate, sampleRate, samplesPerFrame, frameLength, mono);
+        }
+
+        int sideInfoLength() {
+            if (version == 1) return mono ? 17 : 32;
+            return mono ? 9 : 17;
+        }
+    }
+
+    private interface Source {
+        /** Returns a buffer whose position..limit holds up to length bytes at pos. */
+        ByteBuffer read(long pos, int length) throws IOException;
+
+        long length();
+    }
+
+    private static final class ChannelSource implements Source {
+        private final FileChannel channel;
+        private long bytesRead;
+
+        ChannelSource(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public ByteBuffer read(long pos, int length) throws IOException {
+            ByteBuffer buf = ByteBuffer.allocate(Math.max(0, length));
+            while (buf.hasRemaining()) {
+                int n = channel.read(buf, pos + buf.position());
+                if (n < 0) break;
+            }
+            bytesRead += buf.position();
+            buf.flip();
+            return buf;
+        }
+
+        @Override
+        public long length() {
+            try {
+                return channel.size();
+            } catch (IOException e) {
+                return 0;
+            }
+        }
+    }
+
+    /** Serves reads from an in-memory tag whose first byte sits at {@code origin}. */
+    private static final class BufferSource implements Source {
+        private final ByteBuffer data;
+        private final long origin;
+
+        BufferSource(ByteBuffer data, long origin) {
+            this.data = data;
+            this.origin = origin;
+        }
+
+        @Override
+        public ByteBuffer read(long pos, int length) {
+            int from = (int) Math.max(0, Math.min(data.limit(), pos - origin));
+            int to = Math.min(data.limit(), from + length);
+            byte[] copy = new byte[to - from];
+            data.get(from, copy);
+            return ByteBuffer.wrap(copy);
+        }
+
+        @Override
+        public long length() {
+            return data.limit();
+        }
+    }
+}
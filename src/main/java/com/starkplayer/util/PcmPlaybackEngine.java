@@ -0,0 +1,605 @@
+package com.starkplayer.util;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * {@link PlaybackEngine} that decodes with javax.sound and plays the PCM
+ * itself, so the equalizer and spectrum run on our own samples.
+ *
+ * A decoder thread keeps up to half a second of float PCM in a
+ * {@link PcmRingBuffer}. The output thread takes blocks from it, runs the
+ * {@link Equalizer}, applies volume, converts to 16-bit and writes to the
+ * {@link Sink}. Neither thread locks, and only the decoder does I/O, so a
+ * slow read only shows up as an underrun once the ring has run dry.
+ * Underruns are counted, along with the output latency: how long a sample
+ * waits in the device after the equalizer and volume have been applied,
+ * which is how late a slider move or pause is heard.
+ *
+ * A {@link #preload preloaded} engine decodes into its ring without the
+ * sink; {@link #openOutput} opens it when the track is about to play, so a
+ * spare never holds a second output line next to the one playing.
+ *
+ * Which files decode depends on the installed javax.sound providers: WAV,
+ * AIFF and AU out of the box, and MP3 through the mp3spi provider (a pure
+ * Java JLayer decoder) that the app depends on. {@link PlaybackEngine#open}
+ * falls back to JavaFX for anything else, such as AAC.
+ */
+public final class PcmPlaybackEngine implements PlaybackEngine {
+
+    /** Where the 16-bit PCM ends up; a SourceDataLine in the app. */
+    public interface Sink {
+        void open(AudioFormat format, int bufferFrames) throws LineUnavailableException;
+        void start();
+        void stop();
+        void flush();
+        void drain();
+        void close();
+        /** Blocks until the bytes are queued, or the sink is stopped or flushed. */
+        void write(byte[] buffer, int offset, int length);
+        /** Frames queued in the device and not yet heard. */
+        int bufferedFrames();
+    }
+
+    public static Sink lineSink() {
+        return new LineSink();
+    }
+
+    private static final int BLOCK_FRAMES = 1024;
+    private static final double RING_SECONDS = 0.5;
+    private static final double SINK_SECONDS = 0.1;
+    private static final double POSITION_INTERVAL_SECONDS = 0.1;
+    private static final long IDLE_PARK_NANOS = 2_000_000L;
+    public static final int DEFAULT_SPECTRUM_SIZE = 2048;
+
+    private static final Metrics.Counter UNDERRUNS = Metrics.counter("playback.underruns");
+    private static final Metrics.Histogram OUTPUT_LATENCY = Metrics.histogram("playback.output-latency");
+
+    private final Path file;
+    private final Sink sink;
+    private final Executor events;
+    private final AudioFormat format;
+    private final int channels;
+    private final float sampleRate;
+    private final double duration;
+    private final PcmRingBuffer ring;
+    private final Equalizer equalizer;
+    private final Thread decoder;
+    private final Thread output;
+    private final Runnable positionUpdate = this::firePosition;
+    private AudioInputStream stream; // decoder thread after construction
+
+    private volatile Listener listener;
+    private volatile State state = State.READY;
+    private volatile boolean disposed = false;
+    private volatile boolean outputOpen = false; // set under the lock, once the sink is open
+    private volatile float volume = 1f;
+    private volatile Spectrum spectrum;
+    private int spectrumSize = DEFAULT_SPECTRUM_SIZE;
+    private int spectrumBands;
+    private double spectrumInterval;
+    private SpectrumListener spectrumListener;
+
+    // Seeks: the caller sets pendingSeek, the decoder repositions and
+    // publishes a marker, the output thread drops the ring up to it.
+    private final AtomicLong pendingSeek = new AtomicLong(-1);
+    private volatile Marker marker = new Marker(0, 0);
+    private volatile long endPosition = Long.MAX_VALUE; // ring position of the end of the track
+
+    // Written by the output thread only
+    private volatile long playedFrame = 0;
+    private volatile long underruns = 0;
+    private volatile long latencyFrames = 0;
+    private volatile long maxLatencyFrames = 0;
+    private volatile long latencySamples = 0;
+    private volatile long latencyTotal = 0;
+
+    public PcmPlaybackEngine(Path file, Sink sink, Executor events)
+            throws UnsupportedAudioFileException, IOException, LineUnavailableException {
+        this(file, sink, events, true);
+    }
+
+    /**
+     * Opens {@code file} and starts decoding it, but leaves the sink closed
+     * until {@link #openOutput}; playing waits for it.
+     */
+    public static PcmPlaybackEngine preload(Path file, Sink sink, Executor events)
+            throws UnsupportedAudioFileException, IOException {
+        try {
+            return new PcmPlaybackEngine(file, sink, events, false);
+        } catch (LineUnavailableException e) {
+            throw new AssertionError(e); // the sink is not opened
+        }
+    }
+
+    private PcmPlaybackEngine(Path file, Sink sink, Executor events, boolean openSink)
+            throws UnsupportedAudioFileException, IOException, LineUnavailableException {
+        this.file = file;
+        this.sink = sink;
+        this.events = events;
+        this.stream = decode(file);
+        this.format = stream.getFormat();
+        this.channels = format.getChannels();
+        this.sampleRate = format.getSampleRate();
+        this.duration = durationOf(file, stream);
+        this.ring = new PcmRingBuffer((int) (RING_SECONDS * sampleRate) * channels);
+        this.equalizer = new Equalizer(sampleRate, channels);
+        if (openSink) {
+            try {
+                sink.open(format, (int) (SINK_SECONDS * sampleRate));
+                outputOpen = true;
+            } catch (LineUnavailableException | RuntimeException e) {
+                stream.close();
+                throw e;
+            }
+        }
+
+        decoder = new Thread(this::decodeLoop, "pcm-decoder");
+        decoder.setDaemon(true);
+        output = new Thread(this::outputLoop, "pcm-output");
+        output.setDaemon(true);
+        output.setPriority(Thread.MAX_PRIORITY);
+        decoder.start();
+        output.start();
+    }
+
+    /** Opens {@code file} as 16-bit signed little-endian PCM at its own rate. */
+    private static AudioInputStream decode(Path file) throws UnsupportedAudioFileException, IOException {
+        AudioInputStream source = AudioSystem.getAudioInputStream(file.toFile());
+        AudioFormat f = source.getFormat();
+        AudioFormat pcm = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, f.getSampleRate(), 16,
+                f.getChannels(), f.getChannels() * 2, f.getSampleRate(), false);
+        if (f.matches(pcm)) return source;
+        if (!AudioSystem.isConversionSupported(pcm, f)) {
+            source.close();
+            throw new UnsupportedAudioFileException("No decoder from " + f + " to 16-bit PCM");
+        }
+        return AudioSystem.getAudioInputStream(pcm, source);
+    }
+
+    private static double durationOf(Path file, AudioInputStream stream) {
+        long frames = stream.getFrameLength();
+        if (frames > 0) return frames / stream.getFormat().getFrameRate();
+        try {
+            // Compressed formats usually carry it as a property, in microseconds;
+            // mp3spi only exposes it through properties(), not getProperty
+            AudioFileFormat info = AudioSystem.getAudioFileFormat(file.toFile());
+            Object micros = info.properties().get("duration");
+            if (micros instanceof Long) return (Long) micros / 1e6;
+        } catch (UnsupportedAudioFileException | IOException e) {
+            // Unknown until the end is reached
+        }
+        return Double.NaN;
+    }
+
+    // ---- Decoder thread ----
+
+    private void decodeLoop() {
+        int frameSize = channels * 2;
+        byte[] bytes = new byte[BLOCK_FRAMES * frameSize];
+        float[] block = new float[BLOCK_FRAMES * channels];
+        int pending = 0; // samples in block
+        int written = 0; // of which already in the ring
+        boolean ended = false;
+        try {
+            while (!disposed) {
+                long seekFrame = pendingSeek.get();
+                if (seekFrame >= 0) {
+                    reposition(seekFrame, bytes);
+                    pending = 0;
+                    written = 0;
+                    ended = false;
+                    endPosition = Long.MAX_VALUE;
+                    marker = new Marker(ring.writePosition(), seekFrame);
+                    pendingSeek.compareAndSet(seekFrame, -1);
+                    LockSupport.unpark(output);
+                    continue;
+                }
+                if (written < pending) {
+                    written += ring.write(block, written, pending - written, channels);
+                    if (written < pending) LockSupport.parkNanos(this, IDLE_PARK_NANOS); // ring full
+                    continue;
+                }
+                if (ended) {
+                    LockSupport.park(this); // until a seek or dispose
+                    continue;
+                }
+                int read = readFully(bytes, bytes.length);
+                if (read <= 0) {
+                    ended = true;
+                    endPosition = ring.writePosition();
+                    LockSupport.unpark(output);
+                    continue;
+                }
+                pending = toFloat(bytes, read, block);
+                written = 0;
+            }
+        } catch (IOException | UnsupportedAudioFileException e) {
+            if (!disposed) fail(e.getMessage());
+        } catch (RuntimeException e) {
+            // A decoder choking on a corrupt frame would otherwise leave the track silently stuck
+            if (!disposed) fail("Cannot decode " + file.getFileName() + ": " + e);
+        } finally {
+            try {
+                stream.close();
+            } catch (IOException e) {
+                // Nothing left to read from it anyway
+            }
+        }
+    }
+
+    private int readFully(byte[] bytes, int length) throws IOException {
+        int total = 0;
+        while (total < length) {
+            int n = stream.read(bytes, total, length - total);
+            if (n < 0) break;
+            total += n;
+        }
+        return total - total % (channels * 2);
+    }
+
+    private void reposition(long frame, byte[] scratch) throws IOException, UnsupportedAudioFileException {
+        stream.close();
+        stream = decode(file);
+        long remaining = frame * channels * 2;
+        while (remaining > 0) {
+            long n = stream.skip(remaining);
+            if (n <= 0) {
+                // Some decoders cannot skip; read through instead
+                n = stream.read(scratch, 0, (int) Math.min(scratch.length, remaining));
+                if (n <= 0) break;
+            }
+            remaining -= n;
+        }
+    }
+
+    private static int toFloat(byte[] bytes, int length, float[] target) {
+        int samples = length / 2;
+        for (int i = 0; i < samples; i++) {
+            target[i] = (short) ((bytes[2 * i + 1] << 8) | (bytes[2 * i] & 0xff)) / 32768f;
+        }
+        return samples;
+    }
+
+    // ---- Output thread ----
+
+    private void outputLoop() {
+        float[] block = new float[BLOCK_FRAMES * channels];
+        byte[] bytes = new byte[block.length * 2];
+        int positionInterval = (int) (POSITION_INTERVAL_SECONDS * sampleRate);
+        int sincePosition = 0;
+        Marker seen = marker;
+        boolean running = false;
+        boolean starving = true; // nothing has played yet, so an empty device is not an underrun
+        try {
+            while (!disposed) {
+                if (!outputOpen) {
+                    LockSupport.park(this); // preloaded; until openOutput or dispose
+                    continue;
+                }
+                Marker m = marker;
+                if (m != seen) {
+                    seen = m;
+                    ring.skipTo(m.ringPosition);
+                    sink.flush();
+                    equalizer.reset();
+                    playedFrame = m.frame;
+                    starving = true;
+                }
+                if (state != State.PLAYING) {
+                    if (running) {
+                        sink.stop();
+                        running = false;
+                    }
+                    LockSupport.park(this);
+                    continue;
+                }
+                if (!running) {
+                    sink.start();
+                    running = true;
+                }
+
+                int got = ring.read(block, 0, block.length);
+                if (got == 0) {
+                    if (pendingSeek.get() < 0 && ring.readPosition() >= endPosition && marker == seen) {
+                        sink.drain();
+                        sink.stop();
+                        running = false;
+                        finish();
+                        starving = true; // playing it again starts from an empty device
+                        continue;
+                    }
+                    if (!starving && sink.bufferedFrames() == 0) {
+                        underruns++;
+                        starving = true;
+                        recordUnderrun();
+                    }
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                    continue;
+                }
+                starving = false;
+
+                int frames = got / channels;
+                if (!equalizer.isFlat()) equalizer.process(block, 0, frames);
+                Spectrum tap = spectrum;
+                if (tap != null) tap.feed(block, frames, channels);
+                float v = volume;
+                for (int i = 0; i < got; i++) {
+                    float x = Math.max(-1f, Math.min(1f, block[i] * v));
+                    int q = (int) (x * 32767f);
+                    bytes[2 * i] = (byte) q;
+                    bytes[2 * i + 1] = (byte) (q >> 8);
+                }
+                sink.write(bytes, 0, got * 2);
+                playedFrame += frames;
+                recordLatency(sink.bufferedFrames());
+
+                sincePosition += frames;
+                if (sincePosition >= positionInterval) {
+                    sincePosition = 0;
+                    events.execute(positionUpdate);
+                }
+            }
+        } finally {
+            synchronized (this) {
+                if (outputOpen) {
+                    sink.stop();
+                    sink.close();
+                }
+            }
+        }
+    }
+
+    private void recordUnderrun() {
+        UNDERRUNS.increment();
+        PlayerEvents.AudioUnderrun event = new PlayerEvents.AudioUnderrun();
+        if (event.shouldCommit()) {
+            event.position = (long) (playedFrame * 1000.0 / sampleRate);
+            event.bufferedAhead = (long) getBufferedMillis();
+            event.commit();
+        }
+    }
+
+    private void recordLatency(long frames) {
+        OUTPUT_LATENCY.record((long) (frames * 1e9 / sampleRate));
+        latencyFrames = frames;
+        if (frames > maxLatencyFrames) maxLatencyFrames = frames;
+        latencyTotal += frames;
+        latencySamples++;
+    }
+
+    private void finish() {
+        state = State.FINISHED;
+        events.execute(() -> {
+            Listener l = listener;
+            if (l != null) {
+                l.onStateChanged(State.FINISHED);
+                l.onEndOfMedia();
+            }
+        });
+    }
+
+    private void fail(String message) {
+        state = State.FAILED;
+        events.execute(() -> {
+            Listener l = listener;
+            if (l != null) l.onError(message);
+        });
+    }
+
+    private void firePosition() {
+        Listener l = listener;
+        if (l != null) l.onPosition(getPosition());
+    }
+
+    private void changeState(State next) {
+        state = next;
+        events.execute(() -> {
+            Listener l = listener;
+            if (l != null) l.onStateChanged(next);
+        });
+        LockSupport.unpark(output);
+    }
+
+    // ---- Controls, any thread ----
+
+    @Override
+    public synchronized void openOutput() throws LineUnavailableException {
+        if (outputOpen || disposed) return;
+        sink.open(format, (int) (SINK_SECONDS * sampleRate));
+        outputOpen = true;
+        LockSupport.unpark(output);
+    }
+
+    @Override
+    public void setListener(Listener listener) {
+        this.listener = listener;
+        if (state == State.READY) changeState(State.READY);
+    }
+
+    @Override
+    public synchronized void setSpectrumListener(int bands, double intervalSeconds, SpectrumListener listener) {
+        spectrumBands = bands;
+        spectrumInterval = intervalSeconds;
+        spectrumListener = listener;
+        spectrum = listener == null ? null : new Spectrum(spectrumSize, bands, intervalSeconds, sampleRate, listener);
+    }
+
+    /**
+     * FFT length for the spectrum, see {@link SpectrumAnalyzer}; longer
+     * sizes resolve low notes better but react more slowly.
+     */
+    public synchronized void setSpectrumSize(int size) {
+        SpectrumAnalyzer.checkSize(size);
+        spectrumSize = size;
+        if (spectrumListener != null) setSpectrumListener(spectrumBands, spectrumInterval, spectrumListener);
+    }
+
+    @Override
+    public void play() {
+        State s = state;
+        if (disposed || s == State.FAILED || s == State.PLAYING) return;
+        if (s == State.FINISHED) seek(0);
+        changeState(State.PLAYING);
+    }
+
+    @Override
+    public void pause() {
+        if (state == State.PLAYING) changeState(State.PAUSED);
+    }
+
+    @Override
+    public void stop() {
+        if (disposed || state == State.FAILED) return;
+        changeState(State.STOPPED);
+        seek(0);
+    }
+
+    @Override
+    public void seek(double seconds) {
+        long frame = Math.max(0, Math.round(seconds * sampleRate));
+        if (!Double.isNaN(duration)) frame = Math.min(frame, (long) (duration * sampleRate));
+        pendingSeek.set(frame);
+        LockSupport.unpark(decoder);
+    }
+
+    @Override
+    public State getState() {
+        return state;
+    }
+
+    @Override
+    public double getPosition() {
+        long seekFrame = pendingSeek.get();
+        if (seekFrame >= 0) return seekFrame / sampleRate;
+        int buffered = outputOpen ? sink.bufferedFrames() : 0;
+        return Math.max(marker.frame, playedFrame - buffered) / sampleRate;
+    }
+
+    @Override
+    public double getDuration() {
+        return duration;
+    }
+
+    @Override
+    public void setVolume(double volume) {
+        this.volume = (float) Math.max(0, Math.min(1, volume));
+    }
+
+    @Override
+    public void setEqualizerGain(int band, double gainDb) {
+        equalizer.setGain(band, gainDb);
+    }
+
+    @Override
+    public void dispose() {
+        listener = null;
+        disposed = true;
+        LockSupport.unpark(decoder);
+        LockSupport.unpark(output);
+    }
+
+    public long getUnderruns() { return underruns; }
+    public double getLatencyMillis() { return latencyFrames * 1000.0 / sampleRate; }
+    public double getMaxLatencyMillis() { return maxLatencyFrames * 1000.0 / sampleRate; }
+
+    /** Decoded audio waiting in the ring. */
+    public double getBufferedMillis() {
+        return ring.available() / channels * 1000.0 / sampleRate;
+    }
+
+    public double getAverageLatencyMillis() {
+        long samples = latencySamples;
+        return samples == 0 ? 0 : latencyTotal * 1000.0 / samples / sampleRate;
+    }
+
+    /** Ring position where the audio for {@code frame} starts. */
+    private static final class Marker {
+        final long ringPosition;
+        final long frame;
+
+        Marker(long ringPosition, long frame) {
+            this.ringPosition = ringPosition;
+            this.frame = frame;
+        }
+    }
+
+    /**
+     * Feeds the samples sent to the device, mixed to mono, into a
+     * {@link SpectrumAnalyzer} and reports its bands every interval.
+     */
+    private static final class Spectrum {
+        private final SpectrumListener listener;
+        private final SpectrumAnalyzer analyzer;
+        private final int intervalFrames;
+        private final float[] history;
+        private final int mask;
+        private int position = 0;
+        private int sinceLast = 0;
+
+        Spectrum(int size, int bands, double intervalSeconds, float sampleRate, SpectrumListener listener) {
+            this.listener = listener;
+            this.analyzer = new SpectrumAnalyzer(size, bands, sampleRate);
+            this.intervalFrames = Math.max(1, (int) (intervalSeconds * sampleRate));
+            this.history = new float[size];
+            this.mask = size - 1;
+        }
+
+        void feed(float[] block, int frames, int channels) {
+            for (int i = 0; i < frames; i++) {
+                float mono = 0;
+                for (int c = 0; c < channels; c++) mono += block[i * channels + c];
+                history[position] = mono / channels;
+                position = (position + 1) & mask;
+            }
+            sinceLast += frames;
+            if (sinceLast >= intervalFrames) {
+                sinceLast = 0;
+                listener.onSpectrum(analyzer.analyse(history, position));
+            }
+        }
+    }
+
+    private static final class LineSink implements Sink {
+        private SourceDataLine line;
+        private int frameSize;
+
+        @Override
+        public void open(AudioFormat format, int bufferFrames) throws LineUnavailableException {
+            line = AudioSystem.getSourceDataLine(format);
+            line.open(format, bufferFrames * format.getFrameSize());
+            frameSize = format.getFrameSize();
+        }
+
+        @Override public void start() { line.start(); }
+        @Override public void stop() { line.stop(); }
+        @Override public void flush() { line.flush(); }
+        @Override public void drain() { line.drain(); }
+        @Override public void close() { line.close(); }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) {
+            while (length > 0) {
+                int n = line.write(buffer, offset, length);
+                if (n <= 0) return; // stopped or flushed
+                offset += n;
+                length -= n;
+            }
+        }
+
+        @Override
+        public int bufferedFrames() {
+            return (line.getBufferSize() - line.available()) / frameSize;
+        }
+    }
+}
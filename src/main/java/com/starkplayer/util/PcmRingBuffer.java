@@ -0,0 +1,76 @@
+package com.starkplayer.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free ring of float samples between one producer (the decoder) and
+ * one consumer (the audio output thread).
+ *
+ * Read and write positions only ever grow; each side owns one of them and
+ * publishes it with a release store after touching the samples, so neither
+ * side locks or waits inside the buffer. Callers decide how to wait when it
+ * is full or empty.
+ */
+public class PcmRingBuffer {
+
+    private final float[] data;
+    private final int mask;
+    private final AtomicLong writePosition = new AtomicLong();
+    private final AtomicLong readPosition = new AtomicLong();
+
+    /** {@code minCapacity} is rounded up to a power of two. */
+    public PcmRingBuffer(int minCapacity) {
+        int capacity = Integer.highestOneBit(Math.max(2, minCapacity - 1)) << 1;
+        data = new float[capacity];
+        mask = capacity - 1;
+    }
+
+    public int capacity() { return data.length; }
+    public long writePosition() { return writePosition.get(); }
+    public long readPosition() { return readPosition.get(); }
+
+    /** Samples written and not yet read. */
+    public int available() {
+        return (int) (writePosition.getAcquire() - readPosition.getAcquire());
+    }
+
+    /**
+     * Producer side: copies as many of {@code length} samples as fit, rounded
+     * down to a multiple of {@code granule} so whole frames stay together.
+     */
+    public int write(float[] source, int offset, int length, int granule) {
+        long w = writePosition.getPlain();
+        int free = data.length - (int) (w - readPosition.getAcquire());
+        int n = Math.min(length, free);
+        n -= n % granule;
+        copy(source, offset, w, n, true);
+        writePosition.setRelease(w + n);
+        return n;
+    }
+
+    /** Consumer side: copies up to {@code length} samples out. */
+    public int read(float[] target, int offset, int length) {
+        long r = readPosition.getPlain();
+        int n = Math.min(length, (int) (writePosition.getAcquire() - r));
+        copy(target, offset, r, n, false);
+        readPosition.setRelease(r + n);
+        return n;
+    }
+
+    /** Consumer side: drops everything before {@code position}. */
+    public void skipTo(long position) {
+        if (position > readPosition.getPlain()) readPosition.setRelease(position);
+    }
+
+    private void copy(float[] array, int offset, long position, int n, boolean in) {
+        int start = (int) (position & mask);
+        int first = Math.min(n, data.length - start);
+        if (in) {
+            System.arraycopy(array, offset, data, start, first);
+            System.arraycopy(array, offset + first, data, 0, n - first);
+        } else {
+            System.arraycopy(data, start, array, offset, first);
+            System.arraycopy(data, 0, array, offset + first, n - first);
+        }
+    }
+}
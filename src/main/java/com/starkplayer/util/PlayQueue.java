@@ -0,0 +1,457 @@
+package com.starkplayer.util;
+
+import com.starkplayer.model.Song;
+
+import java.util.ArrayDeque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Play order for a list of songs: the linear order, a shuffle permutation of
+ * it, a user-managed "up next" queue and a bounded history for Previous.
+ *
+ * Both orders are implicit treaps (position-keyed, size-augmented, with
+ * parent links), so inserting, removing, moving and locating an entry are
+ * O(log n) and stepping to the neighbouring entry is amortised O(1). The
+ * shuffle permutation is a Fisher-Yates shuffle built lazily the first time
+ * it is needed after shuffle is turned on or a cycle ends; tracks added
+ * mid-cycle are inserted at a random position among the ones not yet played,
+ * which keeps the remaining order uniformly random.
+ *
+ * Entries are tracked by Song identity. Not thread-safe.
+ */
+public class PlayQueue {
+
+    private final Tree linear = new Tree();
+    private final Tree shuffled = new Tree();
+    private final Map<Song, Entry> entries = new IdentityHashMap<>();
+    private final ArrayDeque<Entry> upNext = new ArrayDeque<>();
+    private final ArrayDeque<Entry> history = new ArrayDeque<>();
+    private final int historyLimit;
+    private final Random random;
+    private boolean shuffle = false;
+    private boolean shuffleStale = true; // shuffled order not built yet
+    private Entry current;
+    private int rebuilds = 0;
+    // When the current entry is removed, the entries that followed it
+    private Entry resumeAt;
+    private Entry resumeShuffledAt;
+
+    public PlayQueue(int historyLimit, Random random) {
+        this.historyLimit = historyLimit;
+        this.random = random;
+    }
+
+    public static final class Entry {
+        private final Song song;
+        private final Node linearNode;
+        private final Node shuffledNode;
+        private boolean removed = false;
+        private int generation; // last rebuild that kept this entry
+
+        private Entry(Song song, int linearPriority, int shuffledPriority) {
+            this.song = song;
+            this.linearNode = new Node(this, linearPriority);
+            this.shuffledNode = new Node(this, shuffledPriority);
+        }
+
+        public Song getSong() { return song; }
+    }
+
+    public int size() { return linear.size(); }
+    public Entry getCurrent() { return current; }
+    public boolean isShuffle() { return shuffle; }
+
+    public Entry entryOf(Song song) {
+        return entries.get(song);
+    }
+
+    public Entry get(int index) {
+        Node node = linear.get(index);
+        return node != null ? node.entry : null;
+    }
+
+    /** Position in the linear order, or -1 if the entry was removed. */
+    public int indexOf(Entry entry) {
+        return entry == null || entry.removed ? -1 : linear.indexOf(entry.linearNode);
+    }
+
+    public Entry add(Song song) {
+        return add(linear.size(), song);
+    }
+
+    public Entry add(int index, Song song) {
+        Entry entry = new Entry(song, random.nextInt(), random.nextInt());
+        entries.put(song, entry);
+        if (current == null && resumeAt != null && linear.indexOf(resumeAt.linearNode) == index) {
+            resumeAt = entry;
+        }
+        linear.insert(index, entry.linearNode);
+        if (!shuffleStale) {
+            // Anywhere among the tracks not played yet in this cycle
+            int from = shuffledCursor() + 1;
+            int position = from + random.nextInt(shuffled.size() - from + 1);
+            if (current == null && resumeShuffledAt != null && position == from) {
+                resumeShuffledAt = entry;
+            }
+            shuffled.insert(position, entry.shuffledNode);
+        }
+        return entry;
+    }
+
+    public void remove(Entry entry) {
+        if (entry == null || entry.removed) return;
+        if (entry == current) {
+            resumeAt = entryAt(linear.next(entry.linearNode));
+            resumeShuffledAt = shuffleStale ? null : entryAt(shuffled.next(entry.shuffledNode));
+            current = null;
+        } else {
+            if (entry == resumeAt) resumeAt = entryAt(linear.next(entry.linearNode));
+            if (entry == resumeShuffledAt) resumeShuffledAt = entryAt(shuffled.next(entry.shuffledNode));
+        }
+        linear.remove(entry.linearNode);
+        if (!shuffleStale) shuffled.remove(entry.shuffledNode);
+        entries.remove(entry.song);
+        entry.removed = true; // history and up next drop it lazily
+    }
+
+    /** Moves an entry to {@code index} in the linear order. */
+    public void move(Entry entry, int index) {
+        if (entry == null || entry.removed) return;
+        linear.remove(entry.linearNode);
+        linear.insert(Math.min(index, linear.size()), entry.linearNode);
+    }
+
+    /**
+     * Replaces the contents with {@code songs} in O(n). Entries for songs that
+     * are still present are kept, so the current track and history survive;
+     * the shuffle permutation starts a new cycle.
+     */
+    public void rebuild(List<Song> songs) {
+        int generation = ++rebuilds;
+        Node[] nodes = new Node[songs.size()];
+        int count = 0;
+        for (Song song : songs) {
+            Entry entry = entries.get(song);
+            if (entry == null) {
+                entry = new Entry(song, random.nextInt(), random.nextInt());
+                entries.put(song, entry);
+            } else if (entry.generation == generation) {
+                continue; // the same instance twice; keep the first
+            }
+            entry.generation = generation;
+            nodes[count++] = entry.linearNode;
+        }
+        if (entries.size() > count) {
+            entries.values().removeIf(entry -> {
+                if (entry.generation == generation) return false;
+                entry.removed = true;
+                return true;
+            });
+        }
+        linear.build(nodes, count);
+        if (current != null && current.removed) current = null;
+        if (resumeAt != null && resumeAt.removed) resumeAt = null;
+        resumeShuffledAt = null;
+        shuffleStale = true;
+    }
+
+    public void clear() {
+        rebuild(List.of());
+        upNext.clear();
+        history.clear();
+    }
+
+    /** Plays {@code entry} right after the current track, ahead of the regular order. */
+    public void enqueueNext(Entry entry) {
+        if (entry == null || entry.removed) return;
+        upNext.addFirst(entry);
+    }
+
+    public void setShuffle(boolean shuffle) {
+        if (this.shuffle != shuffle) {
+            this.shuffle = shuffle;
+            shuffleStale = true;
+            resumeShuffledAt = null;
+        }
+    }
+
+    /**
+     * Makes {@code entry} the current track. With shuffle on it is moved up
+     * to right after the old position, so the tracks after it in this cycle
+     * stay unplayed.
+     */
+    public void select(Entry entry, boolean recordHistory) {
+        if (entry != null && entry.removed) entry = null;
+        if (recordHistory && current != null && current != entry) {
+            history.addLast(current);
+            if (history.size() > historyLimit) history.removeFirst();
+        }
+        if (entry != null && !upNext.isEmpty()) upNext.remove(entry);
+        if (entry != null && entry != current && shuffle && !shuffleStale) {
+            shuffled.remove(entry.shuffledNode);
+            shuffled.insert(shuffledCursor() + 1, entry.shuffledNode);
+        }
+        current = entry;
+        resumeAt = null;
+        resumeShuffledAt = null;
+    }
+
+    /**
+     * The entry that plays after the current one: up next first, then the
+     * shuffle or linear order. With {@code repeatAll} the order wraps around,
+     * starting a new shuffle cycle that does not begin with the current track.
+     */
+    public Entry peekNext(boolean repeatAll) {
+        while (!upNext.isEmpty() && upNext.peekFirst().removed) upNext.pollFirst();
+        if (!upNext.isEmpty()) return upNext.peekFirst();
+        if (linear.size() == 0) return null;
+        if (shuffle) {
+            if (shuffleStale) reshuffle();
+            Node next = following(shuffled, current != null ? current.shuffledNode : null, resumeShuffledAt);
+            if (next == null && repeatAll && shuffled.size() > 1) {
+                reshuffle();
+                next = current != null ? shuffled.next(shuffled.first()) : shuffled.first();
+            }
+            return entryAt(next);
+        }
+        Node next = following(linear, current != null ? current.linearNode : null, resumeAt);
+        if (next == null && repeatAll) next = linear.first();
+        return entryAt(next);
+    }
+
+    /**
+     * Takes the most recent entry off the history. Without history, steps
+     * back in the active order, wrapping with {@code repeatAll}.
+     */
+    public Entry popPrevious(boolean repeatAll) {
+        while (!history.isEmpty()) {
+            Entry entry = history.pollLast();
+            if (!entry.removed && entry != current) return entry;
+        }
+        if (current == null) return null;
+        boolean inShuffle = shuffle && !shuffleStale;
+        Tree order = inShuffle ? shuffled : linear;
+        Node node = inShuffle ? current.shuffledNode : current.linearNode;
+        Node previous = order.previous(node);
+        if (previous == null && repeatAll) previous = order.last();
+        return entryAt(previous);
+    }
+
+    private Node following(Tree order, Node node, Entry resume) {
+        if (node != null) return order.next(node);
+        if (resume != null) return order == linear ? resume.linearNode : resume.shuffledNode;
+        return order.first();
+    }
+
+    /** Position of the current track in the shuffled order; -1 before the first. */
+    private int shuffledCursor() {
+        if (current != null) return shuffled.indexOf(current.shuffledNode);
+        if (resumeShuffledAt != null) return shuffled.indexOf(resumeShuffledAt.shuffledNode) - 1;
+        return -1;
+    }
+
+    /** Builds a fresh Fisher-Yates permutation with the current track first. */
+    private void reshuffle() {
+        Entry[] order = new Entry[linear.size()];
+        int n = 0;
+        for (Node node = linear.first(); node != null; node = linear.next(node)) {
+            order[n++] = node.entry;
+        }
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            Entry tmp = order[i];
+            order[i] = order[j];
+            order[j] = tmp;
+        }
+        Node[] nodes = new Node[n];
+        int first = 0;
+        if (current != null) nodes[first++] = current.shuffledNode;
+        for (int i = 0; i < n; i++) {
+            if (order[i] != current) nodes[first++] = order[i].shuffledNode;
+        }
+        shuffled.build(nodes, n);
+        shuffleStale = false;
+        resumeShuffledAt = null;
+    }
+
+    private static Entry entryAt(Node node) {
+        return node != null ? node.entry : null;
+    }
+
+    private static final class Node {
+        final Entry entry;
+        final int priority;
+        Node left, right, parent;
+        int size = 1;
+
+        Node(Entry entry, int priority) {
+            this.entry = entry;
+            this.priority = priority;
+        }
+    }
+
+    /** Implicit treap: in-order position is the key, priorities keep it balanced. */
+    private static final class Tree {
+        private Node root;
+        private Node splitLeft, splitRight;
+
+        int size() {
+            return size(root);
+        }
+
+        Node get(int index) {
+            Node t = root;
+            while (t != null) {
+                int leftSize = size(t.left);
+                if (index < leftSize) {
+                    t = t.left;
+                } else if (index == leftSize) {
+                    return t;
+                } else {
+                    index -= leftSize + 1;
+                    t = t.right;
+                }
+            }
+            return null;
+        }
+
+        int indexOf(Node node) {
+            int index = size(node.left);
+            for (Node x = node; x.parent != null; x = x.parent) {
+                if (x == x.parent.right) index += size(x.parent.left) + 1;
+            }
+            return index;
+        }
+
+        Node first() {
+            Node t = root;
+            while (t != null && t.left != null) t = t.left;
+            return t;
+        }
+
+        Node last() {
+            Node t = root;
+            while (t != null && t.right != null) t = t.right;
+            return t;
+        }
+
+        Node next(Node node) {
+            if (node.right != null) {
+                Node t = node.right;
+                while (t.left != null) t = t.left;
+                return t;
+            }
+            Node x = node;
+            while (x.parent != null && x == x.parent.right) x = x.parent;
+            return x.parent;
+        }
+
+        Node previous(Node node) {
+            if (node.left != null) {
+                Node t = node.left;
+                while (t.right != null) t = t.right;
+                return t;
+            }
+            Node x = node;
+            while (x.parent != null && x == x.parent.left) x = x.parent;
+            return x.parent;
+        }
+
+        void insert(int index, Node node) {
+            node.left = node.right = node.parent = null;
+            node.size = 1;
+            split(root, index);
+            Node right = splitRight;
+            root = merge(merge(splitLeft, node), right);
+            root.parent = null;
+        }
+
+        void remove(Node node) {
+            // Children of one node merge below its priority, so no rotations are needed
+            Node merged = merge(node.left, node.right);
+            Node parent = node.parent;
+            if (merged != null) merged.parent = parent;
+            if (parent == null) {
+                root = merged;
+            } else if (parent.left == node) {
+                parent.left = merged;
+            } else {
+                parent.right = merged;
+            }
+            for (Node x = parent; x != null; x = x.parent) x.size--;
+            node.left = node.right = node.parent = null;
+            node.size = 1;
+        }
+
+        /** Builds the tree from nodes in order, in O(n), with a Cartesian-tree stack. */
+        void build(Node[] nodes, int count) {
+            Node[] stack = new Node[Math.max(1, count)];
+            int top = 0;
+            for (int i = 0; i < count; i++) {
+                Node node = nodes[i];
+                node.left = node.right = node.parent = null;
+                Node last = null;
+                while (top > 0 && stack[top - 1].priority < node.priority) {
+                    last = stack[--top];
+                    update(last); // its subtree is final once it leaves the stack
+                }
+                node.left = last;
+                if (last != null) last.parent = node;
+                if (top > 0) {
+                    stack[top - 1].right = node;
+                    node.parent = stack[top - 1];
+                }
+                stack[top++] = node;
+            }
+            while (top > 0) update(stack[--top]);
+            root = count > 0 ? stack[0] : null;
+        }
+
+        /** Splits {@code t} into its first {@code k} nodes (splitLeft) and the rest (splitRight). */
+        private void split(Node t, int k) {
+            if (t == null) {
+                splitLeft = splitRight = null;
+                return;
+            }
+            if (size(t.left) < k) {
+                split(t.right, k - size(t.left) - 1);
+                t.right = splitLeft;
+                if (splitLeft != null) splitLeft.parent = t;
+                update(t);
+                splitLeft = t;
+            } else {
+                split(t.left, k);
+                t.left = splitRight;
+                if (splitRight != null) splitRight.parent = t;
+                update(t);
+                splitRight = t;
+            }
+        }
+
+        private Node merge(Node a, Node b) {
+            if (a == null) return b;
+            if (b == null) return a;
+            if (a.priority > b.priority) {
+                a.right = merge(a.right, b);
+                a.right.parent = a;
+                update(a);
+                return a;
+            }
+            b.left = merge(a, b.left);
+            b.left.parent = b;
+            update(b);
+            return b;
+        }
+
+        private static void update(Node t) {
+            t.size = 1 + size(t.left) + size(t.right);
+        }
+
+        private static int size(Node t) {
+            return t == null ? 0 : t.size;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.starkplayer.util;
+
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.Executor;
+
+/**
+ * One opened track and the controls the player needs for it.
+ *
+ * Listener calls go through the executor the engine was opened with
+ * (Platform::runLater in the app, a direct executor when headless). Spectrum
+ * frames are delivered on the engine's own audio thread and must be copied
+ * out before returning.
+ */
+public interface PlaybackEngine {
+
+    enum State { OPENING, READY, PLAYING, PAUSED, STOPPED, FINISHED, FAILED }
+
+    interface Listener {
+        void onStateChanged(State state);
+        void onPosition(double seconds);
+        void onEndOfMedia();
+        void onError(String message);
+    }
+
+    interface SpectrumListener {
+        /** Band magnitudes in dB, 0 at full scale and -60 at the floor. */
+        void onSpectrum(float[] magnitudes);
+    }
+
+    /**
+     * Opens {@code file} with the PCM engine when javax.sound can decode it
+     * and an output line is available, otherwise with the JavaFX player.
+     */
+    static PlaybackEngine open(Path file, Executor events) {
+        try {
+            return new PcmPlaybackEngine(file, PcmPlaybackEngine.lineSink(), events);
+        } catch (UnsupportedAudioFileException | LineUnavailableException | IOException | IllegalArgumentException e) {
+            return new FxPlaybackEngine(file, events);
+        }
+    }
+
+    /**
+     * Opens {@code file} for a track that plays later, like {@link #open}
+     * but without the output line; {@link #openOutput} takes it before
+     * playing. Only one line can be open on some devices, and a spare
+     * holding a second one would push the current track onto the JavaFX
+     * player.
+     */
+    static PlaybackEngine preload(Path file, Executor events) {
+        try {
+            return PcmPlaybackEngine.preload(file, PcmPlaybackEngine.lineSink(), events);
+        } catch (UnsupportedAudioFileException | IOException | IllegalArgumentException e) {
+            return new FxPlaybackEngine(file, events);
+        }
+    }
+
+    /**
+     * Opens the output for an engine from {@link #preload}; does nothing if
+     * it is open already or the engine needs none of its own.
+     */
+    default void openOutput() throws LineUnavailableException {
+    }
+
+    /**
+     * Sets the listener. If the engine is already READY the listener is told
+     * so straight away, since that event has passed.
+     */
+    void setListener(Listener listener);
+
+    void setSpectrumListener(int bands, double intervalSeconds, SpectrumListener listener);
+
+    void play();
+    void pause();
+    void stop();
+    void seek(double seconds);
+
+    State getState();
+    double getPosition();
+
+    /** Track length in seconds, NaN while unknown. */
+    double getDuration();
+
+    void setVolume(double volume);
+    void setEqualizerGain(int band, double gainDb);
+
+    void dispose();
+}
@@ -0,0 +1,107 @@
+package com.starkplayer.util;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR events for the operations users notice when they are slow. Record
+ * them with, for example:
+ *
+ *   java -XX:StartFlightRecording:filename=starkplayer.jfr ...
+ *   jcmd <pid> JFR.start name=starkplayer
+ *
+ * and open the recording in JDK Mission Control under "StarkPlayer". With
+ * no recording running, {@code begin}/{@code commit} are no-ops the JIT
+ * removes, and fields that cost anything to compute are only filled in
+ * after {@code shouldCommit()}.
+ */
+public final class PlayerEvents {
+
+    private PlayerEvents() {
+    }
+
+    @Name("com.starkplayer.LibraryScan")
+    @Label("Library Scan")
+    @Category({"StarkPlayer", "Library"})
+    @Description("Walk of one or more music folders")
+    @StackTrace(false)
+    public static final class LibraryScan extends Event {
+        @Label("Roots") public String roots;
+        @Label("Files Found") public long files;
+        @Label("Directories Visited") public long directories;
+        @Label("Cancelled") public boolean cancelled;
+    }
+
+    @Name("com.starkplayer.MetadataRead")
+    @Label("Metadata Read")
+    @Category({"StarkPlayer", "Library"})
+    @Description("Tag lookup for one track, from the cache or the file")
+    @StackTrace(false)
+    public static final class MetadataRead extends Event {
+        @Label("File") public String file;
+        @Label("File Size") @DataAmount public long fileSize;
+        @Label("Track Length") @Timespan(Timespan.SECONDS) public long trackLength;
+        @Label("Outcome") @Description("cached, header, full-scan or failed") public String outcome;
+    }
+
+    @Name("com.starkplayer.PlaylistLoad")
+    @Label("Playlist Load")
+    @Category({"StarkPlayer", "Playlist"})
+    @Description("M3U load, from opening the file to the last entry resolved")
+    @StackTrace(false)
+    public static final class PlaylistLoad extends Event {
+        @Label("Playlist") public String playlist;
+        @Label("Size") @DataAmount public long bytes;
+        @Label("Entries") public long entries;
+        @Label("Missing") public long missing;
+        @Label("First Batch") @Timespan(Timespan.MILLISECONDS) public long firstBatch;
+        @Label("Cancelled") public boolean cancelled;
+        @Label("Error") public String error;
+    }
+
+    @Name("com.starkplayer.PlaylistSave")
+    @Label("Playlist Save")
+    @Category({"StarkPlayer", "Playlist"})
+    @StackTrace(false)
+    public static final class PlaylistSave extends Event {
+        @Label("Playlist") public String playlist;
+        @Label("Entries") public long entries;
+    }
+
+    @Name("com.starkplayer.EngineOpen")
+    @Label("Playback Engine Open")
+    @Category({"StarkPlayer", "Playback"})
+    @Description("From asking for a track to its engine being ready to play")
+    @StackTrace(false)
+    public static final class EngineOpen extends Event {
+        @Label("File") public String file;
+        @Label("Engine") public String engine;
+        @Label("Preloaded") public boolean preloaded;
+    }
+
+    @Name("com.starkplayer.AudioUnderrun")
+    @Label("Audio Underrun")
+    @Category({"StarkPlayer", "Playback"})
+    @Description("The sound card ran dry while playing")
+    @StackTrace(false)
+    public static final class AudioUnderrun extends Event {
+        @Label("Position") @Timespan(Timespan.MILLISECONDS) public long position;
+        @Label("Decoded Ahead") @Timespan(Timespan.MILLISECONDS) public long bufferedAhead;
+    }
+
+    @Name("com.starkplayer.VisualizerFrame")
+    @Label("Visualizer Frame")
+    @Category({"StarkPlayer", "UI"})
+    @Description("One spectrum frame drawn on the FX thread")
+    @StackTrace(false)
+    public static final class VisualizerFrame extends Event {
+        @Label("Mode") public int mode;
+        @Label("Missed Frames") @Description("60 Hz periods skipped before this frame") public long missed;
+    }
+}
@@ -0,0 +1,338 @@
+package com.starkplayer.util;
+
+import com.starkplayer.model.Song;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Loads M3U/M3U8 playlists without blocking the caller.
+ *
+ * One task streams the file and hands out entries as soon as they are
+ * parsed, titled and timed from their {@code #EXTINF} line. Each batch is
+ * then checked for existence on the pool in parallel; missing files are
+ * reported so the caller can drop them, and the files found are handed to
+ * the {@link MetadataScheduler}, which reads their tags in its own order
+ * and at the concurrency the storage sustains.
+ */
+public class PlaylistLoader {
+
+    private static final int BATCH_SIZE = 256;
+    private static final long BATCH_INTERVAL_NANOS = 30_000_000L;
+    private static final int RESOLVE_CHUNK = 64;
+
+    private static final Metrics.Histogram LOAD_TIME = Metrics.histogram("playlist.load");
+    private static final Metrics.Histogram FIRST_BATCH_TIME = Metrics.histogram("playlist.first-batch");
+    private static final Metrics.Counter LOAD_ENTRIES = Metrics.counter("playlist.entries");
+    private static final Metrics.Counter LOAD_MISSING = Metrics.counter("playlist.missing");
+
+    private final ForkJoinPool pool;
+    private final MetadataScheduler metadata;
+
+    public PlaylistLoader(MetadataScheduler metadata) {
+        this(Math.max(2, Runtime.getRuntime().availableProcessors()), metadata);
+    }
+
+    /**
+     * @param parallelism  threads checking that entries exist
+     * @param metadata     reads the tags of the entries found
+     */
+    public PlaylistLoader(int parallelism, MetadataScheduler metadata) {
+        this.pool = new ForkJoinPool(parallelism);
+        this.metadata = metadata;
+    }
+
+    /**
+     * Callbacks for a running load. All of them run on pool threads.
+     */
+    public interface Listener {
+        /** Parsed entries, in playlist order, before their files are checked. Read-only. */
+        void onEntries(Load load, List<Song> entries);
+
+        /**
+         * Entries whose files exist and those that do not. The found ones
+         * are queued for tagging; they are reported again through the
+         * scheduler once read.
+         */
+        void onResolved(Load load, List<Song> found, List<Song> missing);
+
+        /** Runs once after every entry is resolved, also when cancelled or failed. */
+        void onDone(Load load);
+    }
+
+    public Load load(Path playlist, Listener listener) {
+        Load load = new Load(playlist, listener);
+        pool.execute(load::parse);
+        return load;
+    }
+
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Handle for a running load: progress, cancellation and throughput.
+     */
+    public class Load {
+        private final Path playlist;
+        private final Path baseDir;
+        private final Listener listener;
+        private final AtomicLong parsed = new AtomicLong();
+        private final AtomicLong resolved = new AtomicLong();
+        private final AtomicLong missing = new AtomicLong();
+        private final AtomicInteger outstanding = new AtomicInteger(1); // the parser itself
+        private final long startNanos = System.nanoTime();
+        private volatile long firstBatchNanos = 0;
+        private volatile long endNanos = 0;
+        private volatile long bytesTotal = 0;
+        private volatile long bytesRead = 0;
+        private volatile boolean cancelled = false;
+        private volatile IOException error;
+        private final PlayerEvents.PlaylistLoad event = new PlayerEvents.PlaylistLoad();
+
+        Load(Path playlist, Listener listener) {
+            this.playlist = playlist;
+            Path parent = playlist.toAbsolutePath().getParent();
+            this.baseDir = parent != null ? parent : Path.of("");
+            this.listener = listener;
+            event.begin();
+        }
+
+        public Path getPlaylist() { return playlist; }
+        public void cancel() { cancelled = true; }
+        public boolean isCancelled() { return cancelled; }
+        public boolean isDone() { return endNanos != 0; }
+        public IOException getError() { return error; }
+        public long getEntriesParsed() { return parsed.get(); }
+        public long getEntriesResolved() { return resolved.get(); }
+        public long getEntriesMissing() { return missing.get(); }
+
+        /** Fraction of the playlist file read so far, 0 to 1. */
+        public double getParseProgress() {
+            long total = bytesTotal;
+            return total == 0 ? (isDone() ? 1 : 0) : Math.min(1.0, (double) bytesRead / total);
+        }
+
+        public long getFirstBatchMillis() {
+            long first = firstBatchNanos;
+            return first == 0 ? -1 : (first - startNanos) / 1_000_000;
+        }
+
+        public long getElapsedMillis() {
+            long end = endNanos != 0 ? endNanos : System.nanoTime();
+            return (end - startNanos) / 1_000_000;
+        }
+
+        public double getEntriesPerSecond() {
+            long elapsed = Math.max(1, getElapsedMillis());
+            return resolved.get() * 1000.0 / elapsed;
+        }
+
+        private void parse() {
+            try (FileChannel channel = FileChannel.open(playlist, StandardOpenOption.READ);
+                 BufferedReader reader = new BufferedReader(
+                         new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8), 64 * 1024)) {
+                bytesTotal = channel.size();
+                List<Song> batch = new ArrayList<>();
+                long lastFlush = startNanos - BATCH_INTERVAL_NANOS; // first entry goes out immediately
+                EntryParser parser = new EntryParser(baseDir);
+                String line;
+                while (!cancelled && (line = reader.readLine()) != null) {
+                    if (parser.accept(line)) {
+                        Song song = parser.take();
+                        if (song != null) {
+                            batch.add(song);
+                            parsed.incrementAndGet();
+                        }
+                        long now = System.nanoTime();
+                        if (batch.size() >= BATCH_SIZE || now - lastFlush >= BATCH_INTERVAL_NANOS) {
+                            bytesRead = channel.position();
+                            deliver(batch);
+                            batch = new ArrayList<>();
+                            lastFlush = now;
+                        }
+                    }
+                }
+                bytesRead = bytesTotal;
+                deliver(batch);
+            } catch (IOException e) {
+                error = e;
+            } finally {
+                release();
+            }
+        }
+
+        private void deliver(List<Song> batch) {
+            if (batch.isEmpty() || cancelled) return;
+            if (firstBatchNanos == 0) firstBatchNanos = System.nanoTime();
+            listener.onEntries(this, Collections.unmodifiableList(batch));
+            for (int from = 0; from < batch.size(); from += RESOLVE_CHUNK) {
+                List<Song> chunk = batch.subList(from, Math.min(batch.size(), from + RESOLVE_CHUNK));
+                outstanding.incrementAndGet();
+                pool.execute(() -> {
+                    try {
+                        resolveChunk(chunk);
+                    } finally {
+                        release();
+                    }
+                });
+            }
+        }
+
+        private void resolveChunk(List<Song> chunk) {
+            List<Song> found = new ArrayList<>(chunk.size());
+            List<Song> gone = new ArrayList<>();
+            for (Song song : chunk) {
+                if (cancelled) return;
+                if (Files.isRegularFile(song.getFile())) {
+                    found.add(song);
+                } else {
+                    gone.add(song);
+                }
+            }
+            resolved.addAndGet(found.size());
+            missing.addAndGet(gone.size());
+            if (cancelled) return;
+            metadata.submitAll(found);
+            listener.onResolved(this, found, gone);
+        }
+
+        private void release() {
+            if (outstanding.decrementAndGet() == 0) {
+                endNanos = System.nanoTime();
+                record();
+                listener.onDone(this);
+            }
+        }
+
+        private void record() {
+            LOAD_TIME.record(endNanos - startNanos);
+            if (firstBatchNanos != 0) FIRST_BATCH_TIME.record(firstBatchNanos - startNanos);
+            LOAD_ENTRIES.add(resolved.get());
+            LOAD_MISSING.add(missing.get());
+            event.end();
+            if (event.shouldCommit()) {
+                event.playlist = playlist.toString();
+                event.bytes = bytesTotal;
+                event.entries = parsed.get();
+                event.missing = missing.get();
+                event.firstBatch = getFirstBatchMillis();
+                event.cancelled = cancelled;
+                event.error = error != null ? error.getMessage() : null;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Reads a whole playlist on the calling thread, without checking that
+     * the files exist. For tools and benchmarks; the app uses {@link #load}.
+     */
+    public static void parse(Path playlist, Consumer<Song> entries) throws IOException {
+        Path parent = playlist.toAbsolutePath().getParent();
+        EntryParser parser = new EntryParser(parent != null ? parent : Path.of(""));
+        try (BufferedReader reader = Files.newBufferedReader(playlist, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (parser.accept(line)) {
+                    Song song = parser.take();
+                    if (song != null) entries.accept(song);
+                }
+            }
+        }
+    }
+
+    /**
+     * Line-by-line M3U state: remembers the last {@code #EXTINF} title and
+     * duration and applies them to the next path line.
+     */
+    private static final class EntryParser {
+        private final Path baseDir;
+        private boolean first = true;
+        private String title;
+        private long duration;
+        private Song entry;
+
+        EntryParser(Path baseDir) {
+            this.baseDir = baseDir;
+        }
+
+        /** Returns true when {@code line} ended an entry; {@link #take} has it, or null if the path was bad. */
+        boolean accept(String line) {
+            if (first) {
+                if (!line.isEmpty() && line.charAt(0) == '\uFEFF') line = line.substring(1);
+                first = false;
+            }
+            line = line.trim();
+            if (line.startsWith("#EXTINF:")) {
+                // #EXTINF:<seconds>[ attributes],<title>
+                int commaIndex = line.indexOf(',');
+                if (commaIndex > 0 && commaIndex < line.length() - 1) {
+                    title = line.substring(commaIndex + 1);
+                }
+                duration = parseDuration(line, commaIndex);
+                return false;
+            }
+            if (line.isEmpty() || line.startsWith("#")) return false;
+            Path path = resolve(line);
+            entry = null;
+            if (path != null) {
+                entry = new Song(path, title != null ? title : path.getFileName().toString());
+                if (duration > 0) entry.setDuration(duration);
+            }
+            title = null; // Reset for next entry
+            duration = 0;
+            return true;
+        }
+
+        Song take() {
+            Song song = entry;
+            entry = null;
+            return song;
+        }
+
+        private Path resolve(String entry) {
+            try {
+                if (entry.startsWith("file:")) {
+                    return Path.of(URI.create(entry));
+                }
+                Path path = Path.of(entry);
+                if (path.getFileName() == null) return null;
+                // Relative entries are relative to the playlist, not the working directory
+                return path.isAbsolute() ? path : baseDir.resolve(path).normalize();
+            } catch (IllegalArgumentException e) { // malformed path or URI
+                return null;
+            }
+        }
+    }
+
+    /** Seconds from an {@code #EXTINF} line; -1 and unparsable values mean unknown. */
+    private static long parseDuration(String line, int commaIndex) {
+        int end = commaIndex > 0 ? commaIndex : line.length();
+        int start = "#EXTINF:".length();
+        int i = start;
+        if (i < end && line.charAt(i) == '-') return 0;
+        long seconds = 0;
+        while (i < end && Character.isDigit(line.charAt(i))) {
+            seconds = seconds * 10 + (line.charAt(i) - '0');
+            if (seconds > Integer.MAX_VALUE) return 0;
+            i++;
+        }
+        return i > start ? seconds : 0;
+    }
+}
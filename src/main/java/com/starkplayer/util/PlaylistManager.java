@@ -6,13 +6,11 @@ import javafx.stage.FileChooser;
 import javafx.stage.Window;
 
 import java.io.*;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.util.ArrayList;
 import java.util.List;
 
 public class PlaylistManager {
+
+    private static final Metrics.Histogram SAVE_TIME = Metrics.histogram("playlist.save");
     
     public static void savePlaylist(ObservableList<Song> songs, Window window) {
         FileChooser fileChooser = new FileChooser();
@@ -24,56 +22,49 @@ public class PlaylistManager {
         
         File file = fileChooser.showSaveDialog(window);
         if (file != null) {
-            try (PrintWriter writer = new PrintWriter(new FileWriter(file))) {
-                writer.println("#EXTM3U");
-                for (Song song : songs) {
-                    writer.println("#EXTINF:" + song.getDuration() + "," + song.getDisplayTitle());
-                    writer.println(song.getFile().toAbsolutePath().toString());
-                }
+            PlayerEvents.PlaylistSave event = new PlayerEvents.PlaylistSave();
+            event.begin();
+            long start = System.nanoTime();
+            try (Writer writer = new BufferedWriter(new FileWriter(file))) {
+                writePlaylist(songs, writer);
             } catch (IOException e) {
                 throw new RuntimeException("Failed to save playlist: " + e.getMessage(), e);
             }
+            SAVE_TIME.record(System.nanoTime() - start);
+            event.end();
+            if (event.shouldCommit()) {
+                event.playlist = file.getPath();
+                event.entries = songs.size();
+                event.commit();
+            }
         }
     }
     
-    public static List<Song> loadPlaylist(Window window) {
+    /**
+     * Writes {@code songs} as an extended M3U playlist with absolute paths.
+     */
+    public static void writePlaylist(List<Song> songs, Writer writer) throws IOException {
+        String newline = System.lineSeparator();
+        writer.write("#EXTM3U");
+        writer.write(newline);
+        for (Song song : songs) {
+            writer.write("#EXTINF:" + song.getDuration() + "," + song.getDisplayTitle());
+            writer.write(newline);
+            writer.write(song.getFile().toAbsolutePath().toString());
+            writer.write(newline);
+        }
+    }
+
+    /**
+     * Asks for a playlist to open; reading it is left to {@link PlaylistLoader}.
+     */
+    public static File choosePlaylist(Window window) {
         FileChooser fileChooser = new FileChooser();
         fileChooser.setTitle("Load Playlist");
         fileChooser.getExtensionFilters().add(
-            new FileChooser.ExtensionFilter("Playlist Files", "*.m3u")
+            new FileChooser.ExtensionFilter("Playlist Files", "*.m3u", "*.m3u8")
         );
         
-        File file = fileChooser.showOpenDialog(window);
-        if (file != null) {
-            List<Song> songs = new ArrayList<>();
-            try (BufferedReader reader = Files.newBufferedReader(file.toPath())) {
-                String line;
-                String title = null;
-                while ((line = reader.readLine()) != null) {
-                    line = line.trim();
-                    if (line.startsWith("#EXTINF:")) {
-                        // Extract title from EXTINF line
-                        int commaIndex = line.indexOf(',');
-                        if (commaIndex > 0 && commaIndex < line.length() - 1) {
-                            title = line.substring(commaIndex + 1);
-                        }
-                    } else if (!line.isEmpty() && !line.startsWith("#")) {
-                        // This is a file path
-                        Path path = Paths.get(line);
-                        if (Files.exists(path)) {
-                            Song song = new Song(path, title != null ? title : path.getFileName().toString());
-                            MetadataExtractor.extractMetadata(song);
-                            songs.add(song);
-                            title = null; // Reset for next entry
-                        }
-                    }
-                }
-            } catch (IOException e) {
-                throw new RuntimeException("Failed to load playlist: " + e.getMessage(), e);
-            }
-            return songs;
-        }
-        return new ArrayList<>();
+        return fileChooser.showOpenDialog(window);
     }
 }
-
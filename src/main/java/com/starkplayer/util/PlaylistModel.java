@@ -0,0 +1,926 @@
+package com.starkplayer.util;
+
+import com.starkplayer.model.Song;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import javafx.collections.ObservableListBase;
+
+import java.lang.reflect.Array;
+import java.nio.file.Path;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+/**
+ * The playlist as the list view sees it: the library narrowed down by the
+ * current search and optionally sorted, without copying it.
+ *
+ * A row is the index of its song in the library, so the view costs one int
+ * per visible track and songs are only fetched for the rows the list view
+ * asks for, which are the ones on screen. Their tags live in the
+ * {@link com.starkplayer.model.TrackStore}, so a million-track library
+ * stays a few dozen bytes per track however it is filtered.
+ *
+ * Filtering is answered by the {@link SearchIndex}: the model keeps each
+ * track's index id in a column filled in after the library changes, so a
+ * keystroke tests one bit per track in a tight loop instead of looking every
+ * song up. Library changes are merged into the view in one pass and
+ * reported as precise changes, so selection and the play queue follow
+ * along during a scan; songs added while a search is active are shown if
+ * they match it.
+ *
+ * Sorting compares keys computed once per track rather than tags: for text,
+ * the first eight chars of its search-normalized form (case and accents
+ * folded) packed into a long, with the folded text kept only when the long
+ * does not hold all of it. Folders are keyed by what follows the folder
+ * the whole library is in. The whole library is kept in sort order, so a
+ * search in a sorted view is still one pass; new songs are merged in and
+ * songs whose tags arrive are moved, without re-sorting the rest. Ties keep
+ * library order.
+ *
+ * Use it from the FX thread, like the library it wraps.
+ */
+public final class PlaylistModel extends ObservableListBase<Song> {
+
+    /** Columns the playlist can be sorted by, each ascending. */
+    public enum SortField {
+        ARTIST, ALBUM, YEAR, TITLE, DURATION,
+        /** By folder, then file name, so a folder's files stay together. */
+        FILE
+    }
+
+    /** What one sort key is computed from; a file takes two. */
+    private enum Column {
+        ARTIST, ALBUM, YEAR, TITLE, DURATION, FOLDER, FILE_NAME;
+
+        boolean isText() {
+            return this != YEAR && this != DURATION;
+        }
+
+        static Column[] of(SortField[] fields) {
+            List<Column> columns = new ArrayList<>();
+            for (SortField field : fields) {
+                if (field == SortField.FILE) {
+                    columns.add(FOLDER);
+                    columns.add(FILE_NAME);
+                } else {
+                    columns.add(valueOf(field.name()));
+                }
+            }
+            return columns.toArray(new Column[0]);
+        }
+    }
+
+    // Below this many tracks keys are computed on the calling thread
+    private static final int PARALLEL_KEYS = 8192;
+
+    private final ObservableList<Song> source;
+    private final SearchIndex index;
+    private SearchIndex.Result filter; // null shows everything
+    private int[] rows = new int[1024];
+    private int size = 0;
+    private int[] searchIds = new int[1024];
+    private int searchIdsValid = 0; // ids below this index match the library
+    private int[] sourceOfId = new int[1024];
+
+    // Sort state, only kept while sorted
+    private SortField[] order = new SortField[0];
+    private Column[] columns = new Column[0];
+    private long[][] keys;    // per column, per library index
+    private String[][] texts; // per text column, folded text the key does not hold in full
+    private int[] sorted;     // the whole library in sort order, null in library order
+    private int sortedSize;
+    private int[] positions = new int[0];
+    private String folderRoot; // folded folder every library folder starts with
+    // Artists, albums and folders repeat across tracks, so their folded forms are shared
+    private final Map<String, String> foldedNames = new ConcurrentHashMap<>();
+    private final Map<Path, String> foldedFolders = new ConcurrentHashMap<>();
+
+    /**
+     * The index must be kept in sync with {@code source} by a listener
+     * registered before this model, so songs are indexed by the time the
+     * model tests them against the search.
+     */
+    public PlaylistModel(ObservableList<Song> source, SearchIndex index) {
+        this.source = source;
+        this.index = index;
+        source.addListener((ListChangeListener<Song>) this::sourceChanged);
+        int n = source.size();
+        rows = new int[Math.max(1024, n)];
+        for (int i = 0; i < n; i++) rows[i] = i;
+        size = n;
+    }
+
+    @Override
+    public Song get(int viewIndex) {
+        Objects.checkIndex(viewIndex, size);
+        return source.get(rows[viewIndex]);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /** Library index of the song shown at {@code viewIndex}. */
+    public int getSourceIndex(int viewIndex) {
+        Objects.checkIndex(viewIndex, size);
+        return rows[viewIndex];
+    }
+
+    /** Row showing the library entry at {@code sourceIndex}, or -1 if it is filtered out. */
+    public int getViewIndex(int sourceIndex) {
+        if (sorted == null) {
+            int i = Arrays.binarySearch(rows, 0, size, sourceIndex);
+            return i >= 0 ? i : -1;
+        }
+        int lo = 0;
+        int hi = size - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int c = compareRows(rows[mid], sourceIndex);
+            if (c == 0) return mid;
+            if (c < 0) lo = mid + 1;
+            else hi = mid - 1;
+        }
+        return -1;
+    }
+
+    /**
+     * Shows only the songs in {@code result}, or everything for null. Only
+     * the rows that left or joined the view are reported, so a keystroke
+     * that narrows the search keeps the selection and the rows on screen.
+     */
+    public void setFilter(SearchIndex.Result result) {
+        filter = result;
+        int[] before = rows;
+        int beforeSize = size;
+        computeRows();
+        reportFiltered(before, beforeSize);
+    }
+
+    /**
+     * Reports the difference between the rows before a filter change and
+     * now. Both are in the same order, so one merge finds each stretch that
+     * was dropped, added or swapped for another.
+     */
+    private void reportFiltered(int[] before, int beforeSize) {
+        List<Song> old = new RowList(before, beforeSize, source);
+        int i = 0;
+        int j = 0;
+        beginChange();
+        while (i < beforeSize || j < size) {
+            if (i < beforeSize && j < size && before[i] == rows[j]) {
+                i++;
+                j++;
+                continue;
+            }
+            int removedFrom = i;
+            int at = j;
+            while (i < beforeSize && (j == size || precedes(before[i], rows[j]))) i++;
+            while (j < size && (i == beforeSize || precedes(rows[j], before[i]))) j++;
+            if (i > removedFrom && j > at) {
+                nextReplace(at, j, old.subList(removedFrom, i));
+            } else if (i > removedFrom) {
+                nextRemove(at, old.subList(removedFrom, i));
+            } else {
+                nextAdd(at, j);
+            }
+        }
+        endChange();
+    }
+
+    /** Whether library entry {@code a} comes before {@code b} in the view's order. */
+    private boolean precedes(int a, int b) {
+        return sorted == null ? a < b : compareRows(a, b) < 0;
+    }
+
+    /**
+     * Sorts by {@code fields}, earlier ones first, or back to library order
+     * for an empty list. Reported as a permutation of the rows.
+     */
+    public void setSortOrder(List<SortField> fields) {
+        SortField[] next = fields.toArray(new SortField[0]);
+        if (Arrays.equals(next, order)) return;
+        int[] before = Arrays.copyOf(rows, size);
+        order = next;
+        columns = Column.of(next);
+        if (order.length == 0) {
+            keys = null;
+            texts = null;
+            sorted = null;
+        } else {
+            sortLibrary();
+        }
+        computeRows();
+        reportReorder(before);
+    }
+
+    public List<SortField> getSortOrder() {
+        return List.of(order);
+    }
+
+    /**
+     * Moves songs whose tags changed to their place in the sort order. Only
+     * those songs move; rows between the old and new places shift by one
+     * and the change is reported as a permutation.
+     */
+    public void songsUpdated(Collection<Song> updated) {
+        if (sorted == null || updated.isEmpty()) return;
+        BitSet changed = new BitSet();
+        for (Song song : updated) {
+            int i = sourceIndexOf(song);
+            if (i >= 0) changed.set(i);
+        }
+        if (!changed.isEmpty()) reposition(changed);
+    }
+
+    /**
+     * Catches the id column up with the library; ids are needed when
+     * filtering and to find updated songs. A long stretch is looked up in
+     * parallel, which only reads the index.
+     */
+    private void refreshSearchIds() {
+        int n = source.size();
+        if (searchIds.length < n) searchIds = Arrays.copyOf(searchIds, Math.max(n, searchIds.length * 3 / 2));
+        int from = searchIdsValid;
+        IntStream range = IntStream.range(from, n);
+        (n - from >= PARALLEL_KEYS ? range.parallel() : range).forEach(i -> searchIds[i] = index.idOf(source.get(i)));
+        int valid = n;
+        for (int i = from; i < n; i++) {
+            int id = searchIds[i];
+            if (id < 0) {
+                valid = Math.min(valid, i); // not indexed yet, look again next time
+                continue;
+            }
+            if (id >= sourceOfId.length) sourceOfId = Arrays.copyOf(sourceOfId, Math.max(id + 1, sourceOfId.length * 2));
+            sourceOfId[id] = i;
+        }
+        searchIdsValid = valid;
+    }
+
+    private int sourceIndexOf(Song song) {
+        int id = index.idOf(song);
+        if (id < 0) return -1;
+        refreshSearchIds();
+        int i = id < sourceOfId.length ? sourceOfId[id] : -1;
+        return i >= 0 && i < source.size() && searchIds[i] == id ? i : -1;
+    }
+
+    /** Whether a song just added to the library passes the search, which it may have been added after. */
+    private boolean visible(Song song) {
+        return filter == null || filter.matches(song);
+    }
+
+    /** Rebuilds the rows from library or sort order and the filter. */
+    private void computeRows() {
+        int n = source.size();
+        if (filter != null) refreshSearchIds();
+        int[] next = new int[Math.max(1024, filter == null ? n : Math.min(n, filter.size()))];
+        int count = 0;
+        for (int k = 0; k < n; k++) {
+            int i = sorted != null ? sorted[k] : k;
+            if (filter == null || filter.matchesId(searchIds[i])) {
+                if (count == next.length) next = Arrays.copyOf(next, count * 2);
+                next[count++] = i;
+            }
+        }
+        rows = next;
+        size = count;
+    }
+
+    private void sourceChanged(ListChangeListener.Change<? extends Song> c) {
+        if (source.isEmpty()) {
+            // A reload; the next library's names and folders start over
+            foldedNames.clear();
+            foldedFolders.clear();
+        }
+        int added = 0;
+        int parts = 0;
+        boolean permutated = false;
+        boolean updated = false;
+        while (c.next()) {
+            searchIdsValid = Math.min(searchIdsValid, c.getFrom());
+            permutated |= c.wasPermutated();
+            updated |= c.wasUpdated();
+            added += c.getAddedSize();
+            parts++;
+        }
+        c.reset();
+        if (sorted != null) {
+            sortedSourceChanged(c, permutated, updated);
+        } else if (permutated) {
+            permute(c);
+        } else if (updated) {
+            beginChange();
+            while (c.next()) {
+                for (int i = c.getFrom(); i < c.getTo(); i++) {
+                    int row = getViewIndex(i);
+                    if (row >= 0) nextUpdate(row);
+                }
+            }
+            endChange();
+        } else if (parts == 1 && c.next() && !c.wasRemoved() && c.getFrom() == source.size() - c.getAddedSize()) {
+            append(c.getFrom(), c.getTo());
+        } else {
+            c.reset();
+            merge(c, added);
+        }
+    }
+
+    /** Songs added at the end of the library, the common case while loading. */
+    private void append(int from, int to) {
+        int first = size;
+        for (int i = from; i < to; i++) {
+            if (!visible(source.get(i))) continue;
+            if (size == rows.length) rows = Arrays.copyOf(rows, size * 2);
+            rows[size++] = i;
+        }
+        if (size > first) {
+            beginChange();
+            nextAdd(first, size);
+            endChange();
+        }
+    }
+
+    /**
+     * Applies every part of a change in one pass over the rows. Each part's
+     * position counts the parts before it, so rows between two parts shift
+     * by the sum of what those added and removed.
+     */
+    private void merge(ListChangeListener.Change<? extends Song> c, int added) {
+        int[] next = new int[Math.max(1024, size + added)];
+        int n = 0;
+        int p = 0;
+        int offset = 0;
+        beginChange();
+        while (c.next()) {
+            int from = c.getFrom();
+            int oldFrom = from - offset;
+            while (p < size && rows[p] < oldFrom) next[n++] = rows[p++] + offset;
+            int at = n;
+            List<? extends Song> removedSongs = c.getRemoved();
+            List<Song> removed = new ArrayList<>();
+            while (p < size && rows[p] < oldFrom + c.getRemovedSize()) {
+                removed.add(removedSongs.get(rows[p++] - oldFrom));
+            }
+            for (int i = from; i < from + c.getAddedSize(); i++) {
+                if (visible(source.get(i))) next[n++] = i;
+            }
+            if (!removed.isEmpty() && n > at) {
+                nextReplace(at, n, removed);
+            } else if (!removed.isEmpty()) {
+                nextRemove(at, removed);
+            } else if (n > at) {
+                nextAdd(at, n);
+            }
+            offset += c.getAddedSize() - c.getRemovedSize();
+        }
+        while (p < size) next[n++] = rows[p++] + offset;
+        rows = next;
+        size = n;
+        endChange();
+    }
+
+    /** The library was reordered; rows keep library order, so the view is reordered too. */
+    private void permute(ListChangeListener.Change<? extends Song> c) {
+        int[] moved = new int[size];
+        permuteRows(c);
+        // Sort the new library positions, remembering which old row each came from
+        long[] pairs = new long[size];
+        for (int k = 0; k < size; k++) pairs[k] = ((long) rows[k] << 32) | k;
+        Arrays.sort(pairs);
+        for (int k = 0; k < size; k++) {
+            rows[k] = (int) (pairs[k] >>> 32);
+            moved[(int) pairs[k]] = k;
+        }
+        beginChange();
+        nextPermutation(0, size, moved);
+        endChange();
+    }
+
+    /** Maps the rows to the library indexes their songs were permuted to. */
+    private void permuteRows(ListChangeListener.Change<? extends Song> c) {
+        while (c.next()) {
+            if (!c.wasPermutated()) continue;
+            for (int k = 0; k < size; k++) {
+                int row = rows[k];
+                if (row >= c.getFrom() && row < c.getTo()) rows[k] = c.getPermutation(row);
+            }
+        }
+    }
+
+    private void sortedSourceChanged(ListChangeListener.Change<? extends Song> c, boolean permutated, boolean updated) {
+        if (permutated) {
+            // Ties follow library order, so the sort has to be redone
+            permuteRows(c);
+            int[] before = Arrays.copyOf(rows, size);
+            sortLibrary();
+            computeRows();
+            reportReorder(before);
+            return;
+        }
+        if (updated) {
+            BitSet changed = new BitSet();
+            while (c.next()) changed.set(c.getFrom(), c.getTo());
+            reposition(changed);
+            return;
+        }
+        Remap remap = new Remap(c, sortedSize);
+        spliceKeys(remap);
+        int[] added = sortIndexes(remap.addedIndexes());
+        sortedSize = dropRemoved(sorted, sortedSize, remap, false);
+        sorted = mergeAdded(sorted, sortedSize, added, added.length, null);
+        sortedSize += added.length;
+
+        int shown = 0;
+        for (int i : added) {
+            if (visible(source.get(i))) added[shown++] = i;
+        }
+        int[] at = new int[shown];
+        beginChange();
+        size = dropRemoved(rows, size, remap, true);
+        rows = mergeAdded(rows, size, added, shown, at);
+        size += shown;
+        for (int k = 0; k < shown; k++) {
+            int start = k;
+            while (k + 1 < shown && at[k + 1] == at[k] + 1) k++;
+            nextAdd(at[start], at[k] + 1);
+        }
+        endChange();
+    }
+
+    private void sortLibrary() {
+        int n = source.size();
+        int capacity = Math.max(1024, n);
+        keys = new long[columns.length][];
+        texts = new String[columns.length][];
+        for (int f = 0; f < columns.length; f++) {
+            keys[f] = new long[capacity];
+            texts[f] = columns[f].isText() ? new String[capacity] : null;
+        }
+        folderRoot = null;
+        computeKeys(0, n);
+        int[] all = new int[n];
+        for (int i = 0; i < n; i++) all[i] = i;
+        sorted = Arrays.copyOf(sortIndexes(all), capacity);
+        sortedSize = n;
+        refreshSearchIds(); // now rather than on the first tag update
+    }
+
+    private void computeKeys(int from, int to) {
+        IntStream range = IntStream.range(from, to);
+        (to - from >= PARALLEL_KEYS ? range.parallel() : range).forEach(this::computeKeys);
+        for (int f = 0; f < columns.length; f++) {
+            if (columns[f] == Column.FOLDER) keyFolders(f, from, to);
+        }
+    }
+
+    private void computeKeys(int i) {
+        Song song = source.get(i);
+        for (int f = 0; f < columns.length; f++) {
+            String text = switch (columns[f]) {
+                case ARTIST -> foldedName(song.getArtist());
+                case ALBUM -> foldedName(song.getAlbum());
+                case TITLE -> SearchIndex.normalize(song.getTitle());
+                case FOLDER -> foldedFolder(song.getFolder());
+                case FILE_NAME -> SearchIndex.normalize(song.getFileName());
+                case YEAR, DURATION -> null;
+            };
+            if (text == null) {
+                keys[f][i] = columns[f] == Column.YEAR ? song.getYearNumber() : song.getDuration();
+                continue;
+            }
+            if (columns[f] == Column.FOLDER) {
+                texts[f][i] = text; // shared with the folder's other tracks; keyed by keyFolders
+                continue;
+            }
+            keys[f][i] = prefixKey(text, 0);
+            if (texts[f] != null) texts[f][i] = fitsKey(text) ? null : text;
+        }
+    }
+
+    private String foldedName(String name) {
+        // A plain get first: nearly every lookup hits, and computeIfAbsent locks its bin even then
+        String folded = foldedNames.get(name);
+        return folded != null ? folded : foldedNames.computeIfAbsent(name, SearchIndex::normalize);
+    }
+
+    private String foldedFolder(Path folder) {
+        if (folder == null) return "";
+        String folded = foldedFolders.get(folder);
+        return folded != null ? folded : foldedFolders.computeIfAbsent(folder, f -> SearchIndex.normalize(f.toString()));
+    }
+
+    /**
+     * Keys the folders of {@code [from, to)} by the eight chars after the
+     * root, since a full path starts the same way for the whole library. A
+     * folder outside the root shortens it and every folder is keyed again;
+     * that changes the keys but not their order, so nothing is re-sorted.
+     */
+    private void keyFolders(int f, int from, int to) {
+        String[] folders = texts[f];
+        String root = folderRoot;
+        for (int i = from; i < to; i++) root = commonPrefix(root, folders[i]);
+        if (root == null) return;
+        if (folderRoot == null || root.length() != folderRoot.length()) {
+            folderRoot = root;
+            from = 0;
+            to = source.size();
+        }
+        for (int i = from; i < to; i++) {
+            if (folders[i] != null) keys[f][i] = prefixKey(folders[i], root.length()); // null: added, keyed next
+        }
+    }
+
+    private static String commonPrefix(String root, String s) {
+        if (root == null) return s;
+        if (s.startsWith(root)) return root;
+        int n = 0;
+        while (n < root.length() && n < s.length() && root.charAt(n) == s.charAt(n)) n++;
+        return root.substring(0, n);
+    }
+
+    /**
+     * Packs the eight chars of {@code s} from {@code start}, one byte each,
+     * into a long that orders like the strings do. A char that does not fit
+     * a byte ends the packing and fills the rest with 0xFF, so strings that
+     * differ from there on tie here and are told apart by their text.
+     */
+    static long prefixKey(String s, int start) {
+        long key = 0;
+        int i = 0;
+        for (; i < 8 && start + i < s.length(); i++) {
+            char c = s.charAt(start + i);
+            if (c >= 0xFF) {
+                for (; i < 8; i++) key = (key << 8) | 0xFF;
+                return key;
+            }
+            key = (key << 8) | c;
+        }
+        return i == 0 ? 0 : key << (8 * (8 - i));
+    }
+
+    /** Whether {@link #prefixKey} holds all of {@code s}, so the text need not be kept. */
+    private static boolean fitsKey(String s) {
+        if (s.length() > 8) return false;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == 0 || c >= 0xFF) return false;
+        }
+        return true;
+    }
+
+    /** Orders library entries by their keys, then by library position. */
+    private int compareRows(int a, int b) {
+        int c = Long.compareUnsigned(keys[0][a], keys[0][b]);
+        return c != 0 ? c : compareTies(a, b);
+    }
+
+    /** Orders library entries whose first keys are equal. */
+    private int compareTies(int a, int b) {
+        for (int f = 0; f < columns.length; f++) {
+            int c = f == 0 ? 0 : Long.compareUnsigned(keys[f][a], keys[f][b]);
+            if (c == 0) c = compareText(f, a, b);
+            if (c != 0) return c;
+        }
+        return Integer.compare(a, b);
+    }
+
+    /**
+     * Tells apart entries with equal keys by the rest of their text. A
+     * missing text means the key holds all of it, so it is the shorter one.
+     */
+    private int compareText(int f, int a, int b) {
+        if (texts[f] == null) return 0;
+        String x = texts[f][a];
+        String y = texts[f][b];
+        if (x == y) return 0;
+        return x == null ? -1 : y == null ? 1 : x.compareTo(y);
+    }
+
+    /** Library indexes in sort order; large arrays are sorted in parallel. */
+    private int[] sortIndexes(int[] indexes) {
+        long[] first = new long[indexes.length];
+        for (int k = 0; k < indexes.length; k++) first[k] = keys[0][indexes[k]];
+        RowSorter.sort(first, indexes, indexes.length, this::compareTies);
+        return indexes;
+    }
+
+    /** Moves the key columns to the library's new positions and keys the added songs. */
+    private void spliceKeys(Remap remap) {
+        int n = source.size();
+        for (int f = 0; f < columns.length; f++) {
+            keys[f] = remap.splice(keys[f], n, long[]::new);
+            if (texts[f] != null) texts[f] = remap.splice(texts[f], n, String[]::new);
+        }
+        for (int p = 0; p < remap.parts; p++) {
+            computeKeys(remap.newFrom[p], remap.newFrom[p] + remap.added[p]);
+        }
+    }
+
+    /**
+     * Drops removed entries from a sorted array and maps the rest to their
+     * new library indexes, reporting each removal if {@code report}.
+     */
+    private int dropRemoved(int[] array, int length, Remap remap, boolean report) {
+        if (remap.isAppend()) return length;
+        int n = 0;
+        for (int k = 0; k < length; k++) {
+            int i = remap.map(array[k]);
+            if (i >= 0) {
+                array[n++] = i;
+            } else if (report) {
+                nextRemove(n, remap.removedSong(array[k]));
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Inserts the first {@code count} of the sorted {@code added} into a sorted
+     * array, from the back, so each stretch of the array is moved once and
+     * entries before the first insertion stay put. Where each one went is
+     * written to {@code at}, if given.
+     */
+    private int[] mergeAdded(int[] array, int length, int[] added, int count, int[] at) {
+        if (count == 0) return array;
+        if (array.length < length + count) array = Arrays.copyOf(array, Math.max(length + count, array.length * 3 / 2));
+        int end = length;
+        for (int j = count - 1; j >= 0; j--) {
+            int pos = insertionPoint(array, end, added[j]);
+            System.arraycopy(array, pos, array, pos + j + 1, end - pos);
+            array[pos + j] = added[j];
+            if (at != null) at[j] = pos + j;
+            end = pos;
+        }
+        return array;
+    }
+
+    /** First position in {@code array[0, length)} holding an entry that sorts after {@code row}. */
+    private int insertionPoint(int[] array, int length, int row) {
+        int lo = 0;
+        int hi = length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compareRows(array[mid], row) > 0) hi = mid;
+            else lo = mid + 1;
+        }
+        return lo;
+    }
+
+    /**
+     * Re-keys the given library entries and moves them within the sort
+     * order. The entries are found by binary search while their old keys
+     * still hold, so the cost is a few array moves rather than a pass over
+     * every row.
+     */
+    private void reposition(BitSet changed) {
+        int[] inSorted = positionsOf(sorted, sortedSize, changed);
+        int[] inRows = positionsOf(rows, size, changed);
+        changed.stream().forEach(i -> computeKeys(i, i + 1));
+        moveEntries(sorted, sortedSize, inSorted, false);
+        moveEntries(rows, size, inRows, true);
+    }
+
+    /** Ascending positions of the given library entries in a sorted array; entries not in it are left out. */
+    private int[] positionsOf(int[] array, int length, BitSet entries) {
+        int[] found = new int[entries.cardinality()];
+        int count = 0;
+        for (int i = entries.nextSetBit(0); i >= 0; i = entries.nextSetBit(i + 1)) {
+            int lo = 0;
+            int hi = length - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                int c = compareRows(array[mid], i);
+                if (c == 0) {
+                    found[count++] = mid;
+                    break;
+                }
+                if (c < 0) lo = mid + 1;
+                else hi = mid - 1;
+            }
+        }
+        found = Arrays.copyOf(found, count);
+        Arrays.sort(found);
+        return found;
+    }
+
+    /**
+     * Takes the entries at {@code from} (ascending) out of a sorted array and
+     * merges them back where their new keys put them. If {@code report}, the
+     * move is reported as a permutation of the span between the first and
+     * last position touched.
+     */
+    private void moveEntries(int[] array, int length, int[] from, boolean report) {
+        int m = from.length;
+        if (m == 0) return;
+        int[] moved = new int[m];
+        int kept = from[0];
+        for (int k = 0; k < m; k++) {
+            moved[k] = array[from[k]];
+            int next = k + 1 < m ? from[k + 1] : length;
+            System.arraycopy(array, from[k] + 1, array, kept, next - from[k] - 1);
+            kept += next - from[k] - 1;
+        }
+        int[] entries = moved.clone();
+        sortIndexes(moved);
+        int[] to = new int[m];
+        mergeAdded(array, length - m, moved, m, to);
+        if (report) reportMoves(entries, from, moved, to);
+    }
+
+    /**
+     * Reports entries that moved from {@code from[k]} (holding
+     * {@code entries[k]}) to {@code to[j]} (holding {@code moved[j]}), both
+     * ascending. Rows in between keep their order and fill the positions
+     * left over, so the permutation is built in one pass over the span.
+     */
+    private void reportMoves(int[] entries, int[] from, int[] moved, int[] to) {
+        int m = from.length;
+        int lo = Math.min(from[0], to[0]);
+        int hi = Math.max(from[m - 1], to[m - 1]);
+        // New position of each moved entry, looked up by entry
+        long[] newPos = new long[m];
+        for (int j = 0; j < m; j++) newPos[j] = ((long) moved[j] << 32) | to[j];
+        Arrays.sort(newPos);
+        int[] perm = new int[hi - lo + 1];
+        boolean identity = true;
+        int p = 0;
+        int q = 0;
+        int free = lo;
+        for (int old = lo; old <= hi; old++) {
+            int target;
+            if (p < m && from[p] == old) {
+                int k = Arrays.binarySearch(newPos, (long) entries[p] << 32);
+                target = (int) newPos[k < 0 ? -k - 1 : k];
+                p++;
+            } else {
+                while (q < m && to[q] == free) {
+                    q++;
+                    free++;
+                }
+                target = free++;
+            }
+            perm[old - lo] = target;
+            identity &= target == old;
+        }
+        if (identity) return;
+        beginChange();
+        nextPermutation(lo, hi + 1, perm);
+        endChange();
+    }
+
+    /**
+     * Reports that the rows, which held {@code before}, now hold the same
+     * songs in another order, as a permutation of the span that changed.
+     */
+    private void reportReorder(int[] before) {
+        if (before.length != size) {
+            beginChange();
+            if (before.length > 0) nextRemove(0, new RowList(before, before.length, source));
+            if (size > 0) nextAdd(0, size);
+            endChange();
+            return;
+        }
+        int lo = 0;
+        while (lo < size && before[lo] == rows[lo]) lo++;
+        if (lo == size) return;
+        int hi = size - 1;
+        while (before[hi] == rows[hi]) hi--;
+        if (positions.length < source.size()) positions = new int[source.size()];
+        for (int k = lo; k <= hi; k++) positions[rows[k]] = k;
+        int[] perm = new int[hi - lo + 1];
+        for (int k = lo; k <= hi; k++) perm[k - lo] = positions[before[k]];
+        beginChange();
+        nextPermutation(lo, hi + 1, perm);
+        endChange();
+    }
+
+    /** Where each library index went in one change, from the positions of its parts. */
+    private static final class Remap {
+        final int parts;
+        final int[] newFrom;
+        final int[] added;
+        private final int oldSize;
+        private final int[] oldFrom;
+        private final int[] oldEnd;
+        private final int[] shiftAfter;
+        private final List<List<? extends Song>> removed = new ArrayList<>();
+
+        Remap(ListChangeListener.Change<? extends Song> c, int oldSize) {
+            this.oldSize = oldSize;
+            int count = 0;
+            while (c.next()) count++;
+            c.reset();
+            parts = count;
+            newFrom = new int[count];
+            added = new int[count];
+            oldFrom = new int[count];
+            oldEnd = new int[count];
+            shiftAfter = new int[count];
+            int shift = 0;
+            for (int p = 0; c.next(); p++) {
+                newFrom[p] = c.getFrom();
+                added[p] = c.getAddedSize();
+                oldFrom[p] = c.getFrom() - shift;
+                oldEnd[p] = oldFrom[p] + c.getRemovedSize();
+                shift += c.getAddedSize() - c.getRemovedSize();
+                shiftAfter[p] = shift;
+                removed.add(c.getRemoved());
+            }
+        }
+
+        /** Whether the change only added songs at the end, so nothing moved. */
+        boolean isAppend() {
+            return parts == 1 && oldFrom[0] == oldSize && oldEnd[0] == oldSize;
+        }
+
+        /** Last part starting at or before {@code old}, or -1. */
+        private int partOf(int old) {
+            int lo = 0;
+            int hi = parts - 1;
+            int found = -1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (oldFrom[mid] <= old) {
+                    found = mid;
+                    lo = mid + 1;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            return found;
+        }
+
+        /** New index of old index {@code old}, or -1 if it was removed. */
+        int map(int old) {
+            int p = partOf(old);
+            if (p < 0) return old;
+            return old < oldEnd[p] ? -1 : old + shiftAfter[p];
+        }
+
+        Song removedSong(int old) {
+            int p = partOf(old);
+            return removed.get(p).get(old - oldFrom[p]);
+        }
+
+        int[] addedIndexes() {
+            int total = 0;
+            for (int p = 0; p < parts; p++) total += added[p];
+            int[] indexes = new int[total];
+            int n = 0;
+            for (int p = 0; p < parts; p++) {
+                for (int i = newFrom[p]; i < newFrom[p] + added[p]; i++) indexes[n++] = i;
+            }
+            return indexes;
+        }
+
+        /** Copies a column indexed by library position to the new positions, leaving added ones unset. */
+        <A> A splice(A column, int newSize, IntFunction<A> create) {
+            int capacity = Array.getLength(column);
+            if (isAppend() && capacity >= newSize) return column;
+            A next = create.apply(Math.max(newSize, isAppend() ? capacity * 3 / 2 : capacity));
+            int copied = 0;
+            int shift = 0;
+            for (int p = 0; p < parts; p++) {
+                System.arraycopy(column, copied, next, copied + shift, oldFrom[p] - copied);
+                copied = oldEnd[p];
+                shift = shiftAfter[p];
+            }
+            System.arraycopy(column, copied, next, copied + shift, oldSize - copied);
+            return next;
+        }
+    }
+
+    /** Songs at a snapshot of row positions, for reporting them as removed. */
+    private static final class RowList extends AbstractList<Song> {
+        private final int[] rows;
+        private final int size;
+        private final List<Song> source;
+
+        RowList(int[] rows, int size, List<Song> source) {
+            this.rows = rows;
+            this.size = size;
+            this.source = source;
+        }
+
+        @Override
+        public Song get(int i) {
+            return source.get(rows[i]);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
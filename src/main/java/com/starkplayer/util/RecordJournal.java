@@ -0,0 +1,158 @@
+package com.starkplayer.util;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.Collection;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only file of CRC-protected records behind a magic and version
+ * header, the storage behind {@link MetadataCache} and
+ * {@link ContentHashStore}. Each record is its length, the CRC32 of its
+ * payload and the payload the store's {@link Codec} wrote.
+ *
+ * A crash can at worst leave a torn record at the tail; loading stops at
+ * the first record that does not check out and truncates the file there,
+ * so new records append cleanly. A file with another magic or version is
+ * deleted. {@link #compact} rewrites the journal through {@link AtomicFiles}.
+ */
+final class RecordJournal<E> {
+
+    interface Codec<E> {
+        void encode(E record, DataOutputStream out) throws IOException;
+        E decode(DataInputStream in) throws IOException;
+    }
+
+    private final Path file;
+    private final int magic;
+    private final int version;
+    private final int maxRecordSize;
+    private final String description;
+    private final Codec<E> codec;
+    private final Consumer<E> loaded;
+    private FileChannel appender;
+    private volatile boolean isLoaded = false;
+
+    /**
+     * @param description  what the file holds, for error messages
+     * @param loaded       receives each record read back, oldest first
+     */
+    RecordJournal(Path file, int magic, int version, int maxRecordSize, String description,
+                  Codec<E> codec, Consumer<E> loaded) {
+        this.file = file;
+        this.magic = magic;
+        this.version = version;
+        this.maxRecordSize = maxRecordSize;
+        this.description = description;
+        this.codec = codec;
+        this.loaded = loaded;
+    }
+
+    /** Reads the file back on first use; later calls return at once. */
+    void ensureLoaded() {
+        if (isLoaded) return;
+        synchronized (this) {
+            if (isLoaded) return;
+            if (Files.exists(file)) load();
+            isLoaded = true;
+        }
+    }
+
+    boolean isLoaded() {
+        return isLoaded;
+    }
+
+    synchronized void append(E record) throws IOException {
+        if (appender == null) {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            boolean fresh = !Files.exists(file) || Files.size(file) == 0;
+            appender = FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            if (fresh) AtomicFiles.writeFully(appender, header());
+        }
+        AtomicFiles.writeFully(appender, encode(record));
+    }
+
+    /** Replaces the journal with just {@code records}. */
+    synchronized void compact(Collection<E> records) throws IOException {
+        if (appender != null) {
+            appender.close();
+            appender = null;
+        }
+        AtomicFiles.write(file, out -> {
+            AtomicFiles.writeFully(out, header());
+            for (E record : records) {
+                AtomicFiles.writeFully(out, encode(record));
+            }
+        });
+    }
+
+    private void load() {
+        long validLength = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != magic || in.readInt() != version) {
+                System.err.println("Ignoring incompatible " + description + ": " + file);
+                Files.deleteIfExists(file);
+                return;
+            }
+            validLength = 8;
+            CRC32 crc = new CRC32();
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (length <= 0 || length > maxRecordSize) break;
+                long checksum;
+                byte[] payload = new byte[length];
+                try {
+                    checksum = in.readInt() & 0xffffffffL;
+                    in.readFully(payload);
+                } catch (EOFException e) {
+                    break;
+                }
+                crc.reset();
+                crc.update(payload);
+                if (crc.getValue() != checksum) break;
+                loaded.accept(codec.decode(new DataInputStream(new ByteArrayInputStream(payload))));
+                validLength += 8 + length;
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to read " + description + ": " + e.getMessage());
+        }
+        // Drop a torn tail left behind by a crash so new records append cleanly
+        try {
+            if (Files.size(file) > validLength) {
+                try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    ch.truncate(validLength);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to repair " + description + ": " + e.getMessage());
+        }
+    }
+
+    private ByteBuffer header() {
+        ByteBuffer buf = ByteBuffer.allocate(8);
+        buf.putInt(magic).putInt(version).flip();
+        return buf;
+    }
+
+    private ByteBuffer encode(E record) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            codec.encode(record, out);
+        }
+        byte[] payload = bytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer buf = ByteBuffer.allocate(8 + payload.length);
+        buf.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+        return buf;
+    }
+}
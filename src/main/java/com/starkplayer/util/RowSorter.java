@@ -0,0 +1,116 @@
+package com.starkplayer.util;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Merge sort of rows by a long key, for the playlist's sort orders. Keys
+ * and rows are kept in two arrays side by side, so most comparisons read
+ * keys in sequence instead of following each row to its columns; only rows
+ * whose keys are equal go to the tie-breaker. Halves above a threshold are
+ * sorted in parallel on the common pool.
+ */
+final class RowSorter {
+
+    /** Orders two rows whose keys are equal. */
+    interface TieBreaker {
+        int compare(int a, int b);
+    }
+
+    private static final int INSERTION_SORT = 32;
+    private static final int PARALLEL = 1 << 14;
+
+    private RowSorter() {
+    }
+
+    /** Sorts {@code rows[0, length)}, whose keys are {@code keys[0, length)}, by unsigned key. */
+    static void sort(long[] keys, int[] rows, int length, TieBreaker ties) {
+        if (length < 2) return;
+        SortTask task = new SortTask(keys, rows, new long[length], new int[length], 0, length, ties);
+        if (length >= PARALLEL) ForkJoinPool.commonPool().invoke(task);
+        else task.compute();
+    }
+
+    private static int compare(long[] keys, int[] rows, int i, int j, TieBreaker ties) {
+        int c = Long.compareUnsigned(keys[i], keys[j]);
+        return c != 0 ? c : ties.compare(rows[i], rows[j]);
+    }
+
+    /** Sorts one range in place, using the same range of the scratch arrays. */
+    @SuppressWarnings("serial")
+    private static final class SortTask extends RecursiveAction {
+        private final long[] keys;
+        private final int[] rows;
+        private final long[] scratchKeys;
+        private final int[] scratchRows;
+        private final int from;
+        private final int to;
+        private final TieBreaker ties;
+
+        SortTask(long[] keys, int[] rows, long[] scratchKeys, int[] scratchRows, int from, int to, TieBreaker ties) {
+            this.keys = keys;
+            this.rows = rows;
+            this.scratchKeys = scratchKeys;
+            this.scratchRows = scratchRows;
+            this.from = from;
+            this.to = to;
+            this.ties = ties;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= INSERTION_SORT) {
+                insertionSort();
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            SortTask left = new SortTask(keys, rows, scratchKeys, scratchRows, from, mid, ties);
+            SortTask right = new SortTask(keys, rows, scratchKeys, scratchRows, mid, to, ties);
+            if (to - from >= PARALLEL) {
+                invokeAll(left, right);
+            } else {
+                left.compute();
+                right.compute();
+            }
+            if (compare(keys, rows, mid - 1, mid, ties) <= 0) return; // already in order
+            merge(mid);
+        }
+
+        private void merge(int mid) {
+            System.arraycopy(keys, from, scratchKeys, from, to - from);
+            System.arraycopy(rows, from, scratchRows, from, to - from);
+            int i = from;
+            int j = mid;
+            int w = from;
+            while (i < mid && j < to) {
+                if (compare(scratchKeys, scratchRows, i, j, ties) <= 0) {
+                    keys[w] = scratchKeys[i];
+                    rows[w++] = scratchRows[i++];
+                } else {
+                    keys[w] = scratchKeys[j];
+                    rows[w++] = scratchRows[j++];
+                }
+            }
+            System.arraycopy(scratchKeys, i, keys, w, mid - i);
+            System.arraycopy(scratchRows, i, rows, w, mid - i);
+            // Whatever is left of the right half is already in place
+        }
+
+        private void insertionSort() {
+            for (int i = from + 1; i < to; i++) {
+                long key = keys[i];
+                int row = rows[i];
+                int j = i - 1;
+                while (j >= from) {
+                    int c = Long.compareUnsigned(keys[j], key);
+                    if (c < 0 || (c == 0 && ties.compare(rows[j], row) <= 0)) break;
+                    keys[j + 1] = keys[j];
+                    rows[j + 1] = rows[j];
+                    j--;
+                }
+                keys[j + 1] = key;
+                rows[j + 1] = row;
+            }
+        }
+    }
+}
@@ -0,0 +1,503 @@
+package com.starkplayer.util;
+
+import com.starkplayer.model.Song;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Trigram inverted index over the title, artist and album of every song.
+ *
+ * Keys are lower-cased and accent-folded once, when a song is added or its
+ * metadata changes, and stored back to back in one char arena so matching
+ * never allocates or chases pointers. Three-character queries are answered
+ * straight from the posting lists and two-character ones from the union of
+ * the trigrams they start; longer ones intersect their trigram lists and
+ * verify the candidates, or only re-check the previous matches when the
+ * query extends the previous one and that is cheaper. Single characters use
+ * a per-song character mask.
+ * Ids of removed songs are handed out again, so the id range stays the
+ * size of the library however often it is reloaded.
+ * Not thread-safe: use it from the FX thread.
+ */
+public class SearchIndex {
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    // Latin-1 and Latin Extended-A folded a char at a time; 0 where that would not match foldUnicode
+    private static final char[] LATIN_FOLD = new char[0x180];
+    static {
+        for (char c = 0x80; c < LATIN_FOLD.length; c++) {
+            String folded = foldUnicode(String.valueOf(c));
+            if (folded.length() == 1) LATIN_FOLD[c] = folded.charAt(0);
+        }
+    }
+    private static final char SEPARATOR = '\u0001';
+    private static final int INITIAL_DOCS = 1024;
+
+    private final Map<Song, Integer> ids = new IdentityHashMap<>();
+    private final TrigramMap postings = new TrigramMap();
+    private char[] arena = new char[INITIAL_DOCS * 32];
+    private int arenaUsed = 0;
+    private int[] keyStart = new int[INITIAL_DOCS];
+    private int[] keyLength = new int[INITIAL_DOCS];
+    private long[] charMasks = new long[INITIAL_DOCS];
+    private int[] indexedAt = new int[INITIAL_DOCS]; // version of each id's current key
+    private final BitSet live = new BitSet();
+    // Songs re-indexed since the last compaction may still sit in old posting lists
+    private final BitSet reindexed = new BitSet();
+    private int nextId = 0;
+    private int[] freeIds = new int[16];
+    private int freeCount = 0;
+    private int version = 0; // bumped whenever a song is added or re-keyed, never reset
+    private long liveChars = 0;
+
+    private char[] lastQuery;
+    private BitSet lastResult;
+
+    /**
+     * Matches for one query; {@link #matches(Song)} is a constant-time check
+     * suitable for a FilteredList predicate. Songs added or re-keyed after
+     * the search are tested against the query itself, so a result stays
+     * right while the library changes under it.
+     */
+    public final class Result {
+        private final BitSet hits;
+        private final char[] query;
+        private final int version;
+
+        private Result(BitSet hits, char[] query) {
+            this.hits = hits;
+            this.query = query;
+            this.version = SearchIndex.this.version;
+        }
+
+        public boolean matches(Song song) {
+            Integer id = ids.get(song);
+            return id != null && matchesId(id);
+        }
+
+        /** Like {@link #matches(Song)} for an id from {@link #idOf}, without the lookup. */
+        public boolean matchesId(int id) {
+            if (id < 0) return false;
+            if (indexedAt[id] > version) return live.get(id) && keyContains(id, query);
+            return hits.get(id);
+        }
+
+        /** Matches as of the search, not counting songs indexed since. */
+        public int size() {
+            return hits.cardinality();
+        }
+    }
+
+    public void add(Song song) {
+        if (ids.containsKey(song)) return;
+        int id;
+        if (freeCount > 0) {
+            id = freeIds[--freeCount];
+            reindexed.set(id); // old posting lists may still hold the id
+        } else {
+            id = nextId++;
+            if (id == keyStart.length) {
+                int capacity = id * 2;
+                keyStart = Arrays.copyOf(keyStart, capacity);
+                keyLength = Arrays.copyOf(keyLength, capacity);
+                charMasks = Arrays.copyOf(charMasks, capacity);
+                indexedAt = Arrays.copyOf(indexedAt, capacity);
+            }
+        }
+        ids.put(song, id);
+        live.set(id);
+        indexedAt[id] = ++version;
+        index(id, normalizedKey(song));
+    }
+
+    /**
+     * Re-indexes a song after its metadata changed; songs that are not in the
+     * index are ignored. Old arena space and posting entries are reclaimed by
+     * the next compaction.
+     */
+    public void update(Song song) {
+        Integer id = ids.get(song);
+        if (id == null) return;
+        String key = normalizedKey(song);
+        if (keyEquals(id, key)) return;
+        liveChars -= keyLength[id];
+        reindexed.set(id);
+        indexedAt[id] = ++version;
+        index(id, key);
+        maybeCompact();
+    }
+
+    public void remove(Song song) {
+        Integer id = ids.remove(song);
+        if (id == null) return;
+        live.clear(id);
+        liveChars -= keyLength[id];
+        if (lastResult != null) lastResult.clear(id);
+        if (freeCount == freeIds.length) freeIds = Arrays.copyOf(freeIds, freeCount * 2);
+        freeIds[freeCount++] = id;
+        maybeCompact();
+    }
+
+    public void clear() {
+        ids.clear();
+        postings.clear();
+        arena = new char[INITIAL_DOCS * 32];
+        arenaUsed = 0;
+        keyStart = new int[INITIAL_DOCS];
+        keyLength = new int[INITIAL_DOCS];
+        charMasks = new long[INITIAL_DOCS];
+        indexedAt = new int[INITIAL_DOCS];
+        live.clear();
+        reindexed.clear();
+        nextId = 0;
+        freeCount = 0;
+        liveChars = 0;
+        lastQuery = null;
+        lastResult = null;
+    }
+
+    public int size() {
+        return ids.size();
+    }
+
+    /**
+     * The song's id in this index, or -1 if it is not indexed. Ids stay the
+     * same until the song is removed or the index is cleared, so callers
+     * may keep them; after that the id may be given to another song.
+     */
+    public int idOf(Song song) {
+        Integer id = ids.get(song);
+        return id != null ? id : -1;
+    }
+
+    /**
+     * Returns the songs matching the query, or null for an empty query.
+     */
+    public Result search(String query) {
+        char[] q = (query == null ? "" : normalize(query)).toCharArray();
+        if (q.length == 0) {
+            lastQuery = null;
+            lastResult = null;
+            return null;
+        }
+        BitSet hits;
+        if (q.length == 1) {
+            hits = searchMask(q[0]);
+        } else if (q.length == 2) {
+            hits = searchBigram(q);
+        } else {
+            // Every match of a longer query also matched the shorter one
+            BitSet narrowFrom = lastResult != null && contains(q, lastQuery) ? lastResult : null;
+            hits = searchTrigrams(q, narrowFrom);
+        }
+        lastQuery = q;
+        lastResult = hits;
+        return new Result(hits, q);
+    }
+
+    private BitSet searchTrigrams(char[] q, BitSet narrowFrom) {
+        BitSet hits = new BitSet(nextId);
+        long[] grams = trigrams(q, 0, q.length);
+        Postings[] lists = new Postings[grams.length];
+        for (int i = 0; i < grams.length; i++) {
+            lists[i] = postings.get(grams[i]);
+            if (lists[i] == null) return hits;
+            lists[i].sort();
+        }
+        Arrays.sort(lists, Comparator.comparingInt(p -> p.size));
+        if (narrowFrom != null && narrowFrom.cardinality() < lists[0].size) {
+            for (int id = narrowFrom.nextSetBit(0); id >= 0; id = narrowFrom.nextSetBit(id + 1)) {
+                if (keyContains(id, q)) hits.set(id);
+            }
+            return hits;
+        }
+        if (q.length == 3) {
+            // The query is a single trigram, so the posting list is exact
+            Postings p = lists[0];
+            for (int i = 0; i < p.size; i++) {
+                int id = p.ids[i];
+                if (live.get(id) && (!reindexed.get(id) || keyContains(id, q))) hits.set(id);
+            }
+            return hits;
+        }
+        int[] candidates = Arrays.copyOf(lists[0].ids, lists[0].size);
+        int length = candidates.length;
+        for (int i = 1; i < lists.length && length > 0; i++) {
+            length = intersect(candidates, length, lists[i]);
+        }
+        for (int i = 0; i < length; i++) {
+            int id = candidates[i];
+            if (live.get(id) && keyContains(id, q)) hits.set(id);
+        }
+        return hits;
+    }
+
+    /**
+     * Every key ends with a separator, so each occurrence of a bigram starts
+     * some trigram; the union of those posting lists is the exact answer.
+     */
+    private BitSet searchBigram(char[] q) {
+        BitSet hits = new BitSet(nextId);
+        long prefix = ((long) q[0] << 16) | q[1];
+        postings.forEachWithPrefix(prefix, p -> {
+            for (int i = 0; i < p.size; i++) {
+                int id = p.ids[i];
+                if (live.get(id) && (!reindexed.get(id) || keyContains(id, q))) hits.set(id);
+            }
+        });
+        return hits;
+    }
+
+    private BitSet searchMask(char c) {
+        BitSet hits = new BitSet(nextId);
+        long bit = maskBit(c);
+        boolean exact = maskIsExact(c);
+        char[] q = {c};
+        for (int id = live.nextSetBit(0); id >= 0; id = live.nextSetBit(id + 1)) {
+            if ((charMasks[id] & bit) != 0 && (exact || keyContains(id, q))) hits.set(id);
+        }
+        return hits;
+    }
+
+    private void index(int id, String key) {
+        int length = key.length();
+        if (arenaUsed + length > arena.length) {
+            arena = Arrays.copyOf(arena, Math.max(arena.length * 2, arenaUsed + length));
+        }
+        int start = arenaUsed;
+        key.getChars(0, length, arena, start);
+        arenaUsed += length;
+        keyStart[id] = start;
+        keyLength[id] = length;
+        liveChars += length;
+
+        long mask = 0;
+        for (int i = start; i < start + length; i++) mask |= maskBit(arena[i]);
+        charMasks[id] = mask;
+
+        for (long gram : trigrams(arena, start, start + length)) {
+            postings.getOrCreate(gram).add(id);
+        }
+        if (lastResult != null) {
+            lastResult.set(id, keyContains(id, lastQuery));
+        }
+    }
+
+    private boolean keyContains(int id, char[] q) {
+        int start = keyStart[id];
+        int last = start + keyLength[id] - q.length;
+        char first = q[0];
+        for (int i = start; i <= last; i++) {
+            if (arena[i] != first) continue;
+            int j = 1;
+            while (j < q.length && arena[i + j] == q[j]) j++;
+            if (j == q.length) return true;
+        }
+        return false;
+    }
+
+    private boolean keyEquals(int id, String key) {
+        if (keyLength[id] != key.length()) return false;
+        int start = keyStart[id];
+        for (int i = 0; i < key.length(); i++) {
+            if (arena[start + i] != key.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private static boolean contains(char[] haystack, char[] needle) {
+        outer:
+        for (int i = 0; i + needle.length <= haystack.length; i++) {
+            for (int j = 0; j < needle.length; j++) {
+                if (haystack[i + j] != needle[j]) continue outer;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static int intersect(int[] acc, int length, Postings other) {
+        int[] ids = other.ids;
+        int n = 0;
+        int j = 0;
+        for (int i = 0; i < length && j < other.size; i++) {
+            int target = acc[i];
+            // Gallop forward through the larger list
+            int step = 1;
+            while (j + step < other.size && ids[j + step] < target) step <<= 1;
+            int lo = j, hi = Math.min(j + step, other.size - 1);
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (ids[mid] < target) lo = mid + 1; else hi = mid;
+            }
+            j = lo;
+            if (ids[j] == target) acc[n++] = target;
+        }
+        return n;
+    }
+
+    private void maybeCompact() {
+        long wasted = arenaUsed - liveChars;
+        if (wasted < 1_000_000 || wasted < liveChars) return;
+        // Rebuild arena and postings from the live keys to drop stale entries
+        char[] old = arena;
+        int[] oldStart = keyStart.clone();
+        arena = new char[(int) Math.max(INITIAL_DOCS * 32, liveChars * 3 / 2)];
+        arenaUsed = 0;
+        liveChars = 0;
+        postings.clear();
+        reindexed.clear();
+        BitSet saved = lastResult;
+        lastResult = null;
+        for (int id = live.nextSetBit(0); id >= 0; id = live.nextSetBit(id + 1)) {
+            index(id, new String(old, oldStart[id], keyLength[id]));
+        }
+        lastResult = saved;
+    }
+
+    private static long maskBit(char c) {
+        if (c >= 'a' && c <= 'z') return 1L << (c - 'a');
+        if (c >= '0' && c <= '9') return 1L << (26 + c - '0');
+        return 1L << (36 + c % 28);
+    }
+
+    private static boolean maskIsExact(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9');
+    }
+
+    private static String normalizedKey(Song song) {
+        return normalize(song.getTitle()) + SEPARATOR + normalize(song.getArtist()) + SEPARATOR
+                + normalize(song.getAlbum()) + SEPARATOR;
+    }
+
+    /**
+     * Lower-cases and strips accents. Latin letters are folded one char at a
+     * time from a table; anything else takes the full Unicode route.
+     */
+    static String normalize(String s) {
+        char[] folded = null;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            char f;
+            if (c < 0x80) {
+                f = c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+            } else if (c < LATIN_FOLD.length && LATIN_FOLD[c] != 0) {
+                f = LATIN_FOLD[c];
+            } else {
+                return foldUnicode(s);
+            }
+            if (f != c) {
+                if (folded == null) folded = s.toCharArray();
+                folded[i] = f;
+            }
+        }
+        return folded == null ? s : new String(folded);
+    }
+
+    private static String foldUnicode(String s) {
+        return MARKS.matcher(Normalizer.normalize(s, Normalizer.Form.NFD)).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    /** Distinct trigrams of chars[from, to), each packed into a long. */
+    private static long[] trigrams(char[] chars, int from, int to) {
+        if (to - from < 3) return new long[0];
+        long[] grams = new long[to - from - 2];
+        for (int i = 0; i < grams.length; i++) {
+            int p = from + i;
+            grams[i] = ((long) chars[p] << 32) | ((long) chars[p + 1] << 16) | chars[p + 2];
+        }
+        Arrays.sort(grams);
+        int n = 0;
+        for (int i = 0; i < grams.length; i++) {
+            if (n == 0 || grams[n - 1] != grams[i]) grams[n++] = grams[i];
+        }
+        return n == grams.length ? grams : Arrays.copyOf(grams, n);
+    }
+
+    /** Growable int list of doc ids, sorted and de-duplicated lazily. */
+    private static final class Postings {
+        private int[] ids = new int[4];
+        private int size = 0;
+        private boolean sorted = true;
+
+        void add(int id) {
+            if (size > 0 && ids[size - 1] >= id) sorted = false;
+            if (size == ids.length) ids = Arrays.copyOf(ids, size * 2);
+            ids[size++] = id;
+        }
+
+        void sort() {
+            if (sorted) return;
+            Arrays.sort(ids, 0, size);
+            int n = 0;
+            for (int i = 0; i < size; i++) {
+                if (n == 0 || ids[n - 1] != ids[i]) ids[n++] = ids[i];
+            }
+            size = n;
+            sorted = true;
+        }
+    }
+
+    /** Open-addressing map from packed trigram to its posting list. */
+    private static final class TrigramMap {
+        private long[] keys = new long[1 << 12];
+        private Postings[] values = new Postings[1 << 12];
+        private int size = 0;
+
+        Postings get(long key) {
+            int mask = keys.length - 1;
+            for (int i = slot(key, mask); values[i] != null; i = (i + 1) & mask) {
+                if (keys[i] == key) return values[i];
+            }
+            return null;
+        }
+
+        Postings getOrCreate(long key) {
+            int mask = keys.length - 1;
+            int i = slot(key, mask);
+            for (; values[i] != null; i = (i + 1) & mask) {
+                if (keys[i] == key) return values[i];
+            }
+            Postings p = new Postings();
+            keys[i] = key;
+            values[i] = p;
+            if (++size * 2 > keys.length) grow();
+            return p;
+        }
+
+        void forEachWithPrefix(long bigram, Consumer<Postings> action) {
+            for (int i = 0; i < keys.length; i++) {
+                if (values[i] != null && (keys[i] >>> 16) == bigram) action.accept(values[i]);
+            }
+        }
+
+        void clear() {
+            keys = new long[1 << 12];
+            values = new Postings[1 << 12];
+            size = 0;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            Postings[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new Postings[oldValues.length * 2];
+            int mask = keys.length - 1;
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldValues[j] == null) continue;
+                int i = slot(oldKeys[j], mask);
+                while (values[i] != null) i = (i + 1) & mask;
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+
+        private static int slot(long key, int mask) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+    }
+}
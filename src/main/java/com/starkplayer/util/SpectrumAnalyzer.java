@@ -0,0 +1,179 @@
+package com.starkplayer.util;
+
+/**
+ * FFT spectrum of a block of mono samples, grouped into log-spaced bands for
+ * the visualizer.
+ *
+ * The block is Hann-windowed and transformed as a half-size complex FFT
+ * (radix-2, iterative) followed by the usual split into the real spectrum.
+ * Twiddles, window, bit-reversal order and the bin range of every band are
+ * computed in the constructor, so {@link #analyse} allocates nothing. One
+ * instance per thread.
+ */
+public class SpectrumAnalyzer {
+
+    public static final int MIN_SIZE = 128;  // 64 bins
+    public static final int MAX_SIZE = 8192; // 4096 bins
+    public static final float FLOOR_DB = -60f;
+    private static final double MIN_FREQUENCY = 20;
+
+    private final int size;
+    private final int half;
+    private final float sampleRate;
+    private final float[] window;
+    private final double windowScale;
+    private final int[] bitReverse;
+    private final float[] cos;      // half-size FFT twiddles, e^(-2 pi i k / half)
+    private final float[] sin;
+    private final float[] splitCos; // full-size twiddles for the real split, e^(-2 pi i k / size)
+    private final float[] splitSin;
+    private final float[] re;
+    private final float[] im;
+    private final float[] power;
+    private final int[] bandStart;
+    private final int[] bandEnd;
+    private final float[] bands;
+    private float[] binDb;
+
+    /**
+     * @param size        FFT length, a power of two from {@link #MIN_SIZE} to
+     *                    {@link #MAX_SIZE}; gives {@code size / 2} bins
+     * @param bandCount   number of log-spaced bands
+     * @param sampleRate  of the samples passed to {@link #analyse}
+     */
+    public SpectrumAnalyzer(int size, int bandCount, float sampleRate) {
+        checkSize(size);
+        if (bandCount < 1) throw new IllegalArgumentException("Band count must be positive: " + bandCount);
+        this.size = size;
+        this.half = size / 2;
+        this.sampleRate = sampleRate;
+
+        window = new float[size];
+        double sum = 0;
+        for (int n = 0; n < size; n++) {
+            window[n] = (float) (0.5 - 0.5 * Math.cos(2 * Math.PI * n / size));
+            sum += window[n];
+        }
+        // A full-scale sine then reads 0 dB in its bin
+        windowScale = 2 / sum;
+
+        int bits = Integer.numberOfTrailingZeros(half);
+        bitReverse = new int[half];
+        for (int i = 0; i < half; i++) bitReverse[i] = Integer.reverse(i) >>> (32 - bits);
+        cos = new float[half / 2];
+        sin = new float[half / 2];
+        for (int k = 0; k < half / 2; k++) {
+            cos[k] = (float) Math.cos(2 * Math.PI * k / half);
+            sin[k] = (float) -Math.sin(2 * Math.PI * k / half);
+        }
+        splitCos = new float[half];
+        splitSin = new float[half];
+        for (int k = 0; k < half; k++) {
+            splitCos[k] = (float) Math.cos(2 * Math.PI * k / size);
+            splitSin[k] = (float) -Math.sin(2 * Math.PI * k / size);
+        }
+        re = new float[half];
+        im = new float[half];
+        power = new float[half];
+
+        bandStart = new int[bandCount];
+        bandEnd = new int[bandCount];
+        bands = new float[bandCount];
+        double binWidth = sampleRate / size;
+        double low = Math.max(MIN_FREQUENCY, binWidth);
+        double high = sampleRate / 2;
+        for (int b = 0; b < bandCount; b++) {
+            double from = low * Math.pow(high / low, (double) b / bandCount);
+            double to = low * Math.pow(high / low, (double) (b + 1) / bandCount);
+            int start = Math.min(half - 1, (int) Math.round(from / binWidth));
+            int end = Math.min(half, (int) Math.round(to / binWidth));
+            bandStart[b] = start;
+            bandEnd[b] = Math.max(start + 1, end); // narrow low bands still read their nearest bin
+        }
+    }
+
+    public static void checkSize(int size) {
+        if (Integer.bitCount(size) != 1 || size < MIN_SIZE || size > MAX_SIZE) {
+            throw new IllegalArgumentException("FFT size must be a power of two from " + MIN_SIZE + " to " + MAX_SIZE + ": " + size);
+        }
+    }
+
+    public int size() { return size; }
+    public int bins() { return half; }
+    public float binWidth() { return sampleRate / size; }
+
+    /**
+     * Analyses {@code size} samples. {@code samples} is read as a ring of
+     * exactly {@code size} entries starting at {@code start}; pass 0 for a
+     * plain array. Results stay valid until the next call.
+     *
+     * @return band levels in dB, 0 for a full-scale sine, floored at -60
+     */
+    public float[] analyse(float[] samples, int start) {
+        int mask = size - 1;
+        // Pack even samples into re and odd into im, in bit-reversed order
+        for (int k = 0; k < half; k++) {
+            int r = bitReverse[k];
+            int n = 2 * r;
+            re[k] = samples[(start + n) & mask] * window[n];
+            im[k] = samples[(start + n + 1) & mask] * window[n + 1];
+        }
+        transform();
+        split();
+        for (int b = 0; b < bands.length; b++) {
+            float peak = 0;
+            for (int k = bandStart[b]; k < bandEnd[b]; k++) peak = Math.max(peak, power[k]);
+            bands[b] = toDb(peak);
+        }
+        return bands;
+    }
+
+    /** Per-bin levels in dB from the last {@link #analyse}; the array is reused. */
+    public float[] binMagnitudes() {
+        if (binDb == null) binDb = new float[half];
+        for (int k = 0; k < half; k++) binDb[k] = toDb(power[k]);
+        return binDb;
+    }
+
+    private static float toDb(float power) {
+        return Math.max(FLOOR_DB, (float) (10 * Math.log10(power + 1e-20f)));
+    }
+
+    /** In-place radix-2 FFT of re/im, which are already in bit-reversed order. */
+    private void transform() {
+        for (int len = 2; len <= half; len <<= 1) {
+            int span = len >> 1;
+            int step = half / len;
+            for (int i = 0; i < half; i += len) {
+                for (int j = 0, t = 0; j < span; j++, t += step) {
+                    int a = i + j;
+                    int b = a + span;
+                    float wr = cos[t], wi = sin[t];
+                    float xr = re[b] * wr - im[b] * wi;
+                    float xi = re[b] * wi + im[b] * wr;
+                    re[b] = re[a] - xr;
+                    im[b] = im[a] - xi;
+                    re[a] += xr;
+                    im[a] += xi;
+                }
+            }
+        }
+    }
+
+    /** Turns the half-size complex result into power for bins 0 .. half-1. */
+    private void split() {
+        float scale = (float) (windowScale * windowScale);
+        float dc = re[0] + im[0];
+        power[0] = dc * dc * scale / 4; // DC and Nyquist carry no mirrored half
+        for (int k = 1; k < half; k++) {
+            float ar = re[k], ai = im[k];
+            float br = re[half - k], bi = -im[half - k]; // conjugate of Z[half - k]
+            float er = (ar + br) * 0.5f, ei = (ai + bi) * 0.5f;
+            float or = (ai - bi) * 0.5f, oi = (br - ar) * 0.5f;
+            float wr = splitCos[k], wi = splitSin[k];
+            float xr = er + wr * or - wi * oi;
+            float xi = ei + wr * oi + wi * or;
+            power[k] = (xr * xr + xi * xi) * scale;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.starkplayer.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lock-free triple buffer for spectrum frames between one producer (the
+ * media spectrum callback) and one consumer (the render loop).
+ *
+ * The producer always has a private buffer to fill, the consumer always has
+ * a private buffer to read, and the third slot holds the newest complete
+ * frame. Handing a buffer over is a single atomic swap, so neither side ever
+ * waits or sees a half-written frame, and nothing is allocated after
+ * construction.
+ */
+public class SpectrumBuffer {
+
+    private static final int INDEX_MASK = 3;
+    private static final int FRESH = 4; // the shared slot holds a frame the reader has not taken
+
+    private final float[][] buffers;
+    private final AtomicInteger shared = new AtomicInteger(1);
+    private int writeIndex = 0; // producer only
+    private int readIndex = 2; // consumer only
+
+    public SpectrumBuffer(int bands) {
+        buffers = new float[3][bands];
+    }
+
+    public int bands() {
+        return buffers[0].length;
+    }
+
+    /**
+     * Producer side: stores {@code max(0, source[i] + offset)} for each band
+     * and publishes the frame.
+     */
+    public void publish(float[] source, float offset) {
+        float[] target = buffers[writeIndex];
+        int n = Math.min(source.length, target.length);
+        for (int i = 0; i < n; i++) {
+            target[i] = Math.max(0f, source[i] + offset);
+        }
+        writeIndex = shared.getAndSet(writeIndex | FRESH) & INDEX_MASK;
+    }
+
+    /**
+     * Consumer side: the newest complete frame. The array stays valid and
+     * unchanged until the next call.
+     */
+    public float[] acquire() {
+        if ((shared.get() & FRESH) != 0) {
+            readIndex = shared.getAndSet(readIndex) & INDEX_MASK;
+        }
+        return buffers[readIndex];
+    }
+}
@@ -0,0 +1,210 @@
+package com.starkplayer.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.ref.Reference;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link Song} over the {@link TrackStore}: tags read back as set, and a
+ * library costs well under the previous layout of one Path and a String
+ * per field for every track.
+ */
+class TrackStoreTest {
+
+    private static final String[] GENRES = {"Rock", "Pop", "Jazz", "Classical", "Electronic", "Hip-Hop",
+            "Folk", "Metal", "Blues", "Country", "Reggae", "Soul", "Punk", "Ambient", "Soundtrack"};
+
+    @Test
+    void songReadsBackItsTags() {
+        Path file = Paths.get("/music/TrackStoreTest/Album", "01 Intro.mp3");
+        Song song = new Song(file, "01 Intro.mp3");
+        assertEquals(file, song.getFile());
+        assertEquals("01 Intro.mp3", song.getTitle());
+        assertEquals(Song.UNKNOWN_ARTIST, song.getArtist());
+        assertEquals(Song.UNKNOWN_ALBUM, song.getAlbum());
+        assertEquals("", song.getYear());
+
+        song.setTitle("Intro");
+        song.setArtist("TrackStoreTest Artist");
+        song.setAlbum("TrackStoreTest Album");
+        song.setGenre("Jazz");
+        song.setYear("2004-05-01");
+        song.setAlbumArtKey("cover");
+        song.setDuration(215);
+        assertEquals("Intro", song.getTitle());
+        assertEquals("TrackStoreTest Artist", song.getArtist());
+        assertEquals("TrackStoreTest Album", song.getAlbum());
+        assertEquals("Jazz", song.getGenre());
+        assertEquals("2004", song.getYear());
+        assertEquals("cover", song.getAlbumArtKey());
+        assertEquals(215, song.getDuration());
+
+        song.setArtist("");
+        assertEquals(Song.UNKNOWN_ARTIST, song.getArtist());
+    }
+
+    @Test
+    void songsInOneFolderShareIt() {
+        Song a = new Song(Paths.get("/music/TrackStoreTest/Shared", "a.mp3"), "a.mp3");
+        Song b = new Song(Paths.get("/music/TrackStoreTest/Shared", "b.mp3"), "b.mp3");
+        assertSame(a.getFolder(), b.getFolder());
+    }
+
+    @Test
+    void restoredPagesReadOnlyWhatIsUsed() {
+        int count = 3 * TrackStore.PAGE_SIZE + 10;
+        CountingSource source = new CountingSource();
+        List<Song> songs = TrackStore.shared().restore(count, source);
+        assertEquals(count, songs.size());
+        assertEquals(List.of(), source.reads);
+
+        Song song = songs.get(TrackStore.PAGE_SIZE + 5);
+        assertEquals(Paths.get("/music/TrackStoreTest/Restored", "1029.mp3"), song.getFile());
+        assertEquals(List.of("files 1024"), source.reads);
+        assertEquals("Title 1029", song.getTitle());
+        assertEquals("Artist 1029", song.getArtist());
+        assertEquals(Song.UNKNOWN_ALBUM, song.getAlbum());
+        assertEquals("1999", song.getYear());
+        assertEquals(1029, song.getDuration());
+        assertEquals(List.of("files 1024", "tags 1024"), source.reads);
+
+        // A setter reads the row first, so the read cannot undo it
+        Song other = songs.get(count - 2);
+        other.setArtist("Someone else");
+        assertEquals(List.of("files 1024", "tags 1024", "files 3072", "tags 3072"), source.reads);
+        assertEquals("Someone else", other.getArtist());
+        assertEquals("3080.mp3", other.getTitle());
+    }
+
+    /** Rows named after their index, recording which pages were read. */
+    private static final class CountingSource implements TrackStore.Source {
+        final List<String> reads = new ArrayList<>();
+
+        @Override
+        public void readFiles(int from, int count, TrackStore.FileSink sink) {
+            reads.add("files " + from);
+            Path folder = Paths.get("/music/TrackStoreTest/Restored");
+            for (int i = 0; i < count; i++) sink.accept(i, folder, (from + i) + ".mp3");
+        }
+
+        @Override
+        public void readTags(int from, int count, TrackStore.TagSink sink) {
+            reads.add("tags " + from);
+            for (int i = 0; i < count; i++) {
+                int row = from + i;
+                sink.accept(i, row % 2 == 0 ? row + ".mp3" : "Title " + row, "Artist " + row, "", null, "1999", row);
+            }
+        }
+    }
+
+    /**
+     * Tracks are built the way a scan and a tag read would, with fresh
+     * objects per track, and heap is measured after full GCs with them
+     * still reachable.
+     */
+    @Test
+    void storeRetainsLessThanHalfOfPlainLayout() throws InterruptedException {
+        int count = 50_000;
+
+        long before = usedHeap();
+        List<PlainSong> plain = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Track t = new Track(i);
+            PlainSong song = new PlainSong(t.file(), t.fileName());
+            if (t.tagged()) {
+                song.title = t.title();
+                song.artist = t.artist();
+                song.album = t.album();
+                song.genre = t.genre();
+                song.year = t.year();
+            }
+            song.albumArtKey = t.albumArtKey();
+            song.duration = t.duration();
+            plain.add(song);
+        }
+        long plainBytes = usedHeap() - before;
+        Reference.reachabilityFence(plain);
+        plain = null;
+
+        before = usedHeap();
+        List<Song> stored = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Track t = new Track(i);
+            Song song = new Song(t.file(), t.fileName());
+            if (t.tagged()) {
+                song.setTitle(t.title());
+                song.setArtist(t.artist());
+                song.setAlbum(t.album());
+                song.setGenre(t.genre());
+                song.setYear(t.year());
+            }
+            song.setAlbumArtKey(t.albumArtKey());
+            song.setDuration(t.duration());
+            stored.add(song);
+        }
+        long storedBytes = usedHeap() - before;
+        Reference.reachabilityFence(stored);
+
+        assertTrue(storedBytes < plainBytes / 2,
+                storedBytes / count + " bytes per track against " + plainBytes / count + " before");
+        assertEquals(new Track(4321).title(), stored.get(4321).getTitle());
+    }
+
+    /** Heap in use after the collector has settled. */
+    private static long usedHeap() throws InterruptedException {
+        Runtime rt = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(50);
+            used = Math.min(used, rt.totalMemory() - rt.freeMemory());
+        }
+        return used;
+    }
+
+    /** Tags of generated track {@code i}; every call returns fresh objects. */
+    private record Track(int i) {
+        int albumId() { return i / 12; }
+        int artistId() { return albumId() / 8; }
+        boolean tagged() { return i % 10 != 0; }
+
+        Path file() {
+            Path dir = Paths.get("/home/user/Music", "Artist " + artistId(), "Album " + albumId());
+            return dir.resolve(fileName());
+        }
+
+        String fileName() { return String.format("%02d Track %d.mp3", i % 12 + 1, i); }
+        String title() { return new String("Song number " + i + " of the album"); }
+        String artist() { return new String("Artist " + artistId()); }
+        String album() { return new String("Album " + albumId() + " (Deluxe Edition)"); }
+        String genre() { return new String(GENRES[artistId() % GENRES.length]); }
+        String year() { return new String(Integer.toString(1960 + albumId() % 60)); }
+        String albumArtKey() { return String.format("%016x%016x", albumId() * 0x9E3779B97F4A7C15L, (long) albumId()); }
+        long duration() { return 120 + i % 300; }
+    }
+
+    /** The track layout before the store: one object per field. */
+    private static final class PlainSong {
+        final Path file;
+        String title;
+        String artist = "Unknown Artist";
+        String album = "Unknown Album";
+        String genre = "";
+        String year = "";
+        String albumArtKey;
+        long duration;
+
+        PlainSong(Path file, String title) {
+            this.file = file;
+            this.title = title;
+        }
+    }
+}
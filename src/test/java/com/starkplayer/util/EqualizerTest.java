@@ -0,0 +1,86 @@
+package com.starkplayer.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs {@link Equalizer} over synthetic PCM: the gain measured on a sine
+ * must match the designed response, and processing must not allocate.
+ */
+class EqualizerTest {
+
+    private static final float SAMPLE_RATE = 44_100;
+    private static final int BLOCK_FRAMES = 512;
+
+    @Test
+    void boostedBandMatchesDesignedResponse() {
+        checkResponse(6);
+    }
+
+    @Test
+    void cutBandMatchesDesignedResponse() {
+        checkResponse(-9);
+    }
+
+    @Test
+    void flatSettingPassesSweepUnchanged() {
+        Equalizer eq = new Equalizer(SAMPLE_RATE, 1);
+        for (double f = 30; f < 20_000; f *= 1.5) {
+            assertEquals(0, measureDb(eq, f), 0.01, f + " Hz");
+        }
+    }
+
+    @Test
+    void processDoesNotAllocate() {
+        Equalizer eq = new Equalizer(SAMPLE_RATE, 2);
+        for (int band = 0; band < Equalizer.BAND_FREQUENCIES.length; band++) eq.setGain(band, band % 2 == 0 ? 4 : -3);
+        float[] noise = new float[BLOCK_FRAMES * 2];
+        float[] block = new float[noise.length];
+        Random random = new Random(1);
+        for (int i = 0; i < noise.length; i++) noise[i] = random.nextFloat() * 0.5f - 0.25f;
+        for (int i = 0; i < 20_000; i++) eq.process(block, 0, BLOCK_FRAMES);
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < 10_000; i++) {
+            System.arraycopy(noise, 0, block, 0, noise.length);
+            eq.process(block, 0, BLOCK_FRAMES);
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+        assertTrue(allocated < 1024, allocated + " bytes allocated");
+    }
+
+    /** Boosts each band in turn and measures a sine at its centre. */
+    private static void checkResponse(double gainDb) {
+        for (int band = 0; band < Equalizer.BAND_FREQUENCIES.length; band++) {
+            Equalizer eq = new Equalizer(SAMPLE_RATE, 1);
+            eq.setGain(band, gainDb);
+            double f = Equalizer.BAND_FREQUENCIES[band];
+            assertEquals(eq.responseDb(f), measureDb(eq, f), 0.05, f + " Hz");
+        }
+    }
+
+    /** Output over input RMS for a sine at {@code f}, after the filters settle. */
+    private static double measureDb(Equalizer eq, double f) {
+        int frames = (int) SAMPLE_RATE;
+        float[] pcm = new float[frames];
+        for (int i = 0; i < frames; i++) pcm[i] = (float) (0.25 * Math.sin(2 * Math.PI * f * i / SAMPLE_RATE));
+        float[] in = pcm.clone();
+        eq.reset();
+        for (int off = 0; off < frames; off += BLOCK_FRAMES) {
+            eq.process(pcm, off, Math.min(BLOCK_FRAMES, frames - off));
+        }
+        double inSum = 0, outSum = 0;
+        for (int i = frames / 2; i < frames; i++) {
+            inSum += in[i] * in[i];
+            outSum += pcm[i] * pcm[i];
+        }
+        eq.reset();
+        return 10 * Math.log10(outSum / inSum);
+    }
+}
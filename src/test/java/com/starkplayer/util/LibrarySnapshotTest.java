@@ -0,0 +1,117 @@
+package com.starkplayer.util;
+
+import com.starkplayer.model.Song;
+import com.starkplayer.model.TrackStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LibrarySnapshotTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void readsBackWhatWasWritten() throws Exception {
+        List<Song> songs = library(5000);
+        List<Path> roots = List.of(Paths.get("/music/a").toAbsolutePath(), Paths.get("/music/b").toAbsolutePath());
+        Path file = dir.resolve("library.snapshot");
+        LibrarySnapshot.write(file, songs, roots);
+
+        LibrarySnapshot snapshot = LibrarySnapshot.open(file);
+        assertEquals(songs.size(), snapshot.size());
+        assertEquals(roots, snapshot.getRoots());
+        for (int i = 0; i < songs.size(); i++) {
+            Song expected = songs.get(i), actual = snapshot.song(i);
+            assertEquals(expected.getFile().toAbsolutePath(), actual.getFile());
+            assertEquals(expected.getTitle(), actual.getTitle());
+            assertEquals(expected.getArtist(), actual.getArtist());
+            assertEquals(expected.getAlbum(), actual.getAlbum());
+            assertEquals(expected.getGenre(), actual.getGenre());
+            assertEquals(expected.getYear(), actual.getYear());
+            assertEquals(expected.getDuration(), actual.getDuration());
+        }
+    }
+
+    @Test
+    void restoredSongsMatchWhatWasWritten() throws Exception {
+        List<Song> songs = library(5000);
+        Path file = dir.resolve("library.snapshot");
+        LibrarySnapshot.write(file, songs);
+
+        List<Song> restored = TrackStore.shared().restore(songs.size(), LibrarySnapshot.open(file));
+        for (int i = songs.size() - 1; i >= 0; i -= 7) {
+            Song expected = songs.get(i), actual = restored.get(i);
+            assertEquals(expected.getFile().toAbsolutePath(), actual.getFile());
+            assertEquals(expected.getTitle(), actual.getTitle());
+            assertEquals(expected.getArtist(), actual.getArtist());
+            assertEquals(expected.getAlbum(), actual.getAlbum());
+            assertEquals(expected.getGenre(), actual.getGenre());
+            assertEquals(expected.getYear(), actual.getYear());
+            assertEquals(expected.getDuration(), actual.getDuration());
+        }
+    }
+
+    @Test
+    void detectsDamagedBlock() throws Exception {
+        Path file = damagedSnapshot();
+        LibrarySnapshot damaged = LibrarySnapshot.open(file);
+        assertThrows(UncheckedIOException.class, () -> {
+            for (int i = 0; i < damaged.size(); i++) damaged.song(i);
+        });
+    }
+
+    @Test
+    void restoreReportsDamagedBlockOnce() throws Exception {
+        LibrarySnapshot damaged = LibrarySnapshot.open(damagedSnapshot());
+        AtomicInteger reports = new AtomicInteger();
+        damaged.setDamageHandler(e -> reports.incrementAndGet());
+        List<Song> restored = TrackStore.shared().restore(damaged.size(), damaged);
+        assertEquals(0, reports.get());
+        for (Song song : restored) song.getDuration();
+        assertEquals(1, reports.get());
+    }
+
+    /** A snapshot of 5000 songs with one byte flipped near the end of its columns. */
+    private Path damagedSnapshot() throws Exception {
+        Path file = dir.resolve("library.snapshot");
+        LibrarySnapshot.write(file, library(5000));
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long pos = ch.size() - 10;
+            ByteBuffer b = ByteBuffer.allocate(1);
+            ch.read(b, pos);
+            b.put(0, (byte) (b.get(0) ^ 0x55)).rewind();
+            ch.write(b, pos);
+        }
+        return file;
+    }
+
+    private static List<Song> library(int count) {
+        Random random = new Random(7);
+        List<Song> songs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Song song = new Song(Paths.get("/music/a", "Artist " + i / 100, "Track " + i + ".mp3"),
+                    random.nextInt(8) == 0 ? "Track " + i + ".mp3" : "Título " + random.nextInt(1000));
+            song.setArtist(random.nextInt(10) == 0 ? "" : "Artist " + i / 100);
+            song.setAlbum("Album " + i / 12);
+            song.setGenre(random.nextInt(4) == 0 ? "" : "Genre " + random.nextInt(40));
+            song.setYear(String.valueOf(1960 + random.nextInt(65)));
+            song.setDuration(60 + random.nextInt(400));
+            songs.add(song);
+        }
+        return songs;
+    }
+}
@@ -0,0 +1,71 @@
+package com.starkplayer.util;
+
+import com.starkplayer.model.Song;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MetadataCacheTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void tornTailIsDroppedOnLoad() throws Exception {
+        Path cacheFile = dir.resolve("cache/metadata.cache");
+        Path file = Files.writeString(dir.resolve("a.mp3"), "abc");
+        MetadataCache cache = new MetadataCache(cacheFile);
+        Song song = new Song(file, "Title");
+        song.setArtist("Artist");
+        song.setDuration(42);
+        cache.put(song);
+        long length = Files.size(cacheFile);
+        try (FileChannel ch = FileChannel.open(cacheFile, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ch.write(ByteBuffer.wrap(new byte[]{0, 0, 0, 20, 1, 2}));
+        }
+
+        MetadataCache reloaded = new MetadataCache(cacheFile);
+        Song read = new Song(file, "?");
+        assertTrue(reloaded.lookup(read));
+        assertEquals("Title", read.getTitle());
+        assertEquals("Artist", read.getArtist());
+        assertEquals(42, read.getDuration());
+        assertEquals(length, Files.size(cacheFile));
+    }
+
+    @Test
+    void saveKeepsLatestEntry() throws Exception {
+        Path cacheFile = dir.resolve("metadata.cache");
+        Path file = Files.writeString(dir.resolve("a.mp3"), "abc");
+        MetadataCache cache = new MetadataCache(cacheFile);
+        cache.put(new Song(file, "First"));
+        cache.put(new Song(file, "Second"));
+        cache.save();
+
+        MetadataCache reloaded = new MetadataCache(cacheFile);
+        Song read = new Song(file, "?");
+        assertTrue(reloaded.lookup(read));
+        assertEquals("Second", read.getTitle());
+        assertEquals(1, reloaded.size());
+        assertFalse(Files.exists(cacheFile.resolveSibling("metadata.cache.tmp")));
+    }
+
+    @Test
+    void changedFileMisses() throws Exception {
+        Path cacheFile = dir.resolve("metadata.cache");
+        Path file = Files.writeString(dir.resolve("a.mp3"), "abc");
+        MetadataCache cache = new MetadataCache(cacheFile);
+        cache.put(new Song(file, "Title"));
+        Files.writeString(file, "longer contents");
+        assertFalse(cache.lookup(new Song(file, "?")));
+    }
+}
@@ -0,0 +1,117 @@
+package com.starkplayer.util;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+/**
+ * Generates synthetic MP3 files for tests and benchmarks: an ID3v2.3 tag
+ * with the usual text frames and a cover picture, a run of silent 128 kbps
+ * CBR MPEG-1 Layer III frames, and an ID3v1 trailer.
+ */
+public class Mp3Fixtures {
+
+    // MPEG-1 Layer III, no CRC, 128 kbps, 44.1 kHz, no padding, stereo
+    private static final byte[] FRAME_HEADER = {(byte) 0xff, (byte) 0xfb, (byte) 0x90, 0x00};
+    private static final int FRAME_LENGTH = 417;
+
+    public static Path write(Path dir, String name, int audioBytes, String title, String artist,
+                             String album, int coverBytes) throws IOException {
+        return write(dir, name, audioBytes, title, artist, album, coverBytes, 0);
+    }
+
+    /**
+     * Like {@link #write(Path, String, int, String, String, String, int)}, but
+     * a non-zero {@code audioSeed} fills the frames with noise, so files only
+     * share audio when they share the seed.
+     */
+    public static Path write(Path dir, String name, int audioBytes, String title, String artist,
+                             String album, int coverBytes, long audioSeed) throws IOException {
+        Path file = dir.resolve(name);
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), 1 << 16)) {
+            out.write(id3v2(title, artist, album, "(17)", "2004", coverBytes));
+            byte[] frame = new byte[FRAME_LENGTH];
+            System.arraycopy(FRAME_HEADER, 0, frame, 0, FRAME_HEADER.length);
+            SplittableRandom noise = new SplittableRandom(audioSeed);
+            int frames = Math.max(2, audioBytes / FRAME_LENGTH);
+            for (int i = 0; i < frames; i++) {
+                if (audioSeed != 0) {
+                    for (int j = FRAME_HEADER.length; j < FRAME_LENGTH; j++) frame[j] = (byte) noise.nextInt();
+                }
+                out.write(frame);
+            }
+            out.write(id3v1(title, artist, album));
+        }
+        return file;
+    }
+
+    private static byte[] id3v2(String title, String artist, String album, String genre, String year,
+                                int coverBytes) throws IOException {
+        ByteArrayOutputStream frames = new ByteArrayOutputStream();
+        textFrame(frames, "TIT2", title);
+        textFrame(frames, "TPE1", artist);
+        textFrame(frames, "TALB", album);
+        textFrame(frames, "TCON", genre);
+        textFrame(frames, "TYER", year);
+        if (coverBytes > 0) {
+            ByteArrayOutputStream pic = new ByteArrayOutputStream();
+            pic.write(0);
+            pic.write("image/jpeg".getBytes(StandardCharsets.ISO_8859_1));
+            pic.write(0);
+            pic.write(3); // front cover
+            pic.write(0); // empty description
+            pic.write(new byte[coverBytes]);
+            frame(frames, "APIC", pic.toByteArray());
+        }
+        int size = frames.size();
+        ByteArrayOutputStream tag = new ByteArrayOutputStream();
+        tag.write(new byte[] {'I', 'D', '3', 3, 0, 0});
+        tag.write((size >> 21) & 0x7f);
+        tag.write((size >> 14) & 0x7f);
+        tag.write((size >> 7) & 0x7f);
+        tag.write(size & 0x7f);
+        frames.writeTo(tag);
+        return tag.toByteArray();
+    }
+
+    private static void textFrame(ByteArrayOutputStream out, String id, String text) throws IOException {
+        byte[] encoded = text.getBytes(StandardCharsets.ISO_8859_1);
+        byte[] data = new byte[encoded.length + 1];
+        System.arraycopy(encoded, 0, data, 1, encoded.length);
+        frame(out, id, data);
+    }
+
+    private static void frame(ByteArrayOutputStream out, String id, byte[] data) throws IOException {
+        out.write(id.getBytes(StandardCharsets.ISO_8859_1));
+        out.write(data.length >>> 24);
+        out.write(data.length >>> 16);
+        out.write(data.length >>> 8);
+        out.write(data.length);
+        out.write(0);
+        out.write(0);
+        out.write(data);
+    }
+
+    private static byte[] id3v1(String title, String artist, String album) {
+        byte[] tag = new byte[128];
+        tag[0] = 'T';
+        tag[1] = 'A';
+        tag[2] = 'G';
+        put(tag, 3, 30, title);
+        put(tag, 33, 30, artist);
+        put(tag, 63, 30, album);
+        put(tag, 93, 4, "2004");
+        tag[127] = 17;
+        return tag;
+    }
+
+    private static void put(byte[] tag, int offset, int length, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.ISO_8859_1);
+        System.arraycopy(bytes, 0, tag, offset, Math.min(length, bytes.length));
+    }
+}
@@ -0,0 +1,80 @@
+package com.starkplayer.util;
+
+import com.mpatric.mp3agic.ID3v2;
+import com.mpatric.mp3agic.Mp3File;
+import com.starkplayer.model.Song;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The header-only read must fill in the same Song fields as the mp3agic
+ * full scan it replaced, on the files {@link Mp3Fixtures} generates.
+ */
+class Mp3HeaderReaderTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void sameSongFieldsAsMp3agic() throws Exception {
+        int[] sizes = {100_000, 1_000_000, 5_000_000};
+        for (int i = 0; i < 6; i++) {
+            Path file = Mp3Fixtures.write(dir, "track" + i + ".mp3", sizes[i % sizes.length],
+                    "Track " + i + " café", "Artist " + i % 3, "Album " + i % 2, i % 2 == 0 ? 64 * 1024 : 0);
+            assertSameFields(file);
+        }
+    }
+
+    @Test
+    void sameSongFieldsAsMp3agicWithOnlyId3v1() throws Exception {
+        Path tagged = Mp3Fixtures.write(dir, "tagged.mp3", 1_000_000, "Title", "Artist", "Album", 0);
+        byte[] bytes = Files.readAllBytes(tagged);
+        int tagSize = 10 + ((bytes[6] & 0x7f) << 21 | (bytes[7] & 0x7f) << 14 | (bytes[8] & 0x7f) << 7 | bytes[9] & 0x7f);
+        Path file = Files.write(dir.resolve("v1.mp3"), Arrays.copyOfRange(bytes, tagSize, bytes.length));
+
+        Mp3HeaderReader.Tags tags = Mp3HeaderReader.read(file);
+        assertNotNull(tags);
+        assertTrue(tags.hasId3v1() && !tags.hasId3v2());
+        assertSameFields(file);
+    }
+
+    @Test
+    void readsOnlyTheHeaders() throws Exception {
+        Path file = Mp3Fixtures.write(dir, "large.mp3", 5_000_000, "Title", "Artist", "Album", 64 * 1024);
+        Mp3HeaderReader.Tags tags = Mp3HeaderReader.read(file);
+        assertNotNull(tags);
+        assertTrue(tags.getBytesRead() < Files.size(file) / 20, tags.getBytesRead() + " bytes read");
+    }
+
+    @Test
+    void albumArtMatchesMp3agic() throws Exception {
+        Path file = Mp3Fixtures.write(dir, "cover.mp3", 100_000, "Title", "Artist", "Album", 10_000);
+        Mp3HeaderReader.AlbumArt art = Mp3HeaderReader.readAlbumArt(file);
+        ID3v2 tag = new Mp3File(file.toFile()).getId3v2Tag();
+        assertNotNull(art);
+        assertEquals(tag.getAlbumImageMimeType(), art.mimeType());
+        assertArrayEquals(tag.getAlbumImage(), art.data());
+    }
+
+    private static void assertSameFields(Path file) throws Exception {
+        Song header = new Song(file, file.getFileName().toString());
+        Song full = new Song(file, file.getFileName().toString());
+        MetadataExtractor.readTags(header);
+        MetadataExtractor.extractWithMp3agic(full);
+        assertEquals(full.getTitle(), header.getTitle(), file + " title");
+        assertEquals(full.getArtist(), header.getArtist(), file + " artist");
+        assertEquals(full.getAlbum(), header.getAlbum(), file + " album");
+        assertEquals(full.getGenre(), header.getGenre(), file + " genre");
+        assertEquals(full.getYear(), header.getYear(), file + " year");
+        assertEquals(full.getDuration(), header.getDuration(), 1, file + " duration");
+    }
+}
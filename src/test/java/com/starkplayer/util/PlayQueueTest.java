@@ -0,0 +1,79 @@
+package com.starkplayer.util;
+
+import com.starkplayer.model.Song;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PlayQueueTest {
+
+    /** Random inserts, removes and moves must leave the queue in the same order as a list. */
+    @Test
+    void orderMatchesList() {
+        Random random = new Random(1);
+        PlayQueue queue = new PlayQueue(50, random);
+        List<Song> list = new ArrayList<>();
+        int id = 0;
+        for (int i = 0; i < 50_000; i++) {
+            int op = random.nextInt(3);
+            if (op == 0 || list.isEmpty()) {
+                Song s = new Song(Path.of("/t/" + id), "t" + id++);
+                int index = random.nextInt(list.size() + 1);
+                list.add(index, s);
+                queue.add(index, s);
+            } else if (op == 1) {
+                Song s = list.remove(random.nextInt(list.size()));
+                queue.remove(queue.entryOf(s));
+            } else {
+                Song s = list.remove(random.nextInt(list.size()));
+                int index = random.nextInt(list.size() + 1);
+                list.add(index, s);
+                queue.move(queue.entryOf(s), index);
+            }
+        }
+        assertEquals(list.size(), queue.size());
+        for (int i = 0; i < list.size(); i++) {
+            assertSame(list.get(i), queue.get(i).getSong(), "song at " + i);
+            assertEquals(i, queue.indexOf(queue.entryOf(list.get(i))));
+        }
+    }
+
+    /** A shuffle cycle with additions and removals along the way plays each live track once. */
+    @Test
+    void shuffleCyclePlaysEachTrackOnce() {
+        Random random = new Random(2);
+        PlayQueue queue = new PlayQueue(50, random);
+        List<Song> songs = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) songs.add(new Song(Path.of("/s/" + i), "s" + i));
+        queue.rebuild(songs);
+        queue.setShuffle(true);
+        Set<Song> played = new HashSet<>();
+        int added = 0;
+        PlayQueue.Entry e;
+        while ((e = queue.peekNext(false)) != null) {
+            queue.select(e, true);
+            assertTrue(played.add(e.getSong()), e.getSong().getTitle() + " played twice");
+            if (random.nextInt(10) == 0) {
+                Song s = new Song(Path.of("/s/new" + added), "new" + added++);
+                queue.add(random.nextInt(queue.size() + 1), s);
+            }
+            if (random.nextInt(10) == 0) {
+                PlayQueue.Entry victim = queue.get(random.nextInt(queue.size()));
+                if (victim != queue.getCurrent()) {
+                    played.remove(victim.getSong());
+                    queue.remove(victim);
+                }
+            }
+        }
+        assertEquals(queue.size(), played.size());
+    }
+}
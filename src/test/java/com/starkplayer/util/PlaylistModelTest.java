@@ -0,0 +1,173 @@
+package com.starkplayer.util;
+
+import com.starkplayer.model.Song;
+import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import javafx.collections.transformation.FilteredList;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link PlaylistModel} against the lists it stands in for: the view must
+ * equal a FilteredList over the library, stay in sort order, and report
+ * changes that, replayed onto a plain list, reproduce it.
+ */
+class PlaylistModelTest {
+
+    private final LibraryList library = new LibraryList();
+    private final SearchIndex index = new SearchIndex();
+    private final PlaylistModel model;
+    private final List<Song> mirror = new ArrayList<>();
+
+    PlaylistModelTest() {
+        library.addListener((ListChangeListener<Song>) c -> {
+            while (c.next()) {
+                for (Song s : c.getRemoved()) index.remove(s);
+                for (Song s : c.getAddedSubList()) index.add(s);
+            }
+        });
+        model = new PlaylistModel(library, index);
+        model.addListener((ListChangeListener<Song>) c -> {
+            while (c.next()) {
+                if (c.wasPermutated()) {
+                    Song[] moved = new Song[c.getTo() - c.getFrom()];
+                    for (int i = c.getFrom(); i < c.getTo(); i++) moved[c.getPermutation(i) - c.getFrom()] = mirror.get(i);
+                    for (int i = 0; i < moved.length; i++) mirror.set(c.getFrom() + i, moved[i]);
+                } else {
+                    for (int k = 0; k < c.getRemovedSize(); k++) mirror.remove(c.getFrom());
+                    mirror.addAll(c.getFrom(), c.getAddedSubList());
+                }
+            }
+        });
+    }
+
+    @Test
+    void filteredViewEqualsFilteredList() {
+        Random random = new Random(3);
+        for (int i = 0; i < 2000; i++) library.add(song(random, i));
+        FilteredList<Song> expected = new FilteredList<>(library);
+        for (String query : List.of("t1", "ar4", "t12 ar1", "nothing", "")) {
+            SearchIndex.Result result = index.search(query);
+            model.setFilter(result);
+            expected.setPredicate(result == null ? null : result::matches);
+            assertEquals(expected, model, query);
+            assertEquals(expected, mirror, query);
+        }
+    }
+
+    @Test
+    void narrowingSearchOnlyReportsRemovals() {
+        Random random = new Random(4);
+        for (int i = 0; i < 2000; i++) library.add(song(random, i));
+        model.setSortOrder(List.of(PlaylistModel.SortField.ARTIST, PlaylistModel.SortField.TITLE));
+        model.setFilter(index.search("t1"));
+        int[] sizes = new int[2];
+        ListChangeListener<Song> counter = c -> {
+            while (c.next()) {
+                sizes[0] += c.getAddedSize();
+                sizes[1] += c.getRemovedSize();
+            }
+        };
+        model.addListener(counter);
+        int shown = model.size();
+        model.setFilter(index.search("t12"));
+        assertEquals(0, sizes[0]);
+        assertEquals(shown - model.size(), sizes[1]);
+        assertMirroredAndSorted();
+
+        model.setFilter(index.search("t1"));
+        assertEquals(sizes[1], sizes[0]);
+        assertMirroredAndSorted();
+        model.removeListener(counter);
+    }
+
+    @Test
+    void changesReplayOntoMirror() {
+        Random random = new Random(5);
+        for (int i = 0; i < 3000; i++) library.add(song(random, i));
+        model.setSortOrder(List.of(PlaylistModel.SortField.ARTIST, PlaylistModel.SortField.TITLE));
+        assertMirroredAndSorted();
+
+        for (int round = 0; round < 300; round++) {
+            if (round == 100) {
+                model.setFilter(index.search("t1"));
+                assertMirroredAndSorted();
+            }
+            if (round == 200) {
+                model.setFilter(null);
+                assertMirroredAndSorted();
+            }
+            List<Song> updated = new ArrayList<>();
+            int count = 1 + random.nextInt(round % 3 == 0 ? 3 : 60);
+            for (int k = 0; k < count; k++) {
+                Song s = library.get(random.nextInt(library.size()));
+                s.setArtist("ar" + random.nextInt(50));
+                if (random.nextBoolean()) s.setTitle("t" + random.nextInt(500));
+                index.update(s);
+                updated.add(s);
+            }
+            model.songsUpdated(updated);
+            assertMirroredAndSorted();
+
+            if (round % 50 == 25) {
+                List<Song> added = new ArrayList<>();
+                for (int k = 0; k < 40; k++) added.add(song(random, 10_000 + round * 100 + k));
+                library.addAll(added);
+                assertMirroredAndSorted();
+                library.removeAll(new HashSet<>(added.subList(0, 20)));
+                library.remove(0, 10);
+                assertMirroredAndSorted();
+            }
+        }
+    }
+
+    @Test
+    void additionsMatchingSearchAreShown() {
+        ObservableList<Song> songs = FXCollections.observableArrayList();
+        SearchIndex songIndex = new SearchIndex();
+        songs.addListener((ListChangeListener<Song>) c -> {
+            while (c.next()) {
+                for (Song s : c.getRemoved()) songIndex.remove(s);
+                for (Song s : c.getAddedSubList()) songIndex.add(s);
+            }
+        });
+        PlaylistModel view = new PlaylistModel(songs, songIndex);
+        for (int i = 0; i < 10; i++) songs.add(new Song(Paths.get("/m/a/s" + i + ".mp3"), "song " + i));
+        view.setFilter(songIndex.search("love"));
+        assertEquals(0, view.size());
+
+        songs.add(new Song(Paths.get("/m/a/x.mp3"), "love me"));
+        songs.addAll(List.of(new Song(Paths.get("/m/a/y.mp3"), "lovely"), new Song(Paths.get("/m/a/z.mp3"), "nope")));
+        songs.add(0, new Song(Paths.get("/m/a/w.mp3"), "glove"));
+        assertEquals(List.of("glove", "love me", "lovely"), view.stream().map(Song::getTitle).toList());
+
+        view.setSortOrder(List.of(PlaylistModel.SortField.TITLE));
+        songs.add(new Song(Paths.get("/m/a/v.mp3"), "a love"));
+        assertEquals(List.of("a love", "glove", "love me", "lovely"), view.stream().map(Song::getTitle).toList());
+    }
+
+    private void assertMirroredAndSorted() {
+        assertEquals(model, mirror);
+        for (int k = 1; k < model.size(); k++) {
+            Song a = model.get(k - 1), b = model.get(k);
+            int c = a.getArtist().compareTo(b.getArtist());
+            if (c == 0) c = a.getTitle().compareTo(b.getTitle());
+            assertTrue(c <= 0, "out of order at " + k);
+        }
+    }
+
+    private static Song song(Random random, int i) {
+        Song song = new Song(Paths.get("/m/ar" + random.nextInt(50), "f" + i + ".mp3"), "t" + random.nextInt(500));
+        song.setArtist("ar" + random.nextInt(50));
+        return song;
+    }
+}
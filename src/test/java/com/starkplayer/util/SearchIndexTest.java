@@ -0,0 +1,68 @@
+package com.starkplayer.util;
+
+import com.starkplayer.model.Song;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SearchIndexTest {
+
+    private static final String[] WORDS = {"love", "night", "dream", "Björk", "Sigur Rós", "café", "rain", "fire"};
+
+    @Test
+    void matchesWhatScanningTheTagsFinds() {
+        Random random = new Random(9);
+        SearchIndex index = new SearchIndex();
+        List<Song> songs = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            Song song = new Song(Paths.get("/m", "s" + i + ".mp3"),
+                    WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)]);
+            song.setArtist(WORDS[random.nextInt(WORDS.length)]);
+            songs.add(song);
+            index.add(song);
+        }
+        // Typed a key at a time, so longer queries narrow the previous result
+        for (String typed : List.of("love", "BJORK", "ros", "cafe", "ght dr", "fire night", "xyzzy")) {
+            for (int length = 1; length <= typed.length(); length++) {
+                String query = typed.substring(0, length);
+                String q = SearchIndex.normalize(query);
+                SearchIndex.Result result = index.search(query);
+                int expected = 0;
+                for (Song song : songs) {
+                    boolean scanned = SearchIndex.normalize(song.getTitle()).contains(q)
+                            || SearchIndex.normalize(song.getArtist()).contains(q)
+                            || SearchIndex.normalize(song.getAlbum()).contains(q);
+                    assertEquals(scanned, result.matches(song), query + " on " + song.getTitle());
+                    if (scanned) expected++;
+                }
+                assertEquals(expected, result.size(), query);
+            }
+        }
+        assertNull(index.search(""));
+    }
+
+    @Test
+    void removedIdsAreReused() {
+        SearchIndex index = new SearchIndex();
+        List<Song> batch = new ArrayList<>();
+        for (int round = 0; round < 5; round++) {
+            batch.clear();
+            for (int i = 0; i < 1000; i++) batch.add(new Song(Paths.get("/m", "t" + i + ".mp3"), "t " + i));
+            batch.forEach(index::add);
+            batch.forEach(index::remove);
+        }
+        Song last = new Song(Paths.get("/m/q.mp3"), "q");
+        index.add(last);
+        assertTrue(index.idOf(last) < 1000);
+        assertEquals(1, index.size());
+        assertFalse(index.search("t 1").matches(batch.get(1)));
+    }
+}
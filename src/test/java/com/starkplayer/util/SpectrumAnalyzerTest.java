@@ -0,0 +1,65 @@
+package com.starkplayer.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SpectrumAnalyzerTest {
+
+    private static final float SAMPLE_RATE = 44_100;
+
+    @Test
+    void smallFftMatchesDirectDft() {
+        checkAgainstDft(256);
+    }
+
+    @Test
+    void largeFftMatchesDirectDft() {
+        checkAgainstDft(2048);
+    }
+
+    /** A full-scale sine centred on a bin reads 0 dB there. */
+    @Test
+    void sinePeaksAtItsBin() {
+        SpectrumAnalyzer analyzer = new SpectrumAnalyzer(2048, 64, SAMPLE_RATE);
+        int bin = Math.round(1000 / analyzer.binWidth());
+        double f = bin * analyzer.binWidth();
+        float[] samples = new float[2048];
+        for (int i = 0; i < samples.length; i++) samples[i] = (float) Math.sin(2 * Math.PI * f * i / SAMPLE_RATE);
+        analyzer.analyse(samples, 0);
+        float[] bins = analyzer.binMagnitudes();
+        int peakBin = 0;
+        for (int k = 1; k < bins.length; k++) if (bins[k] > bins[peakBin]) peakBin = k;
+        assertEquals(bin, peakBin);
+        assertEquals(0, bins[peakBin], 0.1);
+    }
+
+    /** Bin levels must match a direct DFT of the same Hann-windowed noise. */
+    private static void checkAgainstDft(int size) {
+        SpectrumAnalyzer analyzer = new SpectrumAnalyzer(size, 16, SAMPLE_RATE);
+        Random random = new Random(size);
+        float[] samples = new float[size];
+        for (int i = 0; i < size; i++) samples[i] = random.nextFloat() * 2 - 1;
+        analyzer.analyse(samples, 0);
+        float[] fft = analyzer.binMagnitudes();
+
+        double[] w = new double[size];
+        double sum = 0;
+        for (int n = 0; n < size; n++) {
+            w[n] = 0.5 - 0.5 * Math.cos(2 * Math.PI * n / size);
+            sum += w[n];
+        }
+        for (int k = 1; k < size / 2; k++) {
+            double re = 0, im = 0;
+            for (int n = 0; n < size; n++) {
+                double x = samples[n] * w[n];
+                re += x * Math.cos(2 * Math.PI * k * n / size);
+                im -= x * Math.sin(2 * Math.PI * k * n / size);
+            }
+            double db = 10 * Math.log10((re * re + im * im) * 4 / (sum * sum));
+            if (db > SpectrumAnalyzer.FLOOR_DB + 10) assertEquals(db, fft[k], 0.01, "bin " + k);
+        }
+    }
+}